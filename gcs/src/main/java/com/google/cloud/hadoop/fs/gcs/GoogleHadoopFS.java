@@ -14,6 +14,7 @@
 
 package com.google.cloud.hadoop.fs.gcs;
 
+import com.google.cloud.hadoop.gcsio.ListPageIterator;
 import com.google.cloud.hadoop.util.LogUtil;
 import com.google.common.base.Preconditions;
 
@@ -29,13 +30,18 @@ import org.apache.hadoop.fs.FsServerDefaults;
 import org.apache.hadoop.fs.FsStatus;
 import org.apache.hadoop.fs.Options.ChecksumOpt;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.RemoteIterator;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.apache.hadoop.util.Progressable;
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.StringTokenizer;
 
 /**
@@ -225,6 +231,36 @@ public class GoogleHadoopFS extends AbstractFileSystem {
     return ghfs.listStatus(f);
   }
 
+  @Override
+  public RemoteIterator<FileStatus> listStatusIterator(final Path f) throws IOException {
+    log.debug("listStatusIterator");
+    final ListPageIterator<FileStatus> pages = ghfs.listStatusPages(f);
+    if (pages == null) {
+      throw new FileNotFoundException(String.format("Path '%s' does not exist.", f));
+    }
+    // Hand out statuses page by page so that callers see the first entries of large directories
+    // while the following pages are still being listed.
+    return new RemoteIterator<FileStatus>() {
+      private Iterator<FileStatus> page = Collections.emptyIterator();
+
+      @Override
+      public boolean hasNext() throws IOException {
+        while (!page.hasNext() && pages.hasNext()) {
+          page = pages.next().iterator();
+        }
+        return page.hasNext();
+      }
+
+      @Override
+      public FileStatus next() throws IOException {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return page.next();
+      }
+    };
+  }
+
   @Override
   public void setVerifyChecksum(final boolean verifyChecksum) {
     log.debug("setVerifyChecksum");
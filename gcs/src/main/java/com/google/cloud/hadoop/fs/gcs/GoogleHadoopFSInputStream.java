@@ -16,6 +16,8 @@
 
 package com.google.cloud.hadoop.fs.gcs;
 
+import com.google.cloud.hadoop.gcsio.GoogleCloudStorageReadChannel;
+import com.google.cloud.hadoop.gcsio.GoogleCloudStorageReadOptions;
 import com.google.cloud.hadoop.gcsio.SeekableReadableByteChannel;
 import com.google.cloud.hadoop.util.LogUtil;
 import com.google.common.base.Preconditions;
@@ -26,6 +28,8 @@ import org.apache.hadoop.fs.FileSystem;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A seekable and positionable FSInputStream that provides read access to a file.
@@ -45,11 +49,20 @@ class GoogleHadoopFSInputStream
   // Internal buffer.
   private ByteBuffer buffer;
 
+  // If positive, the minimum number of bytes to request from the channel when refilling the
+  // internal buffer after a seek outside of it, instead of filling the whole buffer; random
+  // readers tend to seek away again before consuming a full buffer.
+  private final int seekRefillSize;
+
+  // True if the internal buffer has not been refilled since the last seek outside of it.
+  private boolean seekRefillPending;
+
   // Path of the file to read.
   private URI gcsPath;
 
-  // Number of bytes read through this channel.
-  private long totalBytesRead;
+  // Number of bytes read through this channel; atomic since positional reads may run
+  // concurrently.
+  private final AtomicLong totalBytesRead = new AtomicLong();
 
   // Statistics tracker provided by the parent GoogleHadoopFileSystemBase for recording
   // numbers of bytes read.
@@ -71,13 +84,33 @@ class GoogleHadoopFSInputStream
       GoogleHadoopFileSystemBase ghfs, URI gcsPath, int bufferSize,
       FileSystem.Statistics statistics)
       throws IOException {
+    this(ghfs, gcsPath, bufferSize, statistics,
+        ghfs.getGcsFs().getOptions().getCloudStorageOptions().getReadChannelOptions());
+  }
+
+  /**
+   * Constructs an instance of GoogleHadoopFSInputStream object.
+   *
+   * @param ghfs Instance of GoogleHadoopFileSystemBase.
+   * @param gcsPath Path of the file to read from.
+   * @param bufferSize Size of the buffer to use.
+   * @param statistics File system statistics object.
+   * @param readOptions Options controlling how the file is read.
+   * @throws IOException if an IO error occurs.
+   */
+  GoogleHadoopFSInputStream(
+      GoogleHadoopFileSystemBase ghfs, URI gcsPath, int bufferSize,
+      FileSystem.Statistics statistics, GoogleCloudStorageReadOptions readOptions)
+      throws IOException {
     log.debug("GoogleHadoopFSInputStream(%s, %d)", gcsPath, bufferSize);
     this.ghfs = ghfs;
     this.gcsPath = gcsPath;
     this.statistics = statistics;
     initTime = System.nanoTime();
-    totalBytesRead = 0;
-    channel = ghfs.getGcsFs().open(gcsPath);
+    channel = ghfs.getGcsFs().open(gcsPath, readOptions);
+    seekRefillSize = readOptions.getFadvise() == GoogleCloudStorageReadOptions.Fadvise.SEQUENTIAL
+        ? 0
+        : readOptions.getMinRangeRequestSize();
     buffer = ByteBuffer.allocate(bufferSize);
     buffer.limit(0);
     buffer.rewind();
@@ -96,7 +129,7 @@ class GoogleHadoopFSInputStream
 
     // Refill the internal buffer if necessary.
     if (!buffer.hasRemaining()) {
-      buffer.clear();
+      clearBufferForRefill(1);
       int numBytesRead = channel.read(buffer);
       if (numBytesRead <= 0) {
         buffer.limit(0);
@@ -108,10 +141,11 @@ class GoogleHadoopFSInputStream
     }
 
     byte b = buffer.get();
-    totalBytesRead++;
+    totalBytesRead.incrementAndGet();
     statistics.incrementBytesRead(1);
     long duration = System.nanoTime() - startTime;
     ghfs.increment(GoogleHadoopFileSystemBase.Counter.READ1);
+    ghfs.incrementBytes(GoogleHadoopFileSystemBase.Counter.READ1, 1);
     ghfs.increment(GoogleHadoopFileSystemBase.Counter.READ1_TIME, duration);
     return (b & 0xff);
   }
@@ -129,7 +163,7 @@ class GoogleHadoopFSInputStream
    * @throws IOException if an IO error occurs.
    */
   @Override
-  public int read(byte[] buf, int offset, int length)
+  public synchronized int read(byte[] buf, int offset, int length)
       throws IOException {
     long startTime = System.nanoTime();
     Preconditions.checkNotNull(buf, "buf must not be null");
@@ -153,10 +187,11 @@ class GoogleHadoopFSInputStream
       } else {
         // Buffer is empty AND we still need more bytes to be read.
         long channelTime = System.nanoTime();
-        buffer.clear();
+        clearBufferForRefill(needToRead);
         int numNewBytes = channel.read(buffer);
         long channelDuration = System.nanoTime() - channelTime;
         ghfs.increment(GoogleHadoopFileSystemBase.Counter.READ_FROM_CHANNEL);
+        ghfs.incrementBytes(GoogleHadoopFileSystemBase.Counter.READ_FROM_CHANNEL, numNewBytes);
         ghfs.increment(
             GoogleHadoopFileSystemBase.Counter.READ_FROM_CHANNEL_TIME, channelDuration);
         if (numNewBytes <= 0) {
@@ -180,11 +215,12 @@ class GoogleHadoopFSInputStream
     if (numRead > 0) {
       // -1 means we actually read 0 bytes, but requested at least one byte.
       statistics.incrementBytesRead(numRead);
-      totalBytesRead += numRead;
+      totalBytesRead.addAndGet(numRead);
     }
 
     long duration = System.nanoTime() - startTime;
     ghfs.increment(GoogleHadoopFileSystemBase.Counter.READ);
+    ghfs.incrementBytes(GoogleHadoopFileSystemBase.Counter.READ, numRead);
     ghfs.increment(GoogleHadoopFileSystemBase.Counter.READ_TIME, duration);
     return numRead;
   }
@@ -195,6 +231,11 @@ class GoogleHadoopFSInputStream
    * Less than length bytes may be returned. Reading starts at the
    * given position.
    *
+   * The current position of the stream is not changed. The read is served from the internal
+   * buffer if it holds the whole range, which takes the lock of the stream only to copy the
+   * bytes, and otherwise with a bounded range request independent of the stream, so concurrent
+   * positional reads do not wait for each other's requests or for sequential reads.
+   *
    * @param position Data is read from the stream starting at this position.
    * @param buf The buffer into which data is returned.
    * @param offset The offset at which data is written.
@@ -207,13 +248,64 @@ class GoogleHadoopFSInputStream
   public int read(long position, byte[] buf, int offset, int length)
     throws IOException {
     long startTime = System.nanoTime();
-    int result = super.read(position, buf, offset, length);
+    Preconditions.checkNotNull(buf, "buf must not be null");
+    if (offset < 0 || length < 0 || length > buf.length - offset) {
+      throw new IndexOutOfBoundsException();
+    }
+
+    SeekableReadableByteChannel currentChannel = channel;
+    if (currentChannel == null) {
+      throw new ClosedChannelException();
+    }
+
+    int result;
+    if (currentChannel instanceof GoogleCloudStorageReadChannel) {
+      if (readFromBuffer(position, buf, offset, length)) {
+        result = length;
+      } else {
+        result = ((GoogleCloudStorageReadChannel) currentChannel)
+            .read(position, ByteBuffer.wrap(buf, offset, length));
+      }
+      if (result > 0) {
+        statistics.incrementBytesRead(result);
+        totalBytesRead.addAndGet(result);
+      }
+    } else {
+      // Fall back to seeking, reading and seeking back, which records the bytes it reads.
+      result = super.read(position, buf, offset, length);
+    }
     long duration = System.nanoTime() - startTime;
     ghfs.increment(GoogleHadoopFileSystemBase.Counter.READ_POS);
+    ghfs.incrementBytes(GoogleHadoopFileSystemBase.Counter.READ_POS, result);
     ghfs.increment(GoogleHadoopFileSystemBase.Counter.READ_POS_TIME, duration);
     return result;
   }
 
+  /**
+   * Copies length bytes starting at the given position into buf if the internal buffer holds all
+   * of them, without changing the position of the stream.
+   *
+   * @return true if the bytes were copied.
+   * @throws IOException if an IO error occurs.
+   */
+  private synchronized boolean readFromBuffer(long position, byte[] buf, int offset, int length)
+      throws IOException {
+    if (channel == null) {
+      throw new ClosedChannelException();
+    }
+
+    // The buffer holds the bytes just before the channel position, up to its limit.
+    long bufferEnd = channel.position();
+    long bufferStart = bufferEnd - buffer.limit();
+    if (position < bufferStart || position + length > bufferEnd) {
+      return false;
+    }
+    ByteBuffer bufferView = buffer.duplicate();
+    bufferView.position((int) (position - bufferStart));
+    bufferView.get(buf, offset, length);
+    return true;
+  }
+
   /**
    * Gets the current position within the file being read.
    *
@@ -279,12 +371,26 @@ class GoogleHadoopFSInputStream
       }
       buffer.limit(0);
       buffer.rewind();
+      seekRefillPending = true;
     }
     long duration = System.nanoTime() - startTime;
     ghfs.increment(GoogleHadoopFileSystemBase.Counter.SEEK);
     ghfs.increment(GoogleHadoopFileSystemBase.Counter.SEEK_TIME, duration);
   }
 
+  /**
+   * Clears the internal buffer before refilling it from the channel. The first refill after a
+   * seek outside of the buffer is limited to the larger of needToRead and seekRefillSize bytes
+   * when seekRefillSize is positive.
+   */
+  private void clearBufferForRefill(int needToRead) {
+    buffer.clear();
+    if (seekRefillPending && seekRefillSize > 0) {
+      buffer.limit(Math.min(buffer.capacity(), Math.max(needToRead, seekRefillSize)));
+    }
+    seekRefillPending = false;
+  }
+
   /**
    * Seeks a different copy of the data. Not supported.
    *
@@ -307,7 +413,7 @@ class GoogleHadoopFSInputStream
     if (channel != null) {
     long startTime = System.nanoTime();
       try {
-        log.debug("close: file: %s, totalBytesRead: %d", gcsPath, totalBytesRead);
+        log.debug("close: file: %s, totalBytesRead: %d", gcsPath, totalBytesRead.get());
         channel.close();
         long duration = System.nanoTime() - startTime;
         ghfs.increment(GoogleHadoopFileSystemBase.Counter.READ_CLOSE);
@@ -17,18 +17,31 @@
 package com.google.cloud.hadoop.fs.gcs;
 
 import com.google.api.client.auth.oauth2.Credential;
+import com.google.cloud.hadoop.gcsio.AdaptiveRateLimiterOptions;
+import com.google.cloud.hadoop.gcsio.CompositeUploadOptions;
 import com.google.cloud.hadoop.gcsio.CreateFileOptions;
 import com.google.cloud.hadoop.gcsio.DirectoryListCache;
 import com.google.cloud.hadoop.gcsio.FileInfo;
 import com.google.cloud.hadoop.gcsio.GoogleCloudStorageFileSystem;
 import com.google.cloud.hadoop.gcsio.GoogleCloudStorageFileSystemOptions;
+import com.google.cloud.hadoop.gcsio.GoogleCloudStorageOptions;
+import com.google.cloud.hadoop.gcsio.GoogleCloudStorageReadOptions;
+import com.google.cloud.hadoop.gcsio.InferredDirectoryItemInfo;
+import com.google.cloud.hadoop.gcsio.ListPageIterator;
+import com.google.cloud.hadoop.gcsio.ListPageIterators;
+import com.google.cloud.hadoop.gcsio.RequestTracer;
+import com.google.cloud.hadoop.gcsio.StatCacheOptions;
+import com.google.cloud.hadoop.util.AsyncWriteChannelOptions;
 import com.google.cloud.hadoop.util.ConfigurationUtil;
 import com.google.cloud.hadoop.util.CredentialFactory;
 import com.google.cloud.hadoop.util.HadoopCredentialConfiguration;
 import com.google.cloud.hadoop.util.HadoopVersionInfo;
 import com.google.cloud.hadoop.util.LogUtil;
+import com.google.cloud.hadoop.util.OperationStatistics;
 import com.google.cloud.hadoop.util.PropertyUtil;
+import com.google.cloud.hadoop.util.StatisticsRegistry;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Splitter;
@@ -50,6 +63,7 @@ import org.apache.hadoop.security.token.Token;
 import org.apache.hadoop.util.Progressable;
 import org.apache.http.HttpHost;
 
+import java.io.DataOutput;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.URI;
@@ -125,6 +139,315 @@ public abstract class GoogleHadoopFileSystemBase
   // it to a known good value.
   public static final int WRITE_BUFFERSIZE_DEFAULT = 64 * 1024 * 1024;
 
+  // Configuration key for the implementation of the pipe between output streams and the threads
+  // uploading their data; one of BUFFER_RING or PIPED_STREAM.
+  public static final String GCS_UPLOAD_PIPE_TYPE_KEY = "fs.gs.io.upload.pipe.type";
+
+  // Default value for fs.gs.io.upload.pipe.type.
+  public static final String GCS_UPLOAD_PIPE_TYPE_DEFAULT =
+      AsyncWriteChannelOptions.PIPE_TYPE_DEFAULT.name();
+
+  // Configuration key for the size up to which objects are buffered in memory and uploaded in a
+  // single request when their output stream is closed, instead of through a resumable upload
+  // session. 0 disables it.
+  public static final String GCS_UPLOAD_DIRECT_THRESHOLD_KEY = "fs.gs.io.upload.direct.threshold";
+
+  // Default value for fs.gs.io.upload.direct.threshold.
+  public static final int GCS_UPLOAD_DIRECT_THRESHOLD_DEFAULT =
+      AsyncWriteChannelOptions.DIRECT_UPLOAD_THRESHOLD_DEFAULT;
+
+  // Configuration key for the maximum number of bytes of upload buffers held at once by all
+  // output streams in the process; streams opened beyond it get a smaller upload buffer than
+  // fs.gs.io.buffersize.write, or wait for other streams to finish uploading. 0 means no limit.
+  public static final String GCS_UPLOAD_MEMORY_MAX_KEY = "fs.gs.io.upload.memory.max";
+
+  // Default value for fs.gs.io.upload.memory.max.
+  public static final long GCS_UPLOAD_MEMORY_MAX_DEFAULT =
+      GoogleCloudStorageOptions.MAX_UPLOAD_BUFFER_MEMORY_DEFAULT;
+
+  // Configuration key for the maximum number of batch requests to GCS, such as those deleting,
+  // copying or fetching metadata of many objects, executing concurrently for a single operation.
+  public static final String GCS_BATCHES_IN_FLIGHT_MAX_KEY = "fs.gs.batch.in.flight.max";
+
+  // Default value for fs.gs.batch.in.flight.max.
+  public static final int GCS_BATCHES_IN_FLIGHT_MAX_DEFAULT =
+      GoogleCloudStorageOptions.MAX_BATCHES_IN_FLIGHT_DEFAULT;
+
+  // Configuration key for inferring the sub-directories of listed directories from the prefixes
+  // returned by the listing, fetching their placeholder objects only when their modification
+  // times or attributes are asked for, instead of fetching all of them up front.
+  public static final String GCS_LIST_INFER_DIRECTORIES_ENABLE_KEY =
+      "fs.gs.list.infer.directories.enable";
+
+  // Default value for fs.gs.list.infer.directories.enable.
+  public static final boolean GCS_LIST_INFER_DIRECTORIES_ENABLE_DEFAULT =
+      GoogleCloudStorageOptions.INFER_DIRECTORIES_DEFAULT;
+
+  // Configuration key for the number of threads listing the sub-directories of a directory
+  // concurrently in recursive listings, such as those of flat glob; 0 lists each directory
+  // sequentially.
+  public static final String GCS_LIST_PARALLEL_THREADS_KEY = "fs.gs.list.parallel.threads";
+
+  // Default value for fs.gs.list.parallel.threads.
+  public static final int GCS_LIST_PARALLEL_THREADS_DEFAULT =
+      GoogleCloudStorageFileSystemOptions.PARALLEL_LISTING_THREADS_DEFAULT;
+
+  // Configuration key for checking the paths involved in creating a file with a single batch of
+  // requests, skipping the checks of recently checked parent directories, and writing the file
+  // with a generation precondition instead of first writing a marker object.
+  public static final String GCS_CREATE_FAST_ENABLE_KEY = "fs.gs.create.fast.enable";
+
+  // Default value for fs.gs.create.fast.enable.
+  public static final boolean GCS_CREATE_FAST_ENABLE_DEFAULT =
+      GoogleCloudStorageFileSystemOptions.FAST_CREATE_ENABLED_DEFAULT;
+
+  // Configuration key for fetching a path together with the directory of the same name in a single
+  // batch request when getting its status, instead of fetching the directory after a miss.
+  public static final String GCS_STATUS_BATCH_DIRECTORY_LOOKUP_ENABLE_KEY =
+      "fs.gs.status.batch.directory.lookup.enable";
+
+  // Default value for fs.gs.status.batch.directory.lookup.enable.
+  public static final boolean GCS_STATUS_BATCH_DIRECTORY_LOOKUP_ENABLE_DEFAULT =
+      GoogleCloudStorageFileSystemOptions.BATCH_DIRECTORY_LOOKUP_ENABLED_DEFAULT;
+
+  // Configuration key for limiting the rate of GCS operations with budgets shared by the whole
+  // JVM, one per class of operations (metadata reads, metadata writes, listings and data), each
+  // increased additively while operations succeed and decreased multiplicatively when GCS rate
+  // limits them.
+  public static final String GCS_RATE_LIMIT_ADAPTIVE_ENABLE_KEY = "fs.gs.ratelimit.adaptive.enable";
+
+  // Default value for fs.gs.ratelimit.adaptive.enable.
+  public static final boolean GCS_RATE_LIMIT_ADAPTIVE_ENABLE_DEFAULT =
+      AdaptiveRateLimiterOptions.ENABLED_DEFAULT;
+
+  // Configuration key for the rate, in operations per second, each budget starts at.
+  public static final String GCS_RATE_LIMIT_INITIAL_RATE_KEY = "fs.gs.ratelimit.initial.rate";
+
+  // Default value for fs.gs.ratelimit.initial.rate.
+  public static final float GCS_RATE_LIMIT_INITIAL_RATE_DEFAULT =
+      (float) AdaptiveRateLimiterOptions.INITIAL_RATE_DEFAULT;
+
+  // Configuration key for the rate, in operations per second, below which budgets never go.
+  public static final String GCS_RATE_LIMIT_MIN_RATE_KEY = "fs.gs.ratelimit.min.rate";
+
+  // Default value for fs.gs.ratelimit.min.rate.
+  public static final float GCS_RATE_LIMIT_MIN_RATE_DEFAULT =
+      (float) AdaptiveRateLimiterOptions.MIN_RATE_DEFAULT;
+
+  // Configuration key for the rate, in operations per second, above which budgets never go.
+  public static final String GCS_RATE_LIMIT_MAX_RATE_KEY = "fs.gs.ratelimit.max.rate";
+
+  // Default value for fs.gs.ratelimit.max.rate.
+  public static final float GCS_RATE_LIMIT_MAX_RATE_DEFAULT =
+      (float) AdaptiveRateLimiterOptions.MAX_RATE_DEFAULT;
+
+  // Configuration key for the rate a budget grows by once a rate's worth of its operations
+  // succeeded.
+  public static final String GCS_RATE_LIMIT_INCREASE_KEY = "fs.gs.ratelimit.increase";
+
+  // Default value for fs.gs.ratelimit.increase.
+  public static final float GCS_RATE_LIMIT_INCREASE_DEFAULT =
+      (float) AdaptiveRateLimiterOptions.ADDITIVE_INCREASE_DEFAULT;
+
+  // Configuration key for the factor a budget is multiplied by when its operations are rate
+  // limited.
+  public static final String GCS_RATE_LIMIT_DECREASE_FACTOR_KEY = "fs.gs.ratelimit.decrease.factor";
+
+  // Default value for fs.gs.ratelimit.decrease.factor.
+  public static final float GCS_RATE_LIMIT_DECREASE_FACTOR_DEFAULT =
+      (float) AdaptiveRateLimiterOptions.MULTIPLICATIVE_DECREASE_DEFAULT;
+
+  // Configuration key for merging concurrent identical metadata and list requests of this file
+  // system into a single request whose result is shared by all callers.
+  public static final String GCS_REQUEST_COALESCING_ENABLE_KEY = "fs.gs.request.coalescing.enable";
+
+  // Default value for fs.gs.request.coalescing.enable.
+  public static final boolean GCS_REQUEST_COALESCING_ENABLE_DEFAULT =
+      GoogleCloudStorageFileSystemOptions.REQUEST_COALESCING_ENABLED_DEFAULT;
+
+  // Configuration key for recording latency histograms and byte counts of GHFS operations and of
+  // the underlying GCS calls, exported live through JMX under the com.google.cloud.hadoop domain.
+  public static final String GCS_METRICS_ENABLE_KEY = "fs.gs.metrics.enable";
+
+  // Default value for fs.gs.metrics.enable.
+  public static final boolean GCS_METRICS_ENABLE_DEFAULT =
+      GoogleCloudStorageFileSystemOptions.METRICS_ENABLED_DEFAULT;
+
+  // Configuration key for letting directories exist purely by the prefix of the objects they
+  // contain: mkdirs writes a placeholder object only for an empty directory, create and rename
+  // don't write the placeholders of parent directories, nor update their timestamps, and
+  // getFileStatus and listStatus infer directories from listing a single object under them.
+  // Implies fs.gs.list.infer.directories.enable, and disables fs.gs.implicit.dir.repair.enable.
+  public static final String GCS_IMPLICIT_DIR_INFER_ENABLE_KEY = "fs.gs.implicit.dir.infer.enable";
+
+  // Default value for fs.gs.implicit.dir.infer.enable.
+  public static final boolean GCS_IMPLICIT_DIR_INFER_ENABLE_DEFAULT =
+      GoogleCloudStorageFileSystemOptions.INFER_IMPLICIT_DIRECTORIES_DEFAULT;
+
+  // Configuration key for the fraction, between 0 and 1, of top-level file system calls, such as
+  // getFileStatus, mkdirs, rename or globStatus, whose GCS requests are counted and timed by type
+  // and logged as a one-line summary at INFO level when the call completes.
+  public static final String GCS_TRACE_SAMPLE_RATE_KEY = "fs.gs.trace.sample.rate";
+
+  // Default value for fs.gs.trace.sample.rate.
+  public static final float GCS_TRACE_SAMPLE_RATE_DEFAULT = 0;
+
+  // Configuration key for serving file and directory metadata lookups from a cache, shared by the
+  // whole JVM, of recently fetched, listed or written metadata, including not-found results.
+  // Entries are dropped when changed through this JVM, and changes by other clients may go unseen
+  // until the entries expire.
+  public static final String GCS_STAT_CACHE_ENABLE_KEY = "fs.gs.stat.cache.enable";
+
+  // Default value for fs.gs.stat.cache.enable.
+  public static final boolean GCS_STAT_CACHE_ENABLE_DEFAULT = StatCacheOptions.ENABLED_DEFAULT;
+
+  // Configuration key for the maximum number of entries of the stat cache.
+  public static final String GCS_STAT_CACHE_MAX_ENTRIES_KEY = "fs.gs.stat.cache.max.entries";
+
+  // Default value for fs.gs.stat.cache.max.entries.
+  public static final int GCS_STAT_CACHE_MAX_ENTRIES_DEFAULT =
+      StatCacheOptions.MAX_ENTRIES_DEFAULT;
+
+  // Configuration key for the maximum estimated number of bytes of memory held by the stat cache.
+  public static final String GCS_STAT_CACHE_MAX_BYTES_KEY = "fs.gs.stat.cache.max.bytes";
+
+  // Default value for fs.gs.stat.cache.max.bytes.
+  public static final long GCS_STAT_CACHE_MAX_BYTES_DEFAULT = StatCacheOptions.MAX_BYTES_DEFAULT;
+
+  // Configuration key for the number of milliseconds after which a stat cache entry expires.
+  public static final String GCS_STAT_CACHE_TTL_MILLIS_KEY = "fs.gs.stat.cache.ttl.ms";
+
+  // Default value for fs.gs.stat.cache.ttl.ms.
+  public static final long GCS_STAT_CACHE_TTL_MILLIS_DEFAULT = StatCacheOptions.TTL_MILLIS_DEFAULT;
+
+  // Configuration key for the number of ranges each input stream fetches concurrently ahead of
+  // its current position; 0 disables read-ahead so that each stream reads the object over a
+  // single connection.
+  public static final String GCS_READ_AHEAD_DEPTH_KEY = "fs.gs.io.readahead.depth";
+
+  // Default value for fs.gs.io.readahead.depth.
+  public static final int GCS_READ_AHEAD_DEPTH_DEFAULT =
+      GoogleCloudStorageReadOptions.READ_AHEAD_DEPTH_DEFAULT;
+
+  // Configuration key for the size in bytes of each range fetched by read-ahead.
+  public static final String GCS_READ_AHEAD_RANGE_SIZE_KEY = "fs.gs.io.readahead.range.size";
+
+  // Default value for fs.gs.io.readahead.range.size.
+  public static final int GCS_READ_AHEAD_RANGE_SIZE_DEFAULT =
+      GoogleCloudStorageReadOptions.READ_AHEAD_RANGE_SIZE_DEFAULT;
+
+  // Configuration key for the maximum number of threads shared by all input streams of a
+  // FileSystem instance for fetching read-ahead ranges.
+  public static final String GCS_READ_AHEAD_MAX_THREADS_KEY = "fs.gs.io.readahead.threads.max";
+
+  // Default value for fs.gs.io.readahead.threads.max.
+  public static final int GCS_READ_AHEAD_MAX_THREADS_DEFAULT =
+      GoogleCloudStorageReadOptions.READ_AHEAD_MAX_THREADS_DEFAULT;
+
+  // Configuration key for the expected access pattern of input streams; one of SEQUENTIAL,
+  // RANDOM or AUTO. RANDOM issues bounded range requests sized to each read, which suits
+  // columnar formats such as ORC and Parquet; AUTO switches from SEQUENTIAL to RANDOM once a
+  // stream sees a backward seek or a forward seek longer than fs.gs.inputstream.inplace.seek.limit.
+  public static final String GCS_INPUTSTREAM_FADVISE_KEY = "fs.gs.inputstream.fadvise";
+
+  // Default value for fs.gs.inputstream.fadvise.
+  public static final String GCS_INPUTSTREAM_FADVISE_DEFAULT =
+      GoogleCloudStorageReadOptions.FADVISE_DEFAULT.name();
+
+  // Configuration key for the minimum size in bytes of each bounded range request made in random
+  // access mode.
+  public static final String GCS_INPUTSTREAM_MIN_RANGE_REQUEST_SIZE_KEY =
+      "fs.gs.inputstream.min.range.request.size";
+
+  // Default value for fs.gs.inputstream.min.range.request.size.
+  public static final int GCS_INPUTSTREAM_MIN_RANGE_REQUEST_SIZE_DEFAULT =
+      GoogleCloudStorageReadOptions.MIN_RANGE_REQUEST_SIZE_DEFAULT;
+
+  // Configuration key for the maximum distance in bytes of a forward seek that is served by
+  // skipping bytes of the open stream instead of issuing a new request.
+  public static final String GCS_INPUTSTREAM_INPLACE_SEEK_LIMIT_KEY =
+      "fs.gs.inputstream.inplace.seek.limit";
+
+  // Default value for fs.gs.inputstream.inplace.seek.limit.
+  public static final long GCS_INPUTSTREAM_INPLACE_SEEK_LIMIT_DEFAULT =
+      GoogleCloudStorageReadOptions.INPLACE_SEEK_LIMIT_DEFAULT;
+
+  // Configuration key for the number of bytes at the end of each object fetched and cached by the
+  // first request of an input stream; 0 disables the footer cache.
+  public static final String GCS_INPUTSTREAM_FOOTER_CACHE_SIZE_KEY =
+      "fs.gs.inputstream.footer.cache.size";
+
+  // Default value for fs.gs.inputstream.footer.cache.size.
+  public static final int GCS_INPUTSTREAM_FOOTER_CACHE_SIZE_DEFAULT =
+      GoogleCloudStorageReadOptions.FOOTER_CACHE_SIZE_DEFAULT;
+
+  // Configuration key for whether opening an input stream fetches the metadata of the file to
+  // fail right away if it does not exist. When disabled, a missing file is reported by the first
+  // read of the stream, saving a request per opened file.
+  public static final String GCS_INPUTSTREAM_FAST_FAIL_ON_NOT_FOUND_ENABLE_KEY =
+      "fs.gs.inputstream.fast.fail.on.not.found.enable";
+
+  // Default value for fs.gs.inputstream.fast.fail.on.not.found.enable.
+  public static final boolean GCS_INPUTSTREAM_FAST_FAIL_ON_NOT_FOUND_ENABLE_DEFAULT =
+      GoogleCloudStorageReadOptions.FAST_FAIL_ON_NOT_FOUND_DEFAULT;
+
+  // Configuration key for the maximum size in bytes of files that input streams fetch with a
+  // single request and then read and seek in memory; the size is known when the stream is opened
+  // with fast failing on not found, or from the first response otherwise. 0 disables it.
+  public static final String GCS_INPUTSTREAM_WHOLE_OBJECT_THRESHOLD_KEY =
+      "fs.gs.inputstream.whole.object.threshold";
+
+  // Default value for fs.gs.inputstream.whole.object.threshold.
+  public static final int GCS_INPUTSTREAM_WHOLE_OBJECT_THRESHOLD_DEFAULT =
+      GoogleCloudStorageReadOptions.WHOLE_OBJECT_THRESHOLD_DEFAULT;
+
+  // Configuration key for the maximum number of bytes of small files read whole that are kept in
+  // a least recently used cache shared by input streams, keyed by file and generation. 0 disables
+  // the cache.
+  public static final String GCS_INPUTSTREAM_WHOLE_OBJECT_CACHE_SIZE_KEY =
+      "fs.gs.inputstream.whole.object.cache.size";
+
+  // Default value for fs.gs.inputstream.whole.object.cache.size.
+  public static final long GCS_INPUTSTREAM_WHOLE_OBJECT_CACHE_SIZE_DEFAULT =
+      GoogleCloudStorageReadOptions.WHOLE_OBJECT_CACHE_SIZE_DEFAULT;
+
+  // Configuration key for enabling parallel composite uploads, in which output streams upload
+  // their data as temporary component objects in parallel and compose them into the final object
+  // when closed. Composite objects have a CRC32C checksum but no MD5 hash.
+  public static final String GCS_COMPOSITE_UPLOAD_ENABLE_KEY = "fs.gs.io.composite.upload.enable";
+
+  // Default value for fs.gs.io.composite.upload.enable.
+  public static final boolean GCS_COMPOSITE_UPLOAD_ENABLE_DEFAULT =
+      CompositeUploadOptions.ENABLED_DEFAULT;
+
+  // Configuration key for the size in bytes of each component uploaded by composite uploads.
+  // Since a composite object has at most 1024 components, writing more than 1024 parts to an
+  // output stream fails.
+  public static final String GCS_COMPOSITE_UPLOAD_PART_SIZE_KEY =
+      "fs.gs.io.composite.upload.part.size";
+
+  // Default value for fs.gs.io.composite.upload.part.size.
+  public static final int GCS_COMPOSITE_UPLOAD_PART_SIZE_DEFAULT =
+      CompositeUploadOptions.PART_SIZE_DEFAULT;
+
+  // Configuration key for the maximum number of part buffers held by each output stream doing a
+  // composite upload, including the part being filled.
+  public static final String GCS_COMPOSITE_UPLOAD_BUFFERED_PARTS_KEY =
+      "fs.gs.io.composite.upload.buffered.parts";
+
+  // Default value for fs.gs.io.composite.upload.buffered.parts.
+  public static final int GCS_COMPOSITE_UPLOAD_BUFFERED_PARTS_DEFAULT =
+      CompositeUploadOptions.MAX_BUFFERED_PARTS_DEFAULT;
+
+  // Configuration key for the maximum number of threads shared by all output streams of a
+  // FileSystem instance for uploading and composing parts.
+  public static final String GCS_COMPOSITE_UPLOAD_MAX_THREADS_KEY =
+      "fs.gs.io.composite.upload.threads.max";
+
+  // Default value for fs.gs.io.composite.upload.threads.max.
+  public static final int GCS_COMPOSITE_UPLOAD_MAX_THREADS_DEFAULT =
+      CompositeUploadOptions.MAX_THREADS_DEFAULT;
+
   // Configuration key for default block size of a file.
   public static final String BLOCK_SIZE_KEY = "fs.gs.block.size";
 
@@ -213,6 +536,27 @@ public abstract class GoogleHadoopFileSystemBase
   // Default value for fs.gs.parent.timestamp.update.enable.
   public static final boolean GCS_PARENT_TIMESTAMP_UPDATE_ENABLE_DEFAULT = true;
 
+  // Configuration key for the time, in milliseconds, for which parent directory timestamp updates
+  // are held before being sent; updates of the same directory made meanwhile are merged, and the
+  // held updates are sent together, so each directory is updated at most once per interval.
+  // 0 sends the update of each change on its own.
+  public static final String GCS_PARENT_TIMESTAMP_UPDATE_INTERVAL_MS_KEY =
+      "fs.gs.parent.timestamp.update.interval.ms";
+
+  // Default value for fs.gs.parent.timestamp.update.interval.ms.
+  public static final long GCS_PARENT_TIMESTAMP_UPDATE_INTERVAL_MS_DEFAULT =
+      GoogleCloudStorageFileSystemOptions.PARENT_TIMESTAMP_UPDATE_INTERVAL_MILLIS_DEFAULT;
+
+  // Configuration key for the maximum number of directories whose timestamp update is held at
+  // once when fs.gs.parent.timestamp.update.interval.ms is set; updates of further directories
+  // are dropped.
+  public static final String GCS_PARENT_TIMESTAMP_UPDATE_MAX_PENDING_KEY =
+      "fs.gs.parent.timestamp.update.max.pending";
+
+  // Default value for fs.gs.parent.timestamp.update.max.pending.
+  public static final int GCS_PARENT_TIMESTAMP_UPDATE_MAX_PENDING_DEFAULT =
+      GoogleCloudStorageFileSystemOptions.PARENT_TIMESTAMP_UPDATE_MAX_PENDING_DEFAULT;
+
   // Configuration key for specifying which implementation of DirectoryListCache to use for
   // supplementing GCS API "list" results. Supported implementations:
   // IN_MEMORY: Enforces immediate consistency within same Java process.
@@ -233,6 +577,35 @@ public abstract class GoogleHadoopFileSystemBase
   public static final String GCS_METADATA_CACHE_DIRECTORY_DEFAULT =
       "/tmp/gcs_connector_metadata_cache";
 
+  // Only used if fs.gs.metadata.cache.type is IN_MEMORY, the maximum number of object entries of
+  // the cache, which is shared by the whole JVM; beyond it, the least recently used entries are
+  // evicted. 0 for no limit.
+  public static final String GCS_METADATA_CACHE_MAX_ENTRIES_KEY =
+      "fs.gs.metadata.cache.max.entries";
+
+  // Default value for fs.gs.metadata.cache.max.entries.
+  public static final long GCS_METADATA_CACHE_MAX_ENTRIES_DEFAULT =
+      GoogleCloudStorageFileSystemOptions.METADATA_CACHE_MAX_ENTRIES_DEFAULT;
+
+  // Only used if fs.gs.metadata.cache.type is IN_MEMORY, the maximum estimated number of bytes of
+  // memory held by the entries of the cache; beyond it, the least recently used entries are
+  // evicted. 0 for no limit.
+  public static final String GCS_METADATA_CACHE_MAX_BYTES_KEY = "fs.gs.metadata.cache.max.bytes";
+
+  // Default value for fs.gs.metadata.cache.max.bytes.
+  public static final long GCS_METADATA_CACHE_MAX_BYTES_DEFAULT =
+      GoogleCloudStorageFileSystemOptions.METADATA_CACHE_MAX_BYTES_DEFAULT;
+
+  // Only used if fs.gs.metadata.cache.type is IN_MEMORY, the interval in milliseconds at which a
+  // background thread removes the expired entries of a batch of cache entries. 0 only removes
+  // expired entries when they are listed.
+  public static final String GCS_METADATA_CACHE_SWEEP_INTERVAL_MS_KEY =
+      "fs.gs.metadata.cache.sweep.interval.ms";
+
+  // Default value for fs.gs.metadata.cache.sweep.interval.ms.
+  public static final long GCS_METADATA_CACHE_SWEEP_INTERVAL_MS_DEFAULT =
+      GoogleCloudStorageFileSystemOptions.METADATA_CACHE_SWEEP_INTERVAL_MILLIS_DEFAULT;
+
   // Configuration key containing a comma-separated list of sub-strings that when matched will
   // cause a particular directory to not have its modification timestamp updated.
   // Includes take precedence over excludes.
@@ -350,6 +723,21 @@ public abstract class GoogleHadoopFileSystemBase
   // Map of counter values
   protected final ImmutableMap<Counter, AtomicLong> counters = createCounterMap();
 
+  // Latency and byte statistics of the operations of all GHFS instances of the JVM, keyed by the
+  // name of their invocation counter and exported through JMX.
+  private static final StatisticsRegistry OPERATION_STATISTICS =
+      new StatisticsRegistry("GoogleHadoopFileSystem");
+
+  // Invocation counter names of the duration counters.
+  private static final ImmutableMap<Counter, String> TIME_COUNTER_OPERATIONS =
+      createTimeCounterOperations();
+
+  // Whether operations are recorded into OPERATION_STATISTICS in addition to the counters.
+  private boolean metricsEnabled = GCS_METRICS_ENABLE_DEFAULT;
+
+  // Traces the GCS requests of a sample of the top-level calls.
+  private RequestTracer requestTracer = new RequestTracer(GCS_TRACE_SAMPLE_RATE_DEFAULT);
+
   protected ImmutableMap<Counter, AtomicLong> createCounterMap() {
     ImmutableMap.Builder<Counter, AtomicLong> builder = ImmutableMap.builder();
     for (Counter counter : Counter.values()) {
@@ -358,6 +746,18 @@ public abstract class GoogleHadoopFileSystemBase
     return builder.build();
   }
 
+  private static ImmutableMap<Counter, String> createTimeCounterOperations() {
+    String timeSuffix = "_TIME";
+    ImmutableMap.Builder<Counter, String> builder = ImmutableMap.builder();
+    for (Counter counter : Counter.values()) {
+      String name = counter.toString();
+      if (name.endsWith(timeSuffix)) {
+        builder.put(counter, name.substring(0, name.length() - timeSuffix.length()));
+      }
+    }
+    return builder.build();
+  }
+
   /**
    * Behavior of listStatus when a path is not found.
    */
@@ -759,10 +1159,57 @@ public abstract class GoogleHadoopFileSystemBase
   @Override
   public FSDataInputStream open(Path hadoopPath, int bufferSize)
       throws IOException {
-
-    long startTime = System.nanoTime();
     Preconditions.checkArgument(hadoopPath != null,
         "hadoopPath must not be null");
+    RequestTracer.Trace trace = requestTracer.start("open", hadoopPath);
+    try {
+      return openInternal(hadoopPath, bufferSize,
+          getGcsFs().getOptions().getCloudStorageOptions().getReadChannelOptions());
+    } finally {
+      trace.close();
+    }
+  }
+
+  /**
+   * Opens the file with the given status for reading without fetching its metadata again, for
+   * callers that already hold it, e.g. from a listing. If the file has been deleted since, the
+   * FileNotFoundException is thrown by the first read of the stream rather than by this method.
+   *
+   * @param fileStatus Status of the file to open.
+   * @param bufferSize Size of buffer to use for IO.
+   * @return A readable stream.
+   * @throws FileNotFoundException if the given status is that of a directory.
+   * @throws IOException if an error occurs.
+   */
+  public FSDataInputStream open(FileStatus fileStatus, int bufferSize)
+      throws IOException {
+    Preconditions.checkArgument(fileStatus != null,
+        "fileStatus must not be null");
+    if (fileStatus.isDir()) {
+      throw new FileNotFoundException(
+          "Cannot open a directory for reading: " + fileStatus.getPath());
+    }
+    GoogleCloudStorageReadOptions readOptions =
+        getGcsFs().getOptions().getCloudStorageOptions().getReadChannelOptions()
+            .toBuilder()
+            .setFastFailOnNotFound(false)
+            .build();
+    RequestTracer.Trace trace = requestTracer.start("open", fileStatus.getPath());
+    try {
+      return openInternal(fileStatus.getPath(), bufferSize, readOptions);
+    } finally {
+      trace.close();
+    }
+  }
+
+  /**
+   * Opens the given file for reading with the given read options.
+   */
+  private FSDataInputStream openInternal(
+      Path hadoopPath, int bufferSize, GoogleCloudStorageReadOptions readOptions)
+      throws IOException {
+
+    long startTime = System.nanoTime();
     Preconditions.checkArgument(bufferSize > 0,
         "bufferSize must be a positive integer: %s", bufferSize);
 
@@ -773,7 +1220,7 @@ public abstract class GoogleHadoopFileSystemBase
     bufferSize = bufferSizeOverride;
     URI gcsPath = getGcsPath(hadoopPath);
     GoogleHadoopFSInputStream in =
-        new GoogleHadoopFSInputStream(this, gcsPath, bufferSize, statistics);
+        new GoogleHadoopFSInputStream(this, gcsPath, bufferSize, statistics, readOptions);
 
     long duration = System.nanoTime() - startTime;
     increment(Counter.OPEN);
@@ -810,7 +1257,26 @@ public abstract class GoogleHadoopFileSystemBase
       short replication,
       long blockSize,
       Progressable progress) throws IOException {
+    RequestTracer.Trace trace = requestTracer.start("create", hadoopPath);
+    try {
+      return createInternal(
+          hadoopPath, permission, overwrite, bufferSize, replication, blockSize, progress);
+    } finally {
+      trace.close();
+    }
+  }
 
+  /**
+   * Implements {@link #create} within the trace of the call.
+   */
+  private FSDataOutputStream createInternal(
+      Path hadoopPath,
+      FsPermission permission,
+      boolean overwrite,
+      int bufferSize,
+      short replication,
+      long blockSize,
+      Progressable progress) throws IOException {
     long startTime = System.nanoTime();
     Preconditions.checkArgument(hadoopPath != null, "hadoopPath must not be null");
     Preconditions.checkArgument(bufferSize > 0,
@@ -883,6 +1349,19 @@ public abstract class GoogleHadoopFileSystemBase
   @Override
   public boolean rename(Path src, Path dst)
       throws IOException {
+    RequestTracer.Trace trace = requestTracer.start("rename", src, dst);
+    try {
+      return renameInternal(src, dst);
+    } finally {
+      trace.close();
+    }
+  }
+
+  /**
+   * Implements {@link #rename} within the trace of the call.
+   */
+  private boolean renameInternal(Path src, Path dst)
+      throws IOException {
     // Even though the underlying GCSFS will also throw an IAE if src is root, since our filesystem
     // root happens to equal the global root, we want to explicitly check it here since derived
     // classes may not have filesystem roots equal to the global root.
@@ -937,7 +1416,19 @@ public abstract class GoogleHadoopFileSystemBase
   @Override
   public boolean delete(Path hadoopPath, boolean recursive)
       throws IOException {
+    RequestTracer.Trace trace = requestTracer.start("delete", hadoopPath, recursive);
+    try {
+      return deleteInternal(hadoopPath, recursive);
+    } finally {
+      trace.close();
+    }
+  }
 
+  /**
+   * Implements {@link #delete} within the trace of the call.
+   */
+  private boolean deleteInternal(Path hadoopPath, boolean recursive)
+      throws IOException {
     long startTime = System.nanoTime();
     Preconditions.checkArgument(hadoopPath != null, "hadoopPath must not be null");
 
@@ -971,6 +1462,19 @@ public abstract class GoogleHadoopFileSystemBase
   @Override
   public FileStatus[] listStatus(Path hadoopPath)
       throws IOException {
+    RequestTracer.Trace trace = requestTracer.start("listStatus", hadoopPath);
+    try {
+      return listStatusInternal(hadoopPath);
+    } finally {
+      trace.close();
+    }
+  }
+
+  /**
+   * Implements {@link #listStatus} within the trace of the call.
+   */
+  private FileStatus[] listStatusInternal(Path hadoopPath)
+      throws IOException {
     long startTime = System.nanoTime();
     Preconditions.checkArgument(hadoopPath != null, "hadoopPath must not be null");
 
@@ -998,6 +1502,45 @@ public abstract class GoogleHadoopFileSystemBase
     return status.toArray(new FileStatus[0]);
   }
 
+  /**
+   * Lists file status like listStatus(), but returns it one page at a time as pages are listed
+   * from GCS instead of materializing the whole listing, so that callers can start processing
+   * large directories before their listing completes.
+   *
+   * @param hadoopPath Given path.
+   * @return pages of file status, or null if the path does not exist and the Hadoop version
+   *     expects listStatus() to return null for missing paths.
+   */
+  public ListPageIterator<FileStatus> listStatusPages(Path hadoopPath)
+      throws IOException {
+    long startTime = System.nanoTime();
+    Preconditions.checkArgument(hadoopPath != null, "hadoopPath must not be null");
+
+    checkOpen();
+
+    log.debug("GHFS.listStatusPages: %s", hadoopPath);
+
+    URI gcsPath = getGcsPath(hadoopPath);
+    ListPageIterator<FileInfo> fileInfoPages;
+    try {
+      fileInfoPages = gcsfs.listFileInfoPages(gcsPath, enableAutoRepairImplicitDirectories);
+    } catch (FileNotFoundException fnfe) {
+      log.debug("Got fnfe: ", fnfe);
+      listStatusFileNotFoundBehavior.handle(gcsPath.toString());
+      return null;
+    }
+
+    long duration = System.nanoTime() - startTime;
+    increment(Counter.LIST_STATUS);
+    increment(Counter.LIST_STATUS_TIME, duration);
+    return ListPageIterators.transform(fileInfoPages, new Function<FileInfo, FileStatus>() {
+      @Override
+      public FileStatus apply(FileInfo fileInfo) {
+        return getFileStatus(fileInfo);
+      }
+    });
+  }
+
   /**
    * Sets the current working directory to the given path.
    *
@@ -1049,7 +1592,19 @@ public abstract class GoogleHadoopFileSystemBase
   @Override
   public boolean mkdirs(Path hadoopPath, FsPermission permission)
       throws IOException {
+    RequestTracer.Trace trace = requestTracer.start("mkdirs", hadoopPath);
+    try {
+      return mkdirsInternal(hadoopPath, permission);
+    } finally {
+      trace.close();
+    }
+  }
 
+  /**
+   * Implements {@link #mkdirs} within the trace of the call.
+   */
+  private boolean mkdirsInternal(Path hadoopPath, FsPermission permission)
+      throws IOException {
     long startTime = System.nanoTime();
     Preconditions.checkArgument(hadoopPath != null, "hadoopPath must not be null");
 
@@ -1085,7 +1640,19 @@ public abstract class GoogleHadoopFileSystemBase
   @Override
   public FileStatus getFileStatus(Path hadoopPath)
       throws IOException {
+    RequestTracer.Trace trace = requestTracer.start("getFileStatus", hadoopPath);
+    try {
+      return getFileStatusInternal(hadoopPath);
+    } finally {
+      trace.close();
+    }
+  }
 
+  /**
+   * Implements {@link #getFileStatus} within the trace of the call.
+   */
+  private FileStatus getFileStatusInternal(Path hadoopPath)
+      throws IOException {
     long startTime = System.nanoTime();
     Preconditions.checkArgument(hadoopPath != null, "hadoopPath must not be null");
 
@@ -1205,7 +1772,19 @@ public abstract class GoogleHadoopFileSystemBase
   @Override
   public FileStatus[] globStatus(Path pathPattern, PathFilter filter)
       throws IOException {
+    RequestTracer.Trace trace = requestTracer.start("globStatus", pathPattern);
+    try {
+      return globStatusInternal(pathPattern, filter);
+    } finally {
+      trace.close();
+    }
+  }
 
+  /**
+   * Implements {@link #globStatus} within the trace of the call.
+   */
+  private FileStatus[] globStatusInternal(Path pathPattern, PathFilter filter)
+      throws IOException {
     checkOpen();
 
     log.debug("GHFS.globStatus: %s", pathPattern);
@@ -1289,6 +1868,15 @@ public abstract class GoogleHadoopFileSystemBase
    * Gets FileStatus corresponding to the given FileInfo value.
    */
   private FileStatus getFileStatus(FileInfo fileInfo) {
+    if (fileInfo.getItemInfo() instanceof InferredDirectoryItemInfo
+        && !((InferredDirectoryItemInfo) fileInfo.getItemInfo()).isResolved()) {
+      // Don't fetch the placeholder object unless the modification time is asked for.
+      FileStatus status = new InferredDirectoryFileStatus(
+          fileInfo, defaultBlockSize, getHadoopPath(fileInfo.getPath()));
+      log.debug("GHFS.getFileStatus: %s => %s", fileInfo.getPath(), fileStatusToString(status));
+      return status;
+    }
+
     // GCS does not provide modification time. It only provides creation time.
     // It works for objects because they are immutable once created.
     FileStatus status =
@@ -1307,6 +1895,37 @@ public abstract class GoogleHadoopFileSystemBase
     return status;
   }
 
+  /**
+   * FileStatus of a directory inferred from a listed prefix, whose modification and access times
+   * are read from the FileInfo, fetching the placeholder object, only when first asked for.
+   */
+  private static class InferredDirectoryFileStatus extends FileStatus {
+    private final FileInfo fileInfo;
+
+    InferredDirectoryFileStatus(FileInfo fileInfo, long blockSize, Path path) {
+      super(0, true, REPLICATION_FACTOR_DEFAULT, blockSize, 0, 0, PERMISSIONS_TO_REPORT,
+          USER_NAME, USER_NAME, path);
+      this.fileInfo = fileInfo;
+    }
+
+    @Override
+    public long getModificationTime() {
+      return fileInfo.getModificationTime();
+    }
+
+    @Override
+    public long getAccessTime() {
+      return fileInfo.getModificationTime();
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+      // Some Hadoop versions serialize the fields rather than the getters.
+      new FileStatus(getLen(), isDir(), getReplication(), getBlockSize(), getModificationTime(),
+          getAccessTime(), getPermission(), getOwner(), getGroup(), getPath()).write(out);
+    }
+  }
+
   /**
    * Converts the given FileStatus to its string representation.
    *
@@ -1377,6 +1996,29 @@ public abstract class GoogleHadoopFileSystemBase
    */
   void increment(Counter key, long value) {
     counters.get(key).addAndGet(value);
+    if (metricsEnabled) {
+      String operation = TIME_COUNTER_OPERATIONS.get(key);
+      if (operation != null) {
+        OPERATION_STATISTICS.get(operation).recordLatency(value);
+      }
+    }
+  }
+
+  /**
+   * Records the number of bytes transferred by the operation of the given invocation counter.
+   */
+  void incrementBytes(Counter key, long numBytes) {
+    if (metricsEnabled) {
+      OPERATION_STATISTICS.get(key.toString()).recordBytes(numBytes);
+    }
+  }
+
+  /**
+   * Gets the latency and byte statistics of the operations of all GHFS instances of the JVM; they
+   * are only recorded by instances with fs.gs.metrics.enable set.
+   */
+  public static StatisticsRegistry getOperationStatistics() {
+    return OPERATION_STATISTICS;
   }
 
   /**
@@ -1416,6 +2058,11 @@ public abstract class GoogleHadoopFileSystemBase
    */
   private void logCounters() {
     log.debug(countersToString());
+    if (metricsEnabled && log.isDebugEnabled()) {
+      for (OperationStatistics statistics : OPERATION_STATISTICS.getAll().values()) {
+        log.debug(statistics.toString());
+      }
+    }
   }
 
   /**
@@ -1479,6 +2126,11 @@ public abstract class GoogleHadoopFileSystemBase
     log.debug("GHFS.configure");
     log.debug("GHFS_ID = %s", GHFS_ID);
 
+    float traceSampleRate =
+        config.getFloat(GCS_TRACE_SAMPLE_RATE_KEY, GCS_TRACE_SAMPLE_RATE_DEFAULT);
+    log.debug("%s = %s", GCS_TRACE_SAMPLE_RATE_KEY, traceSampleRate);
+    requestTracer = new RequestTracer(traceSampleRate);
+
     if (gcsfs == null) {
 
       copyDeprecatedConfigurationOptions(config);
@@ -1515,11 +2167,40 @@ public abstract class GoogleHadoopFileSystemBase
       log.debug("%s = %s", GCS_METADATA_CACHE_DIRECTORY_KEY, cacheBasePath);
       optionsBuilder.setCacheBasePath(cacheBasePath);
 
+      long cacheMaxEntries = config.getLong(
+          GCS_METADATA_CACHE_MAX_ENTRIES_KEY, GCS_METADATA_CACHE_MAX_ENTRIES_DEFAULT);
+      log.debug("%s = %d", GCS_METADATA_CACHE_MAX_ENTRIES_KEY, cacheMaxEntries);
+      optionsBuilder.setMetadataCacheMaxEntries(cacheMaxEntries);
+
+      long cacheMaxBytes = config.getLong(
+          GCS_METADATA_CACHE_MAX_BYTES_KEY, GCS_METADATA_CACHE_MAX_BYTES_DEFAULT);
+      log.debug("%s = %d", GCS_METADATA_CACHE_MAX_BYTES_KEY, cacheMaxBytes);
+      optionsBuilder.setMetadataCacheMaxBytes(cacheMaxBytes);
+
+      long cacheSweepIntervalMillis = config.getLong(
+          GCS_METADATA_CACHE_SWEEP_INTERVAL_MS_KEY, GCS_METADATA_CACHE_SWEEP_INTERVAL_MS_DEFAULT);
+      log.debug("%s = %d", GCS_METADATA_CACHE_SWEEP_INTERVAL_MS_KEY, cacheSweepIntervalMillis);
+      optionsBuilder.setMetadataCacheSweepIntervalMillis(cacheSweepIntervalMillis);
+
       Predicate<String> shouldIncludeInTimestampUpdatesPredicate =
           ParentTimestampUpdateIncludePredicate.create(config);
       optionsBuilder.setShouldIncludeInTimestampUpdatesPredicate(
           shouldIncludeInTimestampUpdatesPredicate);
 
+      long parentTimestampUpdateIntervalMillis = config.getLong(
+          GCS_PARENT_TIMESTAMP_UPDATE_INTERVAL_MS_KEY,
+          GCS_PARENT_TIMESTAMP_UPDATE_INTERVAL_MS_DEFAULT);
+      log.debug("%s = %d", GCS_PARENT_TIMESTAMP_UPDATE_INTERVAL_MS_KEY,
+          parentTimestampUpdateIntervalMillis);
+      optionsBuilder.setParentTimestampUpdateIntervalMillis(parentTimestampUpdateIntervalMillis);
+
+      int parentTimestampUpdateMaxPending = config.getInt(
+          GCS_PARENT_TIMESTAMP_UPDATE_MAX_PENDING_KEY,
+          GCS_PARENT_TIMESTAMP_UPDATE_MAX_PENDING_DEFAULT);
+      log.debug("%s = %d", GCS_PARENT_TIMESTAMP_UPDATE_MAX_PENDING_KEY,
+          parentTimestampUpdateMaxPending);
+      optionsBuilder.setParentTimestampUpdateMaxPending(parentTimestampUpdateMaxPending);
+
       enableAutoRepairImplicitDirectories = config.getBoolean(
           GCS_ENABLE_REPAIR_IMPLICIT_DIRECTORIES_KEY,
           GCS_ENABLE_REPAIR_IMPLICIT_DIRECTORIES_DEFAULT);
@@ -1531,6 +2212,84 @@ public abstract class GoogleHadoopFileSystemBase
           GCS_ENABLE_FLAT_GLOB_DEFAULT);
       log.debug("%s = %s", GCS_ENABLE_FLAT_GLOB_KEY, enableFlatGlob);
 
+      int parallelListingThreads =
+          config.getInt(GCS_LIST_PARALLEL_THREADS_KEY, GCS_LIST_PARALLEL_THREADS_DEFAULT);
+      log.debug("%s = %d", GCS_LIST_PARALLEL_THREADS_KEY, parallelListingThreads);
+      optionsBuilder.setParallelListingThreads(parallelListingThreads);
+
+      boolean enableFastCreate =
+          config.getBoolean(GCS_CREATE_FAST_ENABLE_KEY, GCS_CREATE_FAST_ENABLE_DEFAULT);
+      log.debug("%s = %s", GCS_CREATE_FAST_ENABLE_KEY, enableFastCreate);
+      optionsBuilder.setFastCreateEnabled(enableFastCreate);
+
+      boolean enableBatchDirectoryLookup = config.getBoolean(
+          GCS_STATUS_BATCH_DIRECTORY_LOOKUP_ENABLE_KEY,
+          GCS_STATUS_BATCH_DIRECTORY_LOOKUP_ENABLE_DEFAULT);
+      log.debug("%s = %s", GCS_STATUS_BATCH_DIRECTORY_LOOKUP_ENABLE_KEY,
+          enableBatchDirectoryLookup);
+      optionsBuilder.setBatchDirectoryLookupEnabled(enableBatchDirectoryLookup);
+
+      boolean enableAdaptiveRateLimit = config.getBoolean(
+          GCS_RATE_LIMIT_ADAPTIVE_ENABLE_KEY, GCS_RATE_LIMIT_ADAPTIVE_ENABLE_DEFAULT);
+      log.debug("%s = %s", GCS_RATE_LIMIT_ADAPTIVE_ENABLE_KEY, enableAdaptiveRateLimit);
+      float initialRate =
+          config.getFloat(GCS_RATE_LIMIT_INITIAL_RATE_KEY, GCS_RATE_LIMIT_INITIAL_RATE_DEFAULT);
+      log.debug("%s = %s", GCS_RATE_LIMIT_INITIAL_RATE_KEY, initialRate);
+      float minRate = config.getFloat(GCS_RATE_LIMIT_MIN_RATE_KEY, GCS_RATE_LIMIT_MIN_RATE_DEFAULT);
+      log.debug("%s = %s", GCS_RATE_LIMIT_MIN_RATE_KEY, minRate);
+      float maxRate = config.getFloat(GCS_RATE_LIMIT_MAX_RATE_KEY, GCS_RATE_LIMIT_MAX_RATE_DEFAULT);
+      log.debug("%s = %s", GCS_RATE_LIMIT_MAX_RATE_KEY, maxRate);
+      float rateIncrease =
+          config.getFloat(GCS_RATE_LIMIT_INCREASE_KEY, GCS_RATE_LIMIT_INCREASE_DEFAULT);
+      log.debug("%s = %s", GCS_RATE_LIMIT_INCREASE_KEY, rateIncrease);
+      float rateDecreaseFactor = config.getFloat(
+          GCS_RATE_LIMIT_DECREASE_FACTOR_KEY, GCS_RATE_LIMIT_DECREASE_FACTOR_DEFAULT);
+      log.debug("%s = %s", GCS_RATE_LIMIT_DECREASE_FACTOR_KEY, rateDecreaseFactor);
+      optionsBuilder.getRateLimiterOptionsBuilder()
+          .setEnabled(enableAdaptiveRateLimit)
+          .setInitialRate(initialRate)
+          .setMinRate(minRate)
+          .setMaxRate(maxRate)
+          .setAdditiveIncrease(rateIncrease)
+          .setMultiplicativeDecrease(rateDecreaseFactor);
+
+      boolean enableRequestCoalescing = config.getBoolean(
+          GCS_REQUEST_COALESCING_ENABLE_KEY, GCS_REQUEST_COALESCING_ENABLE_DEFAULT);
+      log.debug("%s = %s", GCS_REQUEST_COALESCING_ENABLE_KEY, enableRequestCoalescing);
+      optionsBuilder.setRequestCoalescingEnabled(enableRequestCoalescing);
+
+      metricsEnabled = config.getBoolean(GCS_METRICS_ENABLE_KEY, GCS_METRICS_ENABLE_DEFAULT);
+      log.debug("%s = %s", GCS_METRICS_ENABLE_KEY, metricsEnabled);
+      optionsBuilder.setMetricsEnabled(metricsEnabled);
+
+      boolean inferImplicitDirectories = config.getBoolean(
+          GCS_IMPLICIT_DIR_INFER_ENABLE_KEY, GCS_IMPLICIT_DIR_INFER_ENABLE_DEFAULT);
+      log.debug("%s = %s", GCS_IMPLICIT_DIR_INFER_ENABLE_KEY, inferImplicitDirectories);
+      optionsBuilder.setInferImplicitDirectoriesEnabled(inferImplicitDirectories);
+      if (inferImplicitDirectories && enableAutoRepairImplicitDirectories) {
+        log.debug("Disabling %s since %s is enabled",
+            GCS_ENABLE_REPAIR_IMPLICIT_DIRECTORIES_KEY, GCS_IMPLICIT_DIR_INFER_ENABLE_KEY);
+        enableAutoRepairImplicitDirectories = false;
+      }
+
+      boolean enableStatCache =
+          config.getBoolean(GCS_STAT_CACHE_ENABLE_KEY, GCS_STAT_CACHE_ENABLE_DEFAULT);
+      log.debug("%s = %s", GCS_STAT_CACHE_ENABLE_KEY, enableStatCache);
+      int statCacheMaxEntries =
+          config.getInt(GCS_STAT_CACHE_MAX_ENTRIES_KEY, GCS_STAT_CACHE_MAX_ENTRIES_DEFAULT);
+      log.debug("%s = %d", GCS_STAT_CACHE_MAX_ENTRIES_KEY, statCacheMaxEntries);
+      long statCacheMaxBytes =
+          config.getLong(GCS_STAT_CACHE_MAX_BYTES_KEY, GCS_STAT_CACHE_MAX_BYTES_DEFAULT);
+      log.debug("%s = %d", GCS_STAT_CACHE_MAX_BYTES_KEY, statCacheMaxBytes);
+      long statCacheTtlMillis =
+          config.getLong(GCS_STAT_CACHE_TTL_MILLIS_KEY, GCS_STAT_CACHE_TTL_MILLIS_DEFAULT);
+      log.debug("%s = %d", GCS_STAT_CACHE_TTL_MILLIS_KEY, statCacheTtlMillis);
+      optionsBuilder.getStatCacheOptionsBuilder()
+          .setEnabled(enableStatCache)
+          .setMaxEntries(statCacheMaxEntries)
+          .setMaxBytes(statCacheMaxBytes)
+          .setTtlMillis(statCacheTtlMillis);
+
       optionsBuilder
           .getCloudStorageOptionsBuilder()
           .setAutoRepairImplicitDirectoriesEnabled(enableAutoRepairImplicitDirectories);
@@ -1557,6 +2316,126 @@ public abstract class GoogleHadoopFileSystemBase
           getWriteChannelOptionsBuilder().
           setUploadBufferSize(uploadBufferSize);
 
+      // Configuration for the pipe between output streams and upload threads.
+      AsyncWriteChannelOptions.PipeType uploadPipeType = AsyncWriteChannelOptions.PipeType.valueOf(
+          config.get(GCS_UPLOAD_PIPE_TYPE_KEY, GCS_UPLOAD_PIPE_TYPE_DEFAULT));
+      log.debug("%s = %s", GCS_UPLOAD_PIPE_TYPE_KEY, uploadPipeType);
+
+      optionsBuilder
+          .getCloudStorageOptionsBuilder()
+          .getWriteChannelOptionsBuilder()
+          .setPipeType(uploadPipeType);
+
+      // Configuration for uploading small objects in a single request.
+      int directUploadThreshold =
+          config.getInt(GCS_UPLOAD_DIRECT_THRESHOLD_KEY, GCS_UPLOAD_DIRECT_THRESHOLD_DEFAULT);
+      log.debug("%s = %d", GCS_UPLOAD_DIRECT_THRESHOLD_KEY, directUploadThreshold);
+
+      optionsBuilder
+          .getCloudStorageOptionsBuilder()
+          .getWriteChannelOptionsBuilder()
+          .setDirectUploadThreshold(directUploadThreshold);
+
+      // Configuration for the memory held by upload buffers of all output streams.
+      long maxUploadBufferMemory =
+          config.getLong(GCS_UPLOAD_MEMORY_MAX_KEY, GCS_UPLOAD_MEMORY_MAX_DEFAULT);
+      log.debug("%s = %d", GCS_UPLOAD_MEMORY_MAX_KEY, maxUploadBufferMemory);
+
+      optionsBuilder
+          .getCloudStorageOptionsBuilder()
+          .setMaxUploadBufferMemory(maxUploadBufferMemory);
+
+      // Configuration for the number of batch requests executing concurrently.
+      int maxBatchesInFlight =
+          config.getInt(GCS_BATCHES_IN_FLIGHT_MAX_KEY, GCS_BATCHES_IN_FLIGHT_MAX_DEFAULT);
+      log.debug("%s = %d", GCS_BATCHES_IN_FLIGHT_MAX_KEY, maxBatchesInFlight);
+
+      optionsBuilder
+          .getCloudStorageOptionsBuilder()
+          .setMaxBatchesInFlight(maxBatchesInFlight);
+
+      // Configuration for inferring listed directories from their prefixes.
+      boolean inferDirectories = inferImplicitDirectories || config.getBoolean(
+          GCS_LIST_INFER_DIRECTORIES_ENABLE_KEY, GCS_LIST_INFER_DIRECTORIES_ENABLE_DEFAULT);
+      log.debug("%s = %s", GCS_LIST_INFER_DIRECTORIES_ENABLE_KEY, inferDirectories);
+
+      optionsBuilder
+          .getCloudStorageOptionsBuilder()
+          .setInferDirectoriesEnabled(inferDirectories);
+
+      // Configuration for fetching ranges ahead of the current position in read channels.
+      int readAheadDepth = config.getInt(GCS_READ_AHEAD_DEPTH_KEY, GCS_READ_AHEAD_DEPTH_DEFAULT);
+      log.debug("%s = %d", GCS_READ_AHEAD_DEPTH_KEY, readAheadDepth);
+      int readAheadRangeSize =
+          config.getInt(GCS_READ_AHEAD_RANGE_SIZE_KEY, GCS_READ_AHEAD_RANGE_SIZE_DEFAULT);
+      log.debug("%s = %d", GCS_READ_AHEAD_RANGE_SIZE_KEY, readAheadRangeSize);
+      int readAheadMaxThreads =
+          config.getInt(GCS_READ_AHEAD_MAX_THREADS_KEY, GCS_READ_AHEAD_MAX_THREADS_DEFAULT);
+      log.debug("%s = %d", GCS_READ_AHEAD_MAX_THREADS_KEY, readAheadMaxThreads);
+
+      // Configuration for the access pattern of read channels.
+      GoogleCloudStorageReadOptions.Fadvise fadvise = GoogleCloudStorageReadOptions.Fadvise.valueOf(
+          config.get(GCS_INPUTSTREAM_FADVISE_KEY, GCS_INPUTSTREAM_FADVISE_DEFAULT));
+      log.debug("%s = %s", GCS_INPUTSTREAM_FADVISE_KEY, fadvise);
+      int minRangeRequestSize = config.getInt(
+          GCS_INPUTSTREAM_MIN_RANGE_REQUEST_SIZE_KEY,
+          GCS_INPUTSTREAM_MIN_RANGE_REQUEST_SIZE_DEFAULT);
+      log.debug("%s = %d", GCS_INPUTSTREAM_MIN_RANGE_REQUEST_SIZE_KEY, minRangeRequestSize);
+      long inplaceSeekLimit = config.getLong(
+          GCS_INPUTSTREAM_INPLACE_SEEK_LIMIT_KEY, GCS_INPUTSTREAM_INPLACE_SEEK_LIMIT_DEFAULT);
+      log.debug("%s = %d", GCS_INPUTSTREAM_INPLACE_SEEK_LIMIT_KEY, inplaceSeekLimit);
+      int footerCacheSize = config.getInt(
+          GCS_INPUTSTREAM_FOOTER_CACHE_SIZE_KEY, GCS_INPUTSTREAM_FOOTER_CACHE_SIZE_DEFAULT);
+      log.debug("%s = %d", GCS_INPUTSTREAM_FOOTER_CACHE_SIZE_KEY, footerCacheSize);
+      boolean fastFailOnNotFound = config.getBoolean(
+          GCS_INPUTSTREAM_FAST_FAIL_ON_NOT_FOUND_ENABLE_KEY,
+          GCS_INPUTSTREAM_FAST_FAIL_ON_NOT_FOUND_ENABLE_DEFAULT);
+      log.debug("%s = %s", GCS_INPUTSTREAM_FAST_FAIL_ON_NOT_FOUND_ENABLE_KEY, fastFailOnNotFound);
+      int wholeObjectThreshold = config.getInt(
+          GCS_INPUTSTREAM_WHOLE_OBJECT_THRESHOLD_KEY,
+          GCS_INPUTSTREAM_WHOLE_OBJECT_THRESHOLD_DEFAULT);
+      log.debug("%s = %d", GCS_INPUTSTREAM_WHOLE_OBJECT_THRESHOLD_KEY, wholeObjectThreshold);
+      long wholeObjectCacheSize = config.getLong(
+          GCS_INPUTSTREAM_WHOLE_OBJECT_CACHE_SIZE_KEY,
+          GCS_INPUTSTREAM_WHOLE_OBJECT_CACHE_SIZE_DEFAULT);
+      log.debug("%s = %d", GCS_INPUTSTREAM_WHOLE_OBJECT_CACHE_SIZE_KEY, wholeObjectCacheSize);
+
+      optionsBuilder
+          .getCloudStorageOptionsBuilder()
+          .getReadChannelOptionsBuilder()
+          .setReadAheadDepth(readAheadDepth)
+          .setReadAheadRangeSize(readAheadRangeSize)
+          .setReadAheadMaxThreads(readAheadMaxThreads)
+          .setFadvise(fadvise)
+          .setMinRangeRequestSize(minRangeRequestSize)
+          .setInplaceSeekLimit(inplaceSeekLimit)
+          .setFooterCacheSize(footerCacheSize)
+          .setFastFailOnNotFound(fastFailOnNotFound)
+          .setWholeObjectThreshold(wholeObjectThreshold)
+          .setWholeObjectCacheSize(wholeObjectCacheSize);
+
+      // Configuration for parallel composite uploads.
+      boolean compositeUploadEnabled = config.getBoolean(
+          GCS_COMPOSITE_UPLOAD_ENABLE_KEY, GCS_COMPOSITE_UPLOAD_ENABLE_DEFAULT);
+      log.debug("%s = %s", GCS_COMPOSITE_UPLOAD_ENABLE_KEY, compositeUploadEnabled);
+      int compositeUploadPartSize = config.getInt(
+          GCS_COMPOSITE_UPLOAD_PART_SIZE_KEY, GCS_COMPOSITE_UPLOAD_PART_SIZE_DEFAULT);
+      log.debug("%s = %d", GCS_COMPOSITE_UPLOAD_PART_SIZE_KEY, compositeUploadPartSize);
+      int compositeUploadBufferedParts = config.getInt(
+          GCS_COMPOSITE_UPLOAD_BUFFERED_PARTS_KEY, GCS_COMPOSITE_UPLOAD_BUFFERED_PARTS_DEFAULT);
+      log.debug("%s = %d", GCS_COMPOSITE_UPLOAD_BUFFERED_PARTS_KEY, compositeUploadBufferedParts);
+      int compositeUploadMaxThreads = config.getInt(
+          GCS_COMPOSITE_UPLOAD_MAX_THREADS_KEY, GCS_COMPOSITE_UPLOAD_MAX_THREADS_DEFAULT);
+      log.debug("%s = %d", GCS_COMPOSITE_UPLOAD_MAX_THREADS_KEY, compositeUploadMaxThreads);
+
+      optionsBuilder
+          .getCloudStorageOptionsBuilder()
+          .getCompositeUploadOptionsBuilder()
+          .setEnabled(compositeUploadEnabled)
+          .setPartSize(compositeUploadPartSize)
+          .setMaxBufferedParts(compositeUploadBufferedParts)
+          .setMaxThreads(compositeUploadMaxThreads);
+
       optionsBuilder
           .getCloudStorageOptionsBuilder()
           .setAppName(GHFS_ID);
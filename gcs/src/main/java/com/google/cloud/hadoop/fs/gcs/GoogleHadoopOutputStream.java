@@ -90,6 +90,7 @@ class GoogleHadoopOutputStream
     statistics.incrementBytesWritten(1);
     long duration = System.nanoTime() - startTime;
     ghfs.increment(GoogleHadoopFileSystemBase.Counter.WRITE1);
+    ghfs.incrementBytes(GoogleHadoopFileSystemBase.Counter.WRITE1, 1);
     ghfs.increment(GoogleHadoopFileSystemBase.Counter.WRITE1_TIME, duration);
   }
 
@@ -104,6 +105,7 @@ class GoogleHadoopOutputStream
     statistics.incrementBytesWritten(len);
     long duration = System.nanoTime() - startTime;
     ghfs.increment(GoogleHadoopFileSystemBase.Counter.WRITE);
+    ghfs.incrementBytes(GoogleHadoopFileSystemBase.Counter.WRITE, len);
     ghfs.increment(GoogleHadoopFileSystemBase.Counter.WRITE_TIME, duration);
   }
 
@@ -0,0 +1,166 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import com.google.api.client.util.Clock;
+import com.google.cloud.hadoop.util.LogUtil;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.RateLimiter;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * AdaptiveRateLimiter keeps a separate rate budget for each class of GCS operations, and adapts
+ * each one with additive-increase/multiplicative-decrease: a budget grows by additiveIncrease
+ * every time a rate's worth of its operations succeed, and is multiplied by
+ * multiplicativeDecrease, at most once per DECREASE_INTERVAL_MILLIS, when its operations are
+ * rate limited by GCS.
+ */
+public class AdaptiveRateLimiter {
+  // Logger.
+  private static final LogUtil log = new LogUtil(AdaptiveRateLimiter.class);
+
+  /**
+   * Classes of operations sharing a rate budget.
+   */
+  public enum OperationClass {
+    METADATA_READ,
+    METADATA_WRITE,
+    LIST,
+    DATA
+  }
+
+  // Minimum time between two decreases of a budget, so that the rate limit errors of operations
+  // sent before a decrease took effect do not decrease the budget again.
+  @VisibleForTesting
+  static final long DECREASE_INTERVAL_MILLIS = 1000;
+
+  // Instance shared by all the GoogleCloudStorageFileSystems of the JVM, created on first use.
+  private static AdaptiveRateLimiter sharedInstance;
+
+  /**
+   * Returns the AdaptiveRateLimiter shared by the whole JVM, creating it with the given options on
+   * first use; the options of later callers are ignored.
+   */
+  public static synchronized AdaptiveRateLimiter getInstance(AdaptiveRateLimiterOptions options) {
+    Preconditions.checkArgument(options != null, "options must not be null");
+    if (sharedInstance == null) {
+      sharedInstance = new AdaptiveRateLimiter(options);
+    } else if (!sharedInstance.options.equals(options)) {
+      log.warn("Ignoring options of an additional AdaptiveRateLimiter user, using the existing "
+          + "limiter with initialRate = %s, minRate = %s, maxRate = %s",
+          sharedInstance.options.getInitialRate(), sharedInstance.options.getMinRate(),
+          sharedInstance.options.getMaxRate());
+    }
+    return sharedInstance;
+  }
+
+  /**
+   * The adaptive rate budget of one class of operations.
+   */
+  private class Budget {
+    private final OperationClass operationClass;
+    private final RateLimiter rateLimiter;
+    private double rate;
+    private long lastDecreaseTime = Long.MIN_VALUE / 2;
+
+    Budget(OperationClass operationClass) {
+      this.operationClass = operationClass;
+      this.rate = options.getInitialRate();
+      this.rateLimiter = RateLimiter.create(rate);
+    }
+
+    synchronized void onSuccess(int operations) {
+      if (rate >= options.getMaxRate()) {
+        return;
+      }
+      rate = Math.min(
+          options.getMaxRate(), rate + operations * options.getAdditiveIncrease() / rate);
+      rateLimiter.setRate(rate);
+    }
+
+    synchronized void onRateLimited() {
+      long now = clock.currentTimeMillis();
+      if (now - lastDecreaseTime < DECREASE_INTERVAL_MILLIS) {
+        return;
+      }
+      lastDecreaseTime = now;
+      rate = Math.max(options.getMinRate(), rate * options.getMultiplicativeDecrease());
+      rateLimiter.setRate(rate);
+      log.info("Rate limited, decreased rate of %s operations to %.2f/s", operationClass, rate);
+    }
+
+    synchronized double getRate() {
+      return rate;
+    }
+  }
+
+  private final AdaptiveRateLimiterOptions options;
+  private final Map<OperationClass, Budget> budgets = new EnumMap<>(OperationClass.class);
+
+  // Clock used to space decreases; only replaced for testing.
+  private Clock clock = Clock.SYSTEM;
+
+  public AdaptiveRateLimiter(AdaptiveRateLimiterOptions options) {
+    Preconditions.checkArgument(options != null, "options must not be null");
+    this.options = options;
+    for (OperationClass operationClass : OperationClass.values()) {
+      budgets.put(operationClass, new Budget(operationClass));
+    }
+  }
+
+  /**
+   * Blocks until the given number of operations of the given class may be sent.
+   */
+  public void acquire(OperationClass operationClass, int operations) {
+    if (operations > 0) {
+      budgets.get(operationClass).rateLimiter.acquire(operations);
+    }
+  }
+
+  /**
+   * Records that the given number of operations of the given class succeeded.
+   */
+  public void onSuccess(OperationClass operationClass, int operations) {
+    if (operations > 0) {
+      budgets.get(operationClass).onSuccess(operations);
+    }
+  }
+
+  /**
+   * Records that operations of the given class were rate limited.
+   */
+  public void onRateLimited(OperationClass operationClass) {
+    budgets.get(operationClass).onRateLimited();
+  }
+
+  /**
+   * Returns the current rate, in operations per second, of the given class.
+   */
+  public double getRate(OperationClass operationClass) {
+    return budgets.get(operationClass).getRate();
+  }
+
+  public AdaptiveRateLimiterOptions getOptions() {
+    return options;
+  }
+
+  @VisibleForTesting
+  void setClock(Clock clock) {
+    this.clock = clock;
+  }
+}
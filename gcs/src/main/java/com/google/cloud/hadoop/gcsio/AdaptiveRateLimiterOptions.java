@@ -0,0 +1,180 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Options for the AdaptiveRateLimiter; rates are in operations per second and apply to each
+ * operation class separately.
+ */
+public class AdaptiveRateLimiterOptions {
+
+  /**
+   * Default of whether GoogleCloudStorageFileSystem limits its operations with the adaptive rate
+   * limiter.
+   */
+  public static final boolean ENABLED_DEFAULT = false;
+
+  /**
+   * Default rate each operation class starts at.
+   */
+  public static final double INITIAL_RATE_DEFAULT = 100.0;
+
+  /**
+   * Default rate below which backing off never goes.
+   */
+  public static final double MIN_RATE_DEFAULT = 1.0;
+
+  /**
+   * Default rate above which successes never raise the rate.
+   */
+  public static final double MAX_RATE_DEFAULT = 1000.0;
+
+  /**
+   * Default amount the rate grows by once a rate's worth of operations succeeded.
+   */
+  public static final double ADDITIVE_INCREASE_DEFAULT = 10.0;
+
+  /**
+   * Default factor the rate is multiplied by when rate limited.
+   */
+  public static final double MULTIPLICATIVE_DECREASE_DEFAULT = 0.5;
+
+  /**
+   * Mutable builder for the AdaptiveRateLimiterOptions class.
+   */
+  public static class Builder {
+    private boolean enabled = ENABLED_DEFAULT;
+    private double initialRate = INITIAL_RATE_DEFAULT;
+    private double minRate = MIN_RATE_DEFAULT;
+    private double maxRate = MAX_RATE_DEFAULT;
+    private double additiveIncrease = ADDITIVE_INCREASE_DEFAULT;
+    private double multiplicativeDecrease = MULTIPLICATIVE_DECREASE_DEFAULT;
+
+    public Builder setEnabled(boolean enabled) {
+      this.enabled = enabled;
+      return this;
+    }
+
+    public Builder setInitialRate(double initialRate) {
+      this.initialRate = initialRate;
+      return this;
+    }
+
+    public Builder setMinRate(double minRate) {
+      this.minRate = minRate;
+      return this;
+    }
+
+    public Builder setMaxRate(double maxRate) {
+      this.maxRate = maxRate;
+      return this;
+    }
+
+    public Builder setAdditiveIncrease(double additiveIncrease) {
+      this.additiveIncrease = additiveIncrease;
+      return this;
+    }
+
+    public Builder setMultiplicativeDecrease(double multiplicativeDecrease) {
+      this.multiplicativeDecrease = multiplicativeDecrease;
+      return this;
+    }
+
+    public AdaptiveRateLimiterOptions build() {
+      return new AdaptiveRateLimiterOptions(
+          enabled, initialRate, minRate, maxRate, additiveIncrease, multiplicativeDecrease);
+    }
+  }
+
+  /**
+   * Create a new builder with default values.
+   */
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  private final boolean enabled;
+  private final double initialRate;
+  private final double minRate;
+  private final double maxRate;
+  private final double additiveIncrease;
+  private final double multiplicativeDecrease;
+
+  public AdaptiveRateLimiterOptions(boolean enabled, double initialRate, double minRate,
+      double maxRate, double additiveIncrease, double multiplicativeDecrease) {
+    Preconditions.checkArgument(minRate > 0, "minRate must be greater than 0, got %s", minRate);
+    Preconditions.checkArgument(maxRate >= minRate,
+        "maxRate must be at least minRate, got %s", maxRate);
+    Preconditions.checkArgument(initialRate >= minRate && initialRate <= maxRate,
+        "initialRate must be between minRate and maxRate, got %s", initialRate);
+    Preconditions.checkArgument(additiveIncrease >= 0,
+        "additiveIncrease must not be negative, got %s", additiveIncrease);
+    Preconditions.checkArgument(multiplicativeDecrease > 0 && multiplicativeDecrease < 1,
+        "multiplicativeDecrease must be between 0 and 1, got %s", multiplicativeDecrease);
+    this.enabled = enabled;
+    this.initialRate = initialRate;
+    this.minRate = minRate;
+    this.maxRate = maxRate;
+    this.additiveIncrease = additiveIncrease;
+    this.multiplicativeDecrease = multiplicativeDecrease;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public double getInitialRate() {
+    return initialRate;
+  }
+
+  public double getMinRate() {
+    return minRate;
+  }
+
+  public double getMaxRate() {
+    return maxRate;
+  }
+
+  public double getAdditiveIncrease() {
+    return additiveIncrease;
+  }
+
+  public double getMultiplicativeDecrease() {
+    return multiplicativeDecrease;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof AdaptiveRateLimiterOptions)) {
+      return false;
+    }
+    AdaptiveRateLimiterOptions other = (AdaptiveRateLimiterOptions) obj;
+    return enabled == other.enabled
+        && initialRate == other.initialRate
+        && minRate == other.minRate
+        && maxRate == other.maxRate
+        && additiveIncrease == other.additiveIncrease
+        && multiplicativeDecrease == other.multiplicativeDecrease;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(
+        enabled, initialRate, minRate, maxRate, additiveIncrease, multiplicativeDecrease);
+  }
+}
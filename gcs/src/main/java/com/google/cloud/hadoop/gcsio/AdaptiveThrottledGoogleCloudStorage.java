@@ -0,0 +1,391 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.cloud.hadoop.gcsio.AdaptiveRateLimiter.OperationClass;
+import com.google.cloud.hadoop.util.ApiErrorExtractor;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * Throttled GCS implementation which limits each class of operations with the adaptive budgets of
+ * an AdaptiveRateLimiter, feeding back the successes and rate limit errors of the operations.
+ * Unlike ThrottledGoogleCloudStorage, the limits follow what GCS currently accepts instead of a
+ * fixed rate.
+ */
+public class AdaptiveThrottledGoogleCloudStorage implements GoogleCloudStorage {
+
+  // HTTP status code of responses to rate limited requests.
+  private static final int STATUS_CODE_TOO_MANY_REQUESTS = 429;
+
+  private static final ApiErrorExtractor ERROR_EXTRACTOR = new ApiErrorExtractor();
+
+  private final GoogleCloudStorage wrappedGcs;
+  private final AdaptiveRateLimiter rateLimiter;
+
+  /**
+   * @param wrappedGcs The GoogleCloudStorage that we should delegate operations to.
+   * @param rateLimiter The limiter, possibly shared, whose budgets the operations use.
+   */
+  public AdaptiveThrottledGoogleCloudStorage(
+      GoogleCloudStorage wrappedGcs, AdaptiveRateLimiter rateLimiter) {
+    Preconditions.checkArgument(wrappedGcs != null, "wrappedGcs must not be null");
+    Preconditions.checkArgument(rateLimiter != null, "rateLimiter must not be null");
+    this.wrappedGcs = wrappedGcs;
+    this.rateLimiter = rateLimiter;
+  }
+
+  /**
+   * Indicates whether the given exception, one of its causes, or an exception suppressed by them,
+   * shows that GCS rate limited a request. Errors of batch requests only keep the error text, so
+   * their messages are checked for the rate limit reason as well.
+   */
+  @VisibleForTesting
+  static boolean isRateLimited(Throwable t) {
+    for (; t != null; t = t.getCause()) {
+      if (t instanceof GoogleJsonResponseException) {
+        GoogleJsonResponseException e = (GoogleJsonResponseException) t;
+        if (e.getStatusCode() == STATUS_CODE_TOO_MANY_REQUESTS || ERROR_EXTRACTOR.rateLimited(e)) {
+          return true;
+        }
+      } else if (t.getMessage() != null
+          && t.getMessage().contains(ApiErrorExtractor.RATE_LIMITED_REASON_CODE)) {
+        return true;
+      }
+      for (Throwable suppressed : t.getSuppressed()) {
+        if (isRateLimited(suppressed)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Runs the given operation, counting as the given number of operations of the given class, once
+   * the budget of the class allows it, and reports its outcome to the rate limiter.
+   */
+  private <T> T throttle(OperationClass operationClass, int operations, StorageCall<T> operation)
+      throws IOException {
+    rateLimiter.acquire(operationClass, operations);
+    T result;
+    try {
+      result = operation.call();
+    } catch (IOException e) {
+      if (isRateLimited(e)) {
+        rateLimiter.onRateLimited(operationClass);
+      }
+      throw e;
+    }
+    rateLimiter.onSuccess(operationClass, operations);
+    return result;
+  }
+
+  @Override
+  public WritableByteChannel create(final StorageResourceId resourceId) throws IOException {
+    return throttle(OperationClass.DATA, 1, new StorageCall<WritableByteChannel>() {
+      @Override
+      public WritableByteChannel call() throws IOException {
+        return wrappedGcs.create(resourceId);
+      }
+    });
+  }
+
+  @Override
+  public WritableByteChannel create(
+      final StorageResourceId resourceId, final CreateObjectOptions options)
+      throws IOException {
+    return throttle(OperationClass.DATA, 1, new StorageCall<WritableByteChannel>() {
+      @Override
+      public WritableByteChannel call() throws IOException {
+        return wrappedGcs.create(resourceId, options);
+      }
+    });
+  }
+
+  @Override
+  public void createEmptyObject(final StorageResourceId resourceId) throws IOException {
+    throttle(OperationClass.METADATA_WRITE, 1, new StorageCall<Void>() {
+      @Override
+      public Void call() throws IOException {
+        wrappedGcs.createEmptyObject(resourceId);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void createEmptyObject(
+      final StorageResourceId resourceId, final CreateObjectOptions options)
+      throws IOException {
+    throttle(OperationClass.METADATA_WRITE, 1, new StorageCall<Void>() {
+      @Override
+      public Void call() throws IOException {
+        wrappedGcs.createEmptyObject(resourceId, options);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void createEmptyObjects(final List<StorageResourceId> resourceIds)
+      throws IOException {
+    throttle(OperationClass.METADATA_WRITE, resourceIds.size(), new StorageCall<Void>() {
+      @Override
+      public Void call() throws IOException {
+        wrappedGcs.createEmptyObjects(resourceIds);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void createEmptyObjects(
+      final List<StorageResourceId> resourceIds, final CreateObjectOptions options)
+      throws IOException {
+    throttle(OperationClass.METADATA_WRITE, resourceIds.size(), new StorageCall<Void>() {
+      @Override
+      public Void call() throws IOException {
+        wrappedGcs.createEmptyObjects(resourceIds, options);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public SeekableReadableByteChannel open(final StorageResourceId resourceId)
+      throws IOException {
+    return throttle(OperationClass.DATA, 1, new StorageCall<SeekableReadableByteChannel>() {
+      @Override
+      public SeekableReadableByteChannel call() throws IOException {
+        return wrappedGcs.open(resourceId);
+      }
+    });
+  }
+
+  @Override
+  public SeekableReadableByteChannel open(
+      final StorageResourceId resourceId, final GoogleCloudStorageReadOptions readOptions)
+      throws IOException {
+    return throttle(OperationClass.DATA, 1, new StorageCall<SeekableReadableByteChannel>() {
+      @Override
+      public SeekableReadableByteChannel call() throws IOException {
+        return wrappedGcs.open(resourceId, readOptions);
+      }
+    });
+  }
+
+  @Override
+  public void create(final String bucketName) throws IOException {
+    throttle(OperationClass.METADATA_WRITE, 1, new StorageCall<Void>() {
+      @Override
+      public Void call() throws IOException {
+        wrappedGcs.create(bucketName);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void deleteBuckets(final List<String> bucketNames) throws IOException {
+    throttle(OperationClass.METADATA_WRITE, bucketNames.size(), new StorageCall<Void>() {
+      @Override
+      public Void call() throws IOException {
+        wrappedGcs.deleteBuckets(bucketNames);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void deleteObjects(final List<StorageResourceId> fullObjectNames) throws IOException {
+    throttle(OperationClass.METADATA_WRITE, fullObjectNames.size(), new StorageCall<Void>() {
+      @Override
+      public Void call() throws IOException {
+        wrappedGcs.deleteObjects(fullObjectNames);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void deleteObjects(
+      final List<StorageResourceId> fullObjectNames, final List<Long> contentGenerations)
+      throws IOException {
+    throttle(OperationClass.METADATA_WRITE, fullObjectNames.size(), new StorageCall<Void>() {
+      @Override
+      public Void call() throws IOException {
+        wrappedGcs.deleteObjects(fullObjectNames, contentGenerations);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void copy(final String srcBucketName, final List<String> srcObjectNames,
+      final String dstBucketName, final List<String> dstObjectNames)
+      throws IOException {
+    throttle(OperationClass.METADATA_WRITE, srcObjectNames.size(), new StorageCall<Void>() {
+      @Override
+      public Void call() throws IOException {
+        wrappedGcs.copy(srcBucketName, srcObjectNames, dstBucketName, dstObjectNames);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public List<String> listBucketNames() throws IOException {
+    return throttle(OperationClass.LIST, 1, new StorageCall<List<String>>() {
+      @Override
+      public List<String> call() throws IOException {
+        return wrappedGcs.listBucketNames();
+      }
+    });
+  }
+
+  @Override
+  public List<GoogleCloudStorageItemInfo> listBucketInfo() throws IOException {
+    return throttle(OperationClass.LIST, 1, new StorageCall<List<GoogleCloudStorageItemInfo>>() {
+      @Override
+      public List<GoogleCloudStorageItemInfo> call() throws IOException {
+        return wrappedGcs.listBucketInfo();
+      }
+    });
+  }
+
+  @Override
+  public List<String> listObjectNames(
+      final String bucketName, final String objectNamePrefix, final String delimiter)
+      throws IOException {
+    return throttle(OperationClass.LIST, 1, new StorageCall<List<String>>() {
+      @Override
+      public List<String> call() throws IOException {
+        return wrappedGcs.listObjectNames(bucketName, objectNamePrefix, delimiter);
+      }
+    });
+  }
+
+  @Override
+  public List<String> listObjectNames(final String bucketName, final String objectNamePrefix,
+      final String delimiter, final long maxResults)
+      throws IOException {
+    return throttle(OperationClass.LIST, 1, new StorageCall<List<String>>() {
+      @Override
+      public List<String> call() throws IOException {
+        return wrappedGcs.listObjectNames(bucketName, objectNamePrefix, delimiter, maxResults);
+      }
+    });
+  }
+
+  @Override
+  public List<GoogleCloudStorageItemInfo> listObjectInfo(
+      final String bucketName, final String objectNamePrefix, final String delimiter)
+      throws IOException {
+    return throttle(OperationClass.LIST, 1, new StorageCall<List<GoogleCloudStorageItemInfo>>() {
+      @Override
+      public List<GoogleCloudStorageItemInfo> call() throws IOException {
+        return wrappedGcs.listObjectInfo(bucketName, objectNamePrefix, delimiter);
+      }
+    });
+  }
+
+  /**
+   * Takes a permit for the listing itself and for each page after the first one.
+   */
+  @Override
+  public ListPageIterator<GoogleCloudStorageItemInfo> listObjectInfoPages(
+      final String bucketName, final String objectNamePrefix, final String delimiter)
+      throws IOException {
+    final ListPageIterator<GoogleCloudStorageItemInfo> pages = throttle(
+        OperationClass.LIST, 1, new StorageCall<ListPageIterator<GoogleCloudStorageItemInfo>>() {
+          @Override
+          public ListPageIterator<GoogleCloudStorageItemInfo> call() throws IOException {
+            return wrappedGcs.listObjectInfoPages(bucketName, objectNamePrefix, delimiter);
+          }
+        });
+    return new ListPageIterator<GoogleCloudStorageItemInfo>() {
+      private boolean firstPage = true;
+
+      @Override
+      public boolean hasNext() throws IOException {
+        return pages.hasNext();
+      }
+
+      @Override
+      public List<GoogleCloudStorageItemInfo> next() throws IOException {
+        int operations = firstPage ? 0 : 1;
+        firstPage = false;
+        return throttle(OperationClass.LIST, operations,
+            new StorageCall<List<GoogleCloudStorageItemInfo>>() {
+              @Override
+              public List<GoogleCloudStorageItemInfo> call() throws IOException {
+                return pages.next();
+              }
+            });
+      }
+    };
+  }
+
+  @Override
+  public GoogleCloudStorageItemInfo getItemInfo(final StorageResourceId resourceId)
+      throws IOException {
+    return throttle(OperationClass.METADATA_READ, 1, new StorageCall<GoogleCloudStorageItemInfo>() {
+      @Override
+      public GoogleCloudStorageItemInfo call() throws IOException {
+        return wrappedGcs.getItemInfo(resourceId);
+      }
+    });
+  }
+
+  @Override
+  public List<GoogleCloudStorageItemInfo> getItemInfos(final List<StorageResourceId> resourceIds)
+      throws IOException {
+    return throttle(OperationClass.METADATA_READ, resourceIds.size(),
+        new StorageCall<List<GoogleCloudStorageItemInfo>>() {
+          @Override
+          public List<GoogleCloudStorageItemInfo> call() throws IOException {
+            return wrappedGcs.getItemInfos(resourceIds);
+          }
+        });
+  }
+
+  @Override
+  public List<GoogleCloudStorageItemInfo> updateItems(final List<UpdatableItemInfo> itemInfoList)
+      throws IOException {
+    return throttle(OperationClass.METADATA_WRITE, itemInfoList.size(),
+        new StorageCall<List<GoogleCloudStorageItemInfo>>() {
+          @Override
+          public List<GoogleCloudStorageItemInfo> call() throws IOException {
+            return wrappedGcs.updateItems(itemInfoList);
+          }
+        });
+  }
+
+  @Override
+  public void close() {
+    wrappedGcs.close();
+  }
+
+  @Override
+  public void waitForBucketEmpty(String bucketName) throws IOException {
+    wrappedGcs.waitForBucketEmpty(bucketName);
+  }
+}
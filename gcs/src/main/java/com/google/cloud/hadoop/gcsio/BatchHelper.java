@@ -18,14 +18,23 @@ package com.google.cloud.hadoop.gcsio;
 
 import com.google.api.client.googleapis.batch.BatchRequest;
 import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.http.HttpHeaders;
 import com.google.api.client.http.HttpRequestInitializer;
 import com.google.api.services.storage.Storage;
 import com.google.api.services.storage.StorageRequest;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 
 /**
  * BatchHelper abstracts out the logic for maximum requests per batch, and also allows a workaround
@@ -33,8 +42,13 @@ import java.util.List;
  * impossible to unittest. Instead, batch interactions with a Storage API client will be funneled
  * through this class, while unittests can inject a mock batch helper.
  * <p>
- * This class is not thread-safe; expected usage is to create a new BatchHelper instance per
- * single-threaded logical grouping of requests.
+ * Batches are executed either one at a time on the calling thread, or, when created by a Factory
+ * with an executor, up to maxBatchesInFlight at a time on that executor. In both cases callbacks
+ * are invoked one at a time, so they may update plain collections of the caller, and may queue
+ * further requests; requests queued by callbacks are sent by the next call to flush().
+ * <p>
+ * Expected usage is to create a new BatchHelper instance per logical grouping of requests, queued
+ * from a single thread.
  */
 public class BatchHelper {
   /**
@@ -42,100 +56,263 @@ public class BatchHelper {
    * use cases will generally interact via an injectable BatchHelper.Factory.
    */
   public static class Factory {
+    private final int maxBatchesInFlight;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a factory of BatchHelpers which execute one batch at a time on the calling thread.
+     */
+    public Factory() {
+      this(1, null);
+    }
+
+    /**
+     * Creates a factory of BatchHelpers which execute up to maxBatchesInFlight batches
+     * concurrently on the given executor; with maxBatchesInFlight of 1 batches are executed on
+     * the calling thread and executor may be null.
+     */
+    public Factory(int maxBatchesInFlight, ExecutorService executor) {
+      Preconditions.checkArgument(maxBatchesInFlight > 0,
+          "maxBatchesInFlight must be greater than 0, got %s", maxBatchesInFlight);
+      Preconditions.checkArgument(maxBatchesInFlight == 1 || executor != null,
+          "executor must not be null when maxBatchesInFlight is greater than 1");
+      this.maxBatchesInFlight = maxBatchesInFlight;
+      this.executor = maxBatchesInFlight == 1 ? null : executor;
+    }
+
     public BatchHelper newBatchHelper(HttpRequestInitializer requestInitializer, Storage gcs,
         long maxRequestsPerBatch) {
-      return new BatchHelper(requestInitializer, gcs, maxRequestsPerBatch);
+      return new BatchHelper(
+          requestInitializer, gcs, maxRequestsPerBatch, maxBatchesInFlight, executor);
     }
   }
 
   /**
-   * Callback that causes a single StorageRequest to be added to the BatchRequest.
+   * Callback that causes a single StorageRequest to be added to the given BatchRequest.
    */
   protected static interface QueueRequestCallback {
-    void enqueue() throws IOException;
+    void enqueue(BatchRequest batch) throws IOException;
   }
 
+  private final HttpRequestInitializer requestInitializer;
+  private final Storage gcs;
+  // Requests queued but not yet sent; guarded by this.
   private final List<QueueRequestCallback> pendingBatchEntries;
-  private final BatchRequest batch;
   // Number of requests which can be queued into a single actual HTTP request before a sub-batch
   // is sent.
   private final long maxRequestsPerBatch;
-  // Flag that indicates whether there is an in-progress flush.
-  private boolean flushing = false;
+  // Executor running batches concurrently, or null to run them on the calling thread.
+  private final ExecutorService executor;
+  // Permits for batches in flight.
+  private final Semaphore batchPermits;
+  // Batches submitted to executor and not yet waited for; guarded by this.
+  private final List<Future<?>> inFlightBatches;
+  // Lock held while invoking callbacks, so that they are invoked one at a time.
+  private final Object callbackLock = new Object();
+  // First failure of a batch executed on the executor, rethrown by the calling thread.
+  private volatile IOException batchFailure;
 
   /**
    * Primary constructor, generally accessed only via the inner Factory class.
    */
   private BatchHelper(HttpRequestInitializer requestInitializer, Storage gcs,
-      long maxRequestsPerBatch) {
+      long maxRequestsPerBatch, int maxBatchesInFlight, ExecutorService executor) {
+    this.requestInitializer = requestInitializer;
+    this.gcs = gcs;
     this.pendingBatchEntries = new LinkedList<>();
-    this.batch = gcs.batch(requestInitializer);
     this.maxRequestsPerBatch = maxRequestsPerBatch;
+    this.executor = executor;
+    this.batchPermits = new Semaphore(maxBatchesInFlight);
+    this.inFlightBatches = new LinkedList<>();
   }
 
   @VisibleForTesting
   protected BatchHelper() {
+    this.requestInitializer = null;
+    this.gcs = null;
     this.pendingBatchEntries = new LinkedList<>();
-    this.batch = null;
     this.maxRequestsPerBatch = -1;
+    this.executor = null;
+    this.batchPermits = new Semaphore(1);
+    this.inFlightBatches = new LinkedList<>();
   }
 
   /**
-   * Adds an additional request to the batch, and possibly flushes the current contents of the batch
+   * Adds an additional request to the batch, and possibly sends the current contents of the batch
    * if {@code maxRequestsPerBatch} has been reached.
    */
-  public <T> void queue(final StorageRequest<T> req, final JsonBatchCallback<T> callback)
+  public <T> void queue(final StorageRequest<T> req, JsonBatchCallback<T> callback)
       throws IOException {
-      QueueRequestCallback queueCallback = new QueueRequestCallback() {
-        @Override
-        public void enqueue() throws IOException {
-          req.queue(batch, callback);
+    final JsonBatchCallback<T> serializedCallback = serialize(callback);
+    QueueRequestCallback queueCallback = new QueueRequestCallback() {
+      @Override
+      public void enqueue(BatchRequest batch) throws IOException {
+        req.queue(batch, serializedCallback);
+      }
+    };
+    synchronized (this) {
+      pendingBatchEntries.add(queueCallback);
+    }
+
+    // Waiting for a batch permit inside a callback could deadlock with the batch running the
+    // callback, so requests queued by callbacks are left for flush().
+    if (!Thread.holdsLock(callbackLock)) {
+      flushIfPossibleAndRequired();
+    }
+  }
+
+  /**
+   * Wraps the given callback so that it is invoked while holding callbackLock.
+   */
+  private <T> JsonBatchCallback<T> serialize(final JsonBatchCallback<T> callback) {
+    return new JsonBatchCallback<T>() {
+      @Override
+      public void onSuccess(T result, HttpHeaders responseHeaders) throws IOException {
+        synchronized (callbackLock) {
+          callback.onSuccess(result, responseHeaders);
         }
-      };
-    pendingBatchEntries.add(queueCallback);
+      }
 
-    flushIfPossibleAndRequired();
+      @Override
+      public void onFailure(GoogleJsonError e, HttpHeaders responseHeaders) throws IOException {
+        synchronized (callbackLock) {
+          callback.onFailure(e, responseHeaders);
+        }
+      }
+    };
   }
 
-  // Flush our buffer if we have more pending entries than maxRequestsPerBatch
+  // Send a batch if we have more pending entries than maxRequestsPerBatch
   private void flushIfPossibleAndRequired() throws IOException {
-    if (pendingBatchEntries.size() > maxRequestsPerBatch) {
-      flushIfPossible();
+    throwIfBatchFailed();
+    if (getPendingCount() > maxRequestsPerBatch) {
+      sendBatch();
     }
   }
 
-  // Flush our buffer if we are not already in a flush operation and we have data to flush.
-  private void flushIfPossible() throws IOException {
-    if (!flushing && pendingBatchEntries.size() > 0) {
-      flushing = true;
-      try {
-        while (batch.size() < maxRequestsPerBatch
-            && pendingBatchEntries.size() > 0) {
-          QueueRequestCallback head = pendingBatchEntries.remove(0);
-          head.enqueue();
+  private synchronized int getPendingCount() {
+    return pendingBatchEntries.size();
+  }
+
+  /**
+   * Sends up to maxRequestsPerBatch pending entries as a single batch, waiting for a permit if
+   * maxBatchesInFlight batches are already in flight. The batch is executed on the calling thread
+   * if there is no executor.
+   */
+  private void sendBatch() throws IOException {
+    try {
+      batchPermits.acquire();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting to send a batch");
+    }
+
+    final BatchRequest batch;
+    try {
+      batch = gcs.batch(requestInitializer);
+      List<QueueRequestCallback> entries = new LinkedList<>();
+      synchronized (this) {
+        while (entries.size() < maxRequestsPerBatch && !pendingBatchEntries.isEmpty()) {
+          entries.add(pendingBatchEntries.remove(0));
         }
+      }
+      for (QueueRequestCallback entry : entries) {
+        entry.enqueue(batch);
+      }
+    } catch (IOException | RuntimeException e) {
+      batchPermits.release();
+      throw e;
+    }
 
+    if (executor == null) {
+      try {
         batch.execute();
       } finally {
-        flushing = false;
+        batchPermits.release();
+      }
+      return;
+    }
+
+    Runnable batchExecution = new Runnable() {
+      @Override
+      public void run() {
+        try {
+          batch.execute();
+        } catch (IOException ioe) {
+          recordFailure(ioe);
+        } finally {
+          batchPermits.release();
+        }
+      }
+    };
+    try {
+      Future<?> future = executor.submit(batchExecution);
+      synchronized (this) {
+        inFlightBatches.add(future);
+      }
+    } catch (RejectedExecutionException ree) {
+      batchPermits.release();
+      throw new IOException("Failed to schedule batch execution", ree);
+    }
+  }
+
+  private void recordFailure(IOException ioe) {
+    synchronized (callbackLock) {
+      if (batchFailure == null) {
+        batchFailure = ioe;
       }
     }
   }
 
+  private void throwIfBatchFailed() throws IOException {
+    IOException failure = batchFailure;
+    if (failure != null) {
+      throw failure;
+    }
+  }
 
   /**
-   * Sends any currently remaining requests in the batch; should be caleld at the end of any
-   * series of batched requests to ensure everything has been sent.
+   * Sends all remaining requests, including those queued by callbacks in the meantime, and waits
+   * for all batches to complete; should be called at the end of any series of batched requests
+   * to ensure everything has been sent.
    */
   public void flush()
       throws IOException {
-    flushIfPossible();
+    while (true) {
+      if (batchFailure == null && getPendingCount() > 0) {
+        sendBatch();
+        continue;
+      }
+      Future<?> inFlightBatch;
+      synchronized (this) {
+        inFlightBatch = inFlightBatches.isEmpty() ? null : inFlightBatches.remove(0);
+      }
+      if (inFlightBatch == null) {
+        break;
+      }
+      awaitBatch(inFlightBatch);
+    }
+    throwIfBatchFailed();
+  }
+
+  /**
+   * Waits for a batch submitted to the executor, recording any failure it threw.
+   */
+  private void awaitBatch(Future<?> batch) throws IOException {
+    try {
+      batch.get();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for batches to complete");
+    } catch (ExecutionException ee) {
+      recordFailure(new IOException("Batch execution failed", ee.getCause()));
+    }
   }
 
   /**
    * Returns true if there are no currently queued entries in the batch helper.
    */
-  public boolean isEmpty() {
-    return pendingBatchEntries.size() == 0;
+  public synchronized boolean isEmpty() {
+    return pendingBatchEntries.isEmpty() && inFlightBatches.isEmpty();
   }
 }
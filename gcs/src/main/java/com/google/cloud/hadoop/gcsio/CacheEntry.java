@@ -49,6 +49,10 @@ public class CacheEntry {
   // Might be 0 if the info was never retrieved.
   private long itemInfoUpdateTimeMillis;
 
+  // Sequence number of the last access to this entry through its cache, used by caches which
+  // evict their least recently used entries; 0 if the cache doesn't record accesses.
+  private volatile long lastAccessSequence;
+
   /**
    * Constructs a CacheEntry with no known GoogleCloudStorageItemInfo; callers may have to
    * fetch the associated GoogleCloudStorageItemInfo on-demand.
@@ -147,6 +151,22 @@ public class CacheEntry {
     return itemInfoUpdateTimeMillis;
   }
 
+  /**
+   * Returns the sequence number of the last access to this CacheEntry recorded by its cache, or 0
+   * if none was recorded.
+   */
+  public long getLastAccessSequence() {
+    return lastAccessSequence;
+  }
+
+  /**
+   * Records an access to this CacheEntry, with a sequence number greater than those of the
+   * accesses to other entries of the same cache recorded before.
+   */
+  public void setLastAccessSequence(long lastAccessSequence) {
+    this.lastAccessSequence = lastAccessSequence;
+  }
+
   /**
    * Returns the GoogleCloudStorageItemInfo currently held by this CacheEntry; may be null if one
    * was never provided.
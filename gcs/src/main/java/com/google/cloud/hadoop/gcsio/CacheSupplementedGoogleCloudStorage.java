@@ -25,6 +25,7 @@ import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 /**
@@ -165,6 +166,17 @@ public class CacheSupplementedGoogleCloudStorage
     return gcsDelegate.open(resourceId);
   }
 
+  /**
+   * Pure pass-through.
+   */
+  @Override
+  public SeekableReadableByteChannel open(
+      StorageResourceId resourceId, GoogleCloudStorageReadOptions readOptions)
+      throws IOException {
+    log.debug("open(%s)", resourceId);
+    return gcsDelegate.open(resourceId, readOptions);
+  }
+
   /**
    * Updates cache with bucketName.
    */
@@ -210,6 +222,20 @@ public class CacheSupplementedGoogleCloudStorage
     }
   }
 
+  /**
+   * Removes objects from cache, if they exist.
+   */
+  @Override
+  public void deleteObjects(List<StorageResourceId> fullObjectNames,
+      List<Long> contentGenerations)
+      throws IOException {
+    log.debug("deleteObjects(%s, %s)", fullObjectNames, contentGenerations);
+    gcsDelegate.deleteObjects(fullObjectNames, contentGenerations);
+    for (StorageResourceId resourceId : fullObjectNames) {
+      resourceCache.removeResourceId(resourceId);
+    }
+  }
+
   /**
    * Adds the copied destination items to the list cache, without their associated metadata;
    * supplementing with the cache will have to populate the metadata on-demand.
@@ -355,8 +381,37 @@ public class CacheSupplementedGoogleCloudStorage
       String bucketName, String objectNamePrefix, String delimiter)
       throws IOException {
     log.debug("listObjectNames(%s, %s, %s)", bucketName, objectNamePrefix, delimiter);
-    List<String> allObjectNames =
-        gcsDelegate.listObjectNames(bucketName, objectNamePrefix, delimiter);
+    return supplementObjectNames(bucketName, objectNamePrefix, delimiter,
+        gcsDelegate.listObjectNames(bucketName, objectNamePrefix, delimiter));
+  }
+
+  /**
+   * Supplements the names returned by the delegate with cached object names if the delegate
+   * returned fewer than maxResults of them; won't trigger any fetching of metadata.
+   */
+  @Override
+  public List<String> listObjectNames(
+      String bucketName, String objectNamePrefix, String delimiter, long maxResults)
+      throws IOException {
+    log.debug("listObjectNames(%s, %s, %s, %d)",
+        bucketName, objectNamePrefix, delimiter, maxResults);
+    List<String> objectNames =
+        gcsDelegate.listObjectNames(bucketName, objectNamePrefix, delimiter, maxResults);
+    if (objectNames.size() >= maxResults) {
+      return objectNames;
+    }
+    objectNames = supplementObjectNames(bucketName, objectNamePrefix, delimiter, objectNames);
+    return objectNames.size() > maxResults
+        ? objectNames.subList(0, (int) maxResults) : objectNames;
+  }
+
+  /**
+   * Adds the names of the cached objects matching the given listing which are missing from
+   * the names listed by the delegate.
+   */
+  private List<String> supplementObjectNames(String bucketName, String objectNamePrefix,
+      String delimiter, List<String> allObjectNames)
+      throws IOException {
     // We pass 'null' for 'prefixes' because for now, we won't try to supplement match "prefixes";
     // in normal operation, the cache will also contain the "parent directory" objects for each
     // file, so they would be supplemented as exact matches anyway (if we have gs://bucket/foo/ and
@@ -423,6 +478,53 @@ public class CacheSupplementedGoogleCloudStorage
     return allObjectInfos;
   }
 
+  /**
+   * Returns the pages listed by the delegate followed, if the cache has entries missing from them,
+   * by a final page of the cached object infos; the resource ids of listed objects are kept until
+   * the listing completes to find those missing entries.
+   */
+  @Override
+  public ListPageIterator<GoogleCloudStorageItemInfo> listObjectInfoPages(
+      String bucketName, String objectNamePrefix, String delimiter)
+      throws IOException {
+    log.debug("listObjectInfoPages(%s, %s, %s)", bucketName, objectNamePrefix, delimiter);
+    final ListPageIterator<GoogleCloudStorageItemInfo> delegatePages =
+        gcsDelegate.listObjectInfoPages(bucketName, objectNamePrefix, delimiter);
+    final List<CacheEntry> cachedObjects = resourceCache.getObjectList(
+        bucketName, objectNamePrefix, delimiter, null);
+    if (cachedObjects == null || cachedObjects.isEmpty()) {
+      return delegatePages;
+    }
+
+    return new ListPageIterator<GoogleCloudStorageItemInfo>() {
+      private final Set<StorageResourceId> objectIdsSet = new HashSet<>();
+      private boolean supplemented = false;
+
+      @Override
+      public boolean hasNext() throws IOException {
+        return delegatePages.hasNext() || !supplemented;
+      }
+
+      @Override
+      public List<GoogleCloudStorageItemInfo> next() throws IOException {
+        if (delegatePages.hasNext()) {
+          List<GoogleCloudStorageItemInfo> page = delegatePages.next();
+          for (GoogleCloudStorageItemInfo itemInfo : page) {
+            objectIdsSet.add(itemInfo.getResourceId());
+          }
+          return page;
+        }
+        if (supplemented) {
+          throw new NoSuchElementException();
+        }
+        supplemented = true;
+        List<CacheEntry> missingCachedObjects =
+            getSupplementalEntries(objectIdsSet, cachedObjects);
+        return extractItemInfos(missingCachedObjects);
+      }
+    };
+  }
+
   /**
    * Pure pass-through.
    */
@@ -16,12 +16,16 @@
 
 package com.google.cloud.hadoop.gcsio;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A cache entry for the relevant metadata of a single GCS Bucket, used by {@code
@@ -33,10 +37,30 @@ import java.util.Map;
  * not have associated GoogleCloudStorageItemInfo available. The caller is responsible for fetching
  * or updating such stale/nonexistent metadata if it is desired; for name-listing operations,
  * cached bucket/object names may be used directly without lazily populating associated metadata.
+ *
+ * <p>Objects are kept sorted by name in a concurrent map, so that the objects under a prefix can
+ * be looked up as a range, and get, remove and listing calls don't need to lock the bucket; only
+ * put and markRemovedIfEmpty synchronize on it.
  */
 public class CachedBucket extends CacheEntry {
-  // Mapping from objectNames to cache entries for GCS StorageObjects.
-  private final Map<String, CacheEntry> objectLookup = new HashMap<>();
+  // Estimated number of bytes held by an object entry besides its name: the CacheEntry, its
+  // StorageResourceId, the map node, and the GoogleCloudStorageItemInfo it may hold.
+  @VisibleForTesting
+  static final int ENTRY_OVERHEAD_BYTES = 512;
+
+  // Mapping from objectNames to cache entries for GCS StorageObjects, sorted by objectName.
+  private final ConcurrentNavigableMap<String, CacheEntry> objectLookup =
+      new ConcurrentSkipListMap<>();
+
+  // Whether this CachedBucket has been removed from its cache; once removed, no objects are added
+  // to it. Only set while holding the lock of this CachedBucket.
+  private volatile boolean removed = false;
+
+  // Number of entries in objectLookup.
+  private final AtomicInteger numObjects = new AtomicInteger();
+
+  // Estimated number of bytes held by the entries in objectLookup.
+  private final AtomicLong estimatedBytes = new AtomicLong();
 
   /**
    * Constructs a CachedBucket which has no associated GoogleCloudStorageItemInfo for the bucket.
@@ -65,6 +89,15 @@ public class CachedBucket extends CacheEntry {
     return getResourceId().getBucketName();
   }
 
+  /**
+   * Returns an estimate of the number of bytes held by the entry of a StorageObject.
+   */
+  @VisibleForTesting
+  static long estimateBytes(StorageResourceId resourceId) {
+    // Names are held at 2 bytes per char.
+    return ENTRY_OVERHEAD_BYTES + 2L * resourceId.getObjectName().length();
+  }
+
   /**
    * Helper to be called by all methods which take a resourceId which corresponds to a
    * StorageObject which resides in this bucket; validates that the {@code resourceId} is indeed
@@ -88,7 +121,7 @@ public class CachedBucket extends CacheEntry {
    *
    * @param resourceId identifies a StorageObject. Bucket must match this CachedBucket's name.
    */
-  public synchronized CacheEntry get(StorageResourceId resourceId) {
+  public CacheEntry get(StorageResourceId resourceId) {
     validateStorageObjectId(resourceId);
     return objectLookup.get(resourceId.getObjectName());
   }
@@ -98,10 +131,16 @@ public class CachedBucket extends CacheEntry {
    * residing inside this CachedBucket, if it exists.
    *
    * @param resourceId identifies a StorageObject. Bucket must match this CachedBucket's name.
+   * @return Whether the entry existed, and was removed by this call.
    */
-  public synchronized void remove(StorageResourceId resourceId) {
+  public boolean remove(StorageResourceId resourceId) {
     validateStorageObjectId(resourceId);
-    objectLookup.remove(resourceId.getObjectName());
+    if (objectLookup.remove(resourceId.getObjectName()) == null) {
+      return false;
+    }
+    numObjects.decrementAndGet();
+    estimatedBytes.addAndGet(-estimateBytes(resourceId));
+    return true;
   }
 
   /**
@@ -109,10 +148,14 @@ public class CachedBucket extends CacheEntry {
    * {@code resourceId}.
    *
    * @param resourceId identifies a StorageObject. Bucket must match this CachedBucket's name.
-   * @return The CacheEntry which got added, *or* the pre-existing entry.
+   * @return The CacheEntry which got added, *or* the pre-existing entry, or null if this
+   *     CachedBucket has been removed from its cache, in which case nothing is added.
    */
   public synchronized CacheEntry put(StorageResourceId resourceId) {
     validateStorageObjectId(resourceId);
+    if (removed) {
+      return null;
+    }
 
     // Only add a new CacheEntry entry if it doesn't already exist.
     // TODO(user): Maybe invalidate any existing entry's info.
@@ -120,23 +163,72 @@ public class CachedBucket extends CacheEntry {
     if (returnEntry == null) {
       returnEntry = new CacheEntry(resourceId);
       objectLookup.put(resourceId.getObjectName(), returnEntry);
+      numObjects.incrementAndGet();
+      estimatedBytes.addAndGet(estimateBytes(resourceId));
     }
     return returnEntry;
   }
 
+  /**
+   * Returns the CacheEntry of the StorageObject with the least objectName greater than or equal
+   * to {@code objectName}, or null if there is none. Used to scan the objects under a prefix in
+   * order of their names, skipping ranges of names as needed.
+   */
+  public CacheEntry getCeilingEntry(String objectName) {
+    Map.Entry<String, CacheEntry> entry = objectLookup.ceilingEntry(objectName);
+    return entry == null ? null : entry.getValue();
+  }
+
+  /**
+   * Marks this CachedBucket as removed from its cache if it contains no StorageObjects, after
+   * which put() adds nothing to it, so the caller may drop it from the cache without losing
+   * concurrently added objects.
+   *
+   * @return Whether this CachedBucket was empty, and is now marked as removed.
+   */
+  public synchronized boolean markRemovedIfEmpty() {
+    if (objectLookup.isEmpty()) {
+      removed = true;
+    }
+    return removed;
+  }
+
+  /**
+   * Marks this CachedBucket as removed from its cache, whether or not it contains StorageObjects;
+   * put() adds nothing to it afterwards.
+   */
+  public synchronized void markRemoved() {
+    removed = true;
+  }
+
   /**
    * @return List of CacheEntrys for StorageObjects residing in this bucket. May be empty. The
    *     list is a copy, so any later additions/removals of StorageObjects to this bucket will
    *     not be reflected in the returned list instance.
    */
-  public synchronized List<CacheEntry> getObjectList() {
+  public List<CacheEntry> getObjectList() {
     return ImmutableList.copyOf(objectLookup.values());
   }
 
   /**
    * @return The number of StorageObjects residing within this CachedBucket.
    */
-  public synchronized int getNumObjects() {
-    return objectLookup.size();
+  public int getNumObjects() {
+    return numObjects.get();
+  }
+
+  /**
+   * @return An estimate of the number of bytes held by the entries of the StorageObjects residing
+   *     within this CachedBucket.
+   */
+  public long getEstimatedBytes() {
+    return estimatedBytes.get();
+  }
+
+  /**
+   * @return Whether no StorageObjects reside within this CachedBucket.
+   */
+  public boolean isEmpty() {
+    return objectLookup.isEmpty();
   }
 }
@@ -0,0 +1,448 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import com.google.cloud.hadoop.util.LogUtil;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * CoalescingGoogleCloudStorage merges concurrent identical getItemInfo, getItemInfos and list
+ * calls: a call arriving while the same call is already in flight waits for it and returns its
+ * result instead of sending its own request.
+ *
+ * <p>A call never joins a call which started before a change made through this instance
+ * completed, so a thread reading metadata after its own create, copy, update or delete still
+ * observes that change.
+ */
+public class CoalescingGoogleCloudStorage
+    implements GoogleCloudStorage {
+  // Logger.
+  private static final LogUtil log = new LogUtil(CoalescingGoogleCloudStorage.class);
+
+  // An actual implementation of GoogleCloudStorage which will be used for the actual logic of
+  // GCS operations, while this class merges identical concurrent calls to it.
+  private final GoogleCloudStorage gcsDelegate;
+
+  // Calls in flight, keyed by method name, epoch and arguments.
+  private final ConcurrentMap<List<Object>, SettableFuture<Object>> inFlightCalls =
+      new ConcurrentHashMap<>();
+
+  // Incremented whenever a change made through this instance completes; calls only join calls
+  // started in the same epoch.
+  private final AtomicLong epoch = new AtomicLong();
+
+  // Number of calls sent to the delegate.
+  private final AtomicLong delegatedCalls = new AtomicLong();
+
+  // Number of calls served by waiting for an identical call in flight.
+  private final AtomicLong mergedCalls = new AtomicLong();
+
+  /**
+   * Constructs a CoalescingGoogleCloudStorage which should be usable anywhere a
+   * GoogleCloudStorage interface is used.
+   *
+   * @param gcsDelegate The GoogleCloudStorage to be used for normal API interactions.
+   */
+  public CoalescingGoogleCloudStorage(GoogleCloudStorage gcsDelegate) {
+    Preconditions.checkArgument(gcsDelegate != null, "gcsDelegate must not be null");
+    this.gcsDelegate = gcsDelegate;
+  }
+
+  /**
+   * Returns the number of getItemInfo, getItemInfos and list calls which were sent to the
+   * delegate.
+   */
+  public long getDelegatedCallCount() {
+    return delegatedCalls.get();
+  }
+
+  /**
+   * Returns the number of getItemInfo, getItemInfos and list calls which were served by an
+   * identical call already in flight.
+   */
+  public long getMergedCallCount() {
+    return mergedCalls.get();
+  }
+
+  /**
+   * Runs the given call unless an identical call, identified by the given method name and
+   * arguments, is in flight, in which case waits for that call and returns its result.
+   */
+  @SuppressWarnings("unchecked")
+  private <T> T coalesce(String method, StorageCall<T> call, Object... args)
+      throws IOException {
+    List<Object> key = new ArrayList<>(args.length + 2);
+    key.add(method);
+    key.add(epoch.get());
+    key.addAll(Arrays.asList(args));
+
+    SettableFuture<Object> future = SettableFuture.create();
+    SettableFuture<Object> inFlightCall = inFlightCalls.putIfAbsent(key, future);
+    if (inFlightCall != null) {
+      mergedCalls.incrementAndGet();
+      log.debug("%s(%s): waiting for identical call in flight", method, Arrays.toString(args));
+      return (T) await(inFlightCall);
+    }
+
+    delegatedCalls.incrementAndGet();
+    try {
+      T result = call.call();
+      if (result instanceof List) {
+        // Callers may modify the lists they get, so share an unmodifiable copy and give each
+        // caller, this one included, its own copy of it.
+        Object sharedResult = Collections.unmodifiableList(new ArrayList<>((List<?>) result));
+        future.set(sharedResult);
+        return (T) copyIfList(sharedResult);
+      }
+      future.set(result);
+      return result;
+    } catch (IOException | RuntimeException e) {
+      future.setException(e);
+      throw e;
+    } finally {
+      inFlightCalls.remove(key, future);
+    }
+  }
+
+  /**
+   * Waits for the given call in flight and returns its result, or a copy of it if it is a list,
+   * so that callers may modify the list they get.
+   */
+  private static Object await(SettableFuture<Object> inFlightCall)
+      throws IOException {
+    Object result;
+    try {
+      result = inFlightCall.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for an identical call in flight");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    }
+    return copyIfList(result);
+  }
+
+  /**
+   * Returns a modifiable copy of the given result if it is a list, or the result itself otherwise.
+   */
+  private static Object copyIfList(Object result) {
+    if (result instanceof List) {
+      return new ArrayList<>((List<?>) result);
+    }
+    return result;
+  }
+
+  /**
+   * Starts a new epoch, so that calls made from now on do not join calls in flight which may have
+   * started before a change completed.
+   */
+  private void startNewEpoch() {
+    epoch.incrementAndGet();
+  }
+
+  @Override
+  public WritableByteChannel create(StorageResourceId resourceId)
+      throws IOException {
+    return create(resourceId, CreateObjectOptions.DEFAULT);
+  }
+
+  /**
+   * Wraps the delegate's returned WritableByteChannel in a helper which starts a new epoch when
+   * close() is called.
+   */
+  @Override
+  public WritableByteChannel create(StorageResourceId resourceId, CreateObjectOptions options)
+      throws IOException {
+    final WritableByteChannel innerChannel;
+    try {
+      innerChannel = gcsDelegate.create(resourceId, options);
+    } finally {
+      startNewEpoch();
+    }
+
+    return new WritableByteChannel() {
+      @Override
+      public int write(ByteBuffer buffer)
+          throws IOException {
+        return innerChannel.write(buffer);
+      }
+
+      @Override
+      public boolean isOpen() {
+        return innerChannel.isOpen();
+      }
+
+      @Override
+      public void close()
+          throws IOException {
+        try {
+          innerChannel.close();
+        } finally {
+          startNewEpoch();
+        }
+      }
+    };
+  }
+
+  @Override
+  public void createEmptyObject(StorageResourceId resourceId)
+      throws IOException {
+    try {
+      gcsDelegate.createEmptyObject(resourceId);
+    } finally {
+      startNewEpoch();
+    }
+  }
+
+  @Override
+  public void createEmptyObject(StorageResourceId resourceId, CreateObjectOptions options)
+      throws IOException {
+    try {
+      gcsDelegate.createEmptyObject(resourceId, options);
+    } finally {
+      startNewEpoch();
+    }
+  }
+
+  @Override
+  public void createEmptyObjects(List<StorageResourceId> resourceIds)
+      throws IOException {
+    try {
+      gcsDelegate.createEmptyObjects(resourceIds);
+    } finally {
+      startNewEpoch();
+    }
+  }
+
+  @Override
+  public void createEmptyObjects(List<StorageResourceId> resourceIds, CreateObjectOptions options)
+      throws IOException {
+    try {
+      gcsDelegate.createEmptyObjects(resourceIds, options);
+    } finally {
+      startNewEpoch();
+    }
+  }
+
+  /**
+   * Pure pass-through.
+   */
+  @Override
+  public SeekableReadableByteChannel open(StorageResourceId resourceId)
+      throws IOException {
+    return gcsDelegate.open(resourceId);
+  }
+
+  /**
+   * Pure pass-through.
+   */
+  @Override
+  public SeekableReadableByteChannel open(
+      StorageResourceId resourceId, GoogleCloudStorageReadOptions readOptions)
+      throws IOException {
+    return gcsDelegate.open(resourceId, readOptions);
+  }
+
+  @Override
+  public void create(String bucketName)
+      throws IOException {
+    try {
+      gcsDelegate.create(bucketName);
+    } finally {
+      startNewEpoch();
+    }
+  }
+
+  @Override
+  public void deleteBuckets(List<String> bucketNames)
+      throws IOException {
+    try {
+      gcsDelegate.deleteBuckets(bucketNames);
+    } finally {
+      startNewEpoch();
+    }
+  }
+
+  @Override
+  public void deleteObjects(List<StorageResourceId> fullObjectNames)
+      throws IOException {
+    try {
+      gcsDelegate.deleteObjects(fullObjectNames);
+    } finally {
+      startNewEpoch();
+    }
+  }
+
+  @Override
+  public void deleteObjects(List<StorageResourceId> fullObjectNames,
+      List<Long> contentGenerations)
+      throws IOException {
+    try {
+      gcsDelegate.deleteObjects(fullObjectNames, contentGenerations);
+    } finally {
+      startNewEpoch();
+    }
+  }
+
+  @Override
+  public void copy(String srcBucketName, List<String> srcObjectNames,
+      String dstBucketName, List<String> dstObjectNames)
+      throws IOException {
+    try {
+      gcsDelegate.copy(srcBucketName, srcObjectNames, dstBucketName, dstObjectNames);
+    } finally {
+      startNewEpoch();
+    }
+  }
+
+  @Override
+  public List<String> listBucketNames()
+      throws IOException {
+    return coalesce("listBucketNames", new StorageCall<List<String>>() {
+      @Override
+      public List<String> call() throws IOException {
+        return gcsDelegate.listBucketNames();
+      }
+    });
+  }
+
+  @Override
+  public List<GoogleCloudStorageItemInfo> listBucketInfo()
+      throws IOException {
+    return coalesce("listBucketInfo", new StorageCall<List<GoogleCloudStorageItemInfo>>() {
+      @Override
+      public List<GoogleCloudStorageItemInfo> call() throws IOException {
+        return gcsDelegate.listBucketInfo();
+      }
+    });
+  }
+
+  @Override
+  public List<String> listObjectNames(
+      final String bucketName, final String objectNamePrefix, final String delimiter)
+      throws IOException {
+    return coalesce("listObjectNames", new StorageCall<List<String>>() {
+      @Override
+      public List<String> call() throws IOException {
+        return gcsDelegate.listObjectNames(bucketName, objectNamePrefix, delimiter);
+      }
+    }, bucketName, objectNamePrefix, delimiter);
+  }
+
+  @Override
+  public List<String> listObjectNames(final String bucketName, final String objectNamePrefix,
+      final String delimiter, final long maxResults)
+      throws IOException {
+    return coalesce("listObjectNames", new StorageCall<List<String>>() {
+      @Override
+      public List<String> call() throws IOException {
+        return gcsDelegate.listObjectNames(bucketName, objectNamePrefix, delimiter, maxResults);
+      }
+    }, bucketName, objectNamePrefix, delimiter, maxResults);
+  }
+
+  @Override
+  public List<GoogleCloudStorageItemInfo> listObjectInfo(
+      final String bucketName, final String objectNamePrefix, final String delimiter)
+      throws IOException {
+    return coalesce("listObjectInfo", new StorageCall<List<GoogleCloudStorageItemInfo>>() {
+      @Override
+      public List<GoogleCloudStorageItemInfo> call() throws IOException {
+        return gcsDelegate.listObjectInfo(bucketName, objectNamePrefix, delimiter);
+      }
+    }, bucketName, objectNamePrefix, delimiter);
+  }
+
+  /**
+   * Pure pass-through; pages are fetched lazily by each caller, so there is no single call to
+   * wait for.
+   */
+  @Override
+  public ListPageIterator<GoogleCloudStorageItemInfo> listObjectInfoPages(
+      String bucketName, String objectNamePrefix, String delimiter)
+      throws IOException {
+    return gcsDelegate.listObjectInfoPages(bucketName, objectNamePrefix, delimiter);
+  }
+
+  @Override
+  public GoogleCloudStorageItemInfo getItemInfo(final StorageResourceId resourceId)
+      throws IOException {
+    return coalesce("getItemInfo", new StorageCall<GoogleCloudStorageItemInfo>() {
+      @Override
+      public GoogleCloudStorageItemInfo call() throws IOException {
+        return gcsDelegate.getItemInfo(resourceId);
+      }
+    }, resourceId);
+  }
+
+  @Override
+  public List<GoogleCloudStorageItemInfo> getItemInfos(final List<StorageResourceId> resourceIds)
+      throws IOException {
+    return coalesce("getItemInfos", new StorageCall<List<GoogleCloudStorageItemInfo>>() {
+      @Override
+      public List<GoogleCloudStorageItemInfo> call() throws IOException {
+        return gcsDelegate.getItemInfos(resourceIds);
+      }
+    }, ImmutableList.copyOf(resourceIds));
+  }
+
+  @Override
+  public List<GoogleCloudStorageItemInfo> updateItems(List<UpdatableItemInfo> itemInfoList)
+      throws IOException {
+    try {
+      return gcsDelegate.updateItems(itemInfoList);
+    } finally {
+      startNewEpoch();
+    }
+  }
+
+  /**
+   * Pure pass-through.
+   */
+  @Override
+  public void close() {
+    gcsDelegate.close();
+  }
+
+  /**
+   * Pure pass-through.
+   */
+  @Override
+  public void waitForBucketEmpty(String bucketName)
+      throws IOException {
+    gcsDelegate.waitForBucketEmpty(bucketName);
+  }
+}
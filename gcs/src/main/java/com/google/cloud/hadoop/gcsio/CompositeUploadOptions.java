@@ -0,0 +1,126 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Options for parallel composite uploads, in which a write channel uploads its data as temporary
+ * component objects in parallel and composes them into the final object when closed.
+ */
+public class CompositeUploadOptions {
+
+  /**
+   * Default of whether write channels use parallel composite uploads.
+   */
+  public static final boolean ENABLED_DEFAULT = false;
+
+  /**
+   * Default size of each component object uploaded by a channel.
+   */
+  public static final int PART_SIZE_DEFAULT = 32 * 1024 * 1024;
+
+  /**
+   * Default maximum number of part buffers held by a channel at once, including the one being
+   * filled; bounds the memory used by each channel to this many times the part size.
+   */
+  public static final int MAX_BUFFERED_PARTS_DEFAULT = 4;
+
+  /**
+   * Default maximum number of threads used across all channels to upload and compose parts.
+   */
+  public static final int MAX_THREADS_DEFAULT = 16;
+
+  /**
+   * Mutable builder for the CompositeUploadOptions class.
+   */
+  public static class Builder {
+    private boolean enabled = ENABLED_DEFAULT;
+    private int partSize = PART_SIZE_DEFAULT;
+    private int maxBufferedParts = MAX_BUFFERED_PARTS_DEFAULT;
+    private int maxThreads = MAX_THREADS_DEFAULT;
+
+    public Builder setEnabled(boolean enabled) {
+      this.enabled = enabled;
+      return this;
+    }
+
+    public Builder setPartSize(int partSize) {
+      this.partSize = partSize;
+      return this;
+    }
+
+    public Builder setMaxBufferedParts(int maxBufferedParts) {
+      this.maxBufferedParts = maxBufferedParts;
+      return this;
+    }
+
+    public Builder setMaxThreads(int maxThreads) {
+      this.maxThreads = maxThreads;
+      return this;
+    }
+
+    public CompositeUploadOptions build() {
+      return new CompositeUploadOptions(enabled, partSize, maxBufferedParts, maxThreads);
+    }
+  }
+
+  /**
+   * Create a new builder with default values.
+   */
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Composite upload options with all default values.
+   */
+  public static final CompositeUploadOptions DEFAULT = newBuilder().build();
+
+  private final boolean enabled;
+  private final int partSize;
+  private final int maxBufferedParts;
+  private final int maxThreads;
+
+  public CompositeUploadOptions(
+      boolean enabled, int partSize, int maxBufferedParts, int maxThreads) {
+    Preconditions.checkArgument(partSize > 0,
+        "partSize must be greater than 0, got %s", partSize);
+    Preconditions.checkArgument(maxBufferedParts > 1,
+        "maxBufferedParts must be greater than 1, got %s", maxBufferedParts);
+    Preconditions.checkArgument(maxThreads > 0,
+        "maxThreads must be greater than 0, got %s", maxThreads);
+    this.enabled = enabled;
+    this.partSize = partSize;
+    this.maxBufferedParts = maxBufferedParts;
+    this.maxThreads = maxThreads;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public int getPartSize() {
+    return partSize;
+  }
+
+  public int getMaxBufferedParts() {
+    return maxBufferedParts;
+  }
+
+  public int getMaxThreads() {
+    return maxThreads;
+  }
+}
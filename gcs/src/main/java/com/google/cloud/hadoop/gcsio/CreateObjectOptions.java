@@ -31,6 +31,7 @@ public class CreateObjectOptions {
 
   private final boolean overwriteExisting;
   private final Map<String, byte[]> metadata;
+  private final Long expectedContentGeneration;
 
   /**
    * Construct a new CreateObjectOptions with empty metadata.
@@ -46,8 +47,21 @@ public class CreateObjectOptions {
    * @param metadata A dictionary of metadata to apply to created objects.
    */
   public CreateObjectOptions(boolean overwriteExisting, Map<String, byte[]> metadata) {
+    this(overwriteExisting, metadata, null);
+  }
+
+  /**
+   * @param overwriteExisting True to overwrite any existing objects with the same name.
+   * @param metadata A dictionary of metadata to apply to created objects.
+   * @param expectedContentGeneration The content generation of the existing object, 0 if the
+   *     object is known not to exist, or null if unknown. When known, the object is written with
+   *     it as precondition, without first fetching its metadata and writing a marker object.
+   */
+  public CreateObjectOptions(
+      boolean overwriteExisting, Map<String, byte[]> metadata, Long expectedContentGeneration) {
     this.overwriteExisting = overwriteExisting;
     this.metadata = metadata;
+    this.expectedContentGeneration = expectedContentGeneration;
   }
 
   /**
@@ -63,4 +77,11 @@ public class CreateObjectOptions {
   public Map<String, byte[]> getMetadata() {
     return metadata;
   }
+
+  /**
+   * Content generation the object is expected to have before it is written, or null if unknown.
+   */
+  public Long getExpectedContentGeneration() {
+    return expectedContentGeneration;
+  }
 }
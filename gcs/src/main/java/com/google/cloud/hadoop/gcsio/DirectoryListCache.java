@@ -45,7 +45,7 @@ public abstract class DirectoryListCache {
   private static final LogUtil log = new LogUtil(DirectoryListCache.class);
 
   // Clock instance used for calculating expiration times.
-  protected Clock clock = Clock.SYSTEM;
+  protected volatile Clock clock = Clock.SYSTEM;
 
   // The configuration settings for this DirectlyListCache instance.
   protected Config cacheConfig = new Config();
@@ -60,24 +60,33 @@ public abstract class DirectoryListCache {
     // to expire fully from the cache once reasonably certain the remote GCS API's list-index
     // is up-to-date to save memory and computation when trying to supplement new results using
     // the cache.
-    private long maxEntryAgeMillis = 30 * 60 * 1000L;
+    private volatile long maxEntryAgeMillis = 30 * 60 * 1000L;
 
     // Maximum number of milliseconds a GoogleCloudStorageItemInfo will remain "valid" in the cache,
     // after which the next attempt to fetch the itemInfo will require fetching fresh info from
     // a GoogleCloudStorage instance.
-    private long maxInfoAgeMillis = 10 * 1000L;
+    private volatile long maxInfoAgeMillis = 10 * 1000L;
+
+    // Maximum number of StorageObject entries held in the cache, beyond which the least recently
+    // used entries are evicted; 0 for no limit. Only enforced by InMemoryDirectoryListCache.
+    private volatile long maxEntries = 0;
+
+    // Maximum estimated number of bytes of memory held by the StorageObject entries of the cache,
+    // beyond which the least recently used entries are evicted; 0 for no limit. Only enforced by
+    // InMemoryDirectoryListCache.
+    private volatile long maxBytes = 0;
 
     /**
      * Getter for maxEntryAgeMillis.
      */
-    public synchronized long getMaxEntryAgeMillis() {
+    public long getMaxEntryAgeMillis() {
       return maxEntryAgeMillis;
     }
 
     /**
      * Setter for maxEntryAgeMillis.
      */
-    public synchronized Config setMaxEntryAgeMillis(long maxEntryAgeMillis) {
+    public Config setMaxEntryAgeMillis(long maxEntryAgeMillis) {
       this.maxEntryAgeMillis = maxEntryAgeMillis;
       return this;
     }
@@ -85,17 +94,51 @@ public abstract class DirectoryListCache {
     /**
      * Getter for maxInfoAgeMillis.
      */
-    public synchronized long getMaxInfoAgeMillis() {
+    public long getMaxInfoAgeMillis() {
       return maxInfoAgeMillis;
     }
 
     /**
      * Setter for maxInfoAgeMillis.
      */
-    public synchronized Config setMaxInfoAgeMillis(long maxInfoAgeMillis) {
+    public Config setMaxInfoAgeMillis(long maxInfoAgeMillis) {
       this.maxInfoAgeMillis = maxInfoAgeMillis;
       return this;
     }
+
+    /**
+     * Getter for maxEntries.
+     */
+    public long getMaxEntries() {
+      return maxEntries;
+    }
+
+    /**
+     * Setter for maxEntries.
+     */
+    public Config setMaxEntries(long maxEntries) {
+      Preconditions.checkArgument(maxEntries >= 0,
+          "maxEntries must not be negative, got %s", maxEntries);
+      this.maxEntries = maxEntries;
+      return this;
+    }
+
+    /**
+     * Getter for maxBytes.
+     */
+    public long getMaxBytes() {
+      return maxBytes;
+    }
+
+    /**
+     * Setter for maxBytes.
+     */
+    public Config setMaxBytes(long maxBytes) {
+      Preconditions.checkArgument(maxBytes >= 0,
+          "maxBytes must not be negative, got %s", maxBytes);
+      this.maxBytes = maxBytes;
+      return this;
+    }
   }
 
   /**
@@ -222,7 +265,7 @@ public abstract class DirectoryListCache {
    * Sets the static Clock instance used for calculating expiration times.
    */
   @VisibleForTesting
-  public synchronized void setClock(Clock clock) {
+  public void setClock(Clock clock) {
     this.clock = clock;
   }
 
@@ -230,7 +273,7 @@ public abstract class DirectoryListCache {
    * Helper for determining whether a CacheEntry is entirely expired and should be removed
    * from the cache.
    */
-  protected synchronized boolean isCacheEntryExpired(CacheEntry entry) {
+  protected boolean isCacheEntryExpired(CacheEntry entry) {
     long creationTime = entry.getCreationTimeMillis();
     long entryAge = clock.currentTimeMillis() - creationTime;
     if (entryAge > cacheConfig.getMaxEntryAgeMillis()) {
@@ -255,12 +298,8 @@ public abstract class DirectoryListCache {
    * on cacheConfig settings.
    */
   protected void maybeInvalidateExpiredInfo(CacheEntry entry) {
-    long currentTimeMillis;
-    long maxInfoAgeMillis;
-    synchronized (this) {
-      currentTimeMillis = clock.currentTimeMillis();
-      maxInfoAgeMillis = cacheConfig.getMaxInfoAgeMillis();
-    }
+    long currentTimeMillis = clock.currentTimeMillis();
+    long maxInfoAgeMillis = cacheConfig.getMaxInfoAgeMillis();
 
     // We must synchronize on 'entry' since we are reading its itemInfoUpdateTimeMillis and then
     // possibly mutating it based on that value. Requires that CacheEntry's other mutators like
@@ -18,7 +18,6 @@ package com.google.cloud.hadoop.gcsio;
 
 import com.google.api.client.util.Clock;
 import com.google.cloud.hadoop.util.LogUtil;
-import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import com.google.common.primitives.Longs;
 
@@ -53,9 +52,6 @@ public class FileInfo {
   // Information about the underlying GCS item.
   private final GoogleCloudStorageItemInfo itemInfo;
 
-  // Custom file attributes, including those used for storing custom modification times, etc
-  private final Map<String, byte[]> attributes;
-
   /**
    * Constructs an instance of FileInfo.
    *
@@ -67,10 +63,6 @@ public class FileInfo {
     // Construct the path once.
     this.path = GoogleCloudStorageFileSystem.getPath(
         itemInfo.getBucketName(), itemInfo.getObjectName(), true);
-
-    Preconditions.checkArgument(itemInfo.getMetadata() != null);
-
-    this.attributes = itemInfo.getMetadata();
   }
 
   /**
@@ -140,6 +132,9 @@ public class FileInfo {
    * Time is expressed as milliseconds since January 1, 1970 UTC.
    */
   public long getModificationTime() {
+    // Attributes are read from the itemInfo on each use, rather than when this instance is
+    // constructed, as those of inferred directories are only fetched when asked for.
+    Map<String, byte[]> attributes = getAttributes();
     if (attributes.containsKey(FILE_MODIFICATION_TIMESTAMP_KEY)
         && attributes.get(FILE_MODIFICATION_TIMESTAMP_KEY) != null) {
       try {
@@ -157,7 +152,7 @@ public class FileInfo {
    * @return A map of file attributes
    */
   public Map<String, byte[]> getAttributes() {
-    return attributes;
+    return itemInfo.getMetadata();
   }
 
   /**
@@ -106,6 +106,21 @@ public interface GoogleCloudStorage {
   SeekableReadableByteChannel open(StorageResourceId resourceId)
       throws IOException;
 
+  /**
+   * Opens an object for reading with the given read options instead of those the instance was
+   * configured with. If {@code readOptions} disables fast failing on not found, no metadata is
+   * fetched and a missing object may only be reported by the first read or size() call.
+   *
+   * @param resourceId identifies a StorageObject
+   * @param readOptions options controlling how the object is read
+   * @return a channel for reading from the given object
+   * @throws FileNotFoundException if the given object does not exist
+   * @throws IOException if object exists but cannot be opened
+   */
+  SeekableReadableByteChannel open(
+      StorageResourceId resourceId, GoogleCloudStorageReadOptions readOptions)
+      throws IOException;
+
   /**
    * Creates a bucket.
    *
@@ -135,6 +150,21 @@ public interface GoogleCloudStorage {
   void deleteObjects(List<StorageResourceId> fullObjectNames)
       throws IOException;
 
+  /**
+   * Deletes the given objects, using the given content generations where known to delete each
+   * object with a single conditional request instead of first fetching its current generation.
+   * Objects whose generation is unknown, or no longer matches, are deleted at their current
+   * generation as in {@link #deleteObjects(List)}. Does not throw any exception for "object not
+   * found" errors.
+   *
+   * @param fullObjectNames names of objects to delete with their respective bucketNames.
+   * @param contentGenerations content generation of each object in fullObjectNames, typically
+   *     obtained from a listing, or null where unknown.
+   * @throws IOException if object exists but cannot be deleted
+   */
+  void deleteObjects(List<StorageResourceId> fullObjectNames, List<Long> contentGenerations)
+      throws IOException;
+
   /**
    * Copies metadata of the given objects. After the copy is successfully complete,
    * each object blob is reachable by two different names.
@@ -192,6 +222,23 @@ public interface GoogleCloudStorage {
       String bucketName, String objectNamePrefix, String delimiter)
       throws IOException;
 
+  /**
+   * Same as {@link listObjectNames} except that at most {@code maxResults} names are returned,
+   * so that whether any object matches can be checked without listing all of them; a single list
+   * request suffices when {@code maxResults} is not greater than the number of items per list
+   * request.
+   *
+   * @param bucketName bucket name
+   * @param objectNamePrefix object name prefix or null if all objects in the bucket are desired
+   * @param delimiter delimiter to use (typically "/"), otherwise null
+   * @param maxResults maximum number of names to return, greater than 0
+   * @return list of at most maxResults object names
+   * @throws IOException on IO error
+   */
+  List<String> listObjectNames(
+      String bucketName, String objectNamePrefix, String delimiter, long maxResults)
+      throws IOException;
+
   /**
    * Same name-matching semantics as {@link listObjectNames} except this method retrieves the full
    * GoogleCloudStorageFileInfo for each item as well; generally the info is already available from
@@ -209,6 +256,21 @@ public interface GoogleCloudStorage {
       final String bucketName, String objectNamePrefix, String delimiter)
       throws IOException;
 
+  /**
+   * Same semantics as {@link listObjectInfo} except that the infos are returned one page at a time
+   * as the pages are listed, instead of after the whole listing has been fetched. Implementations
+   * may fetch the next page in the background while the caller processes the current one.
+   *
+   * @param bucketName bucket name
+   * @param objectNamePrefix object name prefix or null if all objects in the bucket are desired
+   * @param delimiter delimiter to use (typically "/"), otherwise null
+   * @return iterator over pages of object info
+   * @throws IOException on IO error
+   */
+  ListPageIterator<GoogleCloudStorageItemInfo> listObjectInfoPages(
+      String bucketName, String objectNamePrefix, String delimiter)
+      throws IOException;
+
   /**
    * Gets information about an object or a bucket.
    *
@@ -0,0 +1,561 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import com.google.api.client.http.ByteArrayContent;
+import com.google.api.services.storage.Storage;
+import com.google.api.services.storage.model.ComposeRequest;
+import com.google.api.services.storage.model.StorageObject;
+import com.google.cloud.hadoop.util.ClientRequestHelper;
+import com.google.cloud.hadoop.util.LogUtil;
+import com.google.cloud.hadoop.util.UploadBufferManager;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.Futures;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Implements WritableByteChannel to provide write access to GCS using parallel composite uploads.
+ *
+ * <p>Data written to the channel is cut into parts, each of which is uploaded as a temporary
+ * component object on a shared thread pool while the caller keeps writing. Part buffers are leased
+ * from the UploadBufferManager like the chunk buffers of regular uploads, so a part is smaller
+ * than the configured part size when the memory of all uploads is capped and nearly used up, and
+ * its lease waits when none is left. On close()
+ * the components are composed into the destination object, applying the same write conditions
+ * that a regular upload would, and the temporary components are deleted. Objects no larger than a
+ * single part are uploaded directly with a single request instead.
+ *
+ * <p>Since a composite object has at most MAX_COMPONENTS components, write() fails rather than
+ * start another part once that many parts have been written; the part size must be chosen so
+ * that the largest object written fits in that many parts.
+ *
+ * <p>Note that composite objects carry a CRC32C checksum but no MD5 hash.
+ *
+ * <p>As per WritableByteChannel semantics, only a single writer may be in write() at a time, and
+ * close() should not be called concurrently with write().
+ */
+public class GoogleCloudStorageCompositeWriteChannel implements WritableByteChannel {
+
+  // Maximum number of source objects accepted by a single compose request.
+  @VisibleForTesting
+  static final int MAX_COMPOSE_SOURCES = 32;
+
+  // Maximum number of components of a composite object, counting those of the intermediate
+  // objects it is composed from, and so maximum number of parts of a channel.
+  @VisibleForTesting
+  static final int MAX_COMPONENTS = 1024;
+
+  // Media type of the uploaded components and of the composed object.
+  private static final String OCTET_STREAM_MEDIA_TYPE = "application/octet-stream";
+
+  // Logger.
+  private static final LogUtil log = new LogUtil(GoogleCloudStorageCompositeWriteChannel.class);
+
+  private final ExecutorService threadPool;
+  private final Storage gcs;
+  private final ClientRequestHelper<StorageObject> clientRequestHelper;
+  private final String bucketName;
+  private final String objectName;
+  private final Map<String, String> metadata;
+  private final int partSize;
+
+  // Conditions applied to the request creating the final object; replaced by
+  // writeConditionsRefresher before a retry of that request.
+  private ObjectWriteConditions writeConditions;
+
+  // Supplies the conditions of a retry of a failed request creating the final object, or null if
+  // it is not retried.
+  private WriteConditionsRefresher writeConditionsRefresher;
+
+  // Prefix of the names of the temporary component objects created by this channel.
+  private final String componentPrefix;
+
+  // Permits for part buffers; bounds the memory used by this channel to maxBufferedParts parts,
+  // including the part being filled.
+  private final Semaphore bufferPermits;
+
+  // Manager from which the part buffers are leased.
+  private UploadBufferManager uploadBufferManager = UploadBufferManager.getInstance();
+
+  // Uploads of the parts handed to the thread pool so far, in object order.
+  private final List<Future<StorageObject>> partUploads = new ArrayList<>();
+
+  // Temporary objects created so far, to be deleted once the channel is closed.
+  private final List<StorageObject> temporaryObjects =
+      Collections.synchronizedList(new ArrayList<StorageObject>());
+
+  // First error reported by a background upload or compose, if any.
+  private volatile IOException uploadFailure;
+
+  // Part currently being filled by write(), or null if no buffer is held; its length is the
+  // number of bytes leased for it.
+  private byte[] currentPart;
+
+  // Number of valid bytes in currentPart.
+  private int currentPartLength;
+
+  private boolean open = true;
+
+  /**
+   * Constructs an instance of GoogleCloudStorageCompositeWriteChannel.
+   *
+   * @param threadPool thread pool used to upload and compose parts concurrently
+   * @param gcs storage object instance
+   * @param requestHelper a ClientRequestHelper to set extra headers
+   * @param bucketName name of the bucket to create object in
+   * @param objectName name of the object to create
+   * @param options composite upload options
+   * @param writeConditions conditions applied to the request creating the final object
+   * @param objectMetadata metadata to apply to the newly created object
+   */
+  public GoogleCloudStorageCompositeWriteChannel(
+      ExecutorService threadPool, Storage gcs, ClientRequestHelper<StorageObject> requestHelper,
+      String bucketName, String objectName, CompositeUploadOptions options,
+      ObjectWriteConditions writeConditions, Map<String, String> objectMetadata) {
+    Preconditions.checkArgument(options.isEnabled(), "Composite uploads must be enabled");
+    this.threadPool = threadPool;
+    this.gcs = gcs;
+    this.clientRequestHelper = requestHelper;
+    this.bucketName = bucketName;
+    this.objectName = objectName;
+    this.writeConditions = writeConditions;
+    this.metadata = objectMetadata;
+    this.partSize = options.getPartSize();
+    this.bufferPermits = new Semaphore(options.getMaxBufferedParts());
+    this.componentPrefix = getComponentPrefix(objectName);
+  }
+
+  /**
+   * Returns the prefix used to name the temporary components of the given object. Components are
+   * placed next to the object under a hidden name unique to this channel.
+   */
+  @VisibleForTesting
+  static String getComponentPrefix(String objectName) {
+    int lastSlash = objectName.lastIndexOf('/');
+    String parent = objectName.substring(0, lastSlash + 1);
+    String baseName = objectName.substring(lastSlash + 1);
+    return String.format("%s_COMPOSITE_%s.%s.", parent, baseName, UUID.randomUUID());
+  }
+
+  /**
+   * Sets the manager from which the part buffers are leased.
+   */
+  @VisibleForTesting
+  void setUploadBufferManager(UploadBufferManager uploadBufferManager) {
+    this.uploadBufferManager = uploadBufferManager;
+  }
+
+  /**
+   * Retries the request creating the final object, whose data is still held in memory or in the
+   * temporary components, when it fails in a way that the given refresher supplies new write
+   * conditions for.
+   */
+  synchronized void setWriteConditionsRefresher(WriteConditionsRefresher writeConditionsRefresher) {
+    this.writeConditionsRefresher = writeConditionsRefresher;
+  }
+
+  @Override
+  public synchronized int write(ByteBuffer buffer) throws IOException {
+    throwIfNotOpen();
+
+    // No point in writing further if a part failed to upload on another thread.
+    throwIfUploadFailed();
+
+    int bytesWritten = 0;
+    while (buffer.hasRemaining()) {
+      if (currentPart == null) {
+        allocateCurrentPart();
+      }
+      int bytesToCopy = Math.min(buffer.remaining(), currentPart.length - currentPartLength);
+      buffer.get(currentPart, currentPartLength, bytesToCopy);
+      currentPartLength += bytesToCopy;
+      bytesWritten += bytesToCopy;
+      if (currentPartLength == currentPart.length) {
+        uploadCurrentPart();
+      }
+    }
+    return bytesWritten;
+  }
+
+  @Override
+  public boolean isOpen() {
+    return open;
+  }
+
+  /**
+   * Closes this channel.
+   *
+   * <p>The method returns only after the destination object has been created or if there is a
+   * non-retry-able error. Temporary components are deleted in either case on a best-effort basis.
+   *
+   * @throws IOException on IO error
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    throwIfNotOpen();
+    open = false;
+    try {
+      if (partUploads.isEmpty()) {
+        // The whole object fits in a single part, there is nothing to compose.
+        while (true) {
+          try {
+            insertObject();
+            return;
+          } catch (IOException ioe) {
+            refreshWriteConditionsOrThrow(ioe);
+          }
+        }
+      }
+      if (currentPartLength > 0) {
+        uploadCurrentPart();
+      }
+      List<StorageObject> components = waitForAll(partUploads);
+      throwIfUploadFailed();
+      components = composeIntermediateLevels(components);
+      while (true) {
+        try {
+          composeFinalObject(components);
+          return;
+        } catch (IOException ioe) {
+          refreshWriteConditionsOrThrow(ioe);
+        }
+      }
+    } finally {
+      if (currentPart != null) {
+        uploadBufferManager.release(currentPart.length);
+      }
+      currentPart = null;
+      currentPartLength = 0;
+      deleteTemporaryObjects();
+    }
+  }
+
+  /**
+   * Replaces the write conditions of the request creating the final object so that it can be
+   * sent again after failing with the given exception, or rethrows the exception.
+   */
+  private void refreshWriteConditionsOrThrow(IOException failure) throws IOException {
+    ObjectWriteConditions refreshedConditions =
+        writeConditionsRefresher == null ? null : writeConditionsRefresher.refresh(failure);
+    if (refreshedConditions == null) {
+      throw failure;
+    }
+    writeConditions = refreshedConditions;
+  }
+
+  /**
+   * Allocates currentPart once it fits within maxBufferedParts, with as many bytes of the part
+   * size as uploadBufferManager leases.
+   */
+  private void allocateCurrentPart() throws IOException {
+    if (partUploads.size() >= MAX_COMPONENTS) {
+      throw new IOException(String.format(
+          "Cannot write more than %d parts of up to %d bytes to gs://%s/%s: a composite object "
+          + "has at most %d components", MAX_COMPONENTS, partSize, bucketName, objectName,
+          MAX_COMPONENTS));
+    }
+    try {
+      bufferPermits.acquire();
+      try {
+        currentPart = new byte[uploadBufferManager.lease(partSize)];
+      } catch (InterruptedException ie) {
+        bufferPermits.release();
+        throw ie;
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(String.format(
+          "Interrupted while waiting for a part buffer for gs://%s/%s", bucketName, objectName));
+    }
+    currentPartLength = 0;
+  }
+
+  /**
+   * Returns the lease and the permit of the given part buffer once it is no longer used.
+   */
+  private void releasePart(byte[] part) {
+    uploadBufferManager.release(part.length);
+    bufferPermits.release();
+  }
+
+  /**
+   * Hands currentPart to the thread pool to be uploaded as the next component.
+   */
+  private void uploadCurrentPart() throws IOException {
+    final byte[] part = currentPart;
+    final int partLength = currentPartLength;
+    final String componentName = componentPrefix + "part-" + partUploads.size();
+    currentPart = null;
+    currentPartLength = 0;
+
+    try {
+      partUploads.add(threadPool.submit(new Callable<StorageObject>() {
+        @Override
+        public StorageObject call() throws IOException {
+          try {
+            return insertComponent(componentName, part, partLength);
+          } finally {
+            releasePart(part);
+          }
+        }
+      }));
+    } catch (RejectedExecutionException ree) {
+      releasePart(part);
+      throw new IOException(String.format(
+          "Failed to schedule upload of %s to gs://%s", componentName, bucketName), ree);
+    }
+  }
+
+  /**
+   * Uploads the given bytes as a new temporary component object.
+   */
+  private StorageObject insertComponent(String componentName, byte[] data, int length)
+      throws IOException {
+    log.debug("insertComponent(%s, %s, %d)", bucketName, componentName, length);
+    Storage.Objects.Insert insert = gcs.objects().insert(
+        bucketName,
+        new StorageObject().setName(componentName),
+        new ByteArrayContent(OCTET_STREAM_MEDIA_TYPE, data, 0, length));
+    insert.setIfGenerationMatch(0L);
+    insert.setDisableGZipContent(true);
+    clientRequestHelper.setDirectUploadEnabled(insert, true);
+    try {
+      StorageObject component = insert.execute();
+      temporaryObjects.add(component);
+      return component;
+    } catch (IOException ioe) {
+      recordFailure(ioe);
+      throw ioe;
+    }
+  }
+
+  /**
+   * Uploads the contents of currentPart, if any, directly as the destination object.
+   */
+  private void insertObject() throws IOException {
+    byte[] data = currentPart == null ? new byte[0] : currentPart;
+    Storage.Objects.Insert insert = gcs.objects().insert(
+        bucketName,
+        new StorageObject().setName(objectName).setMetadata(metadata),
+        new ByteArrayContent(OCTET_STREAM_MEDIA_TYPE, data, 0, currentPartLength));
+    writeConditions.apply(insert);
+    insert.setDisableGZipContent(true);
+    clientRequestHelper.setDirectUploadEnabled(insert, true);
+    insert.execute();
+  }
+
+  /**
+   * Since a compose request accepts at most MAX_COMPOSE_SOURCES sources, composes the given
+   * components level by level into intermediate temporary objects, with the requests of each
+   * level running concurrently, until few enough remain for composing the destination object.
+   */
+  private List<StorageObject> composeIntermediateLevels(List<StorageObject> components)
+      throws IOException {
+    int level = 0;
+    while (components.size() > MAX_COMPOSE_SOURCES) {
+      List<Future<StorageObject>> composes = new ArrayList<>();
+      for (int i = 0; i < components.size(); i += MAX_COMPOSE_SOURCES) {
+        final List<StorageObject> sources =
+            components.subList(i, Math.min(i + MAX_COMPOSE_SOURCES, components.size()));
+        if (sources.size() == 1) {
+          composes.add(Futures.immediateFuture(sources.get(0)));
+          continue;
+        }
+        final String intermediateName =
+            String.format("%scompose-%d-%d", componentPrefix, level, composes.size());
+        try {
+          composes.add(threadPool.submit(new Callable<StorageObject>() {
+            @Override
+            public StorageObject call() throws IOException {
+              return composeIntermediate(intermediateName, sources);
+            }
+          }));
+        } catch (RejectedExecutionException ree) {
+          recordFailure(new IOException(String.format(
+              "Failed to schedule compose of %s in gs://%s", intermediateName, bucketName), ree));
+          break;
+        }
+      }
+      components = waitForAll(composes);
+      throwIfUploadFailed();
+      level++;
+    }
+    return components;
+  }
+
+  /**
+   * Composes the given components, at most MAX_COMPOSE_SOURCES of them, into the destination
+   * object.
+   */
+  private void composeFinalObject(List<StorageObject> components) throws IOException {
+    Storage.Objects.Compose compose = gcs.objects().compose(
+        bucketName, objectName, createComposeRequest(objectName, metadata, components));
+    writeConditions.apply(compose);
+    compose.execute();
+  }
+
+  /**
+   * Composes the given sources into a new temporary object.
+   */
+  private StorageObject composeIntermediate(String name, List<StorageObject> sources)
+      throws IOException {
+    log.debug("composeIntermediate(%s, %s, %d sources)", bucketName, name, sources.size());
+    Storage.Objects.Compose compose = gcs.objects().compose(
+        bucketName, name, createComposeRequest(name, null, sources));
+    compose.setIfGenerationMatch(0L);
+    try {
+      StorageObject intermediate = compose.execute();
+      temporaryObjects.add(intermediate);
+      return intermediate;
+    } catch (IOException ioe) {
+      recordFailure(ioe);
+      throw ioe;
+    }
+  }
+
+  /**
+   * Creates a request composing the given sources, pinned to their generations, into an object
+   * with the given name and metadata.
+   */
+  private static ComposeRequest createComposeRequest(
+      String name, Map<String, String> objectMetadata, List<StorageObject> sources) {
+    List<ComposeRequest.SourceObjects> sourceObjects = new ArrayList<>(sources.size());
+    for (StorageObject source : sources) {
+      sourceObjects.add(new ComposeRequest.SourceObjects()
+          .setName(source.getName())
+          .setGeneration(source.getGeneration()));
+    }
+    StorageObject destination = new StorageObject()
+        .setName(name)
+        .setContentType(OCTET_STREAM_MEDIA_TYPE)
+        .setMetadata(objectMetadata);
+    return new ComposeRequest()
+        .setSourceObjects(sourceObjects)
+        .setDestination(destination);
+  }
+
+  /**
+   * Deletes all temporary objects created by this channel, logging rather than propagating
+   * failures since the destination object no longer depends on them.
+   */
+  private void deleteTemporaryObjects() {
+    List<StorageObject> toDelete;
+    synchronized (temporaryObjects) {
+      toDelete = new ArrayList<>(temporaryObjects);
+      temporaryObjects.clear();
+    }
+    List<Future<Void>> deletes = new ArrayList<>(toDelete.size());
+    for (final StorageObject object : toDelete) {
+      Callable<Void> delete = new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          gcs.objects().delete(bucketName, object.getName())
+              .setIfGenerationMatch(object.getGeneration())
+              .execute();
+          return null;
+        }
+      };
+      try {
+        deletes.add(threadPool.submit(delete));
+      } catch (RejectedExecutionException ree) {
+        log.warn("Failed to schedule deletion of temporary object gs://%s/%s: %s",
+            bucketName, object.getName(), ree);
+      }
+    }
+    for (int i = 0; i < deletes.size(); i++) {
+      try {
+        deletes.get(i).get();
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        log.warn("Interrupted while deleting temporary objects of gs://%s/%s",
+            bucketName, objectName);
+        return;
+      } catch (ExecutionException ee) {
+        log.warn("Failed to delete temporary object of gs://%s/%s: %s",
+            bucketName, objectName, ee.getCause());
+      }
+    }
+  }
+
+  /**
+   * Waits for all of the given operations and returns their results in order. Failures are
+   * recorded in uploadFailure so that every operation is waited for before the caller throws.
+   */
+  private List<StorageObject> waitForAll(List<Future<StorageObject>> futures)
+      throws IOException {
+    List<StorageObject> results = new ArrayList<>(futures.size());
+    for (Future<StorageObject> future : futures) {
+      try {
+        results.add(future.get());
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(String.format(
+            "Interrupted while waiting for parts of gs://%s/%s", bucketName, objectName));
+      } catch (ExecutionException ee) {
+        if (ee.getCause() instanceof IOException) {
+          recordFailure((IOException) ee.getCause());
+        } else {
+          recordFailure(new IOException(ee.getCause()));
+        }
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Remembers the first failure of a background operation.
+   */
+  private void recordFailure(IOException ioe) {
+    synchronized (temporaryObjects) {
+      if (uploadFailure == null) {
+        uploadFailure = ioe;
+      }
+    }
+  }
+
+  /**
+   * Throws if a background upload or compose operation failed.
+   */
+  private void throwIfUploadFailed() throws IOException {
+    IOException failure = uploadFailure;
+    if (failure != null) {
+      throw new IOException(String.format(
+          "Composite upload of gs://%s/%s failed", bucketName, objectName), failure);
+    }
+  }
+
+  private void throwIfNotOpen() throws IOException {
+    if (!open) {
+      throw new ClosedChannelException();
+    }
+  }
+}
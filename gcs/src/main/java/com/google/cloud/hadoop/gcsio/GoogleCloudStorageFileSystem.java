@@ -24,12 +24,15 @@ import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.channels.WritableByteChannel;
@@ -42,7 +45,10 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -69,6 +75,10 @@ public class GoogleCloudStorageFileSystem {
   // GCS access instance.
   private GoogleCloudStorage gcs;
 
+  // GCS access instance without the caching layers of gcs, for reads which must observe the
+  // current state of GCS, such as those of the generation fast create conditions its upload on.
+  private GoogleCloudStorage uncachedGcs;
+
   // FS options
   private final GoogleCloudStorageFileSystemOptions options;
 
@@ -81,6 +91,24 @@ public class GoogleCloudStorageFileSystem {
           .setDaemon(true)
           .build());
 
+  // Merges parent directory timestamp updates and sends them in periodic batches, or null if
+  // each update is submitted to updateTimestampsExecutor on its own.
+  private ParentTimestampUpdater parentTimestampUpdater;
+
+  // Executor listing the sub-prefixes of a prefix concurrently, or null if parallel listing is
+  // disabled.
+  private ExecutorService parallelListingExecutor;
+
+  // Maximum number of directories remembered as existing by fast create.
+  private static final int KNOWN_DIRECTORIES_MAX_SIZE = 1024;
+
+  // Time for which fast create remembers that a directory exists.
+  private static final long KNOWN_DIRECTORIES_EXPIRY_SECONDS = 60;
+
+  // Directories recently checked or created by mkdirs(), whose existence create() does not check
+  // again, or null if fast create is disabled.
+  private final Cache<URI, Boolean> knownDirectories;
+
   // Comparator used for sorting paths.
   //
   // For some bulk operations, we need to operate on parent directories before
@@ -128,11 +156,36 @@ public class GoogleCloudStorageFileSystem {
     this.options = options;
     this.gcs = new GoogleCloudStorageImpl(options.getCloudStorageOptions(), credential);
 
+    if (options.isMetricsEnabled()) {
+      gcs = new InstrumentedGoogleCloudStorage(gcs);
+    }
+
+    if (options.getRateLimiterOptions().isEnabled()) {
+      gcs = new AdaptiveThrottledGoogleCloudStorage(
+          gcs, AdaptiveRateLimiter.getInstance(options.getRateLimiterOptions()));
+    }
+    this.uncachedGcs = gcs;
+
+    if (options.getStatCacheOptions().isEnabled()) {
+      gcs = new StatCachingGoogleCloudStorage(
+          gcs, StatCache.getInstance(options.getStatCacheOptions()));
+    }
+
+    if (options.isRequestCoalescingEnabled()) {
+      gcs = new CoalescingGoogleCloudStorage(gcs);
+    }
+
     if (options.isMetadataCacheEnabled()) {
       DirectoryListCache resourceCache = null;
       switch (options.getCacheType()) {
         case IN_MEMORY: {
-          resourceCache = InMemoryDirectoryListCache.getInstance();
+          // The cache is shared by the whole JVM; the first bounds and sweep interval configured
+          // are kept.
+          InMemoryDirectoryListCache inMemoryCache =
+              (InMemoryDirectoryListCache) InMemoryDirectoryListCache.getInstance();
+          inMemoryCache.configureLimits(options.getMetadataCacheMaxEntries(),
+              options.getMetadataCacheMaxBytes(), options.getMetadataCacheSweepIntervalMillis());
+          resourceCache = inMemoryCache;
           break;
         }
         case FILESYSTEM_BACKED: {
@@ -147,6 +200,9 @@ public class GoogleCloudStorageFileSystem {
       }
       gcs = new CacheSupplementedGoogleCloudStorage(gcs, resourceCache);
     }
+    this.parallelListingExecutor = createParallelListingExecutor(options);
+    this.knownDirectories = createKnownDirectories(options);
+    this.parentTimestampUpdater = createParentTimestampUpdater(gcs, options);
   }
 
   /**
@@ -163,8 +219,69 @@ public class GoogleCloudStorageFileSystem {
    */
   public GoogleCloudStorageFileSystem(
       GoogleCloudStorage gcs, GoogleCloudStorageFileSystemOptions options) throws IOException {
+    this(gcs, gcs, options);
+  }
+
+  /**
+   * Same as GoogleCloudStorageFileSystem(GoogleCloudStorage, GoogleCloudStorageFileSystemOptions),
+   * with {@code uncachedGcs} reaching the same storage as {@code gcs} without its caches.
+   */
+  @VisibleForTesting
+  GoogleCloudStorageFileSystem(GoogleCloudStorage gcs, GoogleCloudStorage uncachedGcs,
+      GoogleCloudStorageFileSystemOptions options) throws IOException {
     this.gcs = gcs;
+    this.uncachedGcs = uncachedGcs;
     this.options = options;
+    this.parallelListingExecutor = createParallelListingExecutor(options);
+    this.knownDirectories = createKnownDirectories(options);
+    this.parentTimestampUpdater = createParentTimestampUpdater(gcs, options);
+  }
+
+  /**
+   * Creates the updater merging parent directory timestamp updates, or returns null if updates
+   * are not merged.
+   */
+  private static ParentTimestampUpdater createParentTimestampUpdater(
+      GoogleCloudStorage gcs, GoogleCloudStorageFileSystemOptions options) {
+    if (!options.isParentTimestampUpdateCoalescingEnabled()) {
+      return null;
+    }
+    return new ParentTimestampUpdater(gcs,
+        options.getParentTimestampUpdateIntervalMillis(),
+        options.getParentTimestampUpdateMaxPending());
+  }
+
+  /**
+   * Creates the cache of directories known to exist, or returns null if fast create is disabled.
+   */
+  private static Cache<URI, Boolean> createKnownDirectories(
+      GoogleCloudStorageFileSystemOptions options) {
+    if (!options.isFastCreateEnabled()) {
+      return null;
+    }
+    return CacheBuilder.newBuilder()
+        .maximumSize(KNOWN_DIRECTORIES_MAX_SIZE)
+        .expireAfterWrite(KNOWN_DIRECTORIES_EXPIRY_SECONDS, TimeUnit.SECONDS)
+        .build();
+  }
+
+  /**
+   * Creates the executor for parallel listing, or returns null if it is disabled.
+   */
+  private static ExecutorService createParallelListingExecutor(
+      GoogleCloudStorageFileSystemOptions options) {
+    if (!options.isParallelListingEnabled()) {
+      return null;
+    }
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        options.getParallelListingThreads(), options.getParallelListingThreads(),
+        10L /* keepAliveTime */, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactoryBuilder()
+            .setNameFormat("gcsfs-parallel-listing-%d")
+            .setDaemon(true)
+            .build());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
   }
 
   @VisibleForTesting
@@ -172,6 +289,24 @@ public class GoogleCloudStorageFileSystem {
     this.updateTimestampsExecutor = executor;
   }
 
+  @VisibleForTesting
+  void setParentTimestampUpdater(ParentTimestampUpdater updater) {
+    this.parentTimestampUpdater = updater;
+  }
+
+  /**
+   * Returns the updater merging parent directory timestamp updates, whose counters tell how many
+   * updates were merged and dropped, or null if updates are not merged.
+   */
+  public ParentTimestampUpdater getParentTimestampUpdater() {
+    return parentTimestampUpdater;
+  }
+
+  @VisibleForTesting
+  void setParallelListingExecutor(ExecutorService executor) {
+    this.parallelListingExecutor = executor;
+  }
+
 
   /**
    * Creates and opens an object for writing.
@@ -208,6 +343,14 @@ public class GoogleCloudStorageFileSystem {
     Preconditions.checkArgument(!FileInfo.isDirectoryPath(path),
         "Cannot create a file whose name looks like a directory.");
 
+    if (this.options.isInferImplicitDirectoriesEnabled()) {
+      return createWithImplicitParents(path, options);
+    }
+
+    if (knownDirectories != null) {
+      return createWithBatchedChecks(path, options);
+    }
+
     // Check if a directory of that name exists.
     URI dirPath = FileInfo.convertToDirectoryPath(path);
     if (exists(dirPath)) {
@@ -223,6 +366,82 @@ public class GoogleCloudStorageFileSystem {
     return createInternal(path, options);
   }
 
+  /**
+   * Fast create: performs the checks of create(URI, CreateFileOptions) with a single batch of
+   * metadata requests instead of one round trip per check, skips the parent directories checked
+   * recently, and passes the generation of the existing object to GCS so that it can be written
+   * with a precondition right away, without a marker object. The batch bypasses the metadata
+   * caches so that the generation is current; GCS still retries writes whose precondition fails
+   * when it holds their data.
+   */
+  private WritableByteChannel createWithBatchedChecks(URI path, CreateFileOptions options)
+      throws IOException {
+    URI parentPath = getParentPath(path);
+    boolean checkParents = parentPath != null && knownDirectories.getIfPresent(parentPath) == null;
+
+    List<URI> pathsToCheck = new ArrayList<>();
+    pathsToCheck.add(path);
+    pathsToCheck.add(FileInfo.convertToDirectoryPath(path));
+    if (checkParents) {
+      pathsToCheck.addAll(getMkdirsSubPaths(validatePathAndGetId(parentPath, true)));
+    }
+    List<StorageResourceId> idsToCheck = new ArrayList<>(pathsToCheck.size());
+    for (URI pathToCheck : pathsToCheck) {
+      idsToCheck.add(validatePathAndGetId(pathToCheck, true));
+    }
+    List<FileInfo> fileInfos = FileInfo.fromItemInfos(uncachedGcs.getItemInfos(idsToCheck));
+
+    // Check if a directory of that name exists.
+    if (fileInfos.get(1).exists()) {
+      throw new IOException("A directory with that name exists: " + path);
+    }
+
+    // Ensure that parent directories exist.
+    if (checkParents) {
+      createMissingDirectories(new ArrayList<>(fileInfos.subList(2, fileInfos.size())));
+      knownDirectories.put(parentPath, Boolean.TRUE);
+    }
+
+    FileInfo fileInfo = fileInfos.get(0);
+    long contentGeneration =
+        fileInfo.exists() ? fileInfo.getItemInfo().getContentGeneration() : 0L;
+    return createInternal(path, options, contentGeneration);
+  }
+
+  /**
+   * Create for when directories exist by prefix: checks, with a single batch of metadata
+   * requests, that no directory of the same name and no file named like one of the parent
+   * directories exists, but creates no parent directories, which will exist implicitly once the
+   * object is written.
+   */
+  private WritableByteChannel createWithImplicitParents(URI path, CreateFileOptions options)
+      throws IOException {
+    StorageResourceId resourceId = validatePathAndGetId(path, false);
+    List<StorageResourceId> idsToCheck = new ArrayList<>();
+    idsToCheck.add(FileInfo.convertToDirectoryPath(resourceId));
+    for (String subdir : getSubDirs(resourceId.getObjectName())) {
+      idsToCheck.add(new StorageResourceId(
+          resourceId.getBucketName(), subdir.substring(0, subdir.length() - 1)));
+    }
+    List<GoogleCloudStorageItemInfo> itemInfos = idsToCheck.size() == 1
+        ? ImmutableList.of(gcs.getItemInfo(idsToCheck.get(0)))
+        : gcs.getItemInfos(idsToCheck);
+
+    // Check if a directory of that name exists.
+    if (inferImplicitDirectory(itemInfos.get(0)).exists()) {
+      throw new IOException("A directory with that name exists: " + path);
+    }
+
+    // Check that no parent directory exists as a file.
+    for (GoogleCloudStorageItemInfo itemInfo : itemInfos.subList(1, itemInfos.size())) {
+      if (itemInfo.exists()) {
+        throw new IOException("Cannot create directories because of existing file: "
+            + getPath(itemInfo.getBucketName(), itemInfo.getObjectName()));
+      }
+    }
+    return createInternal(path, options);
+  }
+
   /**
    * Creates and opens an object for writing.
    * If the object already exists, it is deleted.
@@ -233,10 +452,21 @@ public class GoogleCloudStorageFileSystem {
    */
   WritableByteChannel createInternal(URI path, CreateFileOptions options)
       throws IOException {
+    return createInternal(path, options, null);
+  }
+
+  /**
+   * Same as createInternal(URI, CreateFileOptions), with the content generation the object is
+   * expected to have, or null if unknown.
+   */
+  private WritableByteChannel createInternal(
+      URI path, CreateFileOptions options, Long expectedContentGeneration)
+      throws IOException {
 
     // Validate the given path. false == do not allow empty object name.
     StorageResourceId resourceId = validatePathAndGetId(path, false);
-    WritableByteChannel channel = gcs.create(resourceId, objectOptionsFromFileOptions(options));
+    WritableByteChannel channel = gcs.create(resourceId, new CreateObjectOptions(
+        options.overwriteExisting(), options.getAttributes(), expectedContentGeneration));
     tryUpdateTimestampsForParentDirectories(ImmutableList.of(path), ImmutableList.<URI>of());
     return channel;
   }
@@ -251,15 +481,36 @@ public class GoogleCloudStorageFileSystem {
    */
   public SeekableReadableByteChannel open(URI path)
       throws IOException {
+    log.debug("open(%s)", path);
+    return gcs.open(getOpenResourceId(path));
+  }
 
+  /**
+   * Opens an object for reading with the given read options.
+   *
+   * @param path Object full path of the form gs://bucket/object-path.
+   * @param readOptions Options controlling how the object is read.
+   * @return A channel for reading from the given object.
+   * @throws FileNotFoundException if the given path does not exist; with fast failing on not
+   *     found disabled in readOptions, possibly only on the first read or size() call.
+   * @throws IOException if object exists but cannot be opened.
+   */
+  public SeekableReadableByteChannel open(URI path, GoogleCloudStorageReadOptions readOptions)
+      throws IOException {
     log.debug("open(%s)", path);
+    return gcs.open(getOpenResourceId(path), readOptions);
+  }
+
+  /**
+   * Validates that the given path names an object that can be opened for reading.
+   */
+  private StorageResourceId getOpenResourceId(URI path) {
     Preconditions.checkNotNull(path);
     Preconditions.checkArgument(!FileInfo.isDirectoryPath(path),
         "Cannot open a directory for reading: " + path);
 
     // Validate the given path. false == do not allow empty object name.
-    StorageResourceId resourceId = validatePathAndGetId(path, false);
-    return gcs.open(resourceId);
+    return validatePathAndGetId(path, false);
   }
 
   /**
@@ -297,9 +548,14 @@ public class GoogleCloudStorageFileSystem {
     List<URI> itemsToDelete = new ArrayList<>();
     List<URI> bucketsToDelete = new ArrayList<>();
 
+    // Content generations of the items to delete, where known.
+    Map<URI, Long> contentGenerations = new HashMap<>();
+
     // Delete sub-items if it is a directory.
     if (fileInfo.isDirectory()) {
-      List<URI> subpaths = listFileNames(fileInfo, recursive);
+      List<URI> subpaths = recursive
+          ? listAllFileNames(fileInfo, contentGenerations)
+          : listFileNames(fileInfo, false);
       if (recursive) {
         itemsToDelete.addAll(subpaths);
       } else {
@@ -313,16 +569,50 @@ public class GoogleCloudStorageFileSystem {
       bucketsToDelete.add(fileInfo.getPath());
     } else {
       itemsToDelete.add(fileInfo.getPath());
+      putContentGeneration(contentGenerations, fileInfo.getPath(), fileInfo.getItemInfo());
     }
 
-    deleteInternal(itemsToDelete, bucketsToDelete);
+    deleteInternal(itemsToDelete, contentGenerations, bucketsToDelete);
+    if (options.isInferImplicitDirectoriesEnabled()) {
+      keepParentDirectory(fileInfo.getPath());
+    }
+  }
+
+  /**
+   * Makes sure that the parent directory of the deleted or renamed item at the given path still
+   * exists, when directories exist by prefix, by writing its placeholder object if the item was
+   * the last one in it.
+   */
+  private void keepParentDirectory(URI path)
+      throws IOException {
+    URI parentPath = getParentPath(path);
+    if (parentPath == null) {
+      return;
+    }
+    StorageResourceId parentId = validatePathAndGetId(parentPath, true);
+    if (!parentId.isStorageObject()) {
+      return;
+    }
+    parentId = FileInfo.convertToDirectoryPath(parentId);
+    if (gcs.listObjectNames(parentId.getBucketName(), parentId.getObjectName(), null, 1).isEmpty()
+        && !gcs.getItemInfo(parentId).exists()) {
+      log.debug("keepParentDirectory: creating placeholder for emptied directory %s", parentId);
+      gcs.createEmptyObject(parentId);
+    }
   }
 
   /**
-   * Deletes all items in the given path list followed by all bucket items.
+   * Deletes all items in the given path list followed by all bucket items. Items with a content
+   * generation in contentGenerations are deleted without first fetching their metadata.
    */
-  private void deleteInternal(List<URI> paths, List<URI> bucketPaths)
+  private void deleteInternal(List<URI> paths, Map<URI, Long> contentGenerations,
+      List<URI> bucketPaths)
       throws IOException {
+    // Directories created or checked by fast create may be among the deleted items.
+    if (knownDirectories != null) {
+      knownDirectories.invalidateAll();
+    }
+
     // TODO(user): We might need to separate out children into separate batches from parents to
     // avoid deleting a parent before somehow failing to delete a child.
 
@@ -335,11 +625,13 @@ public class GoogleCloudStorageFileSystem {
 
     if (paths.size() > 0) {
       List<StorageResourceId> objectsToDelete = new ArrayList<>();
+      List<Long> objectGenerations = new ArrayList<>();
       for (URI path : paths) {
         StorageResourceId resourceId = validatePathAndGetId(path, false);
         objectsToDelete.add(resourceId);
+        objectGenerations.add(contentGenerations.get(path));
       }
-      gcs.deleteObjects(objectsToDelete);
+      gcs.deleteObjects(objectsToDelete, objectGenerations);
       // Any path that was deleted, we should update the parent except for parents we also deleted
       tryUpdateTimestampsForParentDirectories(paths, paths);
     }
@@ -376,6 +668,10 @@ public class GoogleCloudStorageFileSystem {
   public void repairDirs(List<URI> exactDirPaths)
       throws IOException{
     log.debug("repairDirs(%s)", exactDirPaths);
+    if (options.isInferImplicitDirectoriesEnabled()) {
+      // Implicit directories already exist by prefix, so there is nothing to repair.
+      return;
+    }
     List<StorageResourceId> dirsToCreate = new ArrayList<>();
     for (URI dirUri : exactDirPaths) {
       StorageResourceId resourceId = validatePathAndGetId(dirUri, true);
@@ -430,6 +726,23 @@ public class GoogleCloudStorageFileSystem {
       path = getPath(resourceId.getBucketName(), resourceId.getObjectName());
     }
 
+    if (options.isInferImplicitDirectoriesEnabled()) {
+      createDirectoryIfEmpty(resourceId, getFileInfosRaw(getMkdirsSubPaths(resourceId)));
+      return;
+    }
+
+    // Get status of each intermediate path.
+    createMissingDirectories(getFileInfos(getMkdirsSubPaths(resourceId)));
+    if (knownDirectories != null) {
+      knownDirectories.put(
+          getPath(resourceId.getBucketName(), resourceId.getObjectName(), true), Boolean.TRUE);
+    }
+  }
+
+  /**
+   * Returns the paths whose status mkdirs() checks before creating the given directory.
+   */
+  private List<URI> getMkdirsSubPaths(StorageResourceId resourceId) {
     // Create a list of all intermediate paths.
     // for example,
     // gs://foo/bar/zoo/ => (gs://foo/, gs://foo/bar/, gs://foo/bar/zoo/)
@@ -460,8 +773,44 @@ public class GoogleCloudStorageFileSystem {
     subDirPaths.add(bucketPath);
     log.debug("mkdirs: sub-path: %s", bucketPath);
 
-    // Get status of each intermediate path.
-    List<FileInfo> subDirInfos = getFileInfos(subDirPaths);
+    return subDirPaths;
+  }
+
+  /**
+   * mkdirs() for when directories exist by prefix: given the statuses of the paths returned by
+   * getMkdirsSubPaths(), without conversion to directory paths, creates the bucket if missing,
+   * and writes the placeholder object of the given directory only if it would otherwise be empty.
+   * The parent directories exist implicitly through it.
+   */
+  private void createDirectoryIfEmpty(StorageResourceId dirId, List<FileInfo> subDirInfos)
+      throws IOException {
+    boolean dirExists = false;
+    for (FileInfo fileInfo : subDirInfos) {
+      StorageResourceId resourceId = fileInfo.getItemInfo().getResourceId();
+      if (fileInfo.exists() && !fileInfo.isDirectory()) {
+        throw new IOException(
+            "Cannot create directories because of existing file: " + fileInfo.getPath());
+      }
+      if (resourceId.isBucket() && !fileInfo.exists()) {
+        gcs.create(resourceId.getBucketName());
+      }
+      if (resourceId.equals(dirId)) {
+        dirExists = fileInfo.exists();
+      }
+    }
+
+    if (dirId.isStorageObject() && !dirExists
+        && gcs.listObjectNames(dirId.getBucketName(), dirId.getObjectName(), null, 1).isEmpty()) {
+      gcs.createEmptyObject(dirId);
+    }
+  }
+
+  /**
+   * Creates the missing directories among the given statuses of the paths returned by
+   * getMkdirsSubPaths().
+   */
+  private void createMissingDirectories(List<FileInfo> subDirInfos)
+      throws IOException {
 
     // Each intermediate path must satisfy one of the following conditions:
     // -- it does not exist or
@@ -657,6 +1006,9 @@ public class GoogleCloudStorageFileSystem {
     }
 
     renameInternal(srcInfo, dst);
+    if (options.isInferImplicitDirectoriesEnabled()) {
+      keepParentDirectory(src);
+    }
   }
 
   /**
@@ -677,16 +1029,21 @@ public class GoogleCloudStorageFileSystem {
     // Mapping from each src to its respective dst.
     Map<URI, URI> dstItemNames = new HashMap<>();
 
+    // Content generations of the src items, where known, for deleting them once copied.
+    Map<URI, Long> srcGenerations = new HashMap<>();
+
     if (srcInfo.isDirectory()) {
-      srcItemNames = listFileNames(srcInfo, true);
+      srcItemNames = listAllFileNames(srcInfo, srcGenerations);
 
       // Sort src items so that parent directories appear before their children.
       // That allows us to copy parent directories before we copy their children.
       Collections.sort(srcItemNames, pathComparator);
 
-      // Create the destination directory.
+      // Create the destination directory, unless it will exist implicitly through the copies.
       dst = FileInfo.convertToDirectoryPath(dst);
-      mkdir(dst);
+      if (!options.isInferImplicitDirectoriesEnabled() || srcItemNames.isEmpty()) {
+        mkdir(dst);
+      }
 
       // Create a list of sub-items to copy.
       String prefix = srcInfo.getPath().toString();
@@ -699,6 +1056,7 @@ public class GoogleCloudStorageFileSystem {
     } else {
       srcItemNames.add(srcInfo.getPath());
       dstItemNames.put(srcInfo.getPath(), dst);
+      putContentGeneration(srcGenerations, srcInfo.getPath(), srcInfo.getItemInfo());
     }
     Preconditions.checkState(srcItemNames.size() == dstItemNames.size(),
         "srcItemNames.size() != dstItemNames.size(), '%s' vs '%s'", srcItemNames, dstItemNames);
@@ -745,11 +1103,52 @@ public class GoogleCloudStorageFileSystem {
         // If src is a directory then srcItemNames does not contain its own name,
         // therefore add it to the list before we delete items in the list.
         srcItemNames.add(srcInfo.getPath());
+        putContentGeneration(srcGenerations, srcInfo.getPath(), srcInfo.getItemInfo());
       }
     }
 
     // Delete the items we successfully copied.
-    deleteInternal(srcItemNames, bucketsToDelete);
+    deleteInternal(srcItemNames, srcGenerations, bucketsToDelete);
+  }
+
+  /**
+   * Equivalent to {@code listFileNames(fileInfo, true)}, except that it also records the content
+   * generation of each listed object in contentGenerations, so that the objects can later be
+   * deleted without first fetching their metadata.
+   */
+  private List<URI> listAllFileNames(FileInfo fileInfo, Map<URI, Long> contentGenerations)
+      throws IOException {
+    if (!fileInfo.isDirectory() || !fileInfo.exists() || fileInfo.isGlobalRoot()) {
+      return listFileNames(fileInfo, true);
+    }
+    log.debug("listAllFileNames(%s)", fileInfo.getPath());
+
+    // A null delimiter returns all objects with the given prefix, without prefixes.
+    String bucketName = fileInfo.getItemInfo().getBucketName();
+    ListPageIterator<GoogleCloudStorageItemInfo> pages = gcs.listObjectInfoPages(
+        bucketName, fileInfo.getItemInfo().getObjectName(), null);
+
+    List<URI> paths = new ArrayList<>();
+    while (pages.hasNext()) {
+      for (GoogleCloudStorageItemInfo itemInfo : pages.next()) {
+        URI childPath = getPath(bucketName, itemInfo.getObjectName());
+        paths.add(childPath);
+        putContentGeneration(contentGenerations, childPath, itemInfo);
+      }
+    }
+    return paths;
+  }
+
+  /**
+   * Records the content generation of the given item, if known; item infos which are not
+   * backed by GCS object metadata carry a generation of 0.
+   */
+  private static void putContentGeneration(
+      Map<URI, Long> contentGenerations, URI path, GoogleCloudStorageItemInfo itemInfo) {
+    if (itemInfo.exists() && itemInfo.getResourceId().isStorageObject()
+        && itemInfo.getContentGeneration() != 0) {
+      contentGenerations.put(path, itemInfo.getContentGeneration());
+    }
   }
 
   /**
@@ -839,6 +1238,11 @@ public class GoogleCloudStorageFileSystem {
     log.debug("repairPossibleImplicitDirectory(%s)", path);
     Preconditions.checkNotNull(path);
 
+    if (options.isInferImplicitDirectoriesEnabled()) {
+      // Implicit directories already exist by prefix, so there is nothing to repair.
+      return false;
+    }
+
     // First, obtain information about the given path.
     FileInfo pathInfo = getFileInfo(path);
 
@@ -907,14 +1311,141 @@ public class GoogleCloudStorageFileSystem {
     StorageResourceId prefixId = validatePathAndGetId(prefix, true);
     Preconditions.checkState(
         !prefixId.isRoot(), "Prefix must not be global root, got '%s'", prefix);
-    // Use 'null' for delimiter to get full 'recursive' listing.
-    List<GoogleCloudStorageItemInfo> itemInfos = gcs.listObjectInfo(
-        prefixId.getBucketName(), prefixId.getObjectName(), null);
-    List<FileInfo> fileInfos = FileInfo.fromItemInfos(itemInfos);
+    List<FileInfo> fileInfos = new ArrayList<>();
+    if (parallelListingExecutor != null) {
+      fileInfos.addAll(FileInfo.fromItemInfos(listAllItemInfoForPrefixInParallel(prefixId)));
+    } else {
+      // Use 'null' for delimiter to get full 'recursive' listing; converting each page as it
+      // arrives avoids holding the listed item infos of the whole prefix at once.
+      ListPageIterator<FileInfo> pages = listAllFileInfoForPrefixPages(prefix);
+      while (pages.hasNext()) {
+        fileInfos.addAll(pages.next());
+      }
+    }
     Collections.sort(fileInfos, fileInfoPathComparator);
     return fileInfos;
   }
 
+  /**
+   * Lists all objects under the given prefix by splitting it into the sub-prefixes found by a
+   * delimited listing of its top level, and listing the sub-prefixes concurrently.
+   *
+   * GCS lists the objects under a prefix page by page, each page request depending on the
+   * previous one, whereas the sub-prefixes are disjoint key ranges which can be listed
+   * independently. The sub-prefixes are taken from the names of the delimited listing as GCS
+   * returns them, so that every sub-prefix is listed whether or not it has a directory object,
+   * and nothing is written to repair it. The metadata of the top-level objects, including the
+   * directory objects of the sub-prefixes which their listings leave out, is fetched in a batch
+   * while the sub-prefixes are listed.
+   */
+  private List<GoogleCloudStorageItemInfo> listAllItemInfoForPrefixInParallel(
+      StorageResourceId prefixId)
+      throws IOException {
+    final String bucketName = prefixId.getBucketName();
+    final String objectNamePrefix = prefixId.getObjectName();
+    List<String> subPrefixes = new ArrayList<>();
+    List<StorageResourceId> topLevelIds = new ArrayList<>();
+    for (String objectName : gcs.listObjectNames(
+        bucketName, objectNamePrefix, GoogleCloudStorage.PATH_DELIMITER)) {
+      if (objectName.endsWith(GoogleCloudStorage.PATH_DELIMITER)) {
+        subPrefixes.add(objectName);
+      }
+      topLevelIds.add(new StorageResourceId(bucketName, objectName));
+    }
+    if (subPrefixes.isEmpty()
+        || topLevelIds.size() > options.getCloudStorageOptions().getMaxListItemsPerCall()) {
+      // Either the top level is all there is, or fetching its metadata object by object costs
+      // more than listing the prefix a page at a time.
+      log.debug("Listing '%s' sequentially", prefixId);
+      return gcs.listObjectInfo(bucketName, objectNamePrefix, null);
+    }
+
+    log.debug("Listing %d sub-prefixes of '%s' in parallel", subPrefixes.size(), prefixId);
+    List<Future<List<GoogleCloudStorageItemInfo>>> shards = new ArrayList<>();
+    try {
+      for (final String subPrefix : subPrefixes) {
+        shards.add(parallelListingExecutor.submit(
+            new Callable<List<GoogleCloudStorageItemInfo>>() {
+              @Override
+              public List<GoogleCloudStorageItemInfo> call() throws IOException {
+                return gcs.listObjectInfo(bucketName, subPrefix, null);
+              }
+            }));
+      }
+      List<GoogleCloudStorageItemInfo> itemInfos = new ArrayList<>();
+      for (GoogleCloudStorageItemInfo itemInfo : gcs.getItemInfos(topLevelIds)) {
+        // Sub-prefixes without a directory object are implicit directories, which a recursive
+        // listing does not return either.
+        if (itemInfo.exists()) {
+          itemInfos.add(itemInfo);
+        }
+      }
+      for (Future<List<GoogleCloudStorageItemInfo>> shard : shards) {
+        itemInfos.addAll(awaitShard(shard, prefixId));
+      }
+      return itemInfos;
+    } finally {
+      // Stop listing the remaining sub-prefixes if one of them failed.
+      for (Future<List<GoogleCloudStorageItemInfo>> shard : shards) {
+        shard.cancel(true);
+      }
+    }
+  }
+
+  private static List<GoogleCloudStorageItemInfo> awaitShard(
+      Future<List<GoogleCloudStorageItemInfo>> shard, StorageResourceId prefixId)
+      throws IOException {
+    try {
+      return shard.get();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(
+          String.format("Interrupted while listing '%s'", prefixId));
+    } catch (ExecutionException ee) {
+      if (ee.getCause() instanceof IOException) {
+        throw (IOException) ee.getCause();
+      }
+      throw new IOException(ee.getCause());
+    }
+  }
+
+  /**
+   * Same as {@link #listAllFileInfoForPrefix(URI)}, except that the results are returned one page
+   * at a time as they are listed. Each page is sorted by path, but the sequence of pages is not:
+   * a metadata cache may add a final page of cached entries which the listing did not return.
+   */
+  public ListPageIterator<FileInfo> listAllFileInfoForPrefixPages(URI prefix)
+      throws IOException {
+    log.debug("listAllFileInfoForPrefixPages(%s)", prefix);
+    Preconditions.checkNotNull(prefix);
+
+    StorageResourceId prefixId = validatePathAndGetId(prefix, true);
+    Preconditions.checkState(
+        !prefixId.isRoot(), "Prefix must not be global root, got '%s'", prefix);
+    return toSortedFileInfoPages(
+        gcs.listObjectInfoPages(prefixId.getBucketName(), prefixId.getObjectName(), null));
+  }
+
+  /**
+   * Converts each page of item infos into a page of FileInfos sorted by path.
+   */
+  private static ListPageIterator<FileInfo> toSortedFileInfoPages(
+      final ListPageIterator<GoogleCloudStorageItemInfo> itemInfoPages) {
+    return new ListPageIterator<FileInfo>() {
+      @Override
+      public boolean hasNext() throws IOException {
+        return itemInfoPages.hasNext();
+      }
+
+      @Override
+      public List<FileInfo> next() throws IOException {
+        List<FileInfo> fileInfos = FileInfo.fromItemInfos(itemInfoPages.next());
+        Collections.sort(fileInfos, fileInfoPathComparator);
+        return fileInfos;
+      }
+    };
+  }
+
   /**
    * See {@link #listFileInfo(URI, boolean)} for behavior. Calls with default value of
    * enableAutoRepair == false.
@@ -947,21 +1478,86 @@ public class GoogleCloudStorageFileSystem {
     log.debug("listFileInfo(%s, %s)", path, enableAutoRepair);
     Preconditions.checkNotNull(path);
 
+    // If the non-directory object exists, return a single-element list directly.
+    FileInfo dirInfo = getFileOrDirectoryToList(path, enableAutoRepair);
+    if (!dirInfo.isDirectory()) {
+      List<FileInfo> listedInfo = new ArrayList<>();
+      listedInfo.add(dirInfo);
+      return listedInfo;
+    }
+
+    List<GoogleCloudStorageItemInfo> itemInfos;
+    if (dirInfo.isGlobalRoot()) {
+      itemInfos = gcs.listBucketInfo();
+    } else {
+      itemInfos = gcs.listObjectInfo(
+          dirInfo.getItemInfo().getBucketName(),
+          dirInfo.getItemInfo().getObjectName(),
+          GoogleCloudStorage.PATH_DELIMITER);
+    }
+    List<FileInfo> fileInfos = FileInfo.fromItemInfos(itemInfos);
+    Collections.sort(fileInfos, fileInfoPathComparator);
+    return fileInfos;
+  }
+
+  /**
+   * Same as {@link #listFileInfo(URI, boolean)}, except that the information about the children
+   * of a directory is returned one page at a time as it is listed, so that callers can process
+   * the first children before the whole directory has been listed. Each page is sorted by path,
+   * but the sequence of pages is not: a metadata cache may add a final page of cached entries
+   * which the listing did not return.
+   *
+   * @param path Given path.
+   * @param enableAutoRepair if true, attempt to repair implicit directories when detected.
+   * @return Pages of information about a file or children of a directory.
+   * @throws FileNotFoundException if the given path does not exist.
+   * @throws IOException
+   */
+  public ListPageIterator<FileInfo> listFileInfoPages(URI path, boolean enableAutoRepair)
+      throws IOException {
+    log.debug("listFileInfoPages(%s, %s)", path, enableAutoRepair);
+    Preconditions.checkNotNull(path);
+
+    FileInfo dirInfo = getFileOrDirectoryToList(path, enableAutoRepair);
+    if (!dirInfo.isDirectory()) {
+      List<FileInfo> listedInfo = new ArrayList<>();
+      listedInfo.add(dirInfo);
+      return ListPageIterators.singlePage(listedInfo);
+    }
+
+    if (dirInfo.isGlobalRoot()) {
+      return toSortedFileInfoPages(ListPageIterators.singlePage(gcs.listBucketInfo()));
+    }
+    return toSortedFileInfoPages(gcs.listObjectInfoPages(
+        dirInfo.getItemInfo().getBucketName(),
+        dirInfo.getItemInfo().getObjectName(),
+        GoogleCloudStorage.PATH_DELIMITER));
+  }
+
+  /**
+   * Returns the FileInfo of the existing non-directory object at the given path if any, and
+   * otherwise the FileInfo of the existing directory at the given path, repairing it first if it
+   * is implicit and enableAutoRepair is true.
+   *
+   * @throws FileNotFoundException if neither exists.
+   */
+  private FileInfo getFileOrDirectoryToList(URI path, boolean enableAutoRepair)
+      throws IOException {
     URI dirPath = FileInfo.convertToDirectoryPath(path);
     List<FileInfo> baseAndDirInfos = getFileInfosRaw(ImmutableList.of(path, dirPath));
     Preconditions.checkState(
         baseAndDirInfos.size() == 2, "Expected baseAndDirInfos.size() == 2, got %s",
         baseAndDirInfos.size());
 
-    // If the non-directory object exists, return a single-element list directly.
     if (!baseAndDirInfos.get(0).isDirectory() && baseAndDirInfos.get(0).exists()) {
-      List<FileInfo> listedInfo = new ArrayList<>();
-      listedInfo.add(baseAndDirInfos.get(0));
-      return listedInfo;
+      return baseAndDirInfos.get(0);
     }
 
     // The second element is definitely a directory-path FileInfo.
     FileInfo dirInfo = baseAndDirInfos.get(1);
+    if (!dirInfo.exists() && options.isInferImplicitDirectoriesEnabled()) {
+      dirInfo = FileInfo.fromItemInfo(inferImplicitDirectory(dirInfo.getItemInfo()));
+    }
     if (!dirInfo.exists() && enableAutoRepair) {
       dirInfo = repairPossibleImplicitDirectory(dirInfo);
     }
@@ -970,19 +1566,7 @@ public class GoogleCloudStorageFileSystem {
     if (!dirInfo.exists()) {
       throw getFileNotFoundException(path);
     }
-
-    List<GoogleCloudStorageItemInfo> itemInfos;
-    if (dirInfo.isGlobalRoot()) {
-      itemInfos = gcs.listBucketInfo();
-    } else {
-      itemInfos = gcs.listObjectInfo(
-          dirInfo.getItemInfo().getBucketName(),
-          dirInfo.getItemInfo().getObjectName(),
-          GoogleCloudStorage.PATH_DELIMITER);
-    }
-    List<FileInfo> fileInfos = FileInfo.fromItemInfos(itemInfos);
-    Collections.sort(fileInfos, fileInfoPathComparator);
-    return fileInfos;
+    return dirInfo;
   }
 
   /**
@@ -1001,9 +1585,28 @@ public class GoogleCloudStorageFileSystem {
     // One should be able to get info about top level directory (== bucket),
     // therefore we allow object name to be empty.
     StorageResourceId resourceId = validatePathAndGetId(path, true);
+    GoogleCloudStorageItemInfo itemInfo;
+    if (options.isBatchDirectoryLookupEnabled()) {
+      itemInfo = getItemInfosWithDirectories(ImmutableList.of(resourceId)).get(0);
+    } else {
+      itemInfo = getItemInfoWithDirectory(path, resourceId);
+    }
+    if (options.isInferImplicitDirectoriesEnabled()) {
+      itemInfo = inferImplicitDirectory(itemInfo);
+    }
+    FileInfo fileInfo = FileInfo.fromItemInfo(itemInfo);
+    log.debug("getFileInfo: %s", fileInfo);
+    return fileInfo;
+  }
+
+  /**
+   * Fetches the info of the given resourceId, then, if it does not exist, the info of the
+   * directory of the same name; returns the latter if it exists, else the former.
+   */
+  private GoogleCloudStorageItemInfo getItemInfoWithDirectory(
+      URI path, StorageResourceId resourceId)
+      throws IOException {
     GoogleCloudStorageItemInfo itemInfo = gcs.getItemInfo(resourceId);
-    // TODO(user): Here and below, just request foo and foo/ simultaneously in the same batch
-    // request and choose the relevant one.
     if (!itemInfo.exists() && !FileInfo.isDirectory(itemInfo)) {
       // If the given file does not exist, see if a directory of
       // the same name exists.
@@ -1018,9 +1621,28 @@ public class GoogleCloudStorageFileSystem {
         itemInfo = newItemInfo;
       }
     }
-    FileInfo fileInfo = FileInfo.fromItemInfo(itemInfo);
-    log.debug("getFileInfo: %s", fileInfo);
-    return fileInfo;
+    return itemInfo;
+  }
+
+  /**
+   * Returns the given info if it exists or is not that of an object; otherwise lists a single
+   * object whose name starts with the directory path of the object and, if there is one, returns
+   * the info of the directory it implies, with creation time 0 and no metadata. Directories which
+   * exist only by the prefix of the objects they contain are found this way.
+   */
+  private GoogleCloudStorageItemInfo inferImplicitDirectory(GoogleCloudStorageItemInfo itemInfo)
+      throws IOException {
+    if (itemInfo.exists() || !itemInfo.getResourceId().isStorageObject()) {
+      return itemInfo;
+    }
+    StorageResourceId dirId = FileInfo.convertToDirectoryPath(itemInfo.getResourceId());
+    List<String> objectNames =
+        gcs.listObjectNames(dirId.getBucketName(), dirId.getObjectName(), null, 1);
+    if (objectNames.isEmpty()) {
+      return itemInfo;
+    }
+    log.debug("inferImplicitDirectory: %s exists as the prefix of %s", dirId, objectNames);
+    return new GoogleCloudStorageItemInfo(dirId, 0, 0, null, null);
   }
 
   /**
@@ -1042,6 +1664,11 @@ public class GoogleCloudStorageFileSystem {
       resourceIdsForPaths.add(validatePathAndGetId(path, true));
     }
 
+    if (options.isBatchDirectoryLookupEnabled()) {
+      return FileInfo.fromItemInfos(
+          inferImplicitDirectories(getItemInfosWithDirectories(resourceIdsForPaths)));
+    }
+
     // Call the bulk getItemInfos method to retrieve per-id info.
     List<GoogleCloudStorageItemInfo> itemInfos = gcs.getItemInfos(resourceIdsForPaths);
 
@@ -1081,7 +1708,61 @@ public class GoogleCloudStorageFileSystem {
     }
 
     // Finally, plug each GoogleCloudStorageItemInfo into a respective FileInfo before returning.
-    return FileInfo.fromItemInfos(itemInfos);
+    return FileInfo.fromItemInfos(inferImplicitDirectories(itemInfos));
+  }
+
+  /**
+   * Applies inferImplicitDirectory() to each of the given infos, if enabled.
+   */
+  private List<GoogleCloudStorageItemInfo> inferImplicitDirectories(
+      List<GoogleCloudStorageItemInfo> itemInfos)
+      throws IOException {
+    if (!options.isInferImplicitDirectoriesEnabled()) {
+      return itemInfos;
+    }
+    List<GoogleCloudStorageItemInfo> inferredInfos = new ArrayList<>(itemInfos.size());
+    for (GoogleCloudStorageItemInfo itemInfo : itemInfos) {
+      inferredInfos.add(inferImplicitDirectory(itemInfo));
+    }
+    return inferredInfos;
+  }
+
+  /**
+   * Fetches the infos of the given resourceIds together with those of the directories of the same
+   * names in a single bulk request, so that resolving a directory or a missing path does not wait
+   * for a second round trip. Returns, for each resourceId, its info if it exists, else the info of
+   * the directory if that exists, else the not-found info of the resourceId.
+   */
+  private List<GoogleCloudStorageItemInfo> getItemInfosWithDirectories(
+      List<StorageResourceId> resourceIds)
+      throws IOException {
+    List<StorageResourceId> idsToFetch = new ArrayList<>(resourceIds);
+    // Index into idsToFetch of the directory of each resourceId, or -1 if it has none.
+    int[] directoryIndexes = new int[resourceIds.size()];
+    for (int i = 0; i < resourceIds.size(); ++i) {
+      StorageResourceId resourceId = resourceIds.get(i);
+      StorageResourceId directoryId = FileInfo.convertToDirectoryPath(resourceId);
+      if (directoryId.equals(resourceId)) {
+        directoryIndexes[i] = -1;
+      } else {
+        directoryIndexes[i] = idsToFetch.size();
+        idsToFetch.add(directoryId);
+      }
+    }
+
+    List<GoogleCloudStorageItemInfo> fetchedInfos = idsToFetch.size() == 1
+        ? ImmutableList.of(gcs.getItemInfo(idsToFetch.get(0)))
+        : gcs.getItemInfos(idsToFetch);
+    List<GoogleCloudStorageItemInfo> itemInfos = new ArrayList<>(resourceIds.size());
+    for (int i = 0; i < resourceIds.size(); ++i) {
+      GoogleCloudStorageItemInfo itemInfo = fetchedInfos.get(i);
+      if (!itemInfo.exists() && directoryIndexes[i] >= 0
+          && fetchedInfos.get(directoryIndexes[i]).exists()) {
+        itemInfo = fetchedInfos.get(directoryIndexes[i]);
+      }
+      itemInfos.add(itemInfo);
+    }
+    return itemInfos;
   }
 
   /**
@@ -1111,16 +1792,30 @@ public class GoogleCloudStorageFileSystem {
     return FileInfo.fromItemInfos(itemInfos);
   }
 
+  /**
+   * Returns the options this instance was configured with.
+   */
+  public GoogleCloudStorageFileSystemOptions getOptions() {
+    return options;
+  }
+
   /**
    * Releases resources used by this instance.
    */
   public void close() {
+    // Sends the merged updates still pending, so must happen before gcs is closed.
+    if (parentTimestampUpdater != null) {
+      parentTimestampUpdater.close();
+      parentTimestampUpdater = null;
+    }
+
     if (gcs != null) {
       log.debug("close()");
       try {
         gcs.close();
       } finally {
         gcs = null;
+        uncachedGcs = null;
       }
     }
 
@@ -1136,6 +1831,11 @@ public class GoogleCloudStorageFileSystem {
       }
       updateTimestampsExecutor = null;
     }
+
+    if (parallelListingExecutor != null) {
+      parallelListingExecutor.shutdownNow();
+      parallelListingExecutor = null;
+    }
   }
 
   /**
@@ -1189,6 +1889,29 @@ public class GoogleCloudStorageFileSystem {
       List<URI> modifiedObjects, List<URI> excludedParents) throws IOException {
     log.debug("updateTimestampsForParentDirectories(%s, %s)", modifiedObjects, excludedParents);
 
+    List<StorageResourceId> parentIds =
+        getParentDirectoriesToUpdate(modifiedObjects, excludedParents);
+    if (parentIds.isEmpty()) {
+      log.debug("All paths were excluded from directory timestamp updating.");
+      return;
+    }
+
+    Map<String, byte[]> modificationAttributes = new HashMap<>();
+    FileInfo.addModificationTimeToAttributes(modificationAttributes, Clock.SYSTEM);
+
+    List<UpdatableItemInfo> itemUpdates = new ArrayList<>(parentIds.size());
+    for (StorageResourceId parentId : parentIds) {
+      itemUpdates.add(new UpdatableItemInfo(parentId, modificationAttributes));
+    }
+    gcs.updateItems(itemUpdates);
+  }
+
+  /**
+   * Returns the parent directory objects of the given modified objects whose timestamps should be
+   * updated: those neither excluded nor buckets, and accepted by the timestamp update predicate.
+   */
+  private List<StorageResourceId> getParentDirectoriesToUpdate(
+      List<URI> modifiedObjects, List<URI> excludedParents) {
     Predicate<String> shouldIncludeInTimestampUpdatesPredicate =
         options.getShouldIncludeInTimestampUpdatesPredicate();
     Set<URI> excludedParentPathsSet = new HashSet<>(excludedParents);
@@ -1202,23 +1925,14 @@ public class GoogleCloudStorageFileSystem {
       }
     }
 
-    Map<String, byte[]> modificationAttributes = new HashMap<>();
-    FileInfo.addModificationTimeToAttributes(modificationAttributes, Clock.SYSTEM);
-
-    List<UpdatableItemInfo> itemUpdates = new ArrayList<>(parentUrisToUpdate.size());
-
+    List<StorageResourceId> parentIds = new ArrayList<>(parentUrisToUpdate.size());
     for (URI parentUri : parentUrisToUpdate) {
       StorageResourceId resourceId = validatePathAndGetId(parentUri, true);
       if (!resourceId.isBucket() && !resourceId.isRoot()) {
-        itemUpdates.add(new UpdatableItemInfo(resourceId, modificationAttributes));
+        parentIds.add(resourceId);
       }
     }
-
-    if (!itemUpdates.isEmpty()) {
-      gcs.updateItems(itemUpdates);
-    } else {
-      log.debug("All paths were excluded from directory timestamp updating.");
-    }
+    return parentIds;
   }
 
   /**
@@ -1233,6 +1947,16 @@ public class GoogleCloudStorageFileSystem {
       final List<URI> modifiedObjects, final List<URI> excludedParents) {
     log.debug("tryUpdateTimestampsForParentDirectories(%s, %s)", modifiedObjects, excludedParents);
 
+    if (options.isInferImplicitDirectoriesEnabled()) {
+      // Most parent directories have no placeholder object to hold their timestamps.
+      return;
+    }
+
+    if (parentTimestampUpdater != null) {
+      parentTimestampUpdater.update(getParentDirectoriesToUpdate(modifiedObjects, excludedParents));
+      return;
+    }
+
     // If we're calling tryUpdateTimestamps, we don't actually care about the results. Submit
     // these requests via a background thread and continue on.
     updateTimestampsExecutor.submit(new Runnable() {
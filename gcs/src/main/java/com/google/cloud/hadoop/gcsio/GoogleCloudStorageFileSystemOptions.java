@@ -24,6 +24,45 @@ import com.google.common.base.Predicates;
  */
 public class GoogleCloudStorageFileSystemOptions {
 
+  // Default number of threads listing the sub-prefixes of a prefix concurrently in
+  // listAllFileInfoForPrefix(); 0 lists each prefix sequentially.
+  public static final int PARALLEL_LISTING_THREADS_DEFAULT = 0;
+
+  // Default setting for checking paths in a single batch, and remembering recently checked parent
+  // directories, when creating files.
+  public static final boolean FAST_CREATE_ENABLED_DEFAULT = false;
+
+  // Default setting for fetching a path together with the directory of the same name in a single
+  // batch when getting file info, instead of fetching the directory only after a miss.
+  public static final boolean BATCH_DIRECTORY_LOOKUP_ENABLED_DEFAULT = false;
+
+  // Default setting for merging concurrent identical metadata and list calls into a single call.
+  public static final boolean REQUEST_COALESCING_ENABLED_DEFAULT = false;
+
+  // Default setting for recording latency statistics of the calls made to GCS.
+  public static final boolean METRICS_ENABLED_DEFAULT = false;
+
+  // Default setting for letting directories exist purely by the prefix of the objects they
+  // contain, writing placeholder objects only for empty directories.
+  public static final boolean INFER_IMPLICIT_DIRECTORIES_DEFAULT = false;
+
+  // Default time for which parent directory timestamp updates are held and merged before being
+  // sent together; 0 sends the update of each change on its own, right away.
+  public static final long PARENT_TIMESTAMP_UPDATE_INTERVAL_MILLIS_DEFAULT = 0;
+
+  // Default maximum number of parent directories whose timestamp update is held at once.
+  public static final int PARENT_TIMESTAMP_UPDATE_MAX_PENDING_DEFAULT = 10000;
+
+  // Default maximum number of object entries of the in-memory metadata cache; 0 for no limit.
+  public static final long METADATA_CACHE_MAX_ENTRIES_DEFAULT = 0;
+
+  // Default maximum estimated bytes held by the in-memory metadata cache; 0 for no limit.
+  public static final long METADATA_CACHE_MAX_BYTES_DEFAULT = 0;
+
+  // Default interval between background sweeps of expired entries of the in-memory metadata
+  // cache; 0 only removes expired entries when listed.
+  public static final long METADATA_CACHE_SWEEP_INTERVAL_MILLIS_DEFAULT = 0;
+
   /**
    * Mutable builder for GoogleCloudStorageFileSystemOptions.
    */
@@ -32,14 +71,39 @@ public class GoogleCloudStorageFileSystemOptions {
     protected DirectoryListCache.Type cacheType = DirectoryListCache.Type.IN_MEMORY;
     protected String cacheBasePath = null;
     protected Predicate<String> shouldIncludeInTimestampUpdatesPredicate = Predicates.alwaysTrue();
+    protected int parallelListingThreads = PARALLEL_LISTING_THREADS_DEFAULT;
+    protected boolean fastCreateEnabled = FAST_CREATE_ENABLED_DEFAULT;
+    protected boolean batchDirectoryLookupEnabled = BATCH_DIRECTORY_LOOKUP_ENABLED_DEFAULT;
+    protected boolean requestCoalescingEnabled = REQUEST_COALESCING_ENABLED_DEFAULT;
+    protected boolean metricsEnabled = METRICS_ENABLED_DEFAULT;
+    protected boolean inferImplicitDirectoriesEnabled = INFER_IMPLICIT_DIRECTORIES_DEFAULT;
+    protected long parentTimestampUpdateIntervalMillis =
+        PARENT_TIMESTAMP_UPDATE_INTERVAL_MILLIS_DEFAULT;
+    protected int parentTimestampUpdateMaxPending = PARENT_TIMESTAMP_UPDATE_MAX_PENDING_DEFAULT;
+    protected long metadataCacheMaxEntries = METADATA_CACHE_MAX_ENTRIES_DEFAULT;
+    protected long metadataCacheMaxBytes = METADATA_CACHE_MAX_BYTES_DEFAULT;
+    protected long metadataCacheSweepIntervalMillis = METADATA_CACHE_SWEEP_INTERVAL_MILLIS_DEFAULT;
 
     private GoogleCloudStorageOptions.Builder cloudStorageOptionsBuilder =
         new GoogleCloudStorageOptions.Builder();
 
+    private StatCacheOptions.Builder statCacheOptionsBuilder = StatCacheOptions.newBuilder();
+
+    private AdaptiveRateLimiterOptions.Builder rateLimiterOptionsBuilder =
+        AdaptiveRateLimiterOptions.newBuilder();
+
     public GoogleCloudStorageOptions.Builder getCloudStorageOptionsBuilder() {
       return cloudStorageOptionsBuilder;
     }
 
+    public StatCacheOptions.Builder getStatCacheOptionsBuilder() {
+      return statCacheOptionsBuilder;
+    }
+
+    public AdaptiveRateLimiterOptions.Builder getRateLimiterOptionsBuilder() {
+      return rateLimiterOptionsBuilder;
+    }
+
     public Builder setIsMetadataCacheEnabled(boolean isMetadataCacheEnabled) {
       this.metadataCacheEnabled = isMetadataCacheEnabled;
       return this;
@@ -61,13 +125,82 @@ public class GoogleCloudStorageFileSystemOptions {
       return this;
     }
 
+    public Builder setParallelListingThreads(int parallelListingThreads) {
+      this.parallelListingThreads = parallelListingThreads;
+      return this;
+    }
+
+    public Builder setFastCreateEnabled(boolean fastCreateEnabled) {
+      this.fastCreateEnabled = fastCreateEnabled;
+      return this;
+    }
+
+    public Builder setBatchDirectoryLookupEnabled(boolean batchDirectoryLookupEnabled) {
+      this.batchDirectoryLookupEnabled = batchDirectoryLookupEnabled;
+      return this;
+    }
+
+    public Builder setRequestCoalescingEnabled(boolean requestCoalescingEnabled) {
+      this.requestCoalescingEnabled = requestCoalescingEnabled;
+      return this;
+    }
+
+    public Builder setMetricsEnabled(boolean metricsEnabled) {
+      this.metricsEnabled = metricsEnabled;
+      return this;
+    }
+
+    public Builder setInferImplicitDirectoriesEnabled(boolean inferImplicitDirectoriesEnabled) {
+      this.inferImplicitDirectoriesEnabled = inferImplicitDirectoriesEnabled;
+      return this;
+    }
+
+    public Builder setParentTimestampUpdateIntervalMillis(
+        long parentTimestampUpdateIntervalMillis) {
+      this.parentTimestampUpdateIntervalMillis = parentTimestampUpdateIntervalMillis;
+      return this;
+    }
+
+    public Builder setParentTimestampUpdateMaxPending(int parentTimestampUpdateMaxPending) {
+      this.parentTimestampUpdateMaxPending = parentTimestampUpdateMaxPending;
+      return this;
+    }
+
+    public Builder setMetadataCacheMaxEntries(long metadataCacheMaxEntries) {
+      this.metadataCacheMaxEntries = metadataCacheMaxEntries;
+      return this;
+    }
+
+    public Builder setMetadataCacheMaxBytes(long metadataCacheMaxBytes) {
+      this.metadataCacheMaxBytes = metadataCacheMaxBytes;
+      return this;
+    }
+
+    public Builder setMetadataCacheSweepIntervalMillis(long metadataCacheSweepIntervalMillis) {
+      this.metadataCacheSweepIntervalMillis = metadataCacheSweepIntervalMillis;
+      return this;
+    }
+
     public GoogleCloudStorageFileSystemOptions build() {
       return new GoogleCloudStorageFileSystemOptions(
           cloudStorageOptionsBuilder.build(),
           metadataCacheEnabled,
           cacheType,
           cacheBasePath,
-          shouldIncludeInTimestampUpdatesPredicate);
+          shouldIncludeInTimestampUpdatesPredicate,
+          parallelListingThreads,
+          fastCreateEnabled,
+          statCacheOptionsBuilder.build(),
+          batchDirectoryLookupEnabled,
+          requestCoalescingEnabled,
+          rateLimiterOptionsBuilder.build(),
+          metricsEnabled,
+          inferImplicitDirectoriesEnabled,
+          parentTimestampUpdateIntervalMillis,
+          parentTimestampUpdateMaxPending,
+          metadataCacheMaxEntries,
+          metadataCacheMaxBytes,
+          metadataCacheSweepIntervalMillis);
     }
   }
 
@@ -80,18 +213,200 @@ public class GoogleCloudStorageFileSystemOptions {
   private final DirectoryListCache.Type cacheType;
   private final String cacheBasePath;  // Only used if cacheType == FILESYSTEM_BACKED.
   private final Predicate<String> shouldIncludeInTimestampUpdatesPredicate;
+  private final int parallelListingThreads;
+  private final boolean fastCreateEnabled;
+  private final StatCacheOptions statCacheOptions;
+  private final boolean batchDirectoryLookupEnabled;
+  private final boolean requestCoalescingEnabled;
+  private final AdaptiveRateLimiterOptions rateLimiterOptions;
+  private final boolean metricsEnabled;
+  private final boolean inferImplicitDirectoriesEnabled;
+  private final long parentTimestampUpdateIntervalMillis;
+  private final int parentTimestampUpdateMaxPending;
+  private final long metadataCacheMaxEntries;
+  private final long metadataCacheMaxBytes;
+  private final long metadataCacheSweepIntervalMillis;
+
+  public GoogleCloudStorageFileSystemOptions(
+      GoogleCloudStorageOptions cloudStorageOptions,
+      boolean metadataCacheEnabled,
+      DirectoryListCache.Type cacheType,
+      String cacheBasePath,
+      Predicate<String> shouldIncludeInTimestampUpdatesPredicate,
+      int parallelListingThreads,
+      boolean fastCreateEnabled) {
+    this(cloudStorageOptions, metadataCacheEnabled, cacheType, cacheBasePath,
+        shouldIncludeInTimestampUpdatesPredicate, parallelListingThreads, fastCreateEnabled,
+        StatCacheOptions.newBuilder().build());
+  }
 
   public GoogleCloudStorageFileSystemOptions(
       GoogleCloudStorageOptions cloudStorageOptions,
       boolean metadataCacheEnabled,
       DirectoryListCache.Type cacheType,
       String cacheBasePath,
-      Predicate<String> shouldIncludeInTimestampUpdatesPredicate) {
+      Predicate<String> shouldIncludeInTimestampUpdatesPredicate,
+      int parallelListingThreads,
+      boolean fastCreateEnabled,
+      StatCacheOptions statCacheOptions) {
+    this(cloudStorageOptions, metadataCacheEnabled, cacheType, cacheBasePath,
+        shouldIncludeInTimestampUpdatesPredicate, parallelListingThreads, fastCreateEnabled,
+        statCacheOptions, BATCH_DIRECTORY_LOOKUP_ENABLED_DEFAULT);
+  }
+
+  public GoogleCloudStorageFileSystemOptions(
+      GoogleCloudStorageOptions cloudStorageOptions,
+      boolean metadataCacheEnabled,
+      DirectoryListCache.Type cacheType,
+      String cacheBasePath,
+      Predicate<String> shouldIncludeInTimestampUpdatesPredicate,
+      int parallelListingThreads,
+      boolean fastCreateEnabled,
+      StatCacheOptions statCacheOptions,
+      boolean batchDirectoryLookupEnabled) {
+    this(cloudStorageOptions, metadataCacheEnabled, cacheType, cacheBasePath,
+        shouldIncludeInTimestampUpdatesPredicate, parallelListingThreads, fastCreateEnabled,
+        statCacheOptions, batchDirectoryLookupEnabled, REQUEST_COALESCING_ENABLED_DEFAULT);
+  }
+
+  public GoogleCloudStorageFileSystemOptions(
+      GoogleCloudStorageOptions cloudStorageOptions,
+      boolean metadataCacheEnabled,
+      DirectoryListCache.Type cacheType,
+      String cacheBasePath,
+      Predicate<String> shouldIncludeInTimestampUpdatesPredicate,
+      int parallelListingThreads,
+      boolean fastCreateEnabled,
+      StatCacheOptions statCacheOptions,
+      boolean batchDirectoryLookupEnabled,
+      boolean requestCoalescingEnabled) {
+    this(cloudStorageOptions, metadataCacheEnabled, cacheType, cacheBasePath,
+        shouldIncludeInTimestampUpdatesPredicate, parallelListingThreads, fastCreateEnabled,
+        statCacheOptions, batchDirectoryLookupEnabled, requestCoalescingEnabled,
+        AdaptiveRateLimiterOptions.newBuilder().build());
+  }
+
+  public GoogleCloudStorageFileSystemOptions(
+      GoogleCloudStorageOptions cloudStorageOptions,
+      boolean metadataCacheEnabled,
+      DirectoryListCache.Type cacheType,
+      String cacheBasePath,
+      Predicate<String> shouldIncludeInTimestampUpdatesPredicate,
+      int parallelListingThreads,
+      boolean fastCreateEnabled,
+      StatCacheOptions statCacheOptions,
+      boolean batchDirectoryLookupEnabled,
+      boolean requestCoalescingEnabled,
+      AdaptiveRateLimiterOptions rateLimiterOptions) {
+    this(cloudStorageOptions, metadataCacheEnabled, cacheType, cacheBasePath,
+        shouldIncludeInTimestampUpdatesPredicate, parallelListingThreads, fastCreateEnabled,
+        statCacheOptions, batchDirectoryLookupEnabled, requestCoalescingEnabled,
+        rateLimiterOptions, METRICS_ENABLED_DEFAULT);
+  }
+
+  public GoogleCloudStorageFileSystemOptions(
+      GoogleCloudStorageOptions cloudStorageOptions,
+      boolean metadataCacheEnabled,
+      DirectoryListCache.Type cacheType,
+      String cacheBasePath,
+      Predicate<String> shouldIncludeInTimestampUpdatesPredicate,
+      int parallelListingThreads,
+      boolean fastCreateEnabled,
+      StatCacheOptions statCacheOptions,
+      boolean batchDirectoryLookupEnabled,
+      boolean requestCoalescingEnabled,
+      AdaptiveRateLimiterOptions rateLimiterOptions,
+      boolean metricsEnabled) {
+    this(cloudStorageOptions, metadataCacheEnabled, cacheType, cacheBasePath,
+        shouldIncludeInTimestampUpdatesPredicate, parallelListingThreads, fastCreateEnabled,
+        statCacheOptions, batchDirectoryLookupEnabled, requestCoalescingEnabled,
+        rateLimiterOptions, metricsEnabled, INFER_IMPLICIT_DIRECTORIES_DEFAULT);
+  }
+
+  public GoogleCloudStorageFileSystemOptions(
+      GoogleCloudStorageOptions cloudStorageOptions,
+      boolean metadataCacheEnabled,
+      DirectoryListCache.Type cacheType,
+      String cacheBasePath,
+      Predicate<String> shouldIncludeInTimestampUpdatesPredicate,
+      int parallelListingThreads,
+      boolean fastCreateEnabled,
+      StatCacheOptions statCacheOptions,
+      boolean batchDirectoryLookupEnabled,
+      boolean requestCoalescingEnabled,
+      AdaptiveRateLimiterOptions rateLimiterOptions,
+      boolean metricsEnabled,
+      boolean inferImplicitDirectoriesEnabled) {
+    this(cloudStorageOptions, metadataCacheEnabled, cacheType, cacheBasePath,
+        shouldIncludeInTimestampUpdatesPredicate, parallelListingThreads, fastCreateEnabled,
+        statCacheOptions, batchDirectoryLookupEnabled, requestCoalescingEnabled,
+        rateLimiterOptions, metricsEnabled, inferImplicitDirectoriesEnabled,
+        PARENT_TIMESTAMP_UPDATE_INTERVAL_MILLIS_DEFAULT,
+        PARENT_TIMESTAMP_UPDATE_MAX_PENDING_DEFAULT);
+  }
+
+  public GoogleCloudStorageFileSystemOptions(
+      GoogleCloudStorageOptions cloudStorageOptions,
+      boolean metadataCacheEnabled,
+      DirectoryListCache.Type cacheType,
+      String cacheBasePath,
+      Predicate<String> shouldIncludeInTimestampUpdatesPredicate,
+      int parallelListingThreads,
+      boolean fastCreateEnabled,
+      StatCacheOptions statCacheOptions,
+      boolean batchDirectoryLookupEnabled,
+      boolean requestCoalescingEnabled,
+      AdaptiveRateLimiterOptions rateLimiterOptions,
+      boolean metricsEnabled,
+      boolean inferImplicitDirectoriesEnabled,
+      long parentTimestampUpdateIntervalMillis,
+      int parentTimestampUpdateMaxPending) {
+    this(cloudStorageOptions, metadataCacheEnabled, cacheType, cacheBasePath,
+        shouldIncludeInTimestampUpdatesPredicate, parallelListingThreads, fastCreateEnabled,
+        statCacheOptions, batchDirectoryLookupEnabled, requestCoalescingEnabled,
+        rateLimiterOptions, metricsEnabled, inferImplicitDirectoriesEnabled,
+        parentTimestampUpdateIntervalMillis, parentTimestampUpdateMaxPending,
+        METADATA_CACHE_MAX_ENTRIES_DEFAULT, METADATA_CACHE_MAX_BYTES_DEFAULT,
+        METADATA_CACHE_SWEEP_INTERVAL_MILLIS_DEFAULT);
+  }
+
+  public GoogleCloudStorageFileSystemOptions(
+      GoogleCloudStorageOptions cloudStorageOptions,
+      boolean metadataCacheEnabled,
+      DirectoryListCache.Type cacheType,
+      String cacheBasePath,
+      Predicate<String> shouldIncludeInTimestampUpdatesPredicate,
+      int parallelListingThreads,
+      boolean fastCreateEnabled,
+      StatCacheOptions statCacheOptions,
+      boolean batchDirectoryLookupEnabled,
+      boolean requestCoalescingEnabled,
+      AdaptiveRateLimiterOptions rateLimiterOptions,
+      boolean metricsEnabled,
+      boolean inferImplicitDirectoriesEnabled,
+      long parentTimestampUpdateIntervalMillis,
+      int parentTimestampUpdateMaxPending,
+      long metadataCacheMaxEntries,
+      long metadataCacheMaxBytes,
+      long metadataCacheSweepIntervalMillis) {
     this.cloudStorageOptions = cloudStorageOptions;
     this.metadataCacheEnabled = metadataCacheEnabled;
     this.cacheType = cacheType;
     this.cacheBasePath = cacheBasePath;
     this.shouldIncludeInTimestampUpdatesPredicate = shouldIncludeInTimestampUpdatesPredicate;
+    this.parallelListingThreads = parallelListingThreads;
+    this.fastCreateEnabled = fastCreateEnabled;
+    this.statCacheOptions = statCacheOptions;
+    this.batchDirectoryLookupEnabled = batchDirectoryLookupEnabled;
+    this.requestCoalescingEnabled = requestCoalescingEnabled;
+    this.rateLimiterOptions = rateLimiterOptions;
+    this.metricsEnabled = metricsEnabled;
+    this.inferImplicitDirectoriesEnabled = inferImplicitDirectoriesEnabled;
+    this.parentTimestampUpdateIntervalMillis = parentTimestampUpdateIntervalMillis;
+    this.parentTimestampUpdateMaxPending = parentTimestampUpdateMaxPending;
+    this.metadataCacheMaxEntries = metadataCacheMaxEntries;
+    this.metadataCacheMaxBytes = metadataCacheMaxBytes;
+    this.metadataCacheSweepIntervalMillis = metadataCacheSweepIntervalMillis;
   }
 
   public GoogleCloudStorageOptions getCloudStorageOptions() {
@@ -114,11 +429,89 @@ public class GoogleCloudStorageFileSystemOptions {
     return shouldIncludeInTimestampUpdatesPredicate;
   }
 
+  public int getParallelListingThreads() {
+    return parallelListingThreads;
+  }
+
+  public boolean isParallelListingEnabled() {
+    return parallelListingThreads > 0;
+  }
+
+  public boolean isFastCreateEnabled() {
+    return fastCreateEnabled;
+  }
+
+  public StatCacheOptions getStatCacheOptions() {
+    return statCacheOptions;
+  }
+
+  public boolean isBatchDirectoryLookupEnabled() {
+    return batchDirectoryLookupEnabled;
+  }
+
+  public boolean isRequestCoalescingEnabled() {
+    return requestCoalescingEnabled;
+  }
+
+  public AdaptiveRateLimiterOptions getRateLimiterOptions() {
+    return rateLimiterOptions;
+  }
+
+  public boolean isMetricsEnabled() {
+    return metricsEnabled;
+  }
+
+  public boolean isInferImplicitDirectoriesEnabled() {
+    return inferImplicitDirectoriesEnabled;
+  }
+
+  public long getParentTimestampUpdateIntervalMillis() {
+    return parentTimestampUpdateIntervalMillis;
+  }
+
+  public int getParentTimestampUpdateMaxPending() {
+    return parentTimestampUpdateMaxPending;
+  }
+
+  public boolean isParentTimestampUpdateCoalescingEnabled() {
+    return parentTimestampUpdateIntervalMillis > 0;
+  }
+
+  public long getMetadataCacheMaxEntries() {
+    return metadataCacheMaxEntries;
+  }
+
+  public long getMetadataCacheMaxBytes() {
+    return metadataCacheMaxBytes;
+  }
+
+  public long getMetadataCacheSweepIntervalMillis() {
+    return metadataCacheSweepIntervalMillis;
+  }
+
   public void throwIfNotValid() {
     Preconditions.checkArgument(
         shouldIncludeInTimestampUpdatesPredicate != null,
         "Predicate for ignored directory updates should not be null. "
             + "Consider Predicates.alwasyTrue");
+    Preconditions.checkArgument(parallelListingThreads >= 0,
+        "parallelListingThreads must not be negative, got %s", parallelListingThreads);
+    Preconditions.checkArgument(statCacheOptions != null, "statCacheOptions must not be null");
+    Preconditions.checkArgument(
+        rateLimiterOptions != null, "rateLimiterOptions must not be null");
+    Preconditions.checkArgument(parentTimestampUpdateIntervalMillis >= 0,
+        "parentTimestampUpdateIntervalMillis must not be negative, got %s",
+        parentTimestampUpdateIntervalMillis);
+    Preconditions.checkArgument(parentTimestampUpdateMaxPending > 0,
+        "parentTimestampUpdateMaxPending must be greater than 0, got %s",
+        parentTimestampUpdateMaxPending);
+    Preconditions.checkArgument(metadataCacheMaxEntries >= 0,
+        "metadataCacheMaxEntries must not be negative, got %s", metadataCacheMaxEntries);
+    Preconditions.checkArgument(metadataCacheMaxBytes >= 0,
+        "metadataCacheMaxBytes must not be negative, got %s", metadataCacheMaxBytes);
+    Preconditions.checkArgument(metadataCacheSweepIntervalMillis >= 0,
+        "metadataCacheSweepIntervalMillis must not be negative, got %s",
+        metadataCacheSweepIntervalMillis);
     cloudStorageOptions.throwIfNotValid();
   }
 }
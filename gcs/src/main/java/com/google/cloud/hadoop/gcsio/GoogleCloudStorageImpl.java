@@ -39,12 +39,16 @@ import com.google.cloud.hadoop.util.ApiErrorExtractor;
 import com.google.cloud.hadoop.util.ClientRequestHelper;
 import com.google.cloud.hadoop.util.LogUtil;
 import com.google.cloud.hadoop.util.RetryHttpInitializer;
+import com.google.cloud.hadoop.util.UploadBufferManager;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
 import com.google.common.collect.Maps;
 import com.google.common.io.BaseEncoding;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
@@ -52,6 +56,7 @@ import org.apache.http.HttpHost;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.channels.WritableByteChannel;
 import java.security.GeneralSecurityException;
 import java.util.ArrayList;
@@ -59,9 +64,13 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -168,6 +177,18 @@ public class GoogleCloudStorageImpl
           .setDaemon(true)
           .build());
 
+  // Thread-pool used by read channels to fetch read-ahead ranges concurrently; lazily created
+  // the first time a channel is opened with read-ahead enabled.
+  private ExecutorService readAheadThreadPool = null;
+
+  // Thread-pool used by composite write channels to upload and compose parts concurrently; lazily
+  // created the first time a channel is created with composite uploads enabled.
+  private ExecutorService compositeUploadThreadPool = null;
+
+  // Content of small objects read whole by read channels, keyed by bucket, name and generation;
+  // lazily created the first time a channel is opened with the whole-object cache enabled.
+  private Cache<String, byte[]> wholeObjectCache = null;
+
   // Helper delegate for turning IOExceptions from API calls into higher-level semantics.
   private ApiErrorExtractor errorExtractor = new ApiErrorExtractor();
 
@@ -175,6 +196,10 @@ public class GoogleCloudStorageImpl
   private ClientRequestHelper<StorageObject> clientRequestHelper =
       new ClientRequestHelper<>();
 
+  // Thread-pool used by BatchHelpers to execute several batch requests concurrently; only created
+  // when maxBatchesInFlight is greater than 1.
+  private ExecutorService batchThreadPool = null;
+
   // Factory for BatchHelpers setting up BatchRequests; can be swapped out for testing purposes.
   private BatchHelper.Factory batchFactory = new BatchHelper.Factory();
 
@@ -206,9 +231,15 @@ public class GoogleCloudStorageImpl
 
     this.storageOptions = options;
 
+    configureUploadBufferManager(options);
+
+    configureBatchFactory(options);
+
     Preconditions.checkArgument(credential != null, "credential must not be null");
 
-    this.httpRequestInitializer = new RetryHttpInitializer(credential, options.getAppName());
+    // Requests are attributed to the file system call that caused them when it is traced.
+    this.httpRequestInitializer = new TracingHttpRequestInitializer(
+        new RetryHttpInitializer(credential, options.getAppName()));
 
     // HTTP transport used for interacting with Google APIs.
     ApacheHttpTransport.Builder httpTransportBuilder = new ApacheHttpTransport.Builder();
@@ -243,6 +274,10 @@ public class GoogleCloudStorageImpl
 
     this.storageOptions = options;
 
+    configureUploadBufferManager(options);
+
+    configureBatchFactory(options);
+
     Preconditions.checkArgument(gcs != null, "gcs must not be null");
 
     this.gcs = gcs;
@@ -252,6 +287,34 @@ public class GoogleCloudStorageImpl
     this.httpRequestInitializer = null;
   }
 
+  /**
+   * Applies the upload buffer memory cap, if any, to the manager shared by all write channels in
+   * the process. When several instances set different caps, the first one is kept.
+   */
+  private static void configureUploadBufferManager(GoogleCloudStorageOptions options) {
+    UploadBufferManager.getInstance().configureCapacity(options.getMaxUploadBufferMemory());
+  }
+
+  /**
+   * Sets up a factory of BatchHelpers keeping up to maxBatchesInFlight batch requests executing
+   * concurrently on a thread-pool of this instance, if more than one is allowed.
+   */
+  private void configureBatchFactory(GoogleCloudStorageOptions options) {
+    int maxBatchesInFlight = options.getMaxBatchesInFlight();
+    if (maxBatchesInFlight > 1) {
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(
+          maxBatchesInFlight, maxBatchesInFlight, 10L /* keepalive time */, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactoryBuilder()
+              .setNameFormat("gcs-batch-pool-%d")
+              .setDaemon(true)
+              .build());
+      pool.allowCoreThreadTimeOut(true);
+      batchThreadPool = pool;
+      batchFactory = new BatchHelper.Factory(maxBatchesInFlight, batchThreadPool);
+    }
+  }
+
   @VisibleForTesting
   protected GoogleCloudStorageImpl() {
     this.storageOptions = GoogleCloudStorageOptions.newBuilder().build();
@@ -262,11 +325,80 @@ public class GoogleCloudStorageImpl
     this.threadPool = threadPool;
   }
 
+  /**
+   * Returns the cache of whole objects shared by all read channels of this instance, creating it
+   * on first use holding at most wholeObjectCacheSize bytes, evicting least recently used objects.
+   */
+  private synchronized Cache<String, byte[]> getWholeObjectCache() {
+    if (wholeObjectCache == null) {
+      wholeObjectCache = CacheBuilder.newBuilder()
+          .maximumWeight(storageOptions.getReadChannelOptions().getWholeObjectCacheSize())
+          .weigher(new Weigher<String, byte[]>() {
+            @Override
+            public int weigh(String key, byte[] content) {
+              return content.length;
+            }
+          })
+          .build();
+    }
+    return wholeObjectCache;
+  }
+
   @VisibleForTesting
   void setManualBatchingThreadPool(ExecutorService manualBatchingThreadPool) {
     this.manualBatchingThreadPool = manualBatchingThreadPool;
   }
 
+  @VisibleForTesting
+  synchronized void setReadAheadThreadPool(ExecutorService readAheadThreadPool) {
+    this.readAheadThreadPool = readAheadThreadPool;
+  }
+
+  /**
+   * Returns the thread-pool shared by all read channels of this instance for fetching read-ahead
+   * ranges, creating it on first use with at most readAheadMaxThreads threads.
+   */
+  private synchronized ExecutorService getReadAheadThreadPool() {
+    if (readAheadThreadPool == null) {
+      int maxThreads = storageOptions.getReadChannelOptions().getReadAheadMaxThreads();
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(
+          maxThreads, maxThreads, 10L /* keepalive time */, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactoryBuilder()
+              .setNameFormat("gcs-read-ahead-pool-%d")
+              .setDaemon(true)
+              .build());
+      pool.allowCoreThreadTimeOut(true);
+      readAheadThreadPool = pool;
+    }
+    return readAheadThreadPool;
+  }
+
+  @VisibleForTesting
+  synchronized void setCompositeUploadThreadPool(ExecutorService compositeUploadThreadPool) {
+    this.compositeUploadThreadPool = compositeUploadThreadPool;
+  }
+
+  /**
+   * Returns the thread-pool shared by all composite write channels of this instance, creating it
+   * on first use with at most maxThreads threads.
+   */
+  private synchronized ExecutorService getCompositeUploadThreadPool() {
+    if (compositeUploadThreadPool == null) {
+      int maxThreads = storageOptions.getCompositeUploadOptions().getMaxThreads();
+      ThreadPoolExecutor pool = new ThreadPoolExecutor(
+          maxThreads, maxThreads, 10L /* keepalive time */, TimeUnit.SECONDS,
+          new LinkedBlockingQueue<Runnable>(),
+          new ThreadFactoryBuilder()
+              .setNameFormat("gcs-composite-upload-pool-%d")
+              .setDaemon(true)
+              .build());
+      pool.allowCoreThreadTimeOut(true);
+      compositeUploadThreadPool = pool;
+    }
+    return compositeUploadThreadPool;
+  }
+
   @VisibleForTesting
   void setErrorExtractor(ApiErrorExtractor errorExtractor) {
     this.errorExtractor = errorExtractor;
@@ -325,10 +457,16 @@ public class GoogleCloudStorageImpl
      */
     // TODO(user): Have createEmptyObject return enough information to use that instead.
     Optional<Long> markerGeneration = Optional.absent();
+    if (options.getExpectedContentGeneration() != null) {
+      // The caller already knows the current generation, so the final write can be conditioned
+      // on it directly.
+      markerGeneration = Optional.of(
+          getGenerationToOverwrite(resourceId, options.getExpectedContentGeneration(), options));
+    }
     BackOff backOff = backOffFactory.newBackOff();
     long backOffSleep = 0L;
 
-    do {
+    while (!markerGeneration.isPresent()) {
       if (backOffSleep != 0) {
         try {
           sleeper.sleep(backOffSleep);
@@ -341,17 +479,8 @@ public class GoogleCloudStorageImpl
       backOffSleep = backOff.nextBackOffMillis();
       Storage.Objects.Insert insertObject = prepareEmptyInsert(resourceId, options);
       GoogleCloudStorageItemInfo info = getItemInfo(resourceId);
-
-      if (!info.exists()) {
-        insertObject.setIfGenerationMatch(0L);
-      } else if (info.exists() && options.overwriteExisting()) {
-        long generation = info.getContentGeneration();
-        Preconditions.checkState(
-            generation != 0, "Generation should not be 0 for an existing item");
-        insertObject.setIfGenerationMatch(generation);
-      } else {
-        throw new IOException(String.format("Object %s already exists", resourceId.toString()));
-      }
+      insertObject.setIfGenerationMatch(getGenerationToOverwrite(
+          resourceId, info.exists() ? info.getContentGeneration() : 0L, options));
 
       try {
         StorageObject result = insertObject.execute();
@@ -366,12 +495,11 @@ public class GoogleCloudStorageImpl
           throw ioe;
         }
       }
-    } while (!markerGeneration.isPresent() && backOffSleep != BackOff.STOP);
-
-    if (backOffSleep == BackOff.STOP) {
-      throw new IOException(
-          String.format(
-              "Retries exhausted while attempting to create marker file for %s", resourceId));
+      if (!markerGeneration.isPresent() && backOffSleep == BackOff.STOP) {
+        throw new IOException(
+            String.format(
+                "Retries exhausted while attempting to create marker file for %s", resourceId));
+      }
     }
 
     ObjectWriteConditions writeConditions =
@@ -380,6 +508,29 @@ public class GoogleCloudStorageImpl
     Map<String, String> rewrittenMetadata =
         Maps.transformValues(options.getMetadata(), ENCODE_METADATA_VALUES);
 
+    CompositeUploadOptions compositeUploadOptions = storageOptions.getCompositeUploadOptions();
+    // A generation given by the caller may be stale, so writes whose data is still held are sent
+    // again with the current generation if they fail their precondition.
+    WriteConditionsRefresher writeConditionsRefresher = null;
+    if (options.getExpectedContentGeneration() != null) {
+      writeConditionsRefresher = createWriteConditionsRefresher(resourceId, options, backOff);
+    }
+
+    if (compositeUploadOptions.isEnabled()) {
+      GoogleCloudStorageCompositeWriteChannel compositeChannel =
+          new GoogleCloudStorageCompositeWriteChannel(
+              getCompositeUploadThreadPool(),
+              gcs,
+              clientRequestHelper,
+              resourceId.getBucketName(),
+              resourceId.getObjectName(),
+              compositeUploadOptions,
+              writeConditions,
+              rewrittenMetadata);
+      compositeChannel.setWriteConditionsRefresher(writeConditionsRefresher);
+      return compositeChannel;
+    }
+
     GoogleCloudStorageWriteChannel channel = new GoogleCloudStorageWriteChannel(
         threadPool,
         gcs,
@@ -389,12 +540,63 @@ public class GoogleCloudStorageImpl
         storageOptions.getWriteChannelOptions(),
         writeConditions,
         rewrittenMetadata);
+    channel.setWriteConditionsRefresher(writeConditionsRefresher);
 
     channel.initialize();
 
     return channel;
   }
 
+  /**
+   * Returns a refresher which, when a write conditioned on the generation the caller expected
+   * fails its precondition, fetches the current generation of the object and supplies it as the
+   * new precondition, retrying according to the given backoff like marker file creation does.
+   */
+  private WriteConditionsRefresher createWriteConditionsRefresher(
+      final StorageResourceId resourceId, final CreateObjectOptions options,
+      final BackOff backOff) {
+    return new WriteConditionsRefresher() {
+      @Override
+      public ObjectWriteConditions refresh(IOException failure) throws IOException {
+        if (!errorExtractor.preconditionNotMet(failure)) {
+          return null;
+        }
+        long backOffSleep = backOff.nextBackOffMillis();
+        if (backOffSleep == BackOff.STOP) {
+          return null;
+        }
+        try {
+          sleeper.sleep(backOffSleep);
+        } catch (InterruptedException ie) {
+          throw new IOException(String.format(
+              "Interrupted while sleeping for backoff in create of %s", resourceId));
+        }
+
+        GoogleCloudStorageItemInfo info = getItemInfo(resourceId);
+        long generation = getGenerationToOverwrite(
+            resourceId, info.exists() ? info.getContentGeneration() : 0L, options);
+        log.info("Retrying write of %s with current generation %d, after %s",
+            resourceId, generation, failure);
+        return new ObjectWriteConditions(Optional.of(generation), Optional.<Long>absent());
+      }
+    };
+  }
+
+  /**
+   * Returns the generation precondition for writing over an object whose current content
+   * generation is the given one, 0 meaning that it does not exist.
+   *
+   * @throws IOException if the object exists and options do not allow overwriting it.
+   */
+  private static long getGenerationToOverwrite(
+      StorageResourceId resourceId, long contentGeneration, CreateObjectOptions options)
+      throws IOException {
+    if (contentGeneration != 0L && !options.overwriteExisting()) {
+      throw new IOException(String.format("Object %s already exists", resourceId.toString()));
+    }
+    return contentGeneration;
+  }
+
   /**
    * See {@link GoogleCloudStorage#create(StorageResourceId)} for details about expected behavior.
    */
@@ -496,6 +698,17 @@ public class GoogleCloudStorageImpl
   @Override
   public SeekableReadableByteChannel open(StorageResourceId resourceId)
       throws IOException {
+    return open(resourceId, storageOptions.getReadChannelOptions());
+  }
+
+  /**
+   * See {@link GoogleCloudStorage#open(StorageResourceId, GoogleCloudStorageReadOptions)} for
+   * details about expected behavior.
+   */
+  @Override
+  public SeekableReadableByteChannel open(
+      StorageResourceId resourceId, GoogleCloudStorageReadOptions readOptions)
+      throws IOException {
     log.debug("open(%s)", resourceId);
     Preconditions.checkArgument(resourceId.isStorageObject(),
         "Expected full StorageObject id, got " + resourceId);
@@ -503,18 +716,36 @@ public class GoogleCloudStorageImpl
     // The underlying channel doesn't initially read data which means that we won't see a
     // FileNotFoundException until read is called. As a result, in order to find out if the object
     // exists, we'll need to do an RPC (metadata or data). A metadata check should be a less
-    // expensive operation than a read data operation.
-    if (!getItemInfo(resourceId).exists()) {
-      throw GoogleCloudStorageExceptions.getFileNotFoundException(
-          resourceId.getBucketName(), resourceId.getObjectName());
+    // expensive operation than a read data operation. Callers that already know the object
+    // exists, or can handle not-found on the first read, skip it to save the RPC.
+    GoogleCloudStorageItemInfo itemInfo = null;
+    if (readOptions.isFastFailOnNotFound()) {
+      itemInfo = getItemInfo(resourceId);
+      if (!itemInfo.exists()) {
+        throw GoogleCloudStorageExceptions.getFileNotFoundException(
+            resourceId.getBucketName(), resourceId.getObjectName());
+      }
     }
 
-    return new GoogleCloudStorageReadChannel(
+    GoogleCloudStorageReadChannel channel = new GoogleCloudStorageReadChannel(
         gcs,
         resourceId.getBucketName(),
         resourceId.getObjectName(),
         errorExtractor,
-        clientRequestHelper);
+        clientRequestHelper,
+        readOptions,
+        readOptions.isReadAheadEnabled() ? getReadAheadThreadPool() : null);
+
+    if (readOptions.getWholeObjectThreshold() > 0) {
+      // Let the channel fetch small objects whole with its first request.
+      if (itemInfo != null && itemInfo.getSize() <= readOptions.getWholeObjectThreshold()) {
+        channel.setMetadata(itemInfo);
+      }
+      if (readOptions.getWholeObjectCacheSize() > 0) {
+        channel.setWholeObjectCache(getWholeObjectCache());
+      }
+    }
+    return channel;
   }
 
   /**
@@ -595,7 +826,20 @@ public class GoogleCloudStorageImpl
   @Override
   public void deleteObjects(List<StorageResourceId> fullObjectNames)
       throws IOException {
-    log.debug("deleteObjects(%s)", fullObjectNames.toString());
+    deleteObjects(fullObjectNames, Collections.<Long>nCopies(fullObjectNames.size(), null));
+  }
+
+  /**
+   * See {@link GoogleCloudStorage#deleteObjects(List<StorageResourceId>, List<Long>)} for details
+   * about expected behavior.
+   */
+  @Override
+  public void deleteObjects(List<StorageResourceId> fullObjectNames,
+      List<Long> contentGenerations)
+      throws IOException {
+    log.debug("deleteObjects(%s, %s)", fullObjectNames, contentGenerations);
+    Preconditions.checkArgument(fullObjectNames.size() == contentGenerations.size(),
+        "Must supply same number of elements in fullObjectNames and contentGenerations");
 
     // Validate that all the elements represent StorageObjects.
     for (StorageResourceId fullObjectName : fullObjectNames) {
@@ -610,8 +854,14 @@ public class GoogleCloudStorageImpl
         gcs,
         storageOptions.getMaxRequestsPerBatch());
 
-    for (final StorageResourceId fullObjectName : fullObjectNames) {
-      queueSingleObjectDelete(fullObjectName, innerExceptions, batchHelper, 1);
+    for (int i = 0; i < fullObjectNames.size(); i++) {
+      Long contentGeneration = contentGenerations.get(i);
+      if (contentGeneration == null) {
+        queueSingleObjectDelete(fullObjectNames.get(i), innerExceptions, batchHelper, 1);
+      } else {
+        queueDeleteAtGeneration(
+            fullObjectNames.get(i), contentGeneration, innerExceptions, batchHelper, 1);
+      }
     }
 
     do {
@@ -639,45 +889,8 @@ public class GoogleCloudStorageImpl
       @Override
       public void onSuccess(StorageObject storageObject, HttpHeaders httpHeaders)
           throws IOException {
-        final Long generation = storageObject.getGeneration();
-        Storage.Objects.Delete deleteObject =
-            gcs.objects().delete(bucketName, objectName)
-                .setIfGenerationMatch(generation);
-
-        batchHelper.queue(deleteObject, new JsonBatchCallback<Void>() {
-          @Override
-          public void onSuccess(Void obj, HttpHeaders responseHeaders) {
-            log.debug(
-                "Successfully deleted %s at generation %s", fullObjectName.toString(), generation);
-          }
-
-          @Override
-          public void onFailure(GoogleJsonError e, HttpHeaders responseHeaders) throws IOException {
-            if (errorExtractor.itemNotFound(e)) {
-              // Ignore item-not-found errors. We do not have to delete what we cannot find. This
-              // error typically shows up when we make a request to delete something and the server
-              // receives the request but we get a retry-able error before we get a response.
-              // During a retry, we no longer find the item because the server had deleted
-              // it already.
-              log.debug("deleteObjects(%s) : delete not found", fullObjectName.toString());
-            } else if (errorExtractor.preconditionNotMet(e)
-                && attempt <= MAXIMUM_PRECONDITION_FAILURES_IN_DELETE) {
-              log.info(
-                  "Precondition not met while deleting %s at generation %s. Attempt %s. Retrying.",
-                  fullObjectName.toString(),
-                  generation,
-                  attempt);
-              queueSingleObjectDelete(
-                  fullObjectName, innerExceptions, batchHelper, attempt + 1);
-            } else {
-              innerExceptions.add(wrapException(
-                  new IOException(e.toString()),
-                  String.format("Error deleting, stage 2 with generation %s", generation),
-                  bucketName,
-                  objectName));
-            }
-          }
-        });
+        queueDeleteAtGeneration(fullObjectName, storageObject.getGeneration(), innerExceptions,
+            batchHelper, attempt);
       }
       @Override
       public void onFailure(GoogleJsonError googleJsonError, HttpHeaders httpHeaders)
@@ -697,6 +910,61 @@ public class GoogleCloudStorageImpl
     });
   }
 
+  /**
+   * Queues a delete of the given object conditioned on its content generation. If the object has
+   * been replaced since the generation was obtained, falls back to queueSingleObjectDelete to
+   * fetch its current generation.
+   */
+  private void queueDeleteAtGeneration(
+      final StorageResourceId fullObjectName,
+      final Long generation,
+      final List<IOException> innerExceptions,
+      final BatchHelper batchHelper,
+      final int attempt) throws IOException {
+
+    final String bucketName = fullObjectName.getBucketName();
+    final String objectName = fullObjectName.getObjectName();
+
+    Storage.Objects.Delete deleteObject =
+        gcs.objects().delete(bucketName, objectName)
+            .setIfGenerationMatch(generation);
+
+    batchHelper.queue(deleteObject, new JsonBatchCallback<Void>() {
+      @Override
+      public void onSuccess(Void obj, HttpHeaders responseHeaders) {
+        log.debug(
+            "Successfully deleted %s at generation %s", fullObjectName.toString(), generation);
+      }
+
+      @Override
+      public void onFailure(GoogleJsonError e, HttpHeaders responseHeaders) throws IOException {
+        if (errorExtractor.itemNotFound(e)) {
+          // Ignore item-not-found errors. We do not have to delete what we cannot find. This
+          // error typically shows up when we make a request to delete something and the server
+          // receives the request but we get a retry-able error before we get a response.
+          // During a retry, we no longer find the item because the server had deleted
+          // it already.
+          log.debug("deleteObjects(%s) : delete not found", fullObjectName.toString());
+        } else if (errorExtractor.preconditionNotMet(e)
+            && attempt <= MAXIMUM_PRECONDITION_FAILURES_IN_DELETE) {
+          log.info(
+              "Precondition not met while deleting %s at generation %s. Attempt %s. Retrying.",
+              fullObjectName.toString(),
+              generation,
+              attempt);
+          queueSingleObjectDelete(
+              fullObjectName, innerExceptions, batchHelper, attempt + 1);
+        } else {
+          innerExceptions.add(wrapException(
+              new IOException(e.toString()),
+              String.format("Error deleting, stage 2 with generation %s", generation),
+              bucketName,
+              objectName));
+        }
+      }
+    });
+  }
+
   /**
    * Validates basic argument constraints like non-null, non-empty Strings, using {@code
    * Preconditions} in addition to checking for src/dst bucket existence and compatibility of bucket
@@ -929,12 +1197,30 @@ public class GoogleCloudStorageImpl
       List<StorageObject> listedObjects, List<String> listedPrefixes)
       throws IOException {
     log.debug("listStorageObjectsAndPrefixes(%s, %s, %s)", bucketName, objectNamePrefix, delimiter);
-    Preconditions.checkArgument(!Strings.isNullOrEmpty(bucketName),
-        "bucketName must not be null or empty");
     Preconditions.checkArgument(listedObjects != null,
         "Must provide a non-null container for listedObjects.");
     Preconditions.checkArgument(listedPrefixes != null,
         "Must provide a non-null container for listedPrefixes.");
+    Storage.Objects.List listObject =
+        createListRequest(bucketName, objectNamePrefix, delimiter);
+
+    // Loop till we fetch all items.
+    String pageToken = null;
+    do {
+      pageToken = listStorageObjectsAndPrefixesPage(listObject, bucketName, objectNamePrefix,
+          delimiter, pageToken, listedObjects, listedPrefixes);
+    } while (pageToken != null);
+  }
+
+  /**
+   * Creates a request listing objects in the given bucket under the given prefix, with the given
+   * delimiter if not null.
+   */
+  private Storage.Objects.List createListRequest(
+      String bucketName, String objectNamePrefix, String delimiter)
+      throws IOException {
+    Preconditions.checkArgument(!Strings.isNullOrEmpty(bucketName),
+        "bucketName must not be null or empty");
     Storage.Objects.List listObject = gcs.objects().list(bucketName);
 
     // Set delimiter if supplied.
@@ -949,66 +1235,78 @@ public class GoogleCloudStorageImpl
     if (!Strings.isNullOrEmpty(objectNamePrefix)) {
       listObject.setPrefix(objectNamePrefix);
     }
+    return listObject;
+  }
 
-    // Loop till we fetch all items.
-    String pageToken = null;
+  /**
+   * Fetches a single page of the given list request, adding the objects and prefixes it contains
+   * to listedObjects and listedPrefixes.
+   *
+   * @param listObject request created by createListRequest with the given bucketName,
+   *     objectNamePrefix and delimiter
+   * @param pageToken token of the page to fetch, or null for the first page
+   * @return token of the next page, or null if this was the last page
+   */
+  private String listStorageObjectsAndPrefixesPage(
+      Storage.Objects.List listObject, String bucketName, String objectNamePrefix,
+      String delimiter, String pageToken,
+      List<StorageObject> listedObjects, List<String> listedPrefixes)
+      throws IOException {
     Objects items;
 
-    do {
-      if (pageToken != null) {
-        log.debug("listObjectNames: next page %s", pageToken);
-        listObject.setPageToken(pageToken);
-      }
+    if (pageToken != null) {
+      log.debug("listObjectNames: next page %s", pageToken);
+      listObject.setPageToken(pageToken);
+    }
 
-      try {
-        items = listObject.execute();
-      } catch (IOException e) {
-        if (errorExtractor.itemNotFound(e)) {
-          log.debug("listObjectNames(%s, %s, %s): not found",
-              bucketName, objectNamePrefix, delimiter);
-          break;
-        } else {
-          throw wrapException(e, "Error listing", bucketName, objectNamePrefix);
-        }
+    try {
+      items = listObject.execute();
+    } catch (IOException e) {
+      if (errorExtractor.itemNotFound(e)) {
+        log.debug("listObjectNames(%s, %s, %s): not found",
+            bucketName, objectNamePrefix, delimiter);
+        return null;
+      } else {
+        throw wrapException(e, "Error listing", bucketName, objectNamePrefix);
       }
+    }
 
-      // Add prefixes (if any).
-      List<String> prefixes = items.getPrefixes();
-      if (prefixes != null) {
-        log.debug("listed %d prefixes", prefixes.size());
-        listedPrefixes.addAll(prefixes);
-      }
+    // Add prefixes (if any).
+    List<String> prefixes = items.getPrefixes();
+    if (prefixes != null) {
+      log.debug("listed %d prefixes", prefixes.size());
+      listedPrefixes.addAll(prefixes);
+    }
 
-      // Add object names (if any).
-      List<StorageObject> objects = items.getItems();
-      if (objects != null) {
-        log.debug("listed %d objects", objects.size());
-
-        // Although GCS does not implement a file system, it treats objects that end
-        // in delimiter as different from other objects when listing objects.
-        //
-        // If caller sends foo/ as the prefix, foo/ is returned as an object name.
-        // That is inconsistent with listing items in a directory.
-        // Not sure if that is a bug in GCS or the intended behavior.
-        //
-        // In this case, we do not want foo/ in the returned list because we want to
-        // keep the behavior more like a file system without calling it as such.
-        // Therefore, we filter out such entry.
-
-        // Determine if the caller sent a directory name as a prefix.
-        boolean objectPrefixEndsWithDelimiter =
-            !Strings.isNullOrEmpty(objectNamePrefix) && objectNamePrefix.endsWith(PATH_DELIMITER);
-
-        for (StorageObject object : objects) {
-          String objectName = object.getName();
-          if (!objectPrefixEndsWithDelimiter
-              || (objectPrefixEndsWithDelimiter && !objectName.equals(objectNamePrefix))) {
-            listedObjects.add(object);
-          }
+    // Add object names (if any).
+    List<StorageObject> objects = items.getItems();
+    if (objects != null) {
+      log.debug("listed %d objects", objects.size());
+
+      // Although GCS does not implement a file system, it treats objects that end
+      // in delimiter as different from other objects when listing objects.
+      //
+      // If caller sends foo/ as the prefix, foo/ is returned as an object name.
+      // That is inconsistent with listing items in a directory.
+      // Not sure if that is a bug in GCS or the intended behavior.
+      //
+      // In this case, we do not want foo/ in the returned list because we want to
+      // keep the behavior more like a file system without calling it as such.
+      // Therefore, we filter out such entry.
+
+      // Determine if the caller sent a directory name as a prefix.
+      boolean objectPrefixEndsWithDelimiter =
+          !Strings.isNullOrEmpty(objectNamePrefix) && objectNamePrefix.endsWith(PATH_DELIMITER);
+
+      for (StorageObject object : objects) {
+        String objectName = object.getName();
+        if (!objectPrefixEndsWithDelimiter
+            || (objectPrefixEndsWithDelimiter && !objectName.equals(objectNamePrefix))) {
+          listedObjects.add(object);
         }
       }
-      pageToken = items.getNextPageToken();
-    } while (pageToken != null);
+    }
+    return items.getNextPageToken();
   }
 
   /**
@@ -1037,6 +1335,43 @@ public class GoogleCloudStorageImpl
     return objectNames;
   }
 
+  /**
+   * See {@link GoogleCloudStorage#listObjectNames(String, String, String, long)} for details about
+   * expected behavior.
+   */
+  @Override
+  public List<String> listObjectNames(
+      String bucketName, String objectNamePrefix, String delimiter, long maxResults)
+      throws IOException {
+    log.debug("listObjectNames(%s, %s, %s, %d)",
+        bucketName, objectNamePrefix, delimiter, maxResults);
+    Preconditions.checkArgument(maxResults > 0,
+        "maxResults must be greater than 0, got %s", maxResults);
+
+    List<StorageObject> listedObjects = new ArrayList<>();
+    List<String> listedPrefixes = new ArrayList<>();
+    Storage.Objects.List listObject = createListRequest(bucketName, objectNamePrefix, delimiter);
+    // Ask for one more item than needed, since the object named by the prefix itself may be
+    // listed, and then filtered out, along with the others.
+    listObject.setMaxResults(Math.min(maxResults + 1, storageOptions.getMaxListItemsPerCall()));
+
+    // Loop till we fetch enough items, or all of them.
+    String pageToken = null;
+    do {
+      pageToken = listStorageObjectsAndPrefixesPage(listObject, bucketName, objectNamePrefix,
+          delimiter, pageToken, listedObjects, listedPrefixes);
+    } while (pageToken != null && listedObjects.size() + listedPrefixes.size() < maxResults);
+
+    List<String> objectNames = listedPrefixes;
+    for (StorageObject obj : listedObjects) {
+      objectNames.add(obj.getName());
+    }
+    if (objectNames.size() > maxResults) {
+      objectNames = new ArrayList<>(objectNames.subList(0, (int) maxResults));
+    }
+    return objectNames;
+  }
+
   /**
    * See {@link GoogleCloudStorage#listObjectInfo(String, String, String)} for details about
    * expected behavior.
@@ -1062,63 +1397,183 @@ public class GoogleCloudStorageImpl
     }
 
     if (listedPrefixes.size() > 0) {
-      // Send requests to fetch info about the directories associated with each prefix in batch
-      // requests, maxRequestsPerBatch at a time.
-      List<StorageResourceId> resourceIdsForPrefixes = new ArrayList<>();
+      objectInfos.addAll(getItemInfosForPrefixes(bucketName, listedPrefixes));
+    }
+    return objectInfos;
+  }
+
+  /**
+   * See {@link GoogleCloudStorage#listObjectInfoPages(String, String, String)} for details about
+   * expected behavior. The next page is fetched on the background thread-pool while the caller
+   * processes the current one.
+   */
+  @Override
+  public ListPageIterator<GoogleCloudStorageItemInfo> listObjectInfoPages(
+      String bucketName, String objectNamePrefix, String delimiter)
+      throws IOException {
+    log.debug("listObjectInfoPages(%s, %s, %s)", bucketName, objectNamePrefix, delimiter);
+    return new ObjectInfoPageIterator(bucketName, objectNamePrefix, delimiter);
+  }
+
+  /**
+   * Objects and prefixes returned by a single list request.
+   */
+  private static class ListedPage {
+    private final List<StorageObject> objects = new ArrayList<>();
+    private final List<String> prefixes = new ArrayList<>();
+    private String nextPageToken;
+  }
+
+  /**
+   * Iterates over the pages of a listing, keeping the fetch of the next page in flight while the
+   * caller processes the current one.
+   */
+  private class ObjectInfoPageIterator implements ListPageIterator<GoogleCloudStorageItemInfo> {
+    private final String bucketName;
+    private final String objectNamePrefix;
+    private final String delimiter;
+    private final Storage.Objects.List listObject;
+
+    // Fetch of the next page, or null once the last page has been returned.
+    private Future<ListedPage> nextPage;
+
+    ObjectInfoPageIterator(String bucketName, String objectNamePrefix, String delimiter)
+        throws IOException {
+      this.bucketName = bucketName;
+      this.objectNamePrefix = objectNamePrefix;
+      this.delimiter = delimiter;
+      this.listObject = createListRequest(bucketName, objectNamePrefix, delimiter);
+      this.nextPage = fetchPage(null);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return nextPage != null;
+    }
+
+    @Override
+    public List<GoogleCloudStorageItemInfo> next() throws IOException {
+      if (nextPage == null) {
+        throw new NoSuchElementException();
+      }
+      ListedPage page = awaitPage(nextPage);
+      nextPage = page.nextPageToken == null ? null : fetchPage(page.nextPageToken);
+
+      List<GoogleCloudStorageItemInfo> objectInfos = new ArrayList<>();
+      for (StorageObject obj : page.objects) {
+        objectInfos.add(createItemInfoForStorageObject(
+            new StorageResourceId(bucketName, obj.getName()), obj));
+      }
+      if (page.prefixes.size() > 0) {
+        objectInfos.addAll(getItemInfosForPrefixes(bucketName, page.prefixes));
+      }
+      return objectInfos;
+    }
+
+    private Future<ListedPage> fetchPage(final String pageToken) {
+      return threadPool.submit(new Callable<ListedPage>() {
+        @Override
+        public ListedPage call() throws IOException {
+          ListedPage page = new ListedPage();
+          page.nextPageToken = listStorageObjectsAndPrefixesPage(listObject, bucketName,
+              objectNamePrefix, delimiter, pageToken, page.objects, page.prefixes);
+          return page;
+        }
+      });
+    }
+
+    private ListedPage awaitPage(Future<ListedPage> page) throws IOException {
+      try {
+        return page.get();
+      } catch (InterruptedException ie) {
+        page.cancel(true);
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException(
+            String.format("Interrupted while listing '%s' in '%s'", objectNamePrefix, bucketName));
+      } catch (ExecutionException ee) {
+        if (ee.getCause() instanceof IOException) {
+          throw (IOException) ee.getCause();
+        }
+        throw new IOException(ee.getCause());
+      }
+    }
+  }
+
+  /**
+   * Fetches info about the directories associated with the given listed prefixes, repairing
+   * implicit directories if enabled; prefixes whose directory object is missing and could not be
+   * repaired are omitted. If directory inference is enabled, the infos are instead inferred from
+   * the prefixes without any requests, and include implicit directories.
+   */
+  private List<GoogleCloudStorageItemInfo> getItemInfosForPrefixes(
+      String bucketName, List<String> listedPrefixes)
+      throws IOException {
+    if (storageOptions.isInferDirectoriesEnabled()) {
+      List<GoogleCloudStorageItemInfo> directoryInfos = new ArrayList<>(listedPrefixes.size());
       for (String prefix : listedPrefixes) {
-        resourceIdsForPrefixes.add(new StorageResourceId(bucketName, prefix));
+        directoryInfos.add(
+            new InferredDirectoryItemInfo(new StorageResourceId(bucketName, prefix), this));
       }
-      List<GoogleCloudStorageItemInfo> prefixInfos = getItemInfos(resourceIdsForPrefixes);
-      List<StorageResourceId> repairList = new ArrayList<>();
-      for (GoogleCloudStorageItemInfo prefixInfo : prefixInfos) {
-        if (prefixInfo.exists()) {
-          objectInfos.add(prefixInfo);
+      return directoryInfos;
+    }
+
+    // Send requests to fetch info about the directories associated with each prefix in batch
+    // requests, maxRequestsPerBatch at a time.
+    List<StorageResourceId> resourceIdsForPrefixes = new ArrayList<>();
+    for (String prefix : listedPrefixes) {
+      resourceIdsForPrefixes.add(new StorageResourceId(bucketName, prefix));
+    }
+    List<GoogleCloudStorageItemInfo> prefixInfos = getItemInfos(resourceIdsForPrefixes);
+    List<GoogleCloudStorageItemInfo> directoryInfos = new ArrayList<>();
+    List<StorageResourceId> repairList = new ArrayList<>();
+    for (GoogleCloudStorageItemInfo prefixInfo : prefixInfos) {
+      if (prefixInfo.exists()) {
+        directoryInfos.add(prefixInfo);
+      } else {
+        // This indicates a likely "implicit directory" due to a StorageObject lacking a GHFS-
+        // created parent directory.
+        String errorBase = String.format(
+            "Error retrieving object for a retrieved prefix with resourceId '%s'. ",
+            prefixInfo.getResourceId());
+        if (storageOptions.isAutoRepairImplicitDirectoriesEnabled()) {
+          log.debug(errorBase + "Attempting to repair missing directory.");
+          repairList.add(prefixInfo.getResourceId());
         } else {
-          // This indicates a likely "implicit directory" due to a StorageObject lacking a GHFS-
-          // created parent directory.
-          String errorBase = String.format(
-              "Error retrieving object for a retrieved prefix with resourceId '%s'. ",
-              prefixInfo.getResourceId());
-          if (storageOptions.isAutoRepairImplicitDirectoriesEnabled()) {
-            log.debug(errorBase + "Attempting to repair missing directory.");
-            repairList.add(prefixInfo.getResourceId());
-          } else {
-            log.error(errorBase + "Giving up on retrieving missing directory.");
-          }
+          log.error(errorBase + "Giving up on retrieving missing directory.");
         }
       }
+    }
 
-      // Handle repairs.
-      if (storageOptions.isAutoRepairImplicitDirectoriesEnabled() && !repairList.isEmpty()) {
-        try {
-          log.warn("Repairing batch of %d missing directories.", repairList.size());
-          if (repairList.size() == 1) {
-            createEmptyObject(repairList.get(0));
-          } else {
-            createEmptyObjects(repairList);
-          }
+    // Handle repairs.
+    if (storageOptions.isAutoRepairImplicitDirectoriesEnabled() && !repairList.isEmpty()) {
+      try {
+        log.warn("Repairing batch of %d missing directories.", repairList.size());
+        if (repairList.size() == 1) {
+          createEmptyObject(repairList.get(0));
+        } else {
+          createEmptyObjects(repairList);
+        }
 
-          // Fetch and append all the repaired metadatas.
-          List<GoogleCloudStorageItemInfo> repairedInfos = getItemInfos(repairList);
-          int numRepaired = 0;
-          for (GoogleCloudStorageItemInfo repairedInfo : repairedInfos) {
-            if (repairedInfo.exists()) {
-              objectInfos.add(repairedInfo);
-              ++numRepaired;
-            } else {
-              log.warn("Somehow the repair for '%s' failed quietly", repairedInfo.getResourceId());
-            }
+        // Fetch and append all the repaired metadatas.
+        List<GoogleCloudStorageItemInfo> repairedInfos = getItemInfos(repairList);
+        int numRepaired = 0;
+        for (GoogleCloudStorageItemInfo repairedInfo : repairedInfos) {
+          if (repairedInfo.exists()) {
+            directoryInfos.add(repairedInfo);
+            ++numRepaired;
+          } else {
+            log.warn("Somehow the repair for '%s' failed quietly", repairedInfo.getResourceId());
           }
-          log.warn("Successfully repaired %d/%d implicit directories.",
-              numRepaired, repairList.size());
-        } catch (IOException ioe) {
-          // Don't totally fail the listObjectInfo call, since auto-repair is best-effort
-          // anyways.
-          log.error("Failed to repair some missing directories.", ioe);
         }
+        log.warn("Successfully repaired %d/%d implicit directories.",
+            numRepaired, repairList.size());
+      } catch (IOException ioe) {
+        // Don't totally fail the listObjectInfo call, since auto-repair is best-effort
+        // anyways.
+        log.error("Failed to repair some missing directories.", ioe);
       }
     }
-    return objectInfos;
+    return directoryInfos;
   }
 
   /**
@@ -1405,6 +1860,17 @@ public class GoogleCloudStorageImpl
     log.debug("close()");
     threadPool.shutdown();
     manualBatchingThreadPool.shutdown();
+    if (batchThreadPool != null) {
+      batchThreadPool.shutdown();
+    }
+    synchronized (this) {
+      if (readAheadThreadPool != null) {
+        readAheadThreadPool.shutdown();
+      }
+      if (compositeUploadThreadPool != null) {
+        compositeUploadThreadPool.shutdown();
+      }
+    }
   }
 
   /**
@@ -16,6 +16,7 @@ package com.google.cloud.hadoop.gcsio;
 
 
 import com.google.cloud.hadoop.util.AsyncWriteChannelOptions;
+import com.google.cloud.hadoop.util.UploadBufferManager;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Strings;
 import org.apache.http.HttpHost;
@@ -39,6 +40,24 @@ public class GoogleCloudStorageOptions {
    */
   public static final long MAX_REQUESTS_PER_BATCH_DEFAULT = 1000;
 
+  /**
+   * Default maximum number of bytes of upload chunk buffers held at once by all write channels in
+   * the process; 0 means no limit.
+   */
+  public static final long MAX_UPLOAD_BUFFER_MEMORY_DEFAULT = 0;
+
+  /**
+   * Default setting for maximum number of GCS batch requests executing concurrently; 1 executes
+   * batches one after another on the calling thread.
+   */
+  public static final int MAX_BATCHES_IN_FLIGHT_DEFAULT = 1;
+
+  /**
+   * Default setting for inferring the directories of listed prefixes instead of fetching their
+   * placeholder objects.
+   */
+  public static final boolean INFER_DIRECTORIES_DEFAULT = false;
+
   /**
    * Mutable builder for the GoogleCloudStorageOptions class.
    */
@@ -54,11 +73,23 @@ public class GoogleCloudStorageOptions {
     // manually, except possibly for testing purposes.
     private long maxRequestsPerBatch = MAX_REQUESTS_PER_BATCH_DEFAULT;
 
+    private int maxBatchesInFlight = MAX_BATCHES_IN_FLIGHT_DEFAULT;
+
+    private boolean inferDirectoriesEnabled = INFER_DIRECTORIES_DEFAULT;
+
     private HttpHost proxyHost;
 
+    private long maxUploadBufferMemory = MAX_UPLOAD_BUFFER_MEMORY_DEFAULT;
+
     private AsyncWriteChannelOptions.Builder writeChannelOptionsBuilder =
         new AsyncWriteChannelOptions.Builder();
 
+    private GoogleCloudStorageReadOptions.Builder readChannelOptionsBuilder =
+        new GoogleCloudStorageReadOptions.Builder();
+
+    private CompositeUploadOptions.Builder compositeUploadOptionsBuilder =
+        new CompositeUploadOptions.Builder();
+
     public Builder setAutoRepairImplicitDirectoriesEnabled(
         boolean autoRepairImplicitDirectoriesEnabled) {
       this.autoRepairImplicitDirectoriesEnabled = autoRepairImplicitDirectoriesEnabled;
@@ -85,12 +116,38 @@ public class GoogleCloudStorageOptions {
       return this;
     }
 
+    public Builder setMaxBatchesInFlight(int maxBatchesInFlight) {
+      this.maxBatchesInFlight = maxBatchesInFlight;
+      return this;
+    }
+
+    public Builder setMaxUploadBufferMemory(long maxUploadBufferMemory) {
+      this.maxUploadBufferMemory = maxUploadBufferMemory;
+      return this;
+    }
+
+    public Builder setInferDirectoriesEnabled(boolean inferDirectoriesEnabled) {
+      this.inferDirectoriesEnabled = inferDirectoriesEnabled;
+      return this;
+    }
+
     public Builder setWriteChannelOptionsBuilder(
         AsyncWriteChannelOptions.Builder builder) {
       writeChannelOptionsBuilder = builder;
       return this;
     }
 
+    public Builder setReadChannelOptionsBuilder(
+        GoogleCloudStorageReadOptions.Builder builder) {
+      readChannelOptionsBuilder = builder;
+      return this;
+    }
+
+    public Builder setCompositeUploadOptionsBuilder(CompositeUploadOptions.Builder builder) {
+      compositeUploadOptionsBuilder = builder;
+      return this;
+    }
+
     public Builder setProxyHost(HttpHost proxyHost) {
       this.proxyHost = proxyHost;
       return this;
@@ -100,6 +157,14 @@ public class GoogleCloudStorageOptions {
       return writeChannelOptionsBuilder;
     }
 
+    public GoogleCloudStorageReadOptions.Builder getReadChannelOptionsBuilder() {
+      return readChannelOptionsBuilder;
+    }
+
+    public CompositeUploadOptions.Builder getCompositeUploadOptionsBuilder() {
+      return compositeUploadOptionsBuilder;
+    }
+
     public GoogleCloudStorageOptions build() {
       return new GoogleCloudStorageOptions(
           autoRepairImplicitDirectoriesEnabled,
@@ -107,8 +172,13 @@ public class GoogleCloudStorageOptions {
           appName,
           maxListItemsPerCall,
           maxRequestsPerBatch,
+          maxBatchesInFlight,
+          maxUploadBufferMemory,
           writeChannelOptionsBuilder.build(),
-          proxyHost);
+          readChannelOptionsBuilder.build(),
+          compositeUploadOptionsBuilder.build(),
+          proxyHost,
+          inferDirectoriesEnabled);
     }
   }
 
@@ -120,21 +190,54 @@ public class GoogleCloudStorageOptions {
   private final String projectId;
   private final String appName;
   private final AsyncWriteChannelOptions writeChannelOptions;
+  private final GoogleCloudStorageReadOptions readChannelOptions;
+  private final CompositeUploadOptions compositeUploadOptions;
   private final long maxListItemsPerCall;
   private final long maxRequestsPerBatch;
+  private final int maxBatchesInFlight;
+  private final long maxUploadBufferMemory;
   private final HttpHost proxyHost;
-
+  private final boolean inferDirectoriesEnabled;
 
   public GoogleCloudStorageOptions(boolean autoRepairImplicitDirectoriesEnabled,
       String projectId, String appName, long maxListItemsPerCall, long maxRequestsPerBatch,
       AsyncWriteChannelOptions writeChannelOptions, HttpHost proxyHost) {
+    this(autoRepairImplicitDirectoriesEnabled, projectId, appName, maxListItemsPerCall,
+        maxRequestsPerBatch, MAX_BATCHES_IN_FLIGHT_DEFAULT, MAX_UPLOAD_BUFFER_MEMORY_DEFAULT,
+        writeChannelOptions, GoogleCloudStorageReadOptions.DEFAULT,
+        CompositeUploadOptions.DEFAULT, proxyHost);
+  }
+
+  public GoogleCloudStorageOptions(boolean autoRepairImplicitDirectoriesEnabled,
+      String projectId, String appName, long maxListItemsPerCall, long maxRequestsPerBatch,
+      int maxBatchesInFlight, long maxUploadBufferMemory,
+      AsyncWriteChannelOptions writeChannelOptions,
+      GoogleCloudStorageReadOptions readChannelOptions,
+      CompositeUploadOptions compositeUploadOptions, HttpHost proxyHost) {
+    this(autoRepairImplicitDirectoriesEnabled, projectId, appName, maxListItemsPerCall,
+        maxRequestsPerBatch, maxBatchesInFlight, maxUploadBufferMemory, writeChannelOptions,
+        readChannelOptions, compositeUploadOptions, proxyHost, INFER_DIRECTORIES_DEFAULT);
+  }
+
+  public GoogleCloudStorageOptions(boolean autoRepairImplicitDirectoriesEnabled,
+      String projectId, String appName, long maxListItemsPerCall, long maxRequestsPerBatch,
+      int maxBatchesInFlight, long maxUploadBufferMemory,
+      AsyncWriteChannelOptions writeChannelOptions,
+      GoogleCloudStorageReadOptions readChannelOptions,
+      CompositeUploadOptions compositeUploadOptions, HttpHost proxyHost,
+      boolean inferDirectoriesEnabled) {
     this.autoRepairImplicitDirectoriesEnabled = autoRepairImplicitDirectoriesEnabled;
     this.projectId = projectId;
     this.appName = appName;
     this.writeChannelOptions = writeChannelOptions;
+    this.readChannelOptions = readChannelOptions;
+    this.compositeUploadOptions = compositeUploadOptions;
     this.maxListItemsPerCall = maxListItemsPerCall;
     this.maxRequestsPerBatch = maxRequestsPerBatch;
+    this.maxBatchesInFlight = maxBatchesInFlight;
+    this.maxUploadBufferMemory = maxUploadBufferMemory;
     this.proxyHost = proxyHost;
+    this.inferDirectoriesEnabled = inferDirectoriesEnabled;
   }
 
   public boolean isAutoRepairImplicitDirectoriesEnabled() {
@@ -157,18 +260,48 @@ public class GoogleCloudStorageOptions {
     return writeChannelOptions;
   }
 
+  public GoogleCloudStorageReadOptions getReadChannelOptions() {
+    return readChannelOptions;
+  }
+
+  public CompositeUploadOptions getCompositeUploadOptions() {
+    return compositeUploadOptions;
+  }
+
   public long getMaxRequestsPerBatch() {
     return maxRequestsPerBatch;
   }
 
+  public int getMaxBatchesInFlight() {
+    return maxBatchesInFlight;
+  }
+
+  public long getMaxUploadBufferMemory() {
+    return maxUploadBufferMemory;
+  }
+
   public HttpHost getProxyHost() {
     return proxyHost;
   }
 
+  /**
+   * Indicates whether listings infer the directories of listed prefixes, fetching their
+   * placeholder objects only when their metadata is asked for.
+   */
+  public boolean isInferDirectoriesEnabled() {
+    return inferDirectoriesEnabled;
+  }
+
   public void throwIfNotValid() {
     Preconditions.checkArgument(!Strings.isNullOrEmpty(projectId),
         "projectId must not be null or empty");
     Preconditions.checkArgument(!Strings.isNullOrEmpty(appName),
         "appName must not be null or empty");
+    Preconditions.checkArgument(maxBatchesInFlight > 0,
+        "maxBatchesInFlight must be greater than 0, got %s", maxBatchesInFlight);
+    Preconditions.checkArgument(maxUploadBufferMemory == 0
+        || maxUploadBufferMemory >= UploadBufferManager.LEASE_GRANULARITY,
+        "maxUploadBufferMemory must be 0 or at least %s, got %s",
+        UploadBufferManager.LEASE_GRANULARITY, maxUploadBufferMemory);
   }
 }
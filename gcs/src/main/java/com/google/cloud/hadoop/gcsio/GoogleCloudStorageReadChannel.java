@@ -29,14 +29,26 @@ import com.google.cloud.hadoop.util.ClientRequestHelper;
 import com.google.cloud.hadoop.util.LogUtil;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.Futures;
 
 import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 
 /**
@@ -50,6 +62,12 @@ public class GoogleCloudStorageReadChannel
   // Used to separate elements of a Content-Range
   private static final Pattern SLASH = Pattern.compile("/");
 
+  // Response header carrying the generation of the object whose content is returned.
+  private static final String GENERATION_HEADER = "x-goog-generation";
+
+  // Size of the buffer used to discard bytes when skipping forward in the open stream.
+  private static final int SKIP_BUFFER_SIZE = 64 * 1024;
+
   // GCS access instance.
   private Storage gcs;
 
@@ -79,6 +97,41 @@ public class GoogleCloudStorageReadChannel
   // Size of the object being read.
   private long size = -1;
 
+  // Generation of the object being read, taken from the first media response so that later
+  // requests, including those of read-ahead threads, read the same version of the object; null
+  // until known.
+  private volatile Long generation;
+
+  // Position within the object of the next byte that readChannel will return.
+  private long contentChannelPosition = -1;
+
+  // Position within the object just past the last byte that readChannel can return; either the
+  // size of the object or the end of a bounded range request.
+  private long contentChannelEnd = -1;
+
+  // True if streams are opened with bounded range requests sized to each read rather than with
+  // open-ended requests; set up front in RANDOM mode, or once a non-sequential seek is observed
+  // in AUTO mode.
+  private boolean randomAccess;
+
+  // True once any data has been returned by read(); seeks made before the first read, such as
+  // seeking to the start of a split, are not taken as a sign of random access.
+  private boolean hasReadData;
+
+  // The last bytes of the object, fetched by the first request when the footer cache is enabled;
+  // null until fetched. Volatile so that positional reads made from other threads see it, and
+  // the size set before it.
+  private volatile byte[] footerContent;
+
+  // The entire content of the object once it is known to be no larger than the whole-object
+  // threshold; all reads and seeks are then served from memory. null until fetched. Volatile so
+  // that positional reads made from other threads see it.
+  private volatile byte[] wholeObjectContent;
+
+  // Content of small objects shared by the channels of a GoogleCloudStorage instance, keyed by
+  // bucket, name and generation; null if not shared.
+  private Cache<String, byte[]> wholeObjectCache;
+
   // Maximum number of automatic retries when reading from the underlying channel without making
   // progress; each time at least one byte is successfully read, the counter of attempted retries
   // is reset.
@@ -104,6 +157,40 @@ public class GoogleCloudStorageReadChannel
   // necessary.
   private BackOff backOff = null;
 
+  // Options controlling how data is fetched from GCS by this channel.
+  private final GoogleCloudStorageReadOptions readOptions;
+
+  // Executor used to fetch read-ahead ranges concurrently; null when read-ahead is disabled.
+  private final ExecutorService readAheadThreadPool;
+
+  // Contiguous ranges requested ahead of the current position, in increasing offset order. While
+  // read-ahead is active and no seek is pending, the first range contains currentPosition.
+  private final Deque<PrefetchedRange> prefetchedRanges = new ArrayDeque<>();
+
+  /**
+   * A bounded range of the object whose content is being fetched, possibly in the background.
+   */
+  private static class PrefetchedRange {
+    // Offset of the first byte of this range within the object.
+    final long start;
+
+    // Number of bytes in this range.
+    final int length;
+
+    // Content of this range; exactly 'length' bytes once complete.
+    Future<byte[]> content;
+
+    PrefetchedRange(long start, int length, Future<byte[]> content) {
+      this.start = start;
+      this.length = length;
+      this.content = content;
+    }
+
+    boolean contains(long position) {
+      return position >= start && position < start + length;
+    }
+  }
+
   // Settings used for instantiating the default BackOff used for determining wait time between
   // retries. TODO(user): Wire these out to be settable by the Hadoop configs.
   // The number of milliseconds to wait before the very first retry in a series of retries.
@@ -144,11 +231,42 @@ public class GoogleCloudStorageReadChannel
       ApiErrorExtractor errorExtractor,
       ClientRequestHelper<StorageObject> requestHelper)
       throws IOException {
+    this(gcs, bucketName, objectName, errorExtractor, requestHelper,
+        GoogleCloudStorageReadOptions.DEFAULT, null);
+  }
+
+  /**
+   * Constructs an instance of GoogleCloudStorageReadChannel.
+   *
+   * @param gcs storage object instance
+   * @param bucketName name of the bucket containing the object to read
+   * @param objectName name of the object to read
+   * @param requestHelper a ClientRequestHelper used to set any extra headers
+   * @param readOptions options controlling read-ahead and range requests
+   * @param readAheadThreadPool executor used to fetch read-ahead ranges; must be non-null if
+   *     read-ahead is enabled in {@code readOptions}
+   * @throws IOException on IO error
+   */
+  GoogleCloudStorageReadChannel(
+      Storage gcs,
+      String bucketName,
+      String objectName,
+      ApiErrorExtractor errorExtractor,
+      ClientRequestHelper<StorageObject> requestHelper,
+      GoogleCloudStorageReadOptions readOptions,
+      ExecutorService readAheadThreadPool)
+      throws IOException {
+    Preconditions.checkArgument(readOptions != null, "readOptions must not be null");
+    Preconditions.checkArgument(!readOptions.isReadAheadEnabled() || readAheadThreadPool != null,
+        "readAheadThreadPool must not be null when read-ahead is enabled");
     this.gcs = gcs;
     this.clientRequestHelper = requestHelper;
     this.bucketName = bucketName;
     this.objectName = objectName;
     this.errorExtractor = errorExtractor;
+    this.readOptions = readOptions;
+    this.readAheadThreadPool = readAheadThreadPool;
+    this.randomAccess = readOptions.getFadvise() == GoogleCloudStorageReadOptions.Fadvise.RANDOM;
     channelIsOpen = true;
     position(0);
   }
@@ -164,6 +282,8 @@ public class GoogleCloudStorageReadChannel
       throws IOException {
     this.clientRequestHelper = null;
     this.errorExtractor = null;
+    this.readOptions = GoogleCloudStorageReadOptions.DEFAULT;
+    this.readAheadThreadPool = null;
     channelIsOpen = true;
     position(0);
   }
@@ -219,6 +339,22 @@ public class GoogleCloudStorageReadChannel
         .build();
   }
 
+  /**
+   * Sets the size and generation of the object from its metadata, so that a small object can be
+   * fetched whole by the first request.
+   */
+  void setMetadata(GoogleCloudStorageItemInfo itemInfo) {
+    size = itemInfo.getSize();
+    generation = itemInfo.getContentGeneration();
+  }
+
+  /**
+   * Sets the cache of whole objects shared with other channels; may be null.
+   */
+  void setWholeObjectCache(Cache<String, byte[]> wholeObjectCache) {
+    this.wholeObjectCache = wholeObjectCache;
+  }
+
   /**
    * Sets the number of times to automatically retry by re-opening the underlying readChannel
    * whenever an exception occurs while reading from it. The count of attempted retries is reset
@@ -246,8 +382,21 @@ public class GoogleCloudStorageReadChannel
       return 0;
     }
 
+    // Fetch the footer with the first request if the footer cache is enabled, and serve reads
+    // that fall within it without touching the underlying stream.
+    if (readOptions.getFooterCacheSize() > 0 && size < 0) {
+      fetchFooterAndSetSize();
+    }
+    if (footerContent != null && currentPosition >= size - footerContent.length) {
+      return readFromFooter(buffer);
+    }
+
     // Perform a lazy seek if not done already.
-    performLazySeek();
+    performLazySeek(buffer.remaining());
+
+    if (readOptions.isReadAheadEnabled() && wholeObjectContent == null) {
+      return readFromPrefetchedRanges(buffer);
+    }
 
     int totalBytesRead = 0;
     int retriesAttempted = 0;
@@ -261,10 +410,17 @@ public class GoogleCloudStorageReadChannel
         int numBytesRead = readChannel.read(buffer);
         Preconditions.checkState(numBytesRead != 0, "Read 0 bytes without blocking!");
         if (numBytesRead < 0) {
+          if (currentPosition == contentChannelEnd && contentChannelEnd < size) {
+            // Reached the end of a bounded range; continue with a request for the next range.
+            lazySeekPending = true;
+            performLazySeek(buffer.remaining());
+            continue;
+          }
           break;
         }
         totalBytesRead += numBytesRead;
         currentPosition += numBytesRead;
+        contentChannelPosition += numBytesRead;
 
         // The count of retriesAttempted is per low-level readChannel.read call; each time we make
         // progress we reset the retry counter.
@@ -277,38 +433,8 @@ public class GoogleCloudStorageReadChannel
               maxRetries, StorageResourceId.createReadableString(bucketName, objectName));
           throw ioe;
         } else {
-          if (retriesAttempted == 0) {
-            // If this is the first of a series of retries, we also want to reset the backOff
-            // to have fresh initial values.
-            if (backOff == null) {
-              backOff = createBackOff();
-            } else {
-              backOff.reset();
-            }
-          }
-
           ++retriesAttempted;
-          log.warn("Got exception: %s while reading '%s'; retry # %d. Sleeping...",
-              ioe.getMessage(), StorageResourceId.createReadableString(bucketName, objectName),
-              retriesAttempted);
-
-          try {
-            boolean backOffSuccessful = BackOffUtils.next(sleeper, backOff);
-            if (!backOffSuccessful) {
-              log.error("BackOff returned false; maximum total elapsed time exhausted. Giving up "
-                  + "after %d retries for '%s'", retriesAttempted,
-                  StorageResourceId.createReadableString(bucketName, objectName));
-              throw ioe;
-            }
-          } catch (InterruptedException ie) {
-            log.error("Interrupted while sleeping before retry. Giving up "
-                + "after %d retries for '%s'", retriesAttempted,
-                StorageResourceId.createReadableString(bucketName, objectName));
-            ioe.addSuppressed(ie);
-            throw ioe;
-          }
-          log.info("Done sleeping before retry for '%s'; retry # %d.",
-              StorageResourceId.createReadableString(bucketName, objectName), retriesAttempted);
+          sleepBeforeRetry(ioe, retriesAttempted);
 
           if (buffer.remaining() != remainingBeforeRead) {
             int partialRead = remainingBeforeRead - buffer.remaining();
@@ -317,23 +443,579 @@ public class GoogleCloudStorageReadChannel
             retriesAttempted = 0;
             totalBytesRead += partialRead;
             currentPosition += partialRead;
+            contentChannelPosition += partialRead;
           }
 
           // Force the stream to be reopened by seeking to the current position.
           long newPosition = currentPosition;
           currentPosition = -1;
           position(newPosition);
-          performLazySeek();
+          performLazySeek(buffer.remaining());
         }
       }
     } while (buffer.remaining() > 0);
 
+    if (totalBytesRead > 0) {
+      hasReadData = true;
+    }
+
     // If this method was called when the stream was already at EOF
     // (indicated by totalBytesRead == 0) then return EOF else,
     // return the number of bytes read.
     return (totalBytesRead == 0) ? -1 : totalBytesRead;
   }
 
+  /**
+   * Reads from the given position into the given buffer with bounded range requests, without
+   * changing the position of this channel or the state of its underlying stream. Unlike the
+   * other methods of this channel, this method may be called concurrently from multiple threads.
+   *
+   * @param position position in the object of the first byte to read
+   * @param buffer buffer to read data into
+   * @return number of bytes read, which is less than buffer.remaining() only at the end of the
+   *     object, or -1 if position is at or beyond the end of the object
+   * @throws IOException on IO error
+   */
+  public int read(long position, ByteBuffer buffer)
+      throws IOException {
+    throwIfNotOpen();
+    Preconditions.checkArgument(position >= 0, "position must not be negative, got %s", position);
+    if (buffer.remaining() == 0) {
+      return 0;
+    }
+
+    // Serve the read from memory if the whole object has already been fetched.
+    byte[] content = getLoadedWholeObjectContent();
+    if (content != null) {
+      return readFromContent(content, position, buffer);
+    }
+
+    // Likewise if the read falls within the cached footer.
+    byte[] footer = footerContent;
+    if (footer != null && position >= size - footer.length) {
+      return readFromContent(footer, position - (size - footer.length), buffer);
+    }
+
+    int totalBytesRead = 0;
+    int retriesAttempted = 0;
+    BackOff positionalReadBackOff = null;
+    while (buffer.remaining() > 0) {
+      try (InputStream contentStream =
+          openRangeStream(position + totalBytesRead, buffer.remaining())) {
+        if (contentStream == null) {
+          break;
+        }
+        ReadableByteChannel contentChannel = Channels.newChannel(contentStream);
+        int streamBytesRead = 0;
+        int numBytesRead;
+        while (buffer.remaining() > 0 && (numBytesRead = contentChannel.read(buffer)) >= 0) {
+          streamBytesRead += numBytesRead;
+          totalBytesRead += numBytesRead;
+          retriesAttempted = 0;
+        }
+        if (streamBytesRead == 0 || (size >= 0 && position + totalBytesRead >= size)) {
+          // The end of the object was reached.
+          break;
+        }
+        // Otherwise the stream ended early; reopen it at the first byte not yet read.
+      } catch (FileNotFoundException fnfe) {
+        throw fnfe;
+      } catch (IOException ioe) {
+        if (retriesAttempted == maxRetries) {
+          log.error(
+              "Already attempted max of %d retries while reading '%s'; throwing exception.",
+              maxRetries, StorageResourceId.createReadableString(bucketName, objectName));
+          throw ioe;
+        }
+        ++retriesAttempted;
+        if (positionalReadBackOff == null) {
+          positionalReadBackOff = createBackOff();
+        }
+        sleepBeforeRetry(ioe, retriesAttempted, positionalReadBackOff);
+      }
+    }
+    return (totalBytesRead == 0) ? -1 : totalBytesRead;
+  }
+
+  /**
+   * Opens a stream over at most {@code length} bytes of the object starting at the given
+   * position, without changing the state of this channel.
+   *
+   * @return the stream, or null if position is at or beyond the end of the object
+   * @throws FileNotFoundException if the object does not exist
+   * @throws IOException on IO error
+   */
+  protected InputStream openRangeStream(long position, int length)
+      throws IOException {
+    HttpResponse response =
+        executeMediaRequest(String.format("bytes=%d-%d", position, position + length - 1),
+            position, true);
+    return response == null ? null : response.getContent();
+  }
+
+  /**
+   * Sleeps according to the BackOff before the retry numbered {@code retriesAttempted} of an
+   * operation which failed with {@code ioe}; the BackOff is reset before the first retry of a
+   * series.
+   *
+   * @throws IOException {@code ioe} if the BackOff is exhausted or sleeping is interrupted
+   */
+  private void sleepBeforeRetry(IOException ioe, int retriesAttempted)
+      throws IOException {
+    if (retriesAttempted == 1) {
+      // If this is the first of a series of retries, we also want to reset the backOff
+      // to have fresh initial values.
+      if (backOff == null) {
+        backOff = createBackOff();
+      } else {
+        backOff.reset();
+      }
+    }
+    sleepBeforeRetry(ioe, retriesAttempted, backOff);
+  }
+
+  /**
+   * Sleeps according to the given BackOff before the retry numbered {@code retriesAttempted} of
+   * an operation which failed with {@code ioe}.
+   *
+   * @throws IOException {@code ioe} if the BackOff is exhausted or sleeping is interrupted
+   */
+  private void sleepBeforeRetry(IOException ioe, int retriesAttempted, BackOff backOff)
+      throws IOException {
+    log.warn("Got exception: %s while reading '%s'; retry # %d. Sleeping...",
+        ioe.getMessage(), StorageResourceId.createReadableString(bucketName, objectName),
+        retriesAttempted);
+
+    try {
+      boolean backOffSuccessful = BackOffUtils.next(sleeper, backOff);
+      if (!backOffSuccessful) {
+        log.error("BackOff returned false; maximum total elapsed time exhausted. Giving up "
+            + "after %d retries for '%s'", retriesAttempted,
+            StorageResourceId.createReadableString(bucketName, objectName));
+        throw ioe;
+      }
+    } catch (InterruptedException ie) {
+      log.error("Interrupted while sleeping before retry. Giving up "
+          + "after %d retries for '%s'", retriesAttempted,
+          StorageResourceId.createReadableString(bucketName, objectName));
+      ioe.addSuppressed(ie);
+      throw ioe;
+    }
+    log.info("Done sleeping before retry for '%s'; retry # %d.",
+        StorageResourceId.createReadableString(bucketName, objectName), retriesAttempted);
+  }
+
+  /**
+   * Fetches the last footerCacheSize bytes of the object with a single suffix range request,
+   * using the response to determine the size of the object.
+   */
+  private void fetchFooterAndSetSize()
+      throws IOException {
+    int footerCacheSize = readOptions.getFooterCacheSize();
+    HttpResponse response =
+        executeMediaRequest(String.format("bytes=-%d", footerCacheSize), 0, size == -1);
+    if (response == null) {
+      log.info("Got 'range not satisfiable' for reading footer of %s; assuming empty.",
+          StorageResourceId.createReadableString(bucketName, objectName));
+      size = 0;
+      footerContent = new byte[0];
+      return;
+    }
+
+    String contentRange = response.getHeaders().getContentRange();
+    Long contentLength = response.getHeaders().getContentLength();
+    if (contentRange != null) {
+      size = parseSizeFromContentRange(contentRange);
+    } else if (contentLength != null) {
+      // Without a Content-Range the response holds the whole object.
+      size = contentLength;
+    } else {
+      throw new IOException("Could not determine size of response");
+    }
+
+    byte[] content = new byte[(int) Math.min(footerCacheSize, size)];
+    try (InputStream contentStream = response.getContent()) {
+      ByteStreams.readFully(contentStream, content);
+    }
+    footerContent = content;
+    log.debug("Cached footer of %d bytes for '%s' of size %d", footerContent.length,
+        StorageResourceId.createReadableString(bucketName, objectName), size);
+  }
+
+  /**
+   * Serves a read at a position within the cached footer.
+   *
+   * @return number of bytes read or -1 on end-of-stream
+   */
+  private int readFromFooter(ByteBuffer buffer) {
+    if (currentPosition >= size) {
+      return -1;
+    }
+    int offset = (int) (currentPosition - (size - footerContent.length));
+    int length = Math.min(buffer.remaining(), footerContent.length - offset);
+    buffer.put(footerContent, offset, length);
+    currentPosition += length;
+    hasReadData = true;
+
+    // The underlying stream, if any, is no longer at currentPosition.
+    lazySeekPending = true;
+    return length;
+  }
+
+  /**
+   * Returns true if whole-object reads are enabled and the size of the object is known and small
+   * enough to read it whole.
+   */
+  private boolean isWholeObjectReadable() {
+    return readOptions.getWholeObjectThreshold() > 0
+        && size >= 0 && size <= readOptions.getWholeObjectThreshold();
+  }
+
+  /**
+   * Returns the key of the object in wholeObjectCache, or null if it cannot be cached.
+   */
+  private String getWholeObjectCacheKey() {
+    if (wholeObjectCache == null || generation == null) {
+      return null;
+    }
+    return StorageResourceId.createReadableString(bucketName, objectName) + "#" + generation;
+  }
+
+  /**
+   * Fetches the entire content of the object with a single request, unless it is cached.
+   */
+  private void fetchWholeObject()
+      throws IOException {
+    String cacheKey = getWholeObjectCacheKey();
+    byte[] content = cacheKey == null ? null : wholeObjectCache.getIfPresent(cacheKey);
+    if (content != null) {
+      log.debug("Read whole object '%s' from cache", cacheKey);
+      wholeObjectContent = content;
+      return;
+    }
+    if (size == 0) {
+      setWholeObjectContent(new byte[0]);
+      return;
+    }
+    HttpResponse response = executeMediaRequest("bytes=0-", 0, true);
+    if (response == null) {
+      setWholeObjectContent(new byte[0]);
+      return;
+    }
+    try (InputStream contentStream = response.getContent()) {
+      setWholeObjectContent(ByteStreams.toByteArray(contentStream));
+    }
+  }
+
+  /**
+   * Returns the entire content of the object if this channel has fetched it or if it is in
+   * wholeObjectCache for the generation being read, without fetching it; null otherwise.
+   */
+  private byte[] getLoadedWholeObjectContent() {
+    byte[] content = wholeObjectContent;
+    if (content == null) {
+      String cacheKey = getWholeObjectCacheKey();
+      content = cacheKey == null ? null : wholeObjectCache.getIfPresent(cacheKey);
+    }
+    return content;
+  }
+
+  /**
+   * Copies into the buffer as many bytes as fit of the given content, starting at the given
+   * offset within it.
+   *
+   * @return number of bytes read, or -1 if offset is at or beyond the end of the content
+   */
+  private static int readFromContent(byte[] content, long offset, ByteBuffer buffer) {
+    if (offset >= content.length) {
+      return -1;
+    }
+    int length = (int) Math.min(buffer.remaining(), content.length - offset);
+    buffer.put(content, (int) offset, length);
+    return length;
+  }
+
+  /**
+   * Keeps the given entire content of the object to serve all further reads from.
+   */
+  private void setWholeObjectContent(byte[] content) {
+    wholeObjectContent = content;
+    size = content.length;
+    String cacheKey = getWholeObjectCacheKey();
+    if (cacheKey != null) {
+      wholeObjectCache.put(cacheKey, content);
+    }
+    log.debug("Read whole object '%s' of size %d",
+        StorageResourceId.createReadableString(bucketName, objectName), size);
+  }
+
+  /**
+   * Serves a read from the queue of prefetched ranges, consuming ranges as they are exhausted and
+   * scheduling new ones so that up to readAheadDepth ranges stay in flight ahead of the current
+   * position.
+   *
+   * @return number of bytes read or -1 on end-of-stream
+   */
+  private int readFromPrefetchedRanges(ByteBuffer buffer)
+      throws IOException {
+    int totalBytesRead = 0;
+    while (buffer.remaining() > 0 && currentPosition < size) {
+      PrefetchedRange range = prefetchedRanges.peekFirst();
+      Preconditions.checkState(range != null && range.contains(currentPosition),
+          "No prefetched range contains position %s", currentPosition);
+      byte[] content = getPrefetchedContent(range);
+      int offset = (int) (currentPosition - range.start);
+      int length = Math.min(buffer.remaining(), range.length - offset);
+      buffer.put(content, offset, length);
+      totalBytesRead += length;
+      currentPosition += length;
+
+      if (!range.contains(currentPosition)) {
+        prefetchedRanges.removeFirst();
+        schedulePrefetches();
+      }
+    }
+    return (totalBytesRead == 0) ? -1 : totalBytesRead;
+  }
+
+  /**
+   * Waits for the content of {@code range}; if fetching it in the background failed, fetches it
+   * again in the calling thread with the same retry policy as streaming reads.
+   */
+  private byte[] getPrefetchedContent(PrefetchedRange range)
+      throws IOException {
+    IOException lastException;
+    try {
+      return range.content.get();
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException(String.format(
+          "Interrupted while waiting for range at position %d of '%s'", range.start,
+          StorageResourceId.createReadableString(bucketName, objectName)));
+    } catch (ExecutionException ee) {
+      if (ee.getCause() instanceof FileNotFoundException) {
+        throw (FileNotFoundException) ee.getCause();
+      } else if (ee.getCause() instanceof IOException) {
+        lastException = (IOException) ee.getCause();
+      } else {
+        throw new IOException(ee.getCause());
+      }
+    }
+
+    int retriesAttempted = 0;
+    while (true) {
+      if (retriesAttempted == maxRetries) {
+        log.error(
+            "Already attempted max of %d retries while reading '%s'; throwing exception.",
+            maxRetries, StorageResourceId.createReadableString(bucketName, objectName));
+        throw lastException;
+      }
+      ++retriesAttempted;
+      sleepBeforeRetry(lastException, retriesAttempted);
+      try {
+        byte[] content = fetchRange(range.start, range.length);
+        range.content = Futures.immediateFuture(content);
+        return content;
+      } catch (FileNotFoundException fnfe) {
+        throw fnfe;
+      } catch (IOException ioe) {
+        lastException = ioe;
+      }
+    }
+  }
+
+  /**
+   * Submits background fetches for the ranges following the last queued range until
+   * readAheadDepth ranges are queued or the end of the object is reached. Requires the size of
+   * the object to be known.
+   */
+  private void schedulePrefetches() {
+    long nextStart = prefetchedRanges.isEmpty()
+        ? currentPosition
+        : prefetchedRanges.peekLast().start + prefetchedRanges.peekLast().length;
+    while (prefetchedRanges.size() < readOptions.getReadAheadDepth() && nextStart < size) {
+      final long rangeStart = nextStart;
+      final int rangeLength =
+          (int) Math.min(readOptions.getReadAheadRangeSize(), size - rangeStart);
+      Future<byte[]> content = readAheadThreadPool.submit(new Callable<byte[]>() {
+        @Override
+        public byte[] call()
+            throws IOException {
+          return fetchRange(rangeStart, rangeLength);
+        }
+      });
+      prefetchedRanges.addLast(new PrefetchedRange(rangeStart, rangeLength, content));
+      nextStart = rangeStart + rangeLength;
+    }
+  }
+
+  /**
+   * Cancels and discards all queued read-ahead ranges.
+   */
+  private void cancelPrefetches() {
+    for (PrefetchedRange range : prefetchedRanges) {
+      range.content.cancel(true);
+    }
+    prefetchedRanges.clear();
+  }
+
+  /**
+   * Fetches exactly {@code length} bytes starting at {@code rangeStart} with a single bounded
+   * range request. Safe to call from read-ahead threads, since it does not modify channel state.
+   */
+  private byte[] fetchRange(long rangeStart, int length)
+      throws IOException {
+    HttpResponse response = executeRangeRequest(rangeStart, rangeStart + length - 1);
+    byte[] content = new byte[length];
+    try (InputStream contentStream = response.getContent()) {
+      ByteStreams.readFully(contentStream, content);
+    } catch (EOFException eofe) {
+      throw new IOException(String.format(
+          "Received fewer than %d bytes reading '%s' at position %d", length,
+          StorageResourceId.createReadableString(bucketName, objectName), rangeStart), eofe);
+    }
+    return content;
+  }
+
+  /**
+   * Performs the first read-ahead fetch at currentPosition in the calling thread, using the
+   * Content-Range of the response to determine the size of the object.
+   */
+  private void fetchFirstRangeAndSetSize()
+      throws IOException {
+    validatePosition(currentPosition);
+    int requestedLength = readOptions.getReadAheadRangeSize();
+    HttpResponse response =
+        executeRangeRequest(currentPosition, currentPosition + requestedLength - 1);
+    if (response == null) {
+      log.info("Got 'range not satisfiable' for reading %s at position 0; assuming empty.",
+          StorageResourceId.createReadableString(bucketName, objectName));
+      size = 0;
+      return;
+    }
+
+    setSizeFromResponse(response, currentPosition, requestedLength);
+
+    int length = (int) Math.min(requestedLength, size - currentPosition);
+    byte[] content = new byte[length];
+    try (InputStream contentStream = response.getContent()) {
+      ByteStreams.readFully(contentStream, content);
+    }
+    prefetchedRanges.addLast(new PrefetchedRange(
+        currentPosition, length, Futures.immediateFuture(content)));
+  }
+
+  /**
+   * Parses the total size of the object from a Content-Range header of the form
+   * "bytes start-end/size".
+   */
+  private static long parseSizeFromContentRange(String contentRange)
+      throws IOException {
+    String[] parts = SLASH.split(contentRange);
+    try {
+      return Long.parseLong(parts[parts.length - 1]);
+    } catch (NumberFormatException e) {
+      throw new IOException(
+          "Could not determine size from response from Content-Range: " + contentRange, e);
+    }
+  }
+
+  /**
+   * Sets size from the headers of the response to a range request starting at rangeStart. The
+   * Content-Length of an open-ended request (negative requestedLength) covers the rest of the
+   * object; a bounded request relies on the Content-Range, or on a Content-Length shorter than
+   * requested, which means the range extended past the end of the object.
+   */
+  private void setSizeFromResponse(HttpResponse response, long rangeStart, long requestedLength)
+      throws IOException {
+    String contentRange = response.getHeaders().getContentRange();
+    Long contentLength = response.getHeaders().getContentLength();
+    if (requestedLength < 0 && contentLength != null) {
+      size = contentLength + rangeStart;
+    } else if (contentRange != null) {
+      size = parseSizeFromContentRange(contentRange);
+    } else if (requestedLength >= 0 && contentLength != null && contentLength < requestedLength) {
+      size = rangeStart + contentLength;
+    } else {
+      throw new IOException("Could not determine size of response");
+    }
+  }
+
+  /**
+   * Issues a media GET for the bytes in [rangeStart, rangeEnd] of the object, or for all bytes
+   * from rangeStart onward if rangeEnd is negative.
+   *
+   * @return the response, or null if the object turned out to be empty
+   * @throws FileNotFoundException if the object does not exist
+   * @throws IOException wrapping the API exception on any other error
+   */
+  private HttpResponse executeRangeRequest(long rangeStart, long rangeEnd)
+      throws IOException {
+    String range = rangeEnd < 0
+        ? String.format("bytes=%d-", rangeStart)
+        : String.format("bytes=%d-%d", rangeStart, rangeEnd);
+    return executeMediaRequest(range, rangeStart, rangeStart == 0 && size == -1);
+  }
+
+  /**
+   * Issues a media GET for the given Range header value.
+   *
+   * @param range value of the Range header
+   * @param position position of the first requested byte used in error messages, or 0 for a
+   *     suffix range
+   * @param nullIfNotSatisfiable whether to return null rather than throw if the range is not
+   *     satisfiable, which for a range starting at 0 means the object is empty
+   * @return the response, or null if the range is not satisfiable and nullIfNotSatisfiable is set
+   * @throws FileNotFoundException if the object does not exist
+   * @throws IOException wrapping the API exception on any other error
+   */
+  private HttpResponse executeMediaRequest(
+      String range, long position, boolean nullIfNotSatisfiable)
+      throws IOException {
+    Storage.Objects.Get getObject = gcs.objects().get(bucketName, objectName);
+    if (generation != null) {
+      getObject.setGeneration(generation);
+    }
+    // Set the range on the existing request headers which may have been initialized with things
+    // like user-agent already.
+    clientRequestHelper.getRequestHeaders(getObject).setRange(range);
+    HttpResponse response;
+    try {
+      response = getObject.executeMedia();
+    } catch (IOException e) {
+      if (errorExtractor.itemNotFound(e)) {
+        throw GoogleCloudStorageExceptions.getFileNotFoundException(bucketName, objectName);
+      } else if (nullIfNotSatisfiable && errorExtractor.rangeNotSatisfiable(e)) {
+        return null;
+      }
+      String msg = String.format("Error reading %s at position %d",
+          StorageResourceId.createReadableString(bucketName, objectName), position);
+      throw new IOException(msg, e);
+    }
+    if (generation == null) {
+      generation = parseGeneration(response);
+    }
+    return response;
+  }
+
+  /**
+   * Returns the generation of the object from the headers of a media response, or null if the
+   * response does not carry it.
+   */
+  private Long parseGeneration(HttpResponse response) {
+    String value = response.getHeaders().getFirstHeaderStringValue(GENERATION_HEADER);
+    if (value == null) {
+      return null;
+    }
+    try {
+      return Long.parseLong(value);
+    } catch (NumberFormatException nfe) {
+      log.debug("Ignoring malformed %s header '%s' reading '%s'", GENERATION_HEADER, value,
+          StorageResourceId.createReadableString(bucketName, objectName));
+      return null;
+    }
+  }
+
   /**
    * Tells whether this channel is open.
    *
@@ -354,6 +1036,7 @@ public class GoogleCloudStorageReadChannel
       throws IOException {
     throwIfNotOpen();
     channelIsOpen = false;
+    cancelPrefetches();
     if (readChannel != null) {
       readChannel.close();
     }
@@ -390,6 +1073,15 @@ public class GoogleCloudStorageReadChannel
     }
 
     validatePosition(newPosition);
+    if (readOptions.getFadvise() == GoogleCloudStorageReadOptions.Fadvise.AUTO
+        && !randomAccess && hasReadData && currentPosition >= 0
+        && (newPosition < currentPosition
+            || newPosition - currentPosition > readOptions.getInplaceSeekLimit())) {
+      log.debug("Switching to random access for '%s' on seek from %d to %d",
+          StorageResourceId.createReadableString(bucketName, objectName), currentPosition,
+          newPosition);
+      randomAccess = true;
+    }
     currentPosition = newPosition;
     lazySeekPending = true;
     return this;
@@ -405,8 +1097,14 @@ public class GoogleCloudStorageReadChannel
   public long size()
       throws IOException {
     throwIfNotOpen();
-    // Perform a lazy seek if not done already so that size of this channel is set correctly.
-    performLazySeek();
+    if (size < 0) {
+      if (readOptions.getFooterCacheSize() > 0) {
+        fetchFooterAndSetSize();
+      } else {
+        // Perform a lazy seek if not done already so that size of this channel is set correctly.
+        performLazySeek(readOptions.getMinRangeRequestSize());
+      }
+    }
     return size;
   }
 
@@ -444,12 +1142,15 @@ public class GoogleCloudStorageReadChannel
   /**
    * Seeks to the given position in the underlying stream.
    *
-   * Note: Seek is an expensive operation because a new stream is opened each time.
+   * Note: Seek is an expensive operation when a new stream has to be opened; short forward seeks
+   * are instead served by skipping bytes of the open stream.
    *
+   * @param bytesToRead number of bytes the caller is about to read, used to size bounded range
+   *     requests in random access mode.
    * @throws FileNotFoundException if the underlying object does not exist.
    * @throws IOException on IO error
    */
-  private void performLazySeek()
+  private void performLazySeek(int bytesToRead)
       throws IOException {
 
     // Return quickly if there is no pending seek operation.
@@ -457,16 +1158,99 @@ public class GoogleCloudStorageReadChannel
       return;
     }
 
+    if (wholeObjectContent != null || isWholeObjectReadable()) {
+      // Small objects are fetched once; seeking is then just a new view of the content.
+      cancelPrefetches();
+      if (wholeObjectContent == null) {
+        fetchWholeObject();
+      }
+      if (readChannel != null) {
+        readChannel.close();
+      }
+      int offset = (int) Math.min(currentPosition, wholeObjectContent.length);
+      readChannel = Channels.newChannel(new ByteArrayInputStream(
+          wholeObjectContent, offset, wholeObjectContent.length - offset));
+      contentChannelPosition = currentPosition;
+      contentChannelEnd = size;
+      lazySeekPending = false;
+      return;
+    }
+
+    if (readOptions.isReadAheadEnabled()) {
+      // Keep the queued ranges if the new position falls within the first one; otherwise discard
+      // ranges until it does, which discards all of them on a backward seek.
+      while (!prefetchedRanges.isEmpty()
+          && !prefetchedRanges.peekFirst().contains(currentPosition)) {
+        prefetchedRanges.removeFirst().content.cancel(true);
+      }
+      if (size < 0) {
+        fetchFirstRangeAndSetSize();
+      }
+      schedulePrefetches();
+      lazySeekPending = false;
+      return;
+    }
+
+    long seekDistance = currentPosition - contentChannelPosition;
+    if (readChannel != null
+        && seekDistance > 0
+        && seekDistance <= readOptions.getInplaceSeekLimit()
+        && currentPosition < contentChannelEnd
+        && skipInPlace(seekDistance)) {
+      lazySeekPending = false;
+      return;
+    }
+
     // Close the underlying channel if it is open.
     if (readChannel != null) {
       readChannel.close();
     }
 
-    InputStream objectContentStream = openStreamAndSetSize(currentPosition);
+    InputStream objectContentStream;
+    if (randomAccess) {
+      long rangeLength = Math.max(bytesToRead, readOptions.getMinRangeRequestSize());
+      objectContentStream = openStreamAndSetSize(currentPosition, rangeLength);
+      contentChannelEnd = Math.min(currentPosition + rangeLength, size);
+    } else {
+      objectContentStream = openStreamAndSetSize(currentPosition);
+      contentChannelEnd = size;
+    }
     readChannel = Channels.newChannel(objectContentStream);
+    contentChannelPosition = currentPosition;
     lazySeekPending = false;
   }
 
+  /**
+   * Moves the open stream forward by reading and discarding the given number of bytes.
+   *
+   * @return true if the stream is now at currentPosition, false if it has to be reopened
+   */
+  private boolean skipInPlace(long bytesToSkip) {
+    ByteBuffer skipBuffer = ByteBuffer.allocate((int) Math.min(bytesToSkip, SKIP_BUFFER_SIZE));
+    try {
+      while (contentChannelPosition < currentPosition) {
+        skipBuffer.clear();
+        skipBuffer.limit(
+            (int) Math.min(skipBuffer.capacity(), currentPosition - contentChannelPosition));
+        int numBytesRead = readChannel.read(skipBuffer);
+        if (numBytesRead < 0) {
+          log.debug("Reached end of stream while skipping in '%s' at position %d",
+              StorageResourceId.createReadableString(bucketName, objectName),
+              contentChannelPosition);
+          return false;
+        }
+        contentChannelPosition += numBytesRead;
+      }
+    } catch (IOException ioe) {
+      log.debug("Got exception: %s while skipping in '%s'; reopening stream.", ioe.getMessage(),
+          StorageResourceId.createReadableString(bucketName, objectName));
+      return false;
+    }
+    log.debug("Skipped %d bytes in place in '%s'", bytesToSkip,
+        StorageResourceId.createReadableString(bucketName, objectName));
+    return true;
+  }
+
   /**
    * Opens the underlying stream, sets its position to the given value and sets size based on
    * stream content size.
@@ -476,46 +1260,41 @@ public class GoogleCloudStorageReadChannel
    */
   protected InputStream openStreamAndSetSize(long newPosition)
       throws IOException {
+    return openStreamAndSetSize(newPosition, -1);
+  }
+
+  /**
+   * Opens the underlying stream for at most {@code length} bytes starting at the given position,
+   * or for the rest of the object if {@code length} is negative, and sets size based on the
+   * response.
+   *
+   * @param newPosition position to seek into the new stream.
+   * @param length maximum number of bytes to request, or -1 for an open-ended request.
+   * @throws IOException on IO error
+   */
+  private InputStream openStreamAndSetSize(long newPosition, long length)
+      throws IOException {
     validatePosition(newPosition);
-    Storage.Objects.Get getObject = gcs.objects().get(bucketName, objectName);
-    // Set the range on the existing request headers which may have been initialized with things
-    // like user-agent already.
-    clientRequestHelper.getRequestHeaders(getObject)
-        .setRange(String.format("bytes=%d-", newPosition));
-    HttpResponse response;
-    try {
-      response = getObject.executeMedia();
-    } catch (IOException e) {
-      if (errorExtractor.itemNotFound(e)) {
-        throw GoogleCloudStorageExceptions.getFileNotFoundException(bucketName, objectName);
-      } else if (errorExtractor.rangeNotSatisfiable(e)
-                 && newPosition == 0
-                 && size == -1) {
-        // We don't know the size yet (size == -1) and we're seeking to byte 0, but got 'range
-        // not satisfiable'; the object must be empty.
-        log.info("Got 'range not satisfiable' for reading %s at position 0; assuming empty.",
-            StorageResourceId.createReadableString(bucketName, objectName));
-        size = 0;
-        return new ByteArrayInputStream(new byte[0]);
-      } else {
-        String msg = String.format("Error reading %s at position %d",
-            StorageResourceId.createReadableString(bucketName, objectName), newPosition);
-        throw new IOException(msg, e);
-      }
+    long rangeEnd = length < 0 ? -1 : newPosition + length - 1;
+    if (rangeEnd >= 0 && size >= 0) {
+      rangeEnd = Math.min(rangeEnd, size - 1);
     }
-    String contentRange = response.getHeaders().getContentRange();
-    if (response.getHeaders().getContentLength() != null) {
-      size = response.getHeaders().getContentLength() + newPosition;
-    } else if (contentRange != null) {
-      String sizeStr = SLASH.split(contentRange)[1];
-      try {
-        size = Long.parseLong(sizeStr);
-      } catch (NumberFormatException e) {
-        throw new IOException(
-            "Could not determine size from response from Content-Range: " + contentRange, e);
+    HttpResponse response = executeRangeRequest(newPosition, rangeEnd);
+    if (response == null) {
+      // We don't know the size yet (size == -1) and we're seeking to byte 0, but got 'range
+      // not satisfiable'; the object must be empty.
+      log.info("Got 'range not satisfiable' for reading %s at position 0; assuming empty.",
+          StorageResourceId.createReadableString(bucketName, objectName));
+      size = 0;
+      return new ByteArrayInputStream(new byte[0]);
+    }
+    setSizeFromResponse(response, newPosition, rangeEnd < 0 ? -1 : rangeEnd - newPosition + 1);
+    if (newPosition == 0 && (rangeEnd < 0 || rangeEnd >= size - 1) && isWholeObjectReadable()) {
+      // The response holds the whole object, which turned out to be small; keep it in memory.
+      try (InputStream contentStream = response.getContent()) {
+        setWholeObjectContent(ByteStreams.toByteArray(contentStream));
       }
-    } else {
-      throw new IOException("Could not determine size of response");
+      return new ByteArrayInputStream(wholeObjectContent);
     }
     return response.getContent();
   }
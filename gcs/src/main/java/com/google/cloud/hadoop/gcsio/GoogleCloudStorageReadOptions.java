@@ -0,0 +1,302 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Options for the GoogleCloudStorageReadChannel.
+ */
+public class GoogleCloudStorageReadOptions {
+
+  /**
+   * Access pattern hint used to pick the kind of range requests issued by the channel.
+   */
+  public enum Fadvise {
+    // Start with open-ended requests and switch to bounded requests once the channel observes a
+    // backward seek or a forward seek longer than the in-place seek limit.
+    AUTO,
+    // Always issue bounded requests sized to the read, for columnar formats such as ORC and
+    // Parquet.
+    RANDOM,
+    // Always issue open-ended requests that stream the rest of the object.
+    SEQUENTIAL
+  }
+
+  /**
+   * Default size of each range fetched ahead of the current position when read-ahead is enabled.
+   */
+  public static final int READ_AHEAD_RANGE_SIZE_DEFAULT = 8 * 1024 * 1024;
+
+  /**
+   * Default number of ranges to keep in flight ahead of the current position; 0 disables
+   * read-ahead so that each channel streams the object over a single connection.
+   */
+  public static final int READ_AHEAD_DEPTH_DEFAULT = 0;
+
+  /**
+   * Default maximum number of threads used across all channels to fetch read-ahead ranges.
+   */
+  public static final int READ_AHEAD_MAX_THREADS_DEFAULT = 16;
+
+  /**
+   * Default access pattern hint; SEQUENTIAL preserves the behavior of streaming the object over a
+   * single open-ended request.
+   */
+  public static final Fadvise FADVISE_DEFAULT = Fadvise.SEQUENTIAL;
+
+  /**
+   * Default minimum number of bytes requested by each bounded range request in random mode.
+   */
+  public static final int MIN_RANGE_REQUEST_SIZE_DEFAULT = 512 * 1024;
+
+  /**
+   * Default maximum distance of a forward seek that is served by reading and discarding bytes
+   * from the open stream instead of issuing a new request.
+   */
+  public static final long INPLACE_SEEK_LIMIT_DEFAULT = 8 * 1024 * 1024;
+
+  /**
+   * Default number of bytes at the end of the object cached by the first request; 0 disables the
+   * footer cache.
+   */
+  public static final int FOOTER_CACHE_SIZE_DEFAULT = 0;
+
+  /**
+   * Default of whether opening a channel fetches the metadata of the object to fail right away
+   * if it does not exist, rather than on the first read or size() call.
+   */
+  public static final boolean FAST_FAIL_ON_NOT_FOUND_DEFAULT = true;
+
+  /**
+   * Default maximum size of objects fetched entirely by a single request and read from memory; 0
+   * disables whole-object reads.
+   */
+  public static final int WHOLE_OBJECT_THRESHOLD_DEFAULT = 0;
+
+  /**
+   * Default maximum number of bytes of whole objects cached across channels; 0 disables the cache.
+   */
+  public static final long WHOLE_OBJECT_CACHE_SIZE_DEFAULT = 0;
+
+  /**
+   * Mutable builder for the GoogleCloudStorageReadOptions class.
+   */
+  public static class Builder {
+    private int readAheadRangeSize = READ_AHEAD_RANGE_SIZE_DEFAULT;
+    private int readAheadDepth = READ_AHEAD_DEPTH_DEFAULT;
+    private int readAheadMaxThreads = READ_AHEAD_MAX_THREADS_DEFAULT;
+    private Fadvise fadvise = FADVISE_DEFAULT;
+    private int minRangeRequestSize = MIN_RANGE_REQUEST_SIZE_DEFAULT;
+    private long inplaceSeekLimit = INPLACE_SEEK_LIMIT_DEFAULT;
+    private int footerCacheSize = FOOTER_CACHE_SIZE_DEFAULT;
+    private boolean fastFailOnNotFound = FAST_FAIL_ON_NOT_FOUND_DEFAULT;
+    private int wholeObjectThreshold = WHOLE_OBJECT_THRESHOLD_DEFAULT;
+    private long wholeObjectCacheSize = WHOLE_OBJECT_CACHE_SIZE_DEFAULT;
+
+    public Builder setReadAheadRangeSize(int readAheadRangeSize) {
+      this.readAheadRangeSize = readAheadRangeSize;
+      return this;
+    }
+
+    public Builder setReadAheadDepth(int readAheadDepth) {
+      this.readAheadDepth = readAheadDepth;
+      return this;
+    }
+
+    public Builder setReadAheadMaxThreads(int readAheadMaxThreads) {
+      this.readAheadMaxThreads = readAheadMaxThreads;
+      return this;
+    }
+
+    public Builder setFadvise(Fadvise fadvise) {
+      this.fadvise = fadvise;
+      return this;
+    }
+
+    public Builder setMinRangeRequestSize(int minRangeRequestSize) {
+      this.minRangeRequestSize = minRangeRequestSize;
+      return this;
+    }
+
+    public Builder setInplaceSeekLimit(long inplaceSeekLimit) {
+      this.inplaceSeekLimit = inplaceSeekLimit;
+      return this;
+    }
+
+    public Builder setFooterCacheSize(int footerCacheSize) {
+      this.footerCacheSize = footerCacheSize;
+      return this;
+    }
+
+    public Builder setFastFailOnNotFound(boolean fastFailOnNotFound) {
+      this.fastFailOnNotFound = fastFailOnNotFound;
+      return this;
+    }
+
+    public Builder setWholeObjectThreshold(int wholeObjectThreshold) {
+      this.wholeObjectThreshold = wholeObjectThreshold;
+      return this;
+    }
+
+    public Builder setWholeObjectCacheSize(long wholeObjectCacheSize) {
+      this.wholeObjectCacheSize = wholeObjectCacheSize;
+      return this;
+    }
+
+    public GoogleCloudStorageReadOptions build() {
+      return new GoogleCloudStorageReadOptions(
+          readAheadRangeSize, readAheadDepth, readAheadMaxThreads, fadvise, minRangeRequestSize,
+          inplaceSeekLimit, footerCacheSize, fastFailOnNotFound, wholeObjectThreshold,
+          wholeObjectCacheSize);
+    }
+  }
+
+  /**
+   * Create a new builder with default values.
+   */
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Read options with all default values.
+   */
+  public static final GoogleCloudStorageReadOptions DEFAULT = newBuilder().build();
+
+  private final int readAheadRangeSize;
+  private final int readAheadDepth;
+  private final int readAheadMaxThreads;
+  private final Fadvise fadvise;
+  private final int minRangeRequestSize;
+  private final long inplaceSeekLimit;
+  private final int footerCacheSize;
+  private final boolean fastFailOnNotFound;
+  private final int wholeObjectThreshold;
+  private final long wholeObjectCacheSize;
+
+  public GoogleCloudStorageReadOptions(
+      int readAheadRangeSize, int readAheadDepth, int readAheadMaxThreads, Fadvise fadvise,
+      int minRangeRequestSize, long inplaceSeekLimit, int footerCacheSize) {
+    this(readAheadRangeSize, readAheadDepth, readAheadMaxThreads, fadvise, minRangeRequestSize,
+        inplaceSeekLimit, footerCacheSize, FAST_FAIL_ON_NOT_FOUND_DEFAULT);
+  }
+
+  public GoogleCloudStorageReadOptions(
+      int readAheadRangeSize, int readAheadDepth, int readAheadMaxThreads, Fadvise fadvise,
+      int minRangeRequestSize, long inplaceSeekLimit, int footerCacheSize,
+      boolean fastFailOnNotFound) {
+    this(readAheadRangeSize, readAheadDepth, readAheadMaxThreads, fadvise, minRangeRequestSize,
+        inplaceSeekLimit, footerCacheSize, fastFailOnNotFound, WHOLE_OBJECT_THRESHOLD_DEFAULT,
+        WHOLE_OBJECT_CACHE_SIZE_DEFAULT);
+  }
+
+  public GoogleCloudStorageReadOptions(
+      int readAheadRangeSize, int readAheadDepth, int readAheadMaxThreads, Fadvise fadvise,
+      int minRangeRequestSize, long inplaceSeekLimit, int footerCacheSize,
+      boolean fastFailOnNotFound, int wholeObjectThreshold, long wholeObjectCacheSize) {
+    Preconditions.checkArgument(readAheadRangeSize > 0,
+        "readAheadRangeSize must be greater than 0, got %s", readAheadRangeSize);
+    Preconditions.checkArgument(readAheadDepth >= 0,
+        "readAheadDepth must not be negative, got %s", readAheadDepth);
+    Preconditions.checkArgument(readAheadMaxThreads > 0,
+        "readAheadMaxThreads must be greater than 0, got %s", readAheadMaxThreads);
+    Preconditions.checkArgument(fadvise != null, "fadvise must not be null");
+    Preconditions.checkArgument(minRangeRequestSize > 0,
+        "minRangeRequestSize must be greater than 0, got %s", minRangeRequestSize);
+    Preconditions.checkArgument(inplaceSeekLimit >= 0,
+        "inplaceSeekLimit must not be negative, got %s", inplaceSeekLimit);
+    Preconditions.checkArgument(footerCacheSize >= 0,
+        "footerCacheSize must not be negative, got %s", footerCacheSize);
+    Preconditions.checkArgument(wholeObjectThreshold >= 0,
+        "wholeObjectThreshold must not be negative, got %s", wholeObjectThreshold);
+    Preconditions.checkArgument(wholeObjectCacheSize >= 0,
+        "wholeObjectCacheSize must not be negative, got %s", wholeObjectCacheSize);
+    this.readAheadRangeSize = readAheadRangeSize;
+    this.readAheadDepth = readAheadDepth;
+    this.readAheadMaxThreads = readAheadMaxThreads;
+    this.fadvise = fadvise;
+    this.minRangeRequestSize = minRangeRequestSize;
+    this.inplaceSeekLimit = inplaceSeekLimit;
+    this.footerCacheSize = footerCacheSize;
+    this.fastFailOnNotFound = fastFailOnNotFound;
+    this.wholeObjectThreshold = wholeObjectThreshold;
+    this.wholeObjectCacheSize = wholeObjectCacheSize;
+  }
+
+  /**
+   * Create a new builder initialized with the values of these options.
+   */
+  public Builder toBuilder() {
+    return newBuilder()
+        .setReadAheadRangeSize(readAheadRangeSize)
+        .setReadAheadDepth(readAheadDepth)
+        .setReadAheadMaxThreads(readAheadMaxThreads)
+        .setFadvise(fadvise)
+        .setMinRangeRequestSize(minRangeRequestSize)
+        .setInplaceSeekLimit(inplaceSeekLimit)
+        .setFooterCacheSize(footerCacheSize)
+        .setFastFailOnNotFound(fastFailOnNotFound)
+        .setWholeObjectThreshold(wholeObjectThreshold)
+        .setWholeObjectCacheSize(wholeObjectCacheSize);
+  }
+
+  public int getReadAheadRangeSize() {
+    return readAheadRangeSize;
+  }
+
+  public int getReadAheadDepth() {
+    return readAheadDepth;
+  }
+
+  public int getReadAheadMaxThreads() {
+    return readAheadMaxThreads;
+  }
+
+  public Fadvise getFadvise() {
+    return fadvise;
+  }
+
+  public int getMinRangeRequestSize() {
+    return minRangeRequestSize;
+  }
+
+  public long getInplaceSeekLimit() {
+    return inplaceSeekLimit;
+  }
+
+  public int getFooterCacheSize() {
+    return footerCacheSize;
+  }
+
+  public boolean isFastFailOnNotFound() {
+    return fastFailOnNotFound;
+  }
+
+  public int getWholeObjectThreshold() {
+    return wholeObjectThreshold;
+  }
+
+  public long getWholeObjectCacheSize() {
+    return wholeObjectCacheSize;
+  }
+
+  /**
+   * Returns true if channels should fetch ranges ahead of the current position concurrently.
+   */
+  public boolean isReadAheadEnabled() {
+    return readAheadDepth > 0;
+  }
+}
@@ -37,9 +37,18 @@ public class GoogleCloudStorageWriteChannel
   private final Storage gcs;
   private final String bucketName;
   private final String objectName;
-  private final ObjectWriteConditions writeConditions;
   private final Map<String, String> metadata;
 
+  // Conditions applied to the upload; replaced by writeConditionsRefresher before a retry.
+  private volatile ObjectWriteConditions writeConditions;
+
+  // Supplies the conditions of a retry of a failed single-request upload, or null if such
+  // uploads are not retried.
+  private volatile WriteConditionsRefresher writeConditionsRefresher;
+
+  // Metadata of the created object returned by the upload; null until the channel is closed.
+  private volatile StorageObject createdObject;
+
   /**
    * Constructs an instance of GoogleCloudStorageWriteChannel.
    *
@@ -77,4 +86,44 @@ public class GoogleCloudStorageWriteChannel
     writeConditions.apply(insert);
     return insert;
   }
+
+  /**
+   * Retries single-request uploads, whose data is still held in memory, which fail in a way that
+   * the given refresher supplies new write conditions for.
+   */
+  void setWriteConditionsRefresher(WriteConditionsRefresher writeConditionsRefresher) {
+    this.writeConditionsRefresher = writeConditionsRefresher;
+  }
+
+  @Override
+  protected boolean shouldRetryDirectUpload(IOException failure) throws IOException {
+    if (writeConditionsRefresher == null) {
+      return false;
+    }
+    ObjectWriteConditions refreshedConditions = writeConditionsRefresher.refresh(failure);
+    if (refreshedConditions == null) {
+      return false;
+    }
+    writeConditions = refreshedConditions;
+    return true;
+  }
+
+  @Override
+  public void handleResponse(StorageObject response) throws IOException {
+    createdObject = response;
+  }
+
+  /**
+   * Returns the info of the object created by this channel, or null if the channel is not closed
+   * yet or the upload response lacks the metadata needed to build it.
+   */
+  public GoogleCloudStorageItemInfo getItemInfo() {
+    StorageObject object = createdObject;
+    if (object == null || object.getUpdated() == null || object.getSize() == null
+        || !bucketName.equals(object.getBucket()) || !objectName.equals(object.getName())) {
+      return null;
+    }
+    return GoogleCloudStorageImpl.createItemInfoForStorageObject(
+        new StorageResourceId(bucketName, objectName), object);
+  }
 }
@@ -17,12 +17,25 @@
 package com.google.cloud.hadoop.gcsio;
 
 import com.google.cloud.hadoop.util.LogUtil;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * InMemoryDirectoryListCache provides in-memory accounting of full paths for directories and files
@@ -46,7 +59,15 @@ import java.util.Set;
  * 2. Cross-client 'delete' followed by 'list' will be worse than pure-GCS.
  * 3. Same-client 'delete' followed by 'list' is unchanged with respect to eventual consistency.
  * <p>
- * This class is thread-safe.
+ * This class is thread-safe. Buckets are held in a concurrent map and the objects of each bucket
+ * in a concurrent map sorted by name, so no call locks the whole cache, and listing a prefix only
+ * visits the objects under it, skipping over the objects under each sub-prefix it returns.
+ * <p>
+ * The number of cached objects and the memory they hold can be bounded through the maxEntries and
+ * maxBytes settings of the cache Config; a put which takes the cache beyond a bound evicts the
+ * least recently used objects until the cache is back to EVICTION_TARGET_PERCENT of the bound.
+ * Expired entries are removed when listed, and, if a sweep interval is set, by a background
+ * thread which examines a bounded number of entries at each interval.
  */
 public class InMemoryDirectoryListCache extends DirectoryListCache {
   private static final LogUtil log = new LogUtil(InMemoryDirectoryListCache.class);
@@ -57,11 +78,51 @@ public class InMemoryDirectoryListCache extends DirectoryListCache {
 
   // Mapping from bucketName to data structure which holds both the CacheEntry corresponding to
   // the bucket itself as well as mappings to CacheEntry values for StorageObjects residing in
-  // the bucket. Existence of CacheEntrys is solely handled through synchronized methods of
-  // DirectoryListCache. However, the handling of GoogleCloudStorageItemInfos within each CacheEntry
-  // is synchronized only by the CacheEntry itself; therefore inner itemInfos may change outside
-  // of a DirectoryListCache method.
-  private final Map<String, CachedBucket> bucketLookup = new HashMap<>();
+  // the bucket. A CachedBucket is only dropped from this map after being marked as removed, so
+  // that objects are never added to a CachedBucket which is no longer in the cache. The handling
+  // of GoogleCloudStorageItemInfos within each CacheEntry is synchronized only by the CacheEntry
+  // itself; therefore inner itemInfos may change outside of a DirectoryListCache method.
+  private final ConcurrentMap<String, CachedBucket> bucketLookup = new ConcurrentHashMap<>();
+
+  // Percentage of maxEntries and maxBytes down to which eviction shrinks the cache, so that
+  // evictions happen in batches rather than at each put.
+  @VisibleForTesting
+  static final int EVICTION_TARGET_PERCENT = 90;
+
+  // Maximum number of object entries examined by each run of the background sweeper.
+  @VisibleForTesting
+  static final int SWEEP_BATCH_SIZE = 1000;
+
+  // Source of the sequence numbers recording accesses to entries, for LRU eviction.
+  private final AtomicLong accessSequence = new AtomicLong();
+
+  // Held by the thread evicting entries; other threads skip eviction meanwhile.
+  private final Lock evictionLock = new ReentrantLock();
+
+  // Number of getCacheEntry calls which found an entry.
+  private final AtomicLong hits = new AtomicLong();
+
+  // Number of getCacheEntry calls which found no entry.
+  private final AtomicLong misses = new AtomicLong();
+
+  // Number of object entries evicted to keep the cache within its bounds.
+  private final AtomicLong evictions = new AtomicLong();
+
+  // Number of object entries removed because they expired.
+  private final AtomicLong expirations = new AtomicLong();
+
+  // Bucket and object names from which the next sweep resumes; guarded by this.
+  private String sweepBucketName = "";
+  private String sweepObjectName = "";
+
+  // Runs the background sweeper, or null if there is none; guarded by this.
+  private ScheduledExecutorService sweepExecutor;
+
+  // Interval between runs of the background sweeper, or 0 if there is none; guarded by this.
+  private long sweepIntervalMillis;
+
+  // Whether configureLimits has applied bounds or a sweep interval; guarded by this.
+  private boolean limitsConfigured;
 
   /**
    * Callers should usually only obtain an instance via {@link #getInstance()} so that cache
@@ -97,43 +158,83 @@ public class InMemoryDirectoryListCache extends DirectoryListCache {
     return false;
   }
 
+  /**
+   * Returns the least name greater than the names of all objects under {@code prefix}, or null if
+   * there is no such name, i.e. if the prefix ends with Character.MAX_VALUE.
+   */
+  private static String getPrefixSuccessor(String prefix) {
+    char lastChar = prefix.charAt(prefix.length() - 1);
+    if (lastChar == Character.MAX_VALUE) {
+      return null;
+    }
+    return prefix.substring(0, prefix.length() - 1) + (char) (lastChar + 1);
+  }
+
+  /**
+   * Records an access to {@code entry} for LRU eviction.
+   */
+  private void recordAccess(CacheEntry entry) {
+    entry.setLastAccessSequence(accessSequence.incrementAndGet());
+  }
+
+  /**
+   * Drops {@code bucket} from bucketLookup, if it is still there, once it is marked as removed.
+   */
+  private void dropRemovedBucket(CachedBucket bucket) {
+    bucketLookup.remove(bucket.getName(), bucket);
+  }
+
   @Override
-  public synchronized CacheEntry putResourceId(StorageResourceId resourceId) {
+  public CacheEntry putResourceId(StorageResourceId resourceId) {
     validateResourceId(resourceId);
 
-    // Whether the resourceId is a Bucket or StorageObject, there will be a bucketName to cache.
-    CachedBucket resourceBucket = bucketLookup.get(resourceId.getBucketName());
-    if (resourceBucket == null) {
-      // TODO(user): Maybe invalidate any existing Bucket entry's info.
-      resourceBucket = new CachedBucket(resourceId.getBucketName());
-      bucketLookup.put(resourceId.getBucketName(), resourceBucket);
-    }
+    while (true) {
+      // Whether the resourceId is a Bucket or StorageObject, there will be a bucketName to cache.
+      CachedBucket resourceBucket = bucketLookup.get(resourceId.getBucketName());
+      if (resourceBucket == null) {
+        // TODO(user): Maybe invalidate any existing Bucket entry's info.
+        CachedBucket newBucket = new CachedBucket(resourceId.getBucketName());
+        resourceBucket = bucketLookup.putIfAbsent(resourceId.getBucketName(), newBucket);
+        if (resourceBucket == null) {
+          resourceBucket = newBucket;
+        }
+      }
 
-    if (resourceId.isStorageObject()) {
-      return resourceBucket.put(resourceId);
-    } else {
-      return resourceBucket;
+      if (!resourceId.isStorageObject()) {
+        return resourceBucket;
+      }
+      CacheEntry objectEntry = resourceBucket.put(resourceId);
+      if (objectEntry != null) {
+        recordAccess(objectEntry);
+        evictIfNeeded();
+        return objectEntry;
+      }
+      // The bucket was removed concurrently; make sure it is gone, and retry with a new one.
+      dropRemovedBucket(resourceBucket);
     }
   }
 
   @Override
-  public synchronized CacheEntry getCacheEntry(StorageResourceId resourceId) {
+  public CacheEntry getCacheEntry(StorageResourceId resourceId) {
     validateResourceId(resourceId);
 
     CachedBucket bucket = bucketLookup.get(resourceId.getBucketName());
-    if (bucket == null) {
-      return null;
+    CacheEntry entry = null;
+    if (bucket != null) {
+      entry = resourceId.isStorageObject() ? bucket.get(resourceId) : bucket;
     }
 
-    if (resourceId.isStorageObject()) {
-      return bucket.get(resourceId);
+    if (entry == null) {
+      misses.incrementAndGet();
     } else {
-      return bucket;
+      hits.incrementAndGet();
+      recordAccess(entry);
     }
+    return entry;
   }
 
   @Override
-  public synchronized void removeResourceId(StorageResourceId resourceId) {
+  public void removeResourceId(StorageResourceId resourceId) {
     validateResourceId(resourceId);
 
     CachedBucket bucket = bucketLookup.get(resourceId.getBucketName());
@@ -150,55 +251,47 @@ public class InMemoryDirectoryListCache extends DirectoryListCache {
       // TODO(user): Maybe proactively check for whether this removal now lets us fully remove
       // an expired CachedBucket.
     } else {
-      if (bucket.getNumObjects() > 0) {
+      if (!bucket.isEmpty()) {
         log.warn("Explicitly removing non-empty Bucket: '%s' which contains %d items",
             resourceId, bucket.getNumObjects());
       } else {
         log.debug("Explicitly removing empty Bucket: '%s'", resourceId);
       }
-      bucketLookup.remove(resourceId.getBucketName());
+      bucket.markRemoved();
+      dropRemovedBucket(bucket);
     }
   }
 
   @Override
-  public synchronized List<CacheEntry> getBucketList() {
+  public List<CacheEntry> getBucketList() {
     log.debug("getBucketList()");
     List<CacheEntry> bucketEntries = new ArrayList<>();
-    List<CachedBucket> expiredBuckets = new ArrayList<>();
     for (CachedBucket bucket : bucketLookup.values()) {
       maybeInvalidateExpiredInfo(bucket);
 
       if (isCacheEntryExpired(bucket)) {
-        // Keep a list of expired buckets to handle after the loop. We may not be able to garbage-
-        // collect it because of inner StorageObjects, but we at least won't list it anymore.
-        expiredBuckets.add(bucket);
+        // We may not be able to garbage-collect an expired bucket because of inner
+        // StorageObjects, but we at least won't list it anymore. Marking the bucket as removed
+        // only succeeds while it is empty, and keeps objects from being added to it afterwards.
+        if (bucket.markRemovedIfEmpty()) {
+          log.debug("Removing empty expired CachedBucket: '%s'", bucket.getName());
+          dropRemovedBucket(bucket);
+        }
       } else {
         bucketEntries.add(bucket);
       }
     }
-
-    // Handle bucket expiration; we'll only remove the bucket if it's empty. Since each
-    // CachedBucket is only modified within synchronized methods of DirectoryListCache, we are
-    // certain the CachedBucket is still empty when we remove it from the bucketLookup if it
-    // returns getNumObjects() == 0 immediately prior.
-    for (CachedBucket expiredBucket : expiredBuckets) {
-      if (expiredBucket.getNumObjects() == 0) {
-        log.debug("Removing empty expired CachedBucket: '%s'", expiredBucket.getName());
-        bucketLookup.remove(expiredBucket.getName());
-      }
-    }
-
     return bucketEntries;
   }
 
   @Override
-  public synchronized List<CacheEntry> getRawBucketList() {
+  public List<CacheEntry> getRawBucketList() {
     log.debug("getRawBucketList()");
     return new ArrayList<CacheEntry>(bucketLookup.values());
   }
 
   @Override
-  public synchronized List<CacheEntry> getObjectList(
+  public List<CacheEntry> getObjectList(
       String bucketName, String objectNamePrefix, String delimiter, Set<String> returnedPrefixes) {
     log.debug("getObjectList(%s, %s, %s)", bucketName, objectNamePrefix, delimiter);
     CachedBucket bucket = bucketLookup.get(bucketName);
@@ -206,19 +299,29 @@ public class InMemoryDirectoryListCache extends DirectoryListCache {
       return null;
     }
 
+    // Scan the objects under the prefix in order of their names. Once an object implies a
+    // 'prefix' match, the remaining objects under that prefix imply the same match, so the scan
+    // skips over them; their expired entries are left for a later scan to remove.
     List<CacheEntry> matchingObjectEntries = new ArrayList<>();
     boolean removedExpiredEntries = false;
-    for (CacheEntry objectEntry : bucket.getObjectList()) {
-      maybeInvalidateExpiredInfo(objectEntry);
+    String rangePrefix = Strings.nullToEmpty(objectNamePrefix);
+    CacheEntry objectEntry = bucket.getCeilingEntry(rangePrefix);
+    while (objectEntry != null) {
+      String objectName = objectEntry.getResourceId().getObjectName();
+      if (!objectName.startsWith(rangePrefix)) {
+        break;
+      }
+      // The least name greater than objectName.
+      String nextName = objectName + Character.MIN_VALUE;
 
+      maybeInvalidateExpiredInfo(objectEntry);
       if (isCacheEntryExpired(objectEntry)) {
-        // We can remove items from the bucket mid-iteration because we are iterating over a
-        // *copy* of the bucket contents.
         log.debug("Removing expired CacheEntry: '%s'", objectEntry.getResourceId());
-        bucket.remove(objectEntry.getResourceId());
+        if (bucket.remove(objectEntry.getResourceId())) {
+          expirations.incrementAndGet();
+        }
         removedExpiredEntries = true;
       } else {
-        String objectName = objectEntry.getResourceId().getObjectName();
         String matchedName = GoogleCloudStorageStrings.matchListPrefix(
             objectNamePrefix, delimiter, objectName);
         // We get a non-null matchedName if either an implicit 'prefix' matches or if it's an
@@ -226,34 +329,259 @@ public class InMemoryDirectoryListCache extends DirectoryListCache {
         if (matchedName != null) {
           if (objectName.equals(matchedName)) {
             // Exact match.
+            recordAccess(objectEntry);
             matchingObjectEntries.add(objectEntry);
-          } else if (returnedPrefixes != null) {
+          } else {
             // Prefix match; only need to populate the container if the caller actually provided
             // a non-null container.
-            returnedPrefixes.add(matchedName);
+            if (returnedPrefixes != null) {
+              returnedPrefixes.add(matchedName);
+            }
+            String prefixSuccessor = getPrefixSuccessor(matchedName);
+            if (prefixSuccessor != null) {
+              nextName = prefixSuccessor;
+            }
           }
         }
       }
+      objectEntry = bucket.getCeilingEntry(nextName);
     }
 
     // Proactively remove the entire entry for the bucket if our iteration caused it to be empty
     // and the CachedBucket is itself expired.
     if (removedExpiredEntries
-        && bucket.getNumObjects() == 0
-        && isCacheEntryExpired(bucket)) {
+        && bucket.isEmpty()
+        && isCacheEntryExpired(bucket)
+        && bucket.markRemovedIfEmpty()) {
       log.debug("Removing empty expired CachedBucket: '%s'", bucket.getName());
-      bucketLookup.remove(bucket.getName());
+      dropRemovedBucket(bucket);
     }
     return matchingObjectEntries;
   }
 
+  /**
+   * Evicts the least recently used object entries if the cache holds more entries or bytes than
+   * allowed by its Config, until it is back to EVICTION_TARGET_PERCENT of the bounds. Returns
+   * immediately if another thread is already evicting.
+   */
+  private void evictIfNeeded() {
+    long maxEntries = cacheConfig.getMaxEntries();
+    long maxBytes = cacheConfig.getMaxBytes();
+    if ((maxEntries == 0 || getInternalNumObjects() <= maxEntries)
+        && (maxBytes == 0 || getEstimatedBytes() <= maxBytes)) {
+      return;
+    }
+    if (!evictionLock.tryLock()) {
+      return;
+    }
+    try {
+      long numObjects = 0;
+      long numBytes = 0;
+      List<CacheEntry> objectEntries = new ArrayList<>();
+      for (CachedBucket bucket : bucketLookup.values()) {
+        numObjects += bucket.getNumObjects();
+        numBytes += bucket.getEstimatedBytes();
+        objectEntries.addAll(bucket.getObjectList());
+      }
+      long targetObjects =
+          maxEntries == 0 ? Long.MAX_VALUE : maxEntries * EVICTION_TARGET_PERCENT / 100;
+      long targetBytes = maxBytes == 0 ? Long.MAX_VALUE : maxBytes * EVICTION_TARGET_PERCENT / 100;
+      if (numObjects <= targetObjects && numBytes <= targetBytes) {
+        return;
+      }
+
+      Collections.sort(objectEntries, new Comparator<CacheEntry>() {
+        @Override
+        public int compare(CacheEntry entry1, CacheEntry entry2) {
+          return Long.compare(entry1.getLastAccessSequence(), entry2.getLastAccessSequence());
+        }
+      });
+      long evicted = 0;
+      for (CacheEntry objectEntry : objectEntries) {
+        if (numObjects <= targetObjects && numBytes <= targetBytes) {
+          break;
+        }
+        StorageResourceId resourceId = objectEntry.getResourceId();
+        CachedBucket bucket = bucketLookup.get(resourceId.getBucketName());
+        if (bucket != null && bucket.remove(resourceId)) {
+          numObjects--;
+          numBytes -= CachedBucket.estimateBytes(resourceId);
+          evicted++;
+        }
+      }
+      evictions.addAndGet(evicted);
+      log.debug("Evicted %d entries, leaving %d entries holding about %d bytes",
+          evicted, numObjects, numBytes);
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Removes the expired entries among the next {@code maxEntriesToCheck} object entries, in
+   * order of bucket and object names, resuming after the entries examined by the previous call
+   * and starting over once all have been examined. Empty expired buckets are removed once all
+   * their entries have been examined.
+   *
+   * @return The number of entries removed.
+   */
+  @VisibleForTesting
+  synchronized int sweepExpiredEntries(int maxEntriesToCheck) {
+    int checkedEntries = 0;
+    int removedEntries = 0;
+    for (String bucketName : new TreeSet<>(bucketLookup.keySet()).tailSet(sweepBucketName)) {
+      CachedBucket bucket = bucketLookup.get(bucketName);
+      if (bucket == null) {
+        continue;
+      }
+      String objectName = bucketName.equals(sweepBucketName) ? sweepObjectName : "";
+      CacheEntry objectEntry = bucket.getCeilingEntry(objectName);
+      while (objectEntry != null) {
+        objectName = objectEntry.getResourceId().getObjectName();
+        if (checkedEntries == maxEntriesToCheck) {
+          sweepBucketName = bucketName;
+          sweepObjectName = objectName;
+          return removedEntries;
+        }
+        checkedEntries++;
+        maybeInvalidateExpiredInfo(objectEntry);
+        if (isCacheEntryExpired(objectEntry) && bucket.remove(objectEntry.getResourceId())) {
+          expirations.incrementAndGet();
+          removedEntries++;
+        }
+        objectEntry = bucket.getCeilingEntry(objectName + Character.MIN_VALUE);
+      }
+
+      maybeInvalidateExpiredInfo(bucket);
+      if (isCacheEntryExpired(bucket) && bucket.markRemovedIfEmpty()) {
+        log.debug("Removing empty expired CachedBucket: '%s'", bucket.getName());
+        dropRemovedBucket(bucket);
+      }
+    }
+    sweepBucketName = "";
+    sweepObjectName = "";
+    return removedEntries;
+  }
+
+  /**
+   * Applies the given bounds and sweep interval, each 0 for none, unless non-zero ones have already
+   * been applied. Since the cache is shared by the whole JVM, the first settings configured are
+   * kept, and different later ones are ignored with a warning; settings which are all 0 configure
+   * nothing, so that they never lift the bounds configured by another user of the cache.
+   */
+  public synchronized void configureLimits(
+      long maxEntries, long maxBytes, long sweepIntervalMillis) {
+    if (maxEntries == 0 && maxBytes == 0 && sweepIntervalMillis == 0) {
+      return;
+    }
+    if (!limitsConfigured) {
+      getMutableConfig()
+          .setMaxEntries(maxEntries)
+          .setMaxBytes(maxBytes);
+      setSweepIntervalMillis(sweepIntervalMillis);
+      limitsConfigured = true;
+    } else if (maxEntries != getMutableConfig().getMaxEntries()
+        || maxBytes != getMutableConfig().getMaxBytes()
+        || sweepIntervalMillis != this.sweepIntervalMillis) {
+      log.warn("Ignoring limits of an additional InMemoryDirectoryListCache user, using the "
+          + "existing cache with maxEntries = %d, maxBytes = %d, sweepIntervalMillis = %d",
+          getMutableConfig().getMaxEntries(), getMutableConfig().getMaxBytes(),
+          this.sweepIntervalMillis);
+    }
+  }
+
+  /**
+   * Starts, restarts or stops the background thread removing expired entries, which examines up
+   * to SWEEP_BATCH_SIZE entries every {@code sweepIntervalMillis}.
+   *
+   * @param sweepIntervalMillis Interval between runs of the sweeper; 0 stops the sweeper.
+   */
+  public synchronized void setSweepIntervalMillis(long sweepIntervalMillis) {
+    Preconditions.checkArgument(sweepIntervalMillis >= 0,
+        "sweepIntervalMillis must not be negative, got %s", sweepIntervalMillis);
+    if (sweepIntervalMillis == this.sweepIntervalMillis) {
+      return;
+    }
+    if (sweepExecutor != null) {
+      sweepExecutor.shutdownNow();
+      sweepExecutor = null;
+    }
+    this.sweepIntervalMillis = sweepIntervalMillis;
+    if (sweepIntervalMillis == 0) {
+      return;
+    }
+
+    sweepExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+        .setNameFormat("gcsfs-metadata-cache-sweeper-%d")
+        .setDaemon(true)
+        .build());
+    sweepExecutor.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          int removedEntries = sweepExpiredEntries(SWEEP_BATCH_SIZE);
+          log.debug("Swept %d expired entries", removedEntries);
+        } catch (RuntimeException e) {
+          // Keep the sweeper scheduled.
+          log.warn("Failed to sweep expired cache entries", e);
+        }
+      }
+    }, sweepIntervalMillis, sweepIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Returns the interval between runs of the background sweeper, or 0 if there is none.
+   */
+  public synchronized long getSweepIntervalMillis() {
+    return sweepIntervalMillis;
+  }
+
+  /**
+   * Returns the number of getCacheEntry calls which found an entry.
+   */
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * Returns the number of getCacheEntry calls which found no entry.
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * Returns the number of object entries evicted to keep the cache within its bounds.
+   */
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  /**
+   * Returns the number of object entries removed because they expired.
+   */
+  public long getExpiredCount() {
+    return expirations.get();
+  }
+
+  /**
+   * Returns an estimate of the number of bytes of memory held by the object entries.
+   */
+  public long getEstimatedBytes() {
+    long bytes = 0;
+    for (CachedBucket bucket : bucketLookup.values()) {
+      bytes += bucket.getEstimatedBytes();
+    }
+    return bytes;
+  }
+
   @Override
-  public synchronized int getInternalNumBuckets() {
+  public int getInternalNumBuckets() {
     return bucketLookup.size();
   }
 
   @Override
-  public synchronized int getInternalNumObjects() {
+  public int getInternalNumObjects() {
     int objectCount = 0;
     for (CachedBucket bucket : bucketLookup.values()) {
       objectCount += bucket.getNumObjects();
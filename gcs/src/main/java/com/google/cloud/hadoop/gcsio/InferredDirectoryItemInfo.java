@@ -0,0 +1,114 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import com.google.cloud.hadoop.util.LogUtil;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Info about a directory inferred from a prefix returned by a delimited listing, rather than
+ * fetched from its placeholder object. The directory exists and has size 0; its creation time,
+ * metadata and generations are those of the placeholder object, which is only fetched the first
+ * time one of them is asked for. If there is no placeholder object, e.g. for implicit
+ * directories, or it cannot be fetched, they are 0 and empty.
+ */
+public class InferredDirectoryItemInfo extends GoogleCloudStorageItemInfo {
+  // Logger.
+  private static final LogUtil log = new LogUtil(InferredDirectoryItemInfo.class);
+
+  // Used to fetch the placeholder object.
+  private final GoogleCloudStorage gcs;
+
+  // Info of the placeholder object; null until it has been fetched.
+  private GoogleCloudStorageItemInfo placeholderInfo;
+
+  /**
+   * Constructs an instance of InferredDirectoryItemInfo.
+   *
+   * @param resourceId Directory object named by the listed prefix, ending with '/'.
+   * @param gcs Used to fetch the placeholder object when its info is first asked for.
+   */
+  public InferredDirectoryItemInfo(StorageResourceId resourceId, GoogleCloudStorage gcs) {
+    super(resourceId, 0 /* creation time */, 0 /* size */, null, null);
+    Preconditions.checkArgument(resourceId.isStorageObject(),
+        "resourceId must be a StorageObject, got %s", resourceId);
+    Preconditions.checkArgument(gcs != null, "gcs must not be null");
+    this.gcs = gcs;
+  }
+
+  /**
+   * Indicates whether the placeholder object has been fetched.
+   */
+  public synchronized boolean isResolved() {
+    return placeholderInfo != null;
+  }
+
+  /**
+   * Returns the info of the placeholder object, fetching it on first use; returns this instance's
+   * own defaults if there is no placeholder object or the fetch failed. Failed fetches are retried
+   * on the next call.
+   */
+  private synchronized GoogleCloudStorageItemInfo getPlaceholderInfo() {
+    if (placeholderInfo == null) {
+      try {
+        GoogleCloudStorageItemInfo itemInfo = gcs.getItemInfo(getResourceId());
+        if (!itemInfo.exists()) {
+          log.debug("No placeholder object for inferred directory '%s'", getResourceId());
+        }
+        placeholderInfo = itemInfo;
+      } catch (IOException ioe) {
+        log.warn("Failed to fetch placeholder object of inferred directory '%s': %s",
+            getResourceId(), ioe.getMessage());
+        return null;
+      }
+    }
+    return placeholderInfo.exists() ? placeholderInfo : null;
+  }
+
+  @Override
+  public long getCreationTime() {
+    GoogleCloudStorageItemInfo itemInfo = getPlaceholderInfo();
+    return itemInfo == null ? super.getCreationTime() : itemInfo.getCreationTime();
+  }
+
+  @Override
+  public Map<String, byte[]> getMetadata() {
+    GoogleCloudStorageItemInfo itemInfo = getPlaceholderInfo();
+    return itemInfo == null ? super.getMetadata() : itemInfo.getMetadata();
+  }
+
+  @Override
+  public long getContentGeneration() {
+    GoogleCloudStorageItemInfo itemInfo = getPlaceholderInfo();
+    return itemInfo == null ? super.getContentGeneration() : itemInfo.getContentGeneration();
+  }
+
+  @Override
+  public long getMetaGeneration() {
+    GoogleCloudStorageItemInfo itemInfo = getPlaceholderInfo();
+    return itemInfo == null ? super.getMetaGeneration() : itemInfo.getMetaGeneration();
+  }
+
+  /**
+   * Gets string representation of this instance, without fetching the placeholder object.
+   */
+  @Override
+  public String toString() {
+    return String.format("%s: inferred directory", getResourceId());
+  }
+}
@@ -0,0 +1,372 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import com.google.cloud.hadoop.util.OperationStatistics;
+import com.google.cloud.hadoop.util.StatisticsRegistry;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+
+/**
+ * InstrumentedGoogleCloudStorage records the latency and errors of each call made to the wrapped
+ * GoogleCloudStorage into a StatisticsRegistry, keyed by method name. Channels returned by create
+ * and open are passed through unchanged, so only the time taken to open them is recorded.
+ */
+public class InstrumentedGoogleCloudStorage implements GoogleCloudStorage {
+  // Statistics of the calls made by all the instances of the JVM, exported through JMX.
+  private static final StatisticsRegistry SHARED_STATISTICS =
+      new StatisticsRegistry("GoogleCloudStorage");
+
+  /**
+   * Returns the statistics shared by the instances created with the single-argument constructor.
+   */
+  public static StatisticsRegistry getSharedStatistics() {
+    return SHARED_STATISTICS;
+  }
+
+  private final GoogleCloudStorage wrappedGcs;
+  private final StatisticsRegistry statistics;
+
+  /**
+   * @param wrappedGcs The GoogleCloudStorage that we should delegate operations to.
+   */
+  public InstrumentedGoogleCloudStorage(GoogleCloudStorage wrappedGcs) {
+    this(wrappedGcs, SHARED_STATISTICS);
+  }
+
+  /**
+   * @param wrappedGcs The GoogleCloudStorage that we should delegate operations to.
+   * @param statistics The registry the calls are recorded into.
+   */
+  public InstrumentedGoogleCloudStorage(
+      GoogleCloudStorage wrappedGcs, StatisticsRegistry statistics) {
+    Preconditions.checkArgument(wrappedGcs != null, "wrappedGcs must not be null");
+    Preconditions.checkArgument(statistics != null, "statistics must not be null");
+    this.wrappedGcs = wrappedGcs;
+    this.statistics = statistics;
+  }
+
+  /**
+   * Runs the given call, recording its duration, and whether it failed, under the given name.
+   */
+  private <T> T record(String operation, StorageCall<T> call) throws IOException {
+    OperationStatistics operationStatistics = statistics.get(operation);
+    long startTime = System.nanoTime();
+    T result;
+    try {
+      result = call.call();
+    } catch (IOException | RuntimeException e) {
+      operationStatistics.recordError(System.nanoTime() - startTime);
+      throw e;
+    }
+    operationStatistics.recordLatency(System.nanoTime() - startTime);
+    return result;
+  }
+
+  @Override
+  public WritableByteChannel create(final StorageResourceId resourceId) throws IOException {
+    return record("create", new StorageCall<WritableByteChannel>() {
+      @Override
+      public WritableByteChannel call() throws IOException {
+        return wrappedGcs.create(resourceId);
+      }
+    });
+  }
+
+  @Override
+  public WritableByteChannel create(
+      final StorageResourceId resourceId, final CreateObjectOptions options)
+      throws IOException {
+    return record("create", new StorageCall<WritableByteChannel>() {
+      @Override
+      public WritableByteChannel call() throws IOException {
+        return wrappedGcs.create(resourceId, options);
+      }
+    });
+  }
+
+  @Override
+  public void createEmptyObject(final StorageResourceId resourceId) throws IOException {
+    record("createEmptyObject", new StorageCall<Void>() {
+      @Override
+      public Void call() throws IOException {
+        wrappedGcs.createEmptyObject(resourceId);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void createEmptyObject(
+      final StorageResourceId resourceId, final CreateObjectOptions options)
+      throws IOException {
+    record("createEmptyObject", new StorageCall<Void>() {
+      @Override
+      public Void call() throws IOException {
+        wrappedGcs.createEmptyObject(resourceId, options);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void createEmptyObjects(final List<StorageResourceId> resourceIds)
+      throws IOException {
+    record("createEmptyObjects", new StorageCall<Void>() {
+      @Override
+      public Void call() throws IOException {
+        wrappedGcs.createEmptyObjects(resourceIds);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void createEmptyObjects(
+      final List<StorageResourceId> resourceIds, final CreateObjectOptions options)
+      throws IOException {
+    record("createEmptyObjects", new StorageCall<Void>() {
+      @Override
+      public Void call() throws IOException {
+        wrappedGcs.createEmptyObjects(resourceIds, options);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public SeekableReadableByteChannel open(final StorageResourceId resourceId)
+      throws IOException {
+    return record("open", new StorageCall<SeekableReadableByteChannel>() {
+      @Override
+      public SeekableReadableByteChannel call() throws IOException {
+        return wrappedGcs.open(resourceId);
+      }
+    });
+  }
+
+  @Override
+  public SeekableReadableByteChannel open(
+      final StorageResourceId resourceId, final GoogleCloudStorageReadOptions readOptions)
+      throws IOException {
+    return record("open", new StorageCall<SeekableReadableByteChannel>() {
+      @Override
+      public SeekableReadableByteChannel call() throws IOException {
+        return wrappedGcs.open(resourceId, readOptions);
+      }
+    });
+  }
+
+  @Override
+  public void create(final String bucketName) throws IOException {
+    record("createBucket", new StorageCall<Void>() {
+      @Override
+      public Void call() throws IOException {
+        wrappedGcs.create(bucketName);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void deleteBuckets(final List<String> bucketNames) throws IOException {
+    record("deleteBuckets", new StorageCall<Void>() {
+      @Override
+      public Void call() throws IOException {
+        wrappedGcs.deleteBuckets(bucketNames);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void deleteObjects(final List<StorageResourceId> fullObjectNames) throws IOException {
+    record("deleteObjects", new StorageCall<Void>() {
+      @Override
+      public Void call() throws IOException {
+        wrappedGcs.deleteObjects(fullObjectNames);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void deleteObjects(
+      final List<StorageResourceId> fullObjectNames, final List<Long> contentGenerations)
+      throws IOException {
+    record("deleteObjects", new StorageCall<Void>() {
+      @Override
+      public Void call() throws IOException {
+        wrappedGcs.deleteObjects(fullObjectNames, contentGenerations);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public void copy(final String srcBucketName, final List<String> srcObjectNames,
+      final String dstBucketName, final List<String> dstObjectNames)
+      throws IOException {
+    record("copy", new StorageCall<Void>() {
+      @Override
+      public Void call() throws IOException {
+        wrappedGcs.copy(srcBucketName, srcObjectNames, dstBucketName, dstObjectNames);
+        return null;
+      }
+    });
+  }
+
+  @Override
+  public List<String> listBucketNames() throws IOException {
+    return record("listBucketNames", new StorageCall<List<String>>() {
+      @Override
+      public List<String> call() throws IOException {
+        return wrappedGcs.listBucketNames();
+      }
+    });
+  }
+
+  @Override
+  public List<GoogleCloudStorageItemInfo> listBucketInfo() throws IOException {
+    return record("listBucketInfo", new StorageCall<List<GoogleCloudStorageItemInfo>>() {
+      @Override
+      public List<GoogleCloudStorageItemInfo> call() throws IOException {
+        return wrappedGcs.listBucketInfo();
+      }
+    });
+  }
+
+  @Override
+  public List<String> listObjectNames(
+      final String bucketName, final String objectNamePrefix, final String delimiter)
+      throws IOException {
+    return record("listObjectNames", new StorageCall<List<String>>() {
+      @Override
+      public List<String> call() throws IOException {
+        return wrappedGcs.listObjectNames(bucketName, objectNamePrefix, delimiter);
+      }
+    });
+  }
+
+  @Override
+  public List<String> listObjectNames(final String bucketName, final String objectNamePrefix,
+      final String delimiter, final long maxResults)
+      throws IOException {
+    return record("listObjectNames", new StorageCall<List<String>>() {
+      @Override
+      public List<String> call() throws IOException {
+        return wrappedGcs.listObjectNames(bucketName, objectNamePrefix, delimiter, maxResults);
+      }
+    });
+  }
+
+  @Override
+  public List<GoogleCloudStorageItemInfo> listObjectInfo(
+      final String bucketName, final String objectNamePrefix, final String delimiter)
+      throws IOException {
+    return record("listObjectInfo", new StorageCall<List<GoogleCloudStorageItemInfo>>() {
+      @Override
+      public List<GoogleCloudStorageItemInfo> call() throws IOException {
+        return wrappedGcs.listObjectInfo(bucketName, objectNamePrefix, delimiter);
+      }
+    });
+  }
+
+  /**
+   * Records the listing call, then each page fetched after the first one as listObjectInfoPage.
+   */
+  @Override
+  public ListPageIterator<GoogleCloudStorageItemInfo> listObjectInfoPages(
+      final String bucketName, final String objectNamePrefix, final String delimiter)
+      throws IOException {
+    final ListPageIterator<GoogleCloudStorageItemInfo> pages = record("listObjectInfoPages",
+        new StorageCall<ListPageIterator<GoogleCloudStorageItemInfo>>() {
+          @Override
+          public ListPageIterator<GoogleCloudStorageItemInfo> call() throws IOException {
+            return wrappedGcs.listObjectInfoPages(bucketName, objectNamePrefix, delimiter);
+          }
+        });
+    return new ListPageIterator<GoogleCloudStorageItemInfo>() {
+      private boolean firstPage = true;
+
+      @Override
+      public boolean hasNext() throws IOException {
+        return pages.hasNext();
+      }
+
+      @Override
+      public List<GoogleCloudStorageItemInfo> next() throws IOException {
+        if (firstPage) {
+          firstPage = false;
+          return pages.next();
+        }
+        return record("listObjectInfoPage", new StorageCall<List<GoogleCloudStorageItemInfo>>() {
+          @Override
+          public List<GoogleCloudStorageItemInfo> call() throws IOException {
+            return pages.next();
+          }
+        });
+      }
+    };
+  }
+
+  @Override
+  public GoogleCloudStorageItemInfo getItemInfo(final StorageResourceId resourceId)
+      throws IOException {
+    return record("getItemInfo", new StorageCall<GoogleCloudStorageItemInfo>() {
+      @Override
+      public GoogleCloudStorageItemInfo call() throws IOException {
+        return wrappedGcs.getItemInfo(resourceId);
+      }
+    });
+  }
+
+  @Override
+  public List<GoogleCloudStorageItemInfo> getItemInfos(final List<StorageResourceId> resourceIds)
+      throws IOException {
+    return record("getItemInfos",
+        new StorageCall<List<GoogleCloudStorageItemInfo>>() {
+          @Override
+          public List<GoogleCloudStorageItemInfo> call() throws IOException {
+            return wrappedGcs.getItemInfos(resourceIds);
+          }
+        });
+  }
+
+  @Override
+  public List<GoogleCloudStorageItemInfo> updateItems(final List<UpdatableItemInfo> itemInfoList)
+      throws IOException {
+    return record("updateItems",
+        new StorageCall<List<GoogleCloudStorageItemInfo>>() {
+          @Override
+          public List<GoogleCloudStorageItemInfo> call() throws IOException {
+            return wrappedGcs.updateItems(itemInfoList);
+          }
+        });
+  }
+
+  @Override
+  public void close() {
+    wrappedGcs.close();
+  }
+
+  @Override
+  public void waitForBucketEmpty(String bucketName) throws IOException {
+    wrappedGcs.waitForBucketEmpty(bucketName);
+  }
+}
@@ -0,0 +1,38 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.hadoop.gcsio;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Iterator over the results of a listing, one page at a time as they are returned by GCS, so that
+ * callers can start working on the first results before the whole listing has been fetched and
+ * need not hold all of it in memory at once.
+ */
+public interface ListPageIterator<T> {
+  /**
+   * Returns true if there is another page to return; the page may still be empty.
+   */
+  boolean hasNext() throws IOException;
+
+  /**
+   * Returns the next page of results.
+   *
+   * @throws java.util.NoSuchElementException if there are no more pages
+   */
+  List<T> next() throws IOException;
+}
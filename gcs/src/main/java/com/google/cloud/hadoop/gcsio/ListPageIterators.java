@@ -0,0 +1,75 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.google.cloud.hadoop.gcsio;
+
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Static helpers for ListPageIterator.
+ */
+public final class ListPageIterators {
+  private ListPageIterators() {}
+
+  /**
+   * Returns an iterator returning the given, already fetched, results as a single page.
+   */
+  public static <T> ListPageIterator<T> singlePage(final List<T> page) {
+    Preconditions.checkArgument(page != null, "page must not be null");
+    return new ListPageIterator<T>() {
+      private boolean returned = false;
+
+      @Override
+      public boolean hasNext() {
+        return !returned;
+      }
+
+      @Override
+      public List<T> next() {
+        if (returned) {
+          throw new NoSuchElementException();
+        }
+        returned = true;
+        return page;
+      }
+    };
+  }
+
+  /**
+   * Returns an iterator applying the given function to each result of each page of pages.
+   */
+  public static <F, T> ListPageIterator<T> transform(
+      final ListPageIterator<F> pages, final Function<? super F, ? extends T> function) {
+    Preconditions.checkArgument(pages != null, "pages must not be null");
+    Preconditions.checkArgument(function != null, "function must not be null");
+    return new ListPageIterator<T>() {
+      @Override
+      public boolean hasNext() throws IOException {
+        return pages.hasNext();
+      }
+
+      @Override
+      public List<T> next() throws IOException {
+        return Lists.<T>newArrayList(Lists.transform(pages.next(), function));
+      }
+    };
+  }
+}
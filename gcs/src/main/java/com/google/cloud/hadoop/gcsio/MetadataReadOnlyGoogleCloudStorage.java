@@ -118,6 +118,13 @@ public class MetadataReadOnlyGoogleCloudStorage
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public SeekableReadableByteChannel open(
+      StorageResourceId resourceId, GoogleCloudStorageReadOptions readOptions)
+      throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
   @Override
   public void create(String bucketName)
       throws IOException {
@@ -136,6 +143,13 @@ public class MetadataReadOnlyGoogleCloudStorage
     throw new UnsupportedOperationException();
   }
 
+  @Override
+  public void deleteObjects(List<StorageResourceId> fullObjectNames,
+      List<Long> contentGenerations)
+      throws IOException {
+    throw new UnsupportedOperationException();
+  }
+
   @Override
   public void copy(String srcBucketName, List<String> srcObjectNames,
       String dstBucketName, List<String> dstObjectNames)
@@ -165,6 +179,17 @@ public class MetadataReadOnlyGoogleCloudStorage
         ITEM_INFO_TO_NAME);
   }
 
+  @Override
+  public List<String> listObjectNames(
+      String bucketName, String objectNamePrefix, String delimiter, long maxResults)
+      throws IOException {
+    log.debug("listObjectNames(%s, %s, %s, %d)",
+        bucketName, objectNamePrefix, delimiter, maxResults);
+    List<String> objectNames = listObjectNames(bucketName, objectNamePrefix, delimiter);
+    return objectNames.size() > maxResults
+        ? objectNames.subList(0, (int) maxResults) : objectNames;
+  }
+
   /**
    * Uses shared prefix-matching logic to filter entries from the metadata cache. For implicit
    * prefix matches with no corresponding real directory object, adds a fake directory object
@@ -210,6 +235,16 @@ public class MetadataReadOnlyGoogleCloudStorage
     return allObjectInfos;
   }
 
+  /**
+   * Pure fetch from cache, returned as a single page.
+   */
+  @Override
+  public ListPageIterator<GoogleCloudStorageItemInfo> listObjectInfoPages(
+      String bucketName, String objectNamePrefix, String delimiter)
+      throws IOException {
+    return ListPageIterators.singlePage(listObjectInfo(bucketName, objectNamePrefix, delimiter));
+  }
+
   /**
    * Pure fetch from cache.
    */
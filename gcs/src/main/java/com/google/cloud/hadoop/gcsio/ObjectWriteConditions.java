@@ -16,6 +16,7 @@
 
 package com.google.cloud.hadoop.gcsio;
 
+import com.google.api.services.storage.Storage.Objects.Compose;
 import com.google.api.services.storage.Storage.Objects.Insert;
 import com.google.common.base.Optional;
 
@@ -72,4 +73,17 @@ public class ObjectWriteConditions {
       objectToInsert.setIfMetagenerationMatch(getMetaGenerationMatch());
     }
   }
+
+  /**
+   * Apply the conditions represented by this object to a Compose operation.
+   */
+  public void apply(Compose objectToCompose) {
+    if (hasContentGenerationMatch()) {
+      objectToCompose.setIfGenerationMatch(getContentGenerationMatch());
+    }
+
+    if (hasMetaGenerationMatch()) {
+      objectToCompose.setIfMetagenerationMatch(getMetaGenerationMatch());
+    }
+  }
 }
@@ -0,0 +1,250 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import com.google.api.client.util.Clock;
+import com.google.cloud.hadoop.util.LogUtil;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ParentTimestampUpdater coalesces the modification time updates of parent directories. An update
+ * of a directory which already has one pending is merged into it, and the pending directories are
+ * patched together, with a single updateItems call, once the interval following the first of
+ * their updates has elapsed; so each directory is patched at most once per interval, however many
+ * files are written into it. At most maxPendingUpdates directories are pending at once; updates
+ * of further directories are dropped until the pending ones have been sent.
+ */
+public class ParentTimestampUpdater {
+  // Logger.
+  private static final LogUtil log = new LogUtil(ParentTimestampUpdater.class);
+
+  // Time for which close() waits for the updates being sent to complete.
+  private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+  // Used to patch the directory objects.
+  private final GoogleCloudStorage gcs;
+
+  // Time to wait after an update before sending it, during which updates are merged.
+  private final long intervalMillis;
+
+  // Maximum number of directories whose update is pending.
+  private final int maxPendingUpdates;
+
+  // Runs the scheduled sends of pending updates, one at a time.
+  private final ScheduledThreadPoolExecutor executor;
+
+  // Clock giving the modification time written to the directories.
+  private final Clock clock;
+
+  // Directories whose update is pending, in the order of their first update; guarded by this.
+  private Set<StorageResourceId> pendingUpdates = new LinkedHashSet<>();
+
+  // Whether a send of the pending updates is scheduled; guarded by this.
+  private boolean sendScheduled;
+
+  // Whether close() has been called; guarded by this.
+  private boolean closed;
+
+  // Number of updates requested.
+  private final AtomicLong requestedUpdates = new AtomicLong();
+
+  // Number of updates merged into an update of the same directory already pending.
+  private final AtomicLong mergedUpdates = new AtomicLong();
+
+  // Number of updates dropped because too many directories had updates pending.
+  private final AtomicLong droppedUpdates = new AtomicLong();
+
+  // Number of directories patched.
+  private final AtomicLong sentUpdates = new AtomicLong();
+
+  // Number of updateItems calls made.
+  private final AtomicLong sentBatches = new AtomicLong();
+
+  /**
+   * Constructs a ParentTimestampUpdater which sends its updates from a background daemon thread.
+   *
+   * @param gcs Used to patch the directory objects.
+   * @param intervalMillis Time to wait after an update before sending it.
+   * @param maxPendingUpdates Maximum number of directories whose update is pending.
+   */
+  public ParentTimestampUpdater(
+      GoogleCloudStorage gcs, long intervalMillis, int maxPendingUpdates) {
+    this(gcs, intervalMillis, maxPendingUpdates, new ScheduledThreadPoolExecutor(1,
+        new ThreadFactoryBuilder()
+            .setNameFormat("gcsfs-timestamp-updates-%d")
+            .setDaemon(true)
+            .build()),
+        Clock.SYSTEM);
+  }
+
+  @VisibleForTesting
+  ParentTimestampUpdater(GoogleCloudStorage gcs, long intervalMillis, int maxPendingUpdates,
+      ScheduledThreadPoolExecutor executor, Clock clock) {
+    Preconditions.checkArgument(gcs != null, "gcs must not be null");
+    Preconditions.checkArgument(intervalMillis > 0,
+        "intervalMillis must be greater than 0, got %s", intervalMillis);
+    Preconditions.checkArgument(maxPendingUpdates > 0,
+        "maxPendingUpdates must be greater than 0, got %s", maxPendingUpdates);
+    this.gcs = gcs;
+    this.intervalMillis = intervalMillis;
+    this.maxPendingUpdates = maxPendingUpdates;
+    this.executor = executor;
+    this.clock = clock;
+    // Pending updates are sent by close() itself rather than after their interval.
+    executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+  }
+
+  /**
+   * Requests the modification time of the given directories to be updated, merging the updates
+   * of directories already pending.
+   */
+  public synchronized void update(List<StorageResourceId> directories) {
+    for (StorageResourceId directory : directories) {
+      requestedUpdates.incrementAndGet();
+      if (pendingUpdates.contains(directory)) {
+        mergedUpdates.incrementAndGet();
+      } else if (closed || pendingUpdates.size() >= maxPendingUpdates) {
+        droppedUpdates.incrementAndGet();
+        log.debug("Dropped timestamp update of '%s'", directory);
+      } else {
+        pendingUpdates.add(directory);
+      }
+    }
+
+    if (!closed && !sendScheduled && !pendingUpdates.isEmpty()) {
+      executor.schedule(new Runnable() {
+        @Override
+        public void run() {
+          sendPendingUpdates();
+        }
+      }, intervalMillis, TimeUnit.MILLISECONDS);
+      sendScheduled = true;
+    }
+  }
+
+  /**
+   * Patches all the pending directories with the current time, with a single updateItems call.
+   * Failures are logged and swallowed.
+   */
+  @VisibleForTesting
+  void sendPendingUpdates() {
+    Set<StorageResourceId> directories;
+    synchronized (this) {
+      directories = pendingUpdates;
+      pendingUpdates = new LinkedHashSet<>();
+      sendScheduled = false;
+    }
+    if (directories.isEmpty()) {
+      return;
+    }
+
+    Map<String, byte[]> modificationAttributes = new HashMap<>();
+    FileInfo.addModificationTimeToAttributes(modificationAttributes, clock);
+    List<UpdatableItemInfo> itemUpdates = new ArrayList<>(directories.size());
+    for (StorageResourceId directory : directories) {
+      itemUpdates.add(new UpdatableItemInfo(directory, modificationAttributes));
+    }
+
+    log.debug("Updating timestamps of %d directories", itemUpdates.size());
+    sentBatches.incrementAndGet();
+    sentUpdates.addAndGet(itemUpdates.size());
+    try {
+      gcs.updateItems(itemUpdates);
+    } catch (IOException ioe) {
+      log.debug("Exception caught when trying to update parent directory timestamps.", ioe);
+    }
+  }
+
+  /**
+   * Sends the pending updates without waiting for their interval to elapse, and stops sending
+   * updates; later updates are dropped.
+   */
+  public void close() {
+    synchronized (this) {
+      closed = true;
+    }
+    executor.shutdown();
+    try {
+      if (!executor.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+        log.warn("Forcibly shutting down timestamp update thread.");
+        executor.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      log.warn("Interrupted awaiting timestamp update thread.");
+      Thread.currentThread().interrupt();
+    }
+    sendPendingUpdates();
+    log.debug("Timestamp updates: %d requested, %d merged, %d dropped, %d sent in %d batches",
+        getRequestedUpdateCount(), getMergedUpdateCount(), getDroppedUpdateCount(),
+        getSentUpdateCount(), getSentBatchCount());
+  }
+
+  /**
+   * Returns the number of directory updates requested.
+   */
+  public long getRequestedUpdateCount() {
+    return requestedUpdates.get();
+  }
+
+  /**
+   * Returns the number of directory updates merged into an update of the same directory which
+   * was already pending.
+   */
+  public long getMergedUpdateCount() {
+    return mergedUpdates.get();
+  }
+
+  /**
+   * Returns the number of directory updates dropped because too many directories had updates
+   * pending, or because this instance was closed.
+   */
+  public long getDroppedUpdateCount() {
+    return droppedUpdates.get();
+  }
+
+  /**
+   * Returns the number of directories patched.
+   */
+  public long getSentUpdateCount() {
+    return sentUpdates.get();
+  }
+
+  /**
+   * Returns the number of updateItems calls made to patch directories.
+   */
+  public long getSentBatchCount() {
+    return sentBatches.get();
+  }
+
+  /**
+   * Returns the number of directories whose update is pending.
+   */
+  public synchronized int getPendingUpdateCount() {
+    return pendingUpdates.size();
+  }
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import com.google.cloud.hadoop.util.LogUtil;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSortedMap;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RequestTracer attributes the HTTP requests sent to GCS to the top-level file system call that
+ * caused them. A sampled fraction of the calls start a Trace on their thread; requests built on
+ * that thread while the Trace is open are counted, and timed, by request type, and a one-line
+ * summary such as "rename(gs://b/x, gs://b/y) took 812.40 ms, 8017 requests: 4000 copy,
+ * 4000 delete, 3 get, 12 list" is logged when the call completes.
+ *
+ * <p>Calls made while a Trace, sampled or not, is open on the thread are part of that Trace.
+ * Requests sent from other threads, e.g. by parallel listing or background timestamp updates,
+ * are not attributed.
+ */
+public class RequestTracer {
+  // Logger.
+  private static final LogUtil log = new LogUtil(RequestTracer.class);
+
+  // Trace open on the current thread, if any.
+  private static final ThreadLocal<Trace> CURRENT_TRACE = new ThreadLocal<>();
+
+  private static final long NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  /**
+   * Count and total duration of the requests of one type.
+   */
+  private static class RequestCounter {
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong durationNanos = new AtomicLong();
+  }
+
+  /**
+   * The requests sent on behalf of one top-level call. Closing the Trace of the top-level call
+   * ends it and logs its summary if it was sampled; closing the Trace of a nested call does
+   * nothing.
+   */
+  public static class Trace implements Closeable {
+    private final String description;
+    private final boolean sampled;
+    private final boolean topLevel;
+    private final long startTime = System.nanoTime();
+    private final ConcurrentMap<String, RequestCounter> requestCounters =
+        new ConcurrentHashMap<>();
+
+    private Trace(String description, boolean sampled, boolean topLevel) {
+      this.description = description;
+      this.sampled = sampled;
+      this.topLevel = topLevel;
+    }
+
+    public boolean isSampled() {
+      return sampled;
+    }
+
+    private RequestCounter getCounter(String requestType) {
+      RequestCounter counter = requestCounters.get(requestType);
+      if (counter == null) {
+        RequestCounter created = new RequestCounter();
+        counter = requestCounters.putIfAbsent(requestType, created);
+        if (counter == null) {
+          counter = created;
+        }
+      }
+      return counter;
+    }
+
+    /**
+     * Counts one request of the given type, including retries of earlier ones.
+     */
+    public void recordRequest(String requestType) {
+      if (sampled) {
+        getCounter(requestType).count.incrementAndGet();
+      }
+    }
+
+    /**
+     * Adds the time it took to get the response to a request of the given type.
+     */
+    public void recordResponse(String requestType, long durationNanos) {
+      if (sampled) {
+        getCounter(requestType).durationNanos.addAndGet(durationNanos);
+      }
+    }
+
+    /**
+     * Returns the number of requests of each type recorded so far.
+     */
+    public Map<String, Long> getRequestCounts() {
+      ImmutableSortedMap.Builder<String, Long> builder = ImmutableSortedMap.naturalOrder();
+      for (Map.Entry<String, RequestCounter> entry : requestCounters.entrySet()) {
+        builder.put(entry.getKey(), entry.getValue().count.get());
+      }
+      return builder.build();
+    }
+
+    /**
+     * Returns a one-line summary of the requests recorded so far.
+     */
+    public String getSummary() {
+      long totalRequests = 0;
+      double requestMillis = 0;
+      StringBuilder requests = new StringBuilder();
+      for (Map.Entry<String, RequestCounter> entry :
+          ImmutableSortedMap.copyOf(requestCounters).entrySet()) {
+        long count = entry.getValue().count.get();
+        totalRequests += count;
+        requestMillis += entry.getValue().durationNanos.get() / (double) NANOS_PER_MILLI;
+        requests.append(requests.length() == 0 ? ": " : ", ")
+            .append(count).append(' ').append(entry.getKey());
+      }
+      return String.format("%s took %.2f ms, %d requests%s (%.2f ms waiting for responses)",
+          description, (System.nanoTime() - startTime) / (double) NANOS_PER_MILLI,
+          totalRequests, requests, requestMillis);
+    }
+
+    @Override
+    public void close() {
+      if (!topLevel) {
+        return;
+      }
+      CURRENT_TRACE.remove();
+      if (sampled) {
+        log.info("Trace: %s", getSummary());
+      }
+    }
+  }
+
+  // Returned for calls which are not traced at all, or are part of an enclosing call's Trace.
+  private static final Trace NESTED_TRACE = new Trace(null, false, false);
+
+  /**
+   * Returns the Trace open on the current thread, or null if there is none.
+   */
+  public static Trace getCurrentTrace() {
+    return CURRENT_TRACE.get();
+  }
+
+  // Fraction, between 0 and 1, of top-level calls whose requests are traced.
+  private final double sampleRate;
+
+  public RequestTracer(double sampleRate) {
+    Preconditions.checkArgument(sampleRate >= 0 && sampleRate <= 1,
+        "sampleRate must be between 0 and 1, got %s", sampleRate);
+    this.sampleRate = sampleRate;
+  }
+
+  /**
+   * Starts the Trace of a call on the current thread; the returned Trace must be closed when the
+   * call completes. The description is only built if the call is sampled.
+   *
+   * @param operation Name of the call, e.g. "rename".
+   * @param args Arguments of the call, included in the summary.
+   */
+  public Trace start(String operation, Object... args) {
+    if (sampleRate == 0 || CURRENT_TRACE.get() != null) {
+      return NESTED_TRACE;
+    }
+    boolean sampled = sampleRate == 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    Trace trace = new Trace(sampled ? describe(operation, args) : operation, sampled, true);
+    CURRENT_TRACE.set(trace);
+    return trace;
+  }
+
+  @VisibleForTesting
+  static String describe(String operation, Object... args) {
+    StringBuilder description = new StringBuilder(operation).append('(');
+    for (int i = 0; i < args.length; i++) {
+      description.append(i == 0 ? "" : ", ").append(args[i]);
+    }
+    return description.append(')').toString();
+  }
+
+  public double getSampleRate() {
+    return sampleRate;
+  }
+}
@@ -0,0 +1,227 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import com.google.cloud.hadoop.util.LogUtil;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * StatCache holds recently fetched GoogleCloudStorageItemInfos, including "not found" infos, for a
+ * short time so that repeated metadata lookups of the same paths are served from memory. It is
+ * bounded both by number of entries and by an estimate of the memory held by the entries, and is
+ * safe for concurrent use.
+ *
+ * <p>An info fetched while the same resource is being changed may be stale by the time it is
+ * cached. Callers therefore take an invalidation sequence number before fetching infos, and cache
+ * them with {@link #put(GoogleCloudStorageItemInfo, long)}, which drops the infos of resources
+ * invalidated since then.
+ */
+public class StatCache {
+  // Logger.
+  private static final LogUtil log = new LogUtil(StatCache.class);
+
+  // Estimated number of bytes held by an entry besides its names and metadata: the cache entry,
+  // the StorageResourceId and the GoogleCloudStorageItemInfo objects.
+  @VisibleForTesting
+  static final int ENTRY_OVERHEAD_BYTES = 256;
+
+  // Number of stripes by which the latest invalidation of each resource is recorded; resources
+  // sharing a stripe share their invalidations.
+  @VisibleForTesting
+  static final int INVALIDATION_STRIPES = 1024;
+
+  // Instance shared by all the GoogleCloudStorageFileSystems of the JVM, created on first use.
+  private static StatCache sharedInstance;
+
+  /**
+   * Returns the StatCache shared by the whole JVM, creating it with the given options on first
+   * use; the options of later callers are ignored.
+   */
+  public static synchronized StatCache getInstance(StatCacheOptions options) {
+    Preconditions.checkArgument(options != null, "options must not be null");
+    if (sharedInstance == null) {
+      sharedInstance = new StatCache(options);
+    } else if (!sharedInstance.options.equals(options)) {
+      log.warn("Ignoring options of an additional StatCache user, using the existing cache with "
+          + "maxEntries = %d, maxBytes = %d, ttlMillis = %d",
+          sharedInstance.options.getMaxEntries(), sharedInstance.options.getMaxBytes(),
+          sharedInstance.options.getTtlMillis());
+    }
+    return sharedInstance;
+  }
+
+  private final StatCacheOptions options;
+  private final Cache<StorageResourceId, GoogleCloudStorageItemInfo> itemInfos;
+
+  // Sequence number of the latest invalidation.
+  private final AtomicLong invalidationSequence = new AtomicLong();
+
+  // Sequence number of the latest invalidation of a resource of each stripe; each element is
+  // guarded by the matching element of stripeLocks, which is also held while changing the cached
+  // infos of the resources of the stripe.
+  private final long[] stripeInvalidations = new long[INVALIDATION_STRIPES];
+  private final Object[] stripeLocks = new Object[INVALIDATION_STRIPES];
+
+  public StatCache(StatCacheOptions options) {
+    Preconditions.checkArgument(options != null, "options must not be null");
+    this.options = options;
+    for (int i = 0; i < INVALIDATION_STRIPES; i++) {
+      stripeLocks[i] = new Object();
+    }
+
+    // Weigh each entry at least maxBytes / maxEntries so that the weight bound also keeps the
+    // number of entries within maxEntries.
+    final int minEntryWeight = (int) Math.min(
+        Integer.MAX_VALUE, options.getMaxBytes() / options.getMaxEntries());
+    this.itemInfos = CacheBuilder.newBuilder()
+        .maximumWeight(options.getMaxBytes())
+        .weigher(new Weigher<StorageResourceId, GoogleCloudStorageItemInfo>() {
+          @Override
+          public int weigh(StorageResourceId resourceId, GoogleCloudStorageItemInfo itemInfo) {
+            return Math.max(minEntryWeight, estimateBytes(itemInfo));
+          }
+        })
+        .expireAfterWrite(options.getTtlMillis(), TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  /**
+   * Returns an estimate of the number of bytes held by a cached itemInfo.
+   */
+  @VisibleForTesting
+  static int estimateBytes(GoogleCloudStorageItemInfo itemInfo) {
+    long bytes = ENTRY_OVERHEAD_BYTES;
+    // Names are held both by the key and by the value, at 2 bytes per char.
+    bytes += 4L * itemInfo.getBucketName().length();
+    if (itemInfo.getObjectName() != null) {
+      bytes += 4L * itemInfo.getObjectName().length();
+    }
+    Map<String, byte[]> metadata = itemInfo.getMetadata();
+    if (metadata != null) {
+      for (Map.Entry<String, byte[]> entry : metadata.entrySet()) {
+        bytes += 2L * entry.getKey().length();
+        bytes += entry.getValue() == null ? 0 : entry.getValue().length;
+      }
+    }
+    return (int) Math.min(Integer.MAX_VALUE, bytes);
+  }
+
+  /**
+   * Returns the cached info of the given resource, which may be a "not found" info, or null if
+   * it is not cached.
+   */
+  public GoogleCloudStorageItemInfo get(StorageResourceId resourceId) {
+    return itemInfos.getIfPresent(resourceId);
+  }
+
+  /**
+   * Returns the stripe recording the invalidations of the given resource.
+   */
+  private static int getStripe(StorageResourceId resourceId) {
+    return (resourceId.hashCode() & Integer.MAX_VALUE) % INVALIDATION_STRIPES;
+  }
+
+  /**
+   * Returns the sequence number of the latest invalidation, to be passed to
+   * {@link #put(GoogleCloudStorageItemInfo, long)} with the infos fetched after this call.
+   */
+  public long getInvalidationSequence() {
+    return invalidationSequence.get();
+  }
+
+  /**
+   * Caches the given info, replacing any info already cached for the same resource. Infos of
+   * inferred directories whose placeholder objects have not been fetched are not cached, but
+   * still drop the info cached for their resource.
+   */
+  public void put(GoogleCloudStorageItemInfo itemInfo) {
+    put(itemInfo, Long.MAX_VALUE);
+  }
+
+  /**
+   * Caches the given info like {@link #put(GoogleCloudStorageItemInfo)}, unless its resource may
+   * have been invalidated after {@link #getInvalidationSequence()} returned the given sequence
+   * number, in which case the info may be stale and is dropped.
+   */
+  public void put(GoogleCloudStorageItemInfo itemInfo, long invalidationSequenceBeforeFetch) {
+    Preconditions.checkArgument(itemInfo != null, "itemInfo must not be null");
+    StorageResourceId resourceId = itemInfo.getResourceId();
+    int stripe = getStripe(resourceId);
+    synchronized (stripeLocks[stripe]) {
+      if (stripeInvalidations[stripe] > invalidationSequenceBeforeFetch) {
+        log.debug("Not caching info of '%s' fetched before an invalidation", resourceId);
+        return;
+      }
+      if (itemInfo instanceof InferredDirectoryItemInfo
+          && !((InferredDirectoryItemInfo) itemInfo).isResolved()) {
+        // Weighing the entry would fetch its placeholder object, defeating the inference.
+        itemInfos.invalidate(resourceId);
+        return;
+      }
+      itemInfos.put(resourceId, itemInfo);
+    }
+  }
+
+  /**
+   * Caches a "not found" info for the given resource.
+   */
+  public void putNotFound(StorageResourceId resourceId) {
+    put(GoogleCloudStorageImpl.createItemInfoForNotFound(resourceId));
+  }
+
+  /**
+   * Removes the cached info of the given resource, if any.
+   */
+  public void invalidate(StorageResourceId resourceId) {
+    int stripe = getStripe(resourceId);
+    synchronized (stripeLocks[stripe]) {
+      stripeInvalidations[stripe] = invalidationSequence.incrementAndGet();
+      itemInfos.invalidate(resourceId);
+    }
+  }
+
+  /**
+   * Removes all cached infos.
+   */
+  public void invalidateAll() {
+    long sequence = invalidationSequence.incrementAndGet();
+    for (int i = 0; i < INVALIDATION_STRIPES; i++) {
+      synchronized (stripeLocks[i]) {
+        // Keep the number of a later invalidation of a single resource.
+        stripeInvalidations[i] = Math.max(stripeInvalidations[i], sequence);
+      }
+    }
+    itemInfos.invalidateAll();
+  }
+
+  /**
+   * Returns the approximate number of cached infos.
+   */
+  public long size() {
+    return itemInfos.size();
+  }
+
+  public StatCacheOptions getOptions() {
+    return options;
+  }
+}
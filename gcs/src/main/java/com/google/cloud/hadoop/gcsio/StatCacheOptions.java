@@ -0,0 +1,136 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+
+/**
+ * Options for the StatCache.
+ */
+public class StatCacheOptions {
+
+  /**
+   * Default of whether GoogleCloudStorageFileSystem serves metadata lookups from the stat cache.
+   */
+  public static final boolean ENABLED_DEFAULT = false;
+
+  /**
+   * Default maximum number of entries in the stat cache.
+   */
+  public static final int MAX_ENTRIES_DEFAULT = 10000;
+
+  /**
+   * Default maximum estimated number of bytes of memory held by the stat cache.
+   */
+  public static final long MAX_BYTES_DEFAULT = 16 * 1024 * 1024;
+
+  /**
+   * Default number of milliseconds after which an entry of the stat cache expires.
+   */
+  public static final long TTL_MILLIS_DEFAULT = 5000;
+
+  /**
+   * Mutable builder for the StatCacheOptions class.
+   */
+  public static class Builder {
+    private boolean enabled = ENABLED_DEFAULT;
+    private int maxEntries = MAX_ENTRIES_DEFAULT;
+    private long maxBytes = MAX_BYTES_DEFAULT;
+    private long ttlMillis = TTL_MILLIS_DEFAULT;
+
+    public Builder setEnabled(boolean enabled) {
+      this.enabled = enabled;
+      return this;
+    }
+
+    public Builder setMaxEntries(int maxEntries) {
+      this.maxEntries = maxEntries;
+      return this;
+    }
+
+    public Builder setMaxBytes(long maxBytes) {
+      this.maxBytes = maxBytes;
+      return this;
+    }
+
+    public Builder setTtlMillis(long ttlMillis) {
+      this.ttlMillis = ttlMillis;
+      return this;
+    }
+
+    public StatCacheOptions build() {
+      return new StatCacheOptions(enabled, maxEntries, maxBytes, ttlMillis);
+    }
+  }
+
+  /**
+   * Create a new builder with default values.
+   */
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  private final boolean enabled;
+  private final int maxEntries;
+  private final long maxBytes;
+  private final long ttlMillis;
+
+  public StatCacheOptions(boolean enabled, int maxEntries, long maxBytes, long ttlMillis) {
+    Preconditions.checkArgument(maxEntries > 0,
+        "maxEntries must be greater than 0, got %s", maxEntries);
+    Preconditions.checkArgument(maxBytes >= maxEntries,
+        "maxBytes must be at least maxEntries, got %s", maxBytes);
+    Preconditions.checkArgument(ttlMillis > 0,
+        "ttlMillis must be greater than 0, got %s", ttlMillis);
+    this.enabled = enabled;
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    this.ttlMillis = ttlMillis;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public int getMaxEntries() {
+    return maxEntries;
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public long getTtlMillis() {
+    return ttlMillis;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof StatCacheOptions)) {
+      return false;
+    }
+    StatCacheOptions other = (StatCacheOptions) obj;
+    return enabled == other.enabled
+        && maxEntries == other.maxEntries
+        && maxBytes == other.maxBytes
+        && ttlMillis == other.ttlMillis;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(enabled, maxEntries, maxBytes, ttlMillis);
+  }
+}
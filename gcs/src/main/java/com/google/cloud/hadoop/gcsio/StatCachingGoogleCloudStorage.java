@@ -0,0 +1,434 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import com.google.cloud.hadoop.util.LogUtil;
+import com.google.common.base.Function;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * StatCachingGoogleCloudStorage serves getItemInfo/getItemInfos from a {@code StatCache} of
+ * recently fetched or listed item infos, and keeps the cache coherent with the changes made
+ * through it by dropping or replacing the entries of created, copied, updated and deleted
+ * resources. Infos fetched while a change is made through this class, or through another user of
+ * the same cache, are not cached if the change invalidated them meanwhile. Changes made by other
+ * clients become visible once their entries expire.
+ */
+public class StatCachingGoogleCloudStorage
+    implements GoogleCloudStorage {
+  // Logger.
+  private static final LogUtil log = new LogUtil(StatCachingGoogleCloudStorage.class);
+
+  // An actual implementation of GoogleCloudStorage which will be used for the actual logic of
+  // GCS operations, while this class adds caching around the delegated calls.
+  private final GoogleCloudStorage gcsDelegate;
+
+  // Cache of item infos, possibly shared with other instances.
+  private final StatCache statCache;
+
+  /**
+   * Constructs a StatCachingGoogleCloudStorage which should be usable anywhere a
+   * GoogleCloudStorage interface is used.
+   *
+   * @param gcsDelegate The GoogleCloudStorage to be used for normal API interactions.
+   * @param statCache The cache of item infos.
+   */
+  public StatCachingGoogleCloudStorage(GoogleCloudStorage gcsDelegate, StatCache statCache) {
+    Preconditions.checkArgument(gcsDelegate != null, "gcsDelegate must not be null");
+    Preconditions.checkArgument(statCache != null, "statCache must not be null");
+
+    this.gcsDelegate = gcsDelegate;
+    this.statCache = statCache;
+  }
+
+  @Override
+  public WritableByteChannel create(StorageResourceId resourceId)
+      throws IOException {
+    log.debug("create(%s)", resourceId);
+    return create(resourceId, CreateObjectOptions.DEFAULT);
+  }
+
+  /**
+   * Wraps the delegate's returned WritableByteChannel in a helper which will replace the cached
+   * info of the object when close() is called, with the info returned by the upload if available.
+   */
+  @Override
+  public WritableByteChannel create(final StorageResourceId resourceId, CreateObjectOptions options)
+      throws IOException {
+    log.debug("create(%s, %s)", resourceId, options);
+    statCache.invalidate(resourceId);
+    final WritableByteChannel innerChannel = gcsDelegate.create(resourceId, options);
+
+    return new WritableByteChannel() {
+      @Override
+      public int write(ByteBuffer buffer)
+          throws IOException {
+        return innerChannel.write(buffer);
+      }
+
+      @Override
+      public boolean isOpen() {
+        return innerChannel.isOpen();
+      }
+
+      @Override
+      public void close()
+          throws IOException {
+        try {
+          innerChannel.close();
+        } finally {
+          statCache.invalidate(resourceId);
+        }
+        long invalidationSequence = statCache.getInvalidationSequence();
+        if (innerChannel instanceof GoogleCloudStorageWriteChannel) {
+          GoogleCloudStorageItemInfo itemInfo =
+              ((GoogleCloudStorageWriteChannel) innerChannel).getItemInfo();
+          if (itemInfo != null) {
+            statCache.put(itemInfo, invalidationSequence);
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Invalidates the cached info after delegating.
+   */
+  @Override
+  public void createEmptyObject(StorageResourceId resourceId)
+      throws IOException {
+    log.debug("createEmptyObject(%s)", resourceId);
+    try {
+      gcsDelegate.createEmptyObject(resourceId);
+    } finally {
+      statCache.invalidate(resourceId);
+    }
+  }
+
+  @Override
+  public void createEmptyObject(StorageResourceId resourceId, CreateObjectOptions options)
+      throws IOException {
+    log.debug("createEmptyObject(%s, %s)", resourceId, options);
+    try {
+      gcsDelegate.createEmptyObject(resourceId, options);
+    } finally {
+      statCache.invalidate(resourceId);
+    }
+  }
+
+  /**
+   * Invalidates the cached infos after delegating.
+   */
+  @Override
+  public void createEmptyObjects(List<StorageResourceId> resourceIds)
+      throws IOException {
+    log.debug("createEmptyObjects(%s)", resourceIds);
+    try {
+      gcsDelegate.createEmptyObjects(resourceIds);
+    } finally {
+      invalidate(resourceIds);
+    }
+  }
+
+  @Override
+  public void createEmptyObjects(List<StorageResourceId> resourceIds, CreateObjectOptions options)
+      throws IOException {
+    log.debug("createEmptyObjects(%s, %s)", resourceIds, options);
+    try {
+      gcsDelegate.createEmptyObjects(resourceIds, options);
+    } finally {
+      invalidate(resourceIds);
+    }
+  }
+
+  /**
+   * Pure pass-through.
+   */
+  @Override
+  public SeekableReadableByteChannel open(StorageResourceId resourceId)
+      throws IOException {
+    log.debug("open(%s)", resourceId);
+    return gcsDelegate.open(resourceId);
+  }
+
+  /**
+   * Pure pass-through.
+   */
+  @Override
+  public SeekableReadableByteChannel open(
+      StorageResourceId resourceId, GoogleCloudStorageReadOptions readOptions)
+      throws IOException {
+    log.debug("open(%s)", resourceId);
+    return gcsDelegate.open(resourceId, readOptions);
+  }
+
+  /**
+   * Invalidates the cached info of the bucket after delegating.
+   */
+  @Override
+  public void create(String bucketName)
+      throws IOException {
+    log.debug("create(%s)", bucketName);
+    try {
+      gcsDelegate.create(bucketName);
+    } finally {
+      statCache.invalidate(new StorageResourceId(bucketName));
+    }
+  }
+
+  /**
+   * Invalidates the cached infos of the buckets after delegating.
+   */
+  @Override
+  public void deleteBuckets(List<String> bucketNames)
+      throws IOException {
+    log.debug("deleteBuckets(%s)", bucketNames);
+    try {
+      gcsDelegate.deleteBuckets(bucketNames);
+    } finally {
+      for (String bucketName : bucketNames) {
+        statCache.invalidate(new StorageResourceId(bucketName));
+      }
+    }
+  }
+
+  /**
+   * Invalidates the cached infos after delegating.
+   */
+  @Override
+  public void deleteObjects(List<StorageResourceId> fullObjectNames)
+      throws IOException {
+    log.debug("deleteObjects(%s)", fullObjectNames);
+    try {
+      gcsDelegate.deleteObjects(fullObjectNames);
+    } finally {
+      invalidate(fullObjectNames);
+    }
+  }
+
+  @Override
+  public void deleteObjects(List<StorageResourceId> fullObjectNames,
+      List<Long> contentGenerations)
+      throws IOException {
+    log.debug("deleteObjects(%s, %s)", fullObjectNames, contentGenerations);
+    try {
+      gcsDelegate.deleteObjects(fullObjectNames, contentGenerations);
+    } finally {
+      invalidate(fullObjectNames);
+    }
+  }
+
+  /**
+   * Invalidates the cached infos of the destination objects after delegating.
+   */
+  @Override
+  public void copy(String srcBucketName, List<String> srcObjectNames,
+      String dstBucketName, List<String> dstObjectNames)
+      throws IOException {
+    log.debug("copy(%s, %s, %s, %s)", srcBucketName, srcObjectNames, dstBucketName, dstObjectNames);
+    try {
+      gcsDelegate.copy(srcBucketName, srcObjectNames, dstBucketName, dstObjectNames);
+    } finally {
+      for (String dstObjectName : dstObjectNames) {
+        statCache.invalidate(new StorageResourceId(dstBucketName, dstObjectName));
+      }
+    }
+  }
+
+  /**
+   * Pure pass-through.
+   */
+  @Override
+  public List<String> listBucketNames()
+      throws IOException {
+    log.debug("listBucketNames()");
+    return gcsDelegate.listBucketNames();
+  }
+
+  /**
+   * Caches the listed infos.
+   */
+  @Override
+  public List<GoogleCloudStorageItemInfo> listBucketInfo()
+      throws IOException {
+    log.debug("listBucketInfo()");
+    long invalidationSequence = statCache.getInvalidationSequence();
+    return put(gcsDelegate.listBucketInfo(), invalidationSequence);
+  }
+
+  /**
+   * Pure pass-through.
+   */
+  @Override
+  public List<String> listObjectNames(
+      String bucketName, String objectNamePrefix, String delimiter)
+      throws IOException {
+    log.debug("listObjectNames(%s, %s, %s)", bucketName, objectNamePrefix, delimiter);
+    return gcsDelegate.listObjectNames(bucketName, objectNamePrefix, delimiter);
+  }
+
+  /**
+   * Pure pass-through.
+   */
+  @Override
+  public List<String> listObjectNames(
+      String bucketName, String objectNamePrefix, String delimiter, long maxResults)
+      throws IOException {
+    log.debug("listObjectNames(%s, %s, %s, %d)",
+        bucketName, objectNamePrefix, delimiter, maxResults);
+    return gcsDelegate.listObjectNames(bucketName, objectNamePrefix, delimiter, maxResults);
+  }
+
+  /**
+   * Caches the listed infos.
+   */
+  @Override
+  public List<GoogleCloudStorageItemInfo> listObjectInfo(
+      String bucketName, String objectNamePrefix, String delimiter)
+      throws IOException {
+    log.debug("listObjectInfo(%s, %s, %s)", bucketName, objectNamePrefix, delimiter);
+    long invalidationSequence = statCache.getInvalidationSequence();
+    return put(gcsDelegate.listObjectInfo(bucketName, objectNamePrefix, delimiter),
+        invalidationSequence);
+  }
+
+  /**
+   * Caches the infos of each listed page as it is returned.
+   */
+  @Override
+  public ListPageIterator<GoogleCloudStorageItemInfo> listObjectInfoPages(
+      String bucketName, String objectNamePrefix, String delimiter)
+      throws IOException {
+    log.debug("listObjectInfoPages(%s, %s, %s)", bucketName, objectNamePrefix, delimiter);
+    final long invalidationSequence = statCache.getInvalidationSequence();
+    return ListPageIterators.transform(
+        gcsDelegate.listObjectInfoPages(bucketName, objectNamePrefix, delimiter),
+        new Function<GoogleCloudStorageItemInfo, GoogleCloudStorageItemInfo>() {
+          @Override
+          public GoogleCloudStorageItemInfo apply(GoogleCloudStorageItemInfo itemInfo) {
+            statCache.put(itemInfo, invalidationSequence);
+            return itemInfo;
+          }
+        });
+  }
+
+  /**
+   * Returns the cached info if available; otherwise fetches and caches it.
+   */
+  @Override
+  public GoogleCloudStorageItemInfo getItemInfo(StorageResourceId resourceId)
+      throws IOException {
+    log.debug("getItemInfo(%s)", resourceId);
+    long invalidationSequence = statCache.getInvalidationSequence();
+    GoogleCloudStorageItemInfo itemInfo = statCache.get(resourceId);
+    if (itemInfo != null) {
+      return itemInfo;
+    }
+    itemInfo = gcsDelegate.getItemInfo(resourceId);
+    statCache.put(itemInfo, invalidationSequence);
+    return itemInfo;
+  }
+
+  /**
+   * Returns the cached infos where available, and fetches and caches the others in a single call
+   * to the delegate.
+   */
+  @Override
+  public List<GoogleCloudStorageItemInfo> getItemInfos(List<StorageResourceId> resourceIds)
+      throws IOException {
+    log.debug("getItemInfos(%s)", resourceIds.toString());
+    long invalidationSequence = statCache.getInvalidationSequence();
+    List<GoogleCloudStorageItemInfo> itemInfos = new ArrayList<>(resourceIds.size());
+    List<StorageResourceId> missingIds = new ArrayList<>();
+    List<Integer> missingIndexes = new ArrayList<>();
+    for (StorageResourceId resourceId : resourceIds) {
+      GoogleCloudStorageItemInfo itemInfo = statCache.get(resourceId);
+      if (itemInfo == null) {
+        missingIds.add(resourceId);
+        missingIndexes.add(itemInfos.size());
+      }
+      itemInfos.add(itemInfo);
+    }
+    if (missingIds.isEmpty()) {
+      return itemInfos;
+    }
+
+    List<GoogleCloudStorageItemInfo> fetchedInfos = gcsDelegate.getItemInfos(missingIds);
+    for (int i = 0; i < fetchedInfos.size(); i++) {
+      GoogleCloudStorageItemInfo itemInfo = fetchedInfos.get(i);
+      statCache.put(itemInfo, invalidationSequence);
+      itemInfos.set(missingIndexes.get(i), itemInfo);
+    }
+    return itemInfos;
+  }
+
+  /**
+   * Caches the updated infos.
+   */
+  @Override
+  public List<GoogleCloudStorageItemInfo> updateItems(List<UpdatableItemInfo> itemInfoList)
+      throws IOException {
+    log.debug("updateItems(%s)", itemInfoList);
+    for (UpdatableItemInfo itemInfo : itemInfoList) {
+      statCache.invalidate(itemInfo.getStorageResourceId());
+    }
+    long invalidationSequence = statCache.getInvalidationSequence();
+    return put(gcsDelegate.updateItems(itemInfoList), invalidationSequence);
+  }
+
+  /**
+   * Pure pass-through.
+   */
+  @Override
+  public void close() {
+    gcsDelegate.close();
+  }
+
+  /**
+   * Pure pass-through.
+   */
+  @Override
+  public void waitForBucketEmpty(String bucketName)
+      throws IOException {
+    gcsDelegate.waitForBucketEmpty(bucketName);
+  }
+
+  /**
+   * Caches the given infos, except those invalidated since the given sequence number, and returns
+   * them.
+   */
+  private List<GoogleCloudStorageItemInfo> put(
+      List<GoogleCloudStorageItemInfo> itemInfos, long invalidationSequence) {
+    for (GoogleCloudStorageItemInfo itemInfo : itemInfos) {
+      statCache.put(itemInfo, invalidationSequence);
+    }
+    return itemInfos;
+  }
+
+  /**
+   * Removes the cached infos of the given resources.
+   */
+  private void invalidate(List<StorageResourceId> resourceIds) {
+    for (StorageResourceId resourceId : resourceIds) {
+      statCache.invalidate(resourceId);
+    }
+  }
+}
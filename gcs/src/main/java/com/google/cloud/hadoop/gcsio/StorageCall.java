@@ -0,0 +1,31 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import java.io.IOException;
+
+/**
+ * A call to a GoogleCloudStorage method, run by the decorators which merge, throttle or record
+ * the calls they forward. Unlike a Callable, it can only throw IOExceptions and
+ * RuntimeExceptions, so the decorators can rethrow what it throws unchanged.
+ *
+ * @param <T> The type returned by the call.
+ */
+interface StorageCall<T> {
+  /**
+   * Makes the call and returns its result.
+   */
+  T call() throws IOException;
+}
@@ -137,6 +137,14 @@ public class ThrottledGoogleCloudStorage implements GoogleCloudStorage {
     return wrappedGcs.open(resourceId);
   }
 
+  @Override
+  public SeekableReadableByteChannel open(
+      StorageResourceId resourceId, GoogleCloudStorageReadOptions readOptions)
+      throws IOException {
+    throttle(StorageOperation.OPEN_OBJECT);
+    return wrappedGcs.open(resourceId, readOptions);
+  }
+
   @Override
   public void create(String bucketName) throws IOException {
     throttle(StorageOperation.CREATE_BUCKET);
@@ -159,6 +167,13 @@ public class ThrottledGoogleCloudStorage implements GoogleCloudStorage {
     wrappedGcs.deleteObjects(fullObjectNames);
   }
 
+  @Override
+  public void deleteObjects(List<StorageResourceId> fullObjectNames,
+      List<Long> contentGenerations) throws IOException {
+    throttle(StorageOperation.DELETE_OBJECTS, fullObjectNames.size());
+    wrappedGcs.deleteObjects(fullObjectNames, contentGenerations);
+  }
+
   @Override
   public void copy(String srcBucketName, List<String> srcObjectNames,
       String dstBucketName, List<String> dstObjectNames) throws IOException {
@@ -185,6 +200,13 @@ public class ThrottledGoogleCloudStorage implements GoogleCloudStorage {
     return wrappedGcs.listObjectNames(bucketName, objectNamePrefix, delimiter);
   }
 
+  @Override
+  public List<String> listObjectNames(String bucketName, String objectNamePrefix,
+      String delimiter, long maxResults) throws IOException {
+    throttle(StorageOperation.LIST_OBJECTS);
+    return wrappedGcs.listObjectNames(bucketName, objectNamePrefix, delimiter, maxResults);
+  }
+
   @Override
   public List<GoogleCloudStorageItemInfo> listObjectInfo(String bucketName,
       String objectNamePrefix, String delimiter) throws IOException {
@@ -192,6 +214,13 @@ public class ThrottledGoogleCloudStorage implements GoogleCloudStorage {
     return wrappedGcs.listObjectInfo(bucketName, objectNamePrefix, delimiter);
   }
 
+  @Override
+  public ListPageIterator<GoogleCloudStorageItemInfo> listObjectInfoPages(String bucketName,
+      String objectNamePrefix, String delimiter) throws IOException {
+    throttle(StorageOperation.LIST_OBJECTS);
+    return wrappedGcs.listObjectInfoPages(bucketName, objectNamePrefix, delimiter);
+  }
+
   @Override
   public GoogleCloudStorageItemInfo getItemInfo(
       StorageResourceId resourceId) throws IOException {
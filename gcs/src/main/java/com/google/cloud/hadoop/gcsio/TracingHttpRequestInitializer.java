@@ -0,0 +1,136 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpExecuteInterceptor;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.http.HttpResponse;
+import com.google.api.client.http.HttpResponseInterceptor;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * An HttpRequestInitializer which, after the wrapped initializer, makes the requests built while
+ * a sampled RequestTracer.Trace is open on the thread record themselves into that Trace: every
+ * attempt to send a request, including retries and the parts of batch requests, is counted by
+ * request type, and the time until its response arrives is added to the type.
+ */
+public class TracingHttpRequestInitializer implements HttpRequestInitializer {
+  private final HttpRequestInitializer delegate;
+
+  public TracingHttpRequestInitializer(HttpRequestInitializer delegate) {
+    Preconditions.checkArgument(delegate != null, "delegate must not be null");
+    this.delegate = delegate;
+  }
+
+  @Override
+  public void initialize(HttpRequest request) throws IOException {
+    delegate.initialize(request);
+    RequestTracer.Trace trace = RequestTracer.getCurrentTrace();
+    if (trace != null && trace.isSampled()) {
+      TracingInterceptor interceptor = new TracingInterceptor(
+          trace, request.getInterceptor(), request.getResponseInterceptor());
+      request.setInterceptor(interceptor);
+      request.setResponseInterceptor(interceptor);
+    }
+  }
+
+  /**
+   * Records one request into a Trace, then runs the interceptors it replaced.
+   */
+  private static class TracingInterceptor
+      implements HttpExecuteInterceptor, HttpResponseInterceptor {
+    private final RequestTracer.Trace trace;
+    private final HttpExecuteInterceptor executeInterceptor;
+    private final HttpResponseInterceptor responseInterceptor;
+    private volatile long sendTime;
+
+    TracingInterceptor(RequestTracer.Trace trace, HttpExecuteInterceptor executeInterceptor,
+        HttpResponseInterceptor responseInterceptor) {
+      this.trace = trace;
+      this.executeInterceptor = executeInterceptor;
+      this.responseInterceptor = responseInterceptor;
+    }
+
+    @Override
+    public void intercept(HttpRequest request) throws IOException {
+      if (executeInterceptor != null) {
+        executeInterceptor.intercept(request);
+      }
+      trace.recordRequest(getRequestType(request.getRequestMethod(), request.getUrl()));
+      sendTime = System.nanoTime();
+    }
+
+    @Override
+    public void interceptResponse(HttpResponse response) throws IOException {
+      HttpRequest request = response.getRequest();
+      trace.recordResponse(getRequestType(request.getRequestMethod(), request.getUrl()),
+          System.nanoTime() - sendTime);
+      if (responseInterceptor != null) {
+        responseInterceptor.interceptResponse(response);
+      }
+    }
+  }
+
+  /**
+   * Returns a short name of the kind of GCS JSON API request with the given method and URL, such
+   * as "get", "list", "read", "copy" or "batch".
+   */
+  @VisibleForTesting
+  static String getRequestType(String method, GenericUrl url) {
+    List<String> pathParts = url.getPathParts();
+    if (pathParts == null || pathParts.size() < 2) {
+      return method.toLowerCase();
+    }
+    // Path parts start with an empty part for the leading slash.
+    String service = pathParts.get(1);
+    if ("batch".equals(service) || "upload".equals(service)) {
+      return service;
+    }
+    // Object URLs look like /storage/v1/b/<bucket>/o/<object>[/<action>...].
+    int bucketIndex = pathParts.indexOf("b");
+    if (bucketIndex < 0) {
+      return method.toLowerCase();
+    }
+    boolean isObjectRequest = pathParts.size() > bucketIndex + 2
+        && "o".equals(pathParts.get(bucketIndex + 2));
+    if (!isObjectRequest) {
+      return "bucket " + method.toLowerCase();
+    }
+    if (pathParts.size() == bucketIndex + 3) {
+      return "GET".equals(method) ? "list" : "insert";
+    }
+    if (pathParts.size() > bucketIndex + 4) {
+      // An action on the object, e.g. copyTo or compose.
+      String action = pathParts.get(bucketIndex + 4);
+      return "copyTo".equals(action) ? "copy" : action;
+    }
+    switch (method) {
+      case "GET":
+        return "media".equals(url.getFirst("alt")) ? "read" : "get";
+      case "DELETE":
+        return "delete";
+      case "PATCH":
+        return "patch";
+      default:
+        return method.toLowerCase();
+    }
+  }
+}
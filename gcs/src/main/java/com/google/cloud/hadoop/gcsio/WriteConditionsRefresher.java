@@ -0,0 +1,32 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import java.io.IOException;
+
+/**
+ * Supplies new write conditions for the request creating an object after that request failed,
+ * for write channels which still hold the data written and can therefore send it again.
+ */
+interface WriteConditionsRefresher {
+  /**
+   * Returns the conditions to send the failed request with again, or null if the given failure
+   * should be thrown instead.
+   *
+   * @throws IOException if the conditions cannot be refreshed, for instance because the object
+   *     now exists and may not be overwritten.
+   */
+  ObjectWriteConditions refresh(IOException failure) throws IOException;
+}
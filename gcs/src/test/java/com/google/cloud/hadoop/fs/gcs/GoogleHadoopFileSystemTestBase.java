@@ -17,11 +17,15 @@ package com.google.cloud.hadoop.fs.gcs;
 import com.google.cloud.hadoop.gcsio.GoogleCloudStorageFileSystem;
 import com.google.cloud.hadoop.gcsio.GoogleCloudStorageFileSystemIntegrationTest;
 import com.google.cloud.hadoop.gcsio.GoogleCloudStorageIntegrationTest;
+import com.google.cloud.hadoop.gcsio.ListPageIterator;
 import com.google.cloud.hadoop.util.HadoopVersionInfo;
 import com.google.common.base.Predicate;
 import com.google.common.base.Strings;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.permission.FsPermission;
 import org.junit.AfterClass;
@@ -31,11 +35,16 @@ import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -158,6 +167,79 @@ public abstract class GoogleHadoopFileSystemTestBase
     Assert.assertNull(ghfs.getCanonicalServiceName());
   }
 
+  /**
+   * Validates that listStatusPages() returns the same statuses as listStatus(), and follows the
+   * listStatus() behavior for missing paths.
+   */
+  @Test
+  public void testListStatusPages()
+      throws IOException, URISyntaxException {
+    GoogleHadoopFileSystemBase myghfs = (GoogleHadoopFileSystemBase) ghfs;
+    URI seedUri = GoogleCloudStorageFileSystemIntegrationTest.getTempFilePath();
+    Path dirPath = castAsHadoopPath(seedUri);
+    myghfs.mkdirs(new Path(dirPath, "subdir"));
+    myghfs.create(new Path(dirPath, "file0")).close();
+    myghfs.create(new Path(dirPath, "file1")).close();
+
+    List<Path> pagedPaths = new ArrayList<>();
+    ListPageIterator<FileStatus> pages = myghfs.listStatusPages(dirPath);
+    while (pages.hasNext()) {
+      for (FileStatus status : pages.next()) {
+        pagedPaths.add(status.getPath());
+      }
+    }
+    List<Path> listedPaths = new ArrayList<>();
+    for (FileStatus status : myghfs.listStatus(dirPath)) {
+      listedPaths.add(status.getPath());
+    }
+    Collections.sort(pagedPaths);
+    Collections.sort(listedPaths);
+    Assert.assertEquals(3, pagedPaths.size());
+    Assert.assertEquals(listedPaths, pagedPaths);
+
+    Path missingPath = new Path(dirPath, "missing");
+    try {
+      Assert.assertNull(myghfs.listStatusPages(missingPath));
+      Assert.assertNull(myghfs.listStatus(missingPath));
+    } catch (FileNotFoundException fnfe) {
+      // Expected on Hadoop versions where listStatus throws for missing paths.
+    }
+
+    myghfs.delete(dirPath, true);
+  }
+
+  /**
+   * Validates open() of a FileStatus, which does not fetch metadata before reading.
+   */
+  @Test
+  public void testOpenFileStatus()
+      throws IOException, URISyntaxException {
+    GoogleHadoopFileSystemBase myghfs = (GoogleHadoopFileSystemBase) ghfs;
+    URI seedUri = GoogleCloudStorageFileSystemIntegrationTest.getTempFilePath();
+    Path dirPath = castAsHadoopPath(seedUri);
+    Path filePath = new Path(dirPath, "file");
+    byte[] data = "file text".getBytes(StandardCharsets.UTF_8);
+    try (FSDataOutputStream out = myghfs.create(filePath)) {
+      out.write(data);
+    }
+
+    byte[] readData = new byte[data.length];
+    try (FSDataInputStream in = myghfs.open(myghfs.getFileStatus(filePath), 4096)) {
+      in.readFully(readData);
+      Assert.assertEquals(-1, in.read());
+    }
+    Assert.assertArrayEquals(data, readData);
+
+    try {
+      myghfs.open(myghfs.getFileStatus(dirPath), 4096);
+      Assert.fail("Expected FileNotFoundException");
+    } catch (FileNotFoundException fnfe) {
+      // Expected.
+    }
+
+    myghfs.delete(dirPath, true);
+  }
+
   /**
    * Makes listStatus and globStatus perform repairs by first creating an object directly without
    * creating its parent directory object.
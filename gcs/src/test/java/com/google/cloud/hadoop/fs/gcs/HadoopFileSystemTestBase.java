@@ -856,6 +856,43 @@ public abstract class HadoopFileSystemTestBase
     }
   }
 
+  /**
+   * Validates that positional reads return the requested bytes without moving the position of
+   * the stream.
+   */
+  @Test
+  public void testPositionalRead()
+      throws IOException {
+    URI path = GoogleCloudStorageFileSystemIntegrationTest.getTempFilePath();
+    Path hadoopPath = castAsHadoopPath(path);
+    String text = "Hello World!";
+    int numBytesWritten = writeFile(hadoopPath, text, 1, false);
+
+    try (FSDataInputStream readStream =
+        ghfs.open(hadoopPath, GoogleHadoopFileSystemBase.BUFFERSIZE_DEFAULT)) {
+      Assert.assertEquals(readStream.read(), (int) 'H');
+      Assert.assertEquals(readStream.read(), (int) 'e');
+
+      // Read bytes which are already buffered.
+      byte[] buffer = new byte[5];
+      Assert.assertEquals(5, readStream.read(0, buffer, 0, 5));
+      Assert.assertEquals("Hello", new String(buffer, StandardCharsets.UTF_8));
+      Assert.assertEquals(2, readStream.getPos());
+
+      // Read past the end of the file.
+      buffer = new byte[10];
+      Assert.assertEquals(6, readStream.read(6, buffer, 0, 10));
+      Assert.assertEquals("World!", new String(buffer, 0, 6, StandardCharsets.UTF_8));
+      Assert.assertEquals(2, readStream.getPos());
+
+      readStream.readFully(6, buffer, 2, 5);
+      Assert.assertEquals("World", new String(buffer, 2, 5, StandardCharsets.UTF_8));
+      Assert.assertEquals(readStream.read(), (int) 'l');
+      Assert.assertEquals(3, readStream.getPos());
+      Assert.assertEquals(-1, readStream.read(numBytesWritten, buffer, 0, 1));
+    }
+  }
+
   /**
    * More comprehensive testing of various "seek" calls backwards and forwards and around
    * the edge cases related to buffer sizes.
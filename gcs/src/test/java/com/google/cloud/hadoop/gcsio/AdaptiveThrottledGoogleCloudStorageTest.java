@@ -0,0 +1,204 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.HttpTesting;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.client.util.Clock;
+import com.google.cloud.hadoop.gcsio.AdaptiveRateLimiter.OperationClass;
+import com.google.common.collect.ImmutableList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+
+/**
+ * UnitTests for AdaptiveThrottledGoogleCloudStorage and AdaptiveRateLimiter classes.
+ */
+@RunWith(JUnit4.class)
+public class AdaptiveThrottledGoogleCloudStorageTest {
+  private static final double EPSILON = 1e-9;
+
+  @Mock private GoogleCloudStorage mockGcsDelegate;
+  @Mock private Clock mockClock;
+
+  private AdaptiveRateLimiter rateLimiter;
+  private GoogleCloudStorage gcs;
+  private StorageResourceId objectResourceId;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    rateLimiter = new AdaptiveRateLimiter(AdaptiveRateLimiterOptions.newBuilder()
+        .setInitialRate(100)
+        .setMinRate(10)
+        .setMaxRate(110)
+        .setAdditiveIncrease(50)
+        .setMultiplicativeDecrease(0.5)
+        .build());
+    rateLimiter.setClock(mockClock);
+    gcs = new AdaptiveThrottledGoogleCloudStorage(mockGcsDelegate, rateLimiter);
+    objectResourceId = new StorageResourceId("foo-bucket", "bar-object");
+  }
+
+  @After
+  public void tearDown() {
+    verifyNoMoreInteractions(mockGcsDelegate);
+  }
+
+  /**
+   * Returns the GoogleJsonResponseException thrown for a response with the given status code.
+   */
+  private static GoogleJsonResponseException createResponseException(final int statusCode)
+      throws IOException {
+    HttpTransport transport = new MockHttpTransport() {
+      @Override
+      public LowLevelHttpRequest buildRequest(String method, String url) throws IOException {
+        return new MockLowLevelHttpRequest() {
+          @Override
+          public LowLevelHttpResponse execute() throws IOException {
+            return new MockLowLevelHttpResponse().setStatusCode(statusCode);
+          }
+        };
+      }
+    };
+    HttpRequest request =
+        transport.createRequestFactory().buildGetRequest(HttpTesting.SIMPLE_GENERIC_URL);
+    request.setThrowExceptionOnExecuteError(false);
+    return GoogleJsonResponseException.from(new JacksonFactory(), request.execute());
+  }
+
+  private static GoogleJsonResponseException createTooManyRequestsException()
+      throws IOException {
+    return createResponseException(429);
+  }
+
+  @Test
+  public void testSuccessesIncreaseRateAdditively() {
+    // A hundred successes at 100/s raise the rate by the full increase, capped at maxRate.
+    rateLimiter.onSuccess(OperationClass.METADATA_READ, 10);
+    assertEquals(105.0, rateLimiter.getRate(OperationClass.METADATA_READ), EPSILON);
+    rateLimiter.onSuccess(OperationClass.METADATA_READ, 100);
+    assertEquals(110.0, rateLimiter.getRate(OperationClass.METADATA_READ), EPSILON);
+
+    // Other classes have their own budgets.
+    assertEquals(100.0, rateLimiter.getRate(OperationClass.LIST), EPSILON);
+  }
+
+  @Test
+  public void testRateLimitingDecreasesRateOncePerInterval() {
+    when(mockClock.currentTimeMillis()).thenReturn(1000L);
+    rateLimiter.onRateLimited(OperationClass.LIST);
+    assertEquals(50.0, rateLimiter.getRate(OperationClass.LIST), EPSILON);
+
+    // Errors of requests sent before the decrease took effect are ignored.
+    rateLimiter.onRateLimited(OperationClass.LIST);
+    assertEquals(50.0, rateLimiter.getRate(OperationClass.LIST), EPSILON);
+
+    when(mockClock.currentTimeMillis())
+        .thenReturn(1000L + AdaptiveRateLimiter.DECREASE_INTERVAL_MILLIS);
+    rateLimiter.onRateLimited(OperationClass.LIST);
+    assertEquals(25.0, rateLimiter.getRate(OperationClass.LIST), EPSILON);
+
+    when(mockClock.currentTimeMillis())
+        .thenReturn(1000L + 2 * AdaptiveRateLimiter.DECREASE_INTERVAL_MILLIS);
+    rateLimiter.onRateLimited(OperationClass.LIST);
+    assertEquals(12.5, rateLimiter.getRate(OperationClass.LIST), EPSILON);
+
+    when(mockClock.currentTimeMillis())
+        .thenReturn(1000L + 3 * AdaptiveRateLimiter.DECREASE_INTERVAL_MILLIS);
+    rateLimiter.onRateLimited(OperationClass.LIST);
+    assertEquals(10.0, rateLimiter.getRate(OperationClass.LIST), EPSILON);
+
+    assertEquals(100.0, rateLimiter.getRate(OperationClass.DATA), EPSILON);
+  }
+
+  @Test
+  public void testSuccessfulOperationIncreasesItsClassRate()
+      throws IOException {
+    GoogleCloudStorageItemInfo itemInfo =
+        GoogleCloudStorageImpl.createItemInfoForNotFound(objectResourceId);
+    when(mockGcsDelegate.getItemInfo(eq(objectResourceId))).thenReturn(itemInfo);
+
+    assertSame(itemInfo, gcs.getItemInfo(objectResourceId));
+    assertEquals(100.5, rateLimiter.getRate(OperationClass.METADATA_READ), EPSILON);
+    assertEquals(100.0, rateLimiter.getRate(OperationClass.METADATA_WRITE), EPSILON);
+
+    verify(mockGcsDelegate).getItemInfo(eq(objectResourceId));
+  }
+
+  @Test
+  public void testRateLimitedOperationDecreasesItsClassRate()
+      throws IOException {
+    IOException wrapped = new IOException("Error deleting", createTooManyRequestsException());
+    when(mockClock.currentTimeMillis()).thenReturn(1000L);
+    ImmutableList<StorageResourceId> resourceIds = ImmutableList.of(objectResourceId);
+    doThrow(wrapped).when(mockGcsDelegate).deleteObjects(eq(resourceIds));
+
+    try {
+      gcs.deleteObjects(resourceIds);
+      fail("Expected IOException");
+    } catch (IOException expected) {
+      assertSame(wrapped, expected);
+    }
+    assertEquals(50.0, rateLimiter.getRate(OperationClass.METADATA_WRITE), EPSILON);
+    assertEquals(100.0, rateLimiter.getRate(OperationClass.METADATA_READ), EPSILON);
+
+    verify(mockGcsDelegate).deleteObjects(eq(resourceIds));
+  }
+
+  @Test
+  public void testIsRateLimited()
+      throws IOException {
+    assertTrue(AdaptiveThrottledGoogleCloudStorage.isRateLimited(
+        createTooManyRequestsException()));
+    assertTrue(AdaptiveThrottledGoogleCloudStorage.isRateLimited(
+        new IOException("wrapped", createTooManyRequestsException())));
+
+    // Batch errors only keep the error text, and several of them are combined as suppressed.
+    IOException combined = GoogleCloudStorageExceptions.createCompositeException(ImmutableList.of(
+        new IOException("{\"code\" : 404, \"message\" : \"Not Found\"}"),
+        new IOException("{\"code\" : 429, \"reason\" : \"rateLimitExceeded\"}")));
+    assertTrue(AdaptiveThrottledGoogleCloudStorage.isRateLimited(combined));
+
+    assertFalse(AdaptiveThrottledGoogleCloudStorage.isRateLimited(new IOException("Not Found")));
+    assertFalse(AdaptiveThrottledGoogleCloudStorage.isRateLimited(createResponseException(503)));
+  }
+}
@@ -0,0 +1,217 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.client.googleapis.batch.json.JsonBatchCallback;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.storage.Storage;
+import com.google.api.services.storage.model.StorageObject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * UnitTests for BatchHelper class.
+ */
+@RunWith(JUnit4.class)
+public class BatchHelperTest {
+  private static final String BUCKET_NAME = "foo-bucket";
+  private static final String BOUNDARY = "batch_boundary";
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  // Number of batch HTTP requests executed so far.
+  private final AtomicInteger batchesExecuted = new AtomicInteger();
+
+  // Number of batch HTTP requests currently executing, and the most seen at once.
+  private final AtomicInteger batchesExecuting = new AtomicInteger();
+  private final AtomicInteger maxBatchesExecuting = new AtomicInteger();
+
+  // Whether the transport fails batch requests.
+  private volatile boolean failBatches = false;
+
+  private ExecutorService executor;
+  private Storage gcs;
+
+  // Names of the objects returned to callbacks, in callback order.
+  private List<String> fetchedNames;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newCachedThreadPool();
+    gcs = new Storage.Builder(new BatchTransport(), new JacksonFactory(), null)
+        .setApplicationName("BatchHelperTest")
+        .build();
+    fetchedNames = new ArrayList<>();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Answers each batch request with a successful response for every request it contains, after a
+   * short delay so that concurrently executing batches overlap.
+   */
+  private class BatchTransport extends MockHttpTransport {
+    @Override
+    public LowLevelHttpRequest buildRequest(String method, String url) {
+      return new MockLowLevelHttpRequest() {
+        @Override
+        public LowLevelHttpResponse execute() throws IOException {
+          int executing = batchesExecuting.incrementAndGet();
+          try {
+            synchronized (maxBatchesExecuting) {
+              maxBatchesExecuting.set(Math.max(maxBatchesExecuting.get(), executing));
+            }
+            batchesExecuted.incrementAndGet();
+            if (failBatches) {
+              throw new IOException("Batch failed");
+            }
+            Thread.sleep(50);
+            return batchResponse(getContentAsString().split("application/http").length - 1);
+          } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ie);
+          } finally {
+            batchesExecuting.decrementAndGet();
+          }
+        }
+      };
+    }
+  }
+
+  private static MockLowLevelHttpResponse batchResponse(int parts) {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < parts; i++) {
+      String json = "{\"bucket\":\"" + BUCKET_NAME + "\",\"name\":\"obj\"}";
+      content.append("--").append(BOUNDARY).append("\r\n")
+          .append("Content-Type: application/http\r\n\r\n")
+          .append("HTTP/1.1 200 OK\r\n")
+          .append("Content-Type: application/json; charset=UTF-8\r\n")
+          .append("Content-Length: ").append(json.length()).append("\r\n\r\n")
+          .append(json).append("\r\n");
+    }
+    content.append("--").append(BOUNDARY).append("--\r\n");
+    return new MockLowLevelHttpResponse()
+        .setContentType("multipart/mixed; boundary=" + BOUNDARY)
+        .setContent(content.toString());
+  }
+
+  /**
+   * Callback collecting fetched names into the non-thread-safe fetchedNames list.
+   */
+  private class CollectingCallback extends JsonBatchCallback<StorageObject> {
+    @Override
+    public void onSuccess(StorageObject obj, HttpHeaders responseHeaders) {
+      fetchedNames.add(obj.getName());
+    }
+
+    @Override
+    public void onFailure(GoogleJsonError e, HttpHeaders responseHeaders) throws IOException {
+      throw new IOException(e.getMessage());
+    }
+  }
+
+  private void queueGets(BatchHelper batchHelper, int count) throws IOException {
+    for (int i = 0; i < count; i++) {
+      batchHelper.queue(gcs.objects().get(BUCKET_NAME, "obj-" + i), new CollectingCallback());
+    }
+  }
+
+  @Test
+  public void testSequentialBatches() throws IOException {
+    BatchHelper batchHelper = new BatchHelper.Factory().newBatchHelper(null, gcs, 2);
+    queueGets(batchHelper, 5);
+    batchHelper.flush();
+
+    assertTrue(batchHelper.isEmpty());
+    assertEquals(5, fetchedNames.size());
+    assertEquals(3, batchesExecuted.get());
+    assertEquals(1, maxBatchesExecuting.get());
+  }
+
+  @Test
+  public void testConcurrentBatchesAreBoundedByMaxInFlight() throws IOException {
+    BatchHelper batchHelper = new BatchHelper.Factory(3, executor).newBatchHelper(null, gcs, 2);
+    queueGets(batchHelper, 20);
+    batchHelper.flush();
+
+    assertTrue(batchHelper.isEmpty());
+    assertEquals(20, fetchedNames.size());
+    assertEquals(10, batchesExecuted.get());
+    assertTrue(maxBatchesExecuting.get() > 1);
+    assertTrue(maxBatchesExecuting.get() <= 3);
+  }
+
+  @Test
+  public void testRequestsQueuedByCallbacksAreSentByFlush() throws IOException {
+    final BatchHelper batchHelper =
+        new BatchHelper.Factory(2, executor).newBatchHelper(null, gcs, 1);
+    for (int i = 0; i < 4; i++) {
+      batchHelper.queue(gcs.objects().get(BUCKET_NAME, "obj-" + i), new CollectingCallback() {
+        @Override
+        public void onSuccess(StorageObject obj, HttpHeaders responseHeaders) {
+          super.onSuccess(obj, responseHeaders);
+          try {
+            batchHelper.queue(gcs.objects().get(BUCKET_NAME, "obj"), new CollectingCallback());
+          } catch (IOException ioe) {
+            throw new RuntimeException(ioe);
+          }
+        }
+      });
+    }
+    batchHelper.flush();
+
+    assertTrue(batchHelper.isEmpty());
+    assertEquals(8, fetchedNames.size());
+    assertEquals(8, batchesExecuted.get());
+  }
+
+  @Test
+  public void testBatchFailureIsThrownByFlush() throws IOException {
+    failBatches = true;
+    BatchHelper batchHelper = new BatchHelper.Factory(2, executor).newBatchHelper(null, gcs, 2);
+    queueGets(batchHelper, 2);
+
+    expectedException.expect(IOException.class);
+    expectedException.expectMessage("Batch failed");
+    batchHelper.flush();
+  }
+}
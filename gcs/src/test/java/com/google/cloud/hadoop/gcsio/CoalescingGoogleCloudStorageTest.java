@@ -0,0 +1,230 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UnitTests for CoalescingGoogleCloudStorage class.
+ */
+@RunWith(JUnit4.class)
+public class CoalescingGoogleCloudStorageTest {
+  @Mock private GoogleCloudStorage mockGcsDelegate;
+
+  private GoogleCloudStorageItemInfo objectInfo;
+  private StorageResourceId objectResourceId;
+  private CoalescingGoogleCloudStorage gcs;
+  private ExecutorService executor;
+
+  // Counted down by the delegate once a call reaches it, and awaited by it before returning.
+  private CountDownLatch callStarted;
+  private CountDownLatch callReleased;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    objectInfo = DirectoryListCacheTestUtils.createObjectInfo("foo-bucket", "bar-object");
+    objectResourceId = objectInfo.getResourceId();
+    gcs = new CoalescingGoogleCloudStorage(mockGcsDelegate);
+    executor = Executors.newCachedThreadPool();
+    callStarted = new CountDownLatch(1);
+    callReleased = new CountDownLatch(1);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+    verifyNoMoreInteractions(mockGcsDelegate);
+  }
+
+  /**
+   * Returns an Answer which blocks until callReleased, then returns the given result or throws
+   * the given exception.
+   */
+  private <T> Answer<T> blockingAnswer(final T result, final IOException exception) {
+    return new Answer<T>() {
+      @Override
+      public T answer(InvocationOnMock invocation) throws Throwable {
+        callStarted.countDown();
+        assertTrue(callReleased.await(10, TimeUnit.SECONDS));
+        if (exception != null) {
+          throw exception;
+        }
+        return result;
+      }
+    };
+  }
+
+  private Future<GoogleCloudStorageItemInfo> getItemInfoAsync(final StorageResourceId resourceId) {
+    return executor.submit(new Callable<GoogleCloudStorageItemInfo>() {
+      @Override
+      public GoogleCloudStorageItemInfo call() throws IOException {
+        return gcs.getItemInfo(resourceId);
+      }
+    });
+  }
+
+  /**
+   * Waits until the given number of calls wait for a call in flight.
+   */
+  private void awaitMergedCalls(long count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (gcs.getMergedCallCount() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(count, gcs.getMergedCallCount());
+  }
+
+  @Test
+  public void testConcurrentGetItemInfoIsMerged()
+      throws Exception {
+    when(mockGcsDelegate.getItemInfo(eq(objectResourceId)))
+        .thenAnswer(blockingAnswer(objectInfo, null));
+
+    Future<GoogleCloudStorageItemInfo> first = getItemInfoAsync(objectResourceId);
+    assertTrue(callStarted.await(10, TimeUnit.SECONDS));
+    Future<GoogleCloudStorageItemInfo> second = getItemInfoAsync(objectResourceId);
+    Future<GoogleCloudStorageItemInfo> third = getItemInfoAsync(objectResourceId);
+    awaitMergedCalls(2);
+    callReleased.countDown();
+
+    assertSame(objectInfo, first.get());
+    assertSame(objectInfo, second.get());
+    assertSame(objectInfo, third.get());
+    assertEquals(1, gcs.getDelegatedCallCount());
+    verify(mockGcsDelegate, times(1)).getItemInfo(eq(objectResourceId));
+  }
+
+  @Test
+  public void testConcurrentListObjectInfoIsMergedIntoCopies()
+      throws Exception {
+    final List<GoogleCloudStorageItemInfo> listing = Lists.newArrayList(objectInfo);
+    when(mockGcsDelegate.listObjectInfo(eq("foo-bucket"), eq("bar"), eq("/")))
+        .thenAnswer(blockingAnswer(listing, null));
+    Callable<List<GoogleCloudStorageItemInfo>> list =
+        new Callable<List<GoogleCloudStorageItemInfo>>() {
+          @Override
+          public List<GoogleCloudStorageItemInfo> call() throws IOException {
+            return gcs.listObjectInfo("foo-bucket", "bar", "/");
+          }
+        };
+
+    Future<List<GoogleCloudStorageItemInfo>> first = executor.submit(list);
+    assertTrue(callStarted.await(10, TimeUnit.SECONDS));
+    Future<List<GoogleCloudStorageItemInfo>> second = executor.submit(list);
+    awaitMergedCalls(1);
+    callReleased.countDown();
+
+    // Each caller, the first one included, gets its own modifiable copy.
+    List<GoogleCloudStorageItemInfo> firstListing = first.get();
+    List<GoogleCloudStorageItemInfo> secondListing = second.get();
+    assertNotSame(listing, firstListing);
+    assertNotSame(firstListing, secondListing);
+    firstListing.add(objectInfo);
+    assertEquals(ImmutableList.of(objectInfo), secondListing);
+    secondListing.clear();
+    assertEquals(ImmutableList.of(objectInfo, objectInfo), firstListing);
+    verify(mockGcsDelegate, times(1)).listObjectInfo(eq("foo-bucket"), eq("bar"), eq("/"));
+  }
+
+  @Test
+  public void testMergedCallsGetException()
+      throws Exception {
+    when(mockGcsDelegate.getItemInfo(eq(objectResourceId)))
+        .thenAnswer(blockingAnswer(null, new IOException("backend error")));
+
+    Future<GoogleCloudStorageItemInfo> first = getItemInfoAsync(objectResourceId);
+    assertTrue(callStarted.await(10, TimeUnit.SECONDS));
+    Future<GoogleCloudStorageItemInfo> second = getItemInfoAsync(objectResourceId);
+    awaitMergedCalls(1);
+    callReleased.countDown();
+
+    for (Future<GoogleCloudStorageItemInfo> future : ImmutableList.of(first, second)) {
+      try {
+        future.get();
+        fail("Expected ExecutionException");
+      } catch (ExecutionException expected) {
+        assertEquals("backend error", expected.getCause().getMessage());
+      }
+    }
+    verify(mockGcsDelegate, times(1)).getItemInfo(eq(objectResourceId));
+  }
+
+  @Test
+  public void testCallsAfterChangeDoNotJoinEarlierCalls()
+      throws Exception {
+    when(mockGcsDelegate.getItemInfo(eq(objectResourceId)))
+        .thenAnswer(blockingAnswer(objectInfo, null))
+        .thenReturn(objectInfo);
+
+    Future<GoogleCloudStorageItemInfo> first = getItemInfoAsync(objectResourceId);
+    assertTrue(callStarted.await(10, TimeUnit.SECONDS));
+    gcs.deleteObjects(ImmutableList.of(objectResourceId));
+
+    // Started after the delete completed, so it must not be served by the earlier call.
+    assertSame(objectInfo, gcs.getItemInfo(objectResourceId));
+    callReleased.countDown();
+    assertSame(objectInfo, first.get());
+
+    assertEquals(0, gcs.getMergedCallCount());
+    assertEquals(2, gcs.getDelegatedCallCount());
+    verify(mockGcsDelegate).deleteObjects(eq(ImmutableList.of(objectResourceId)));
+    verify(mockGcsDelegate, times(2)).getItemInfo(eq(objectResourceId));
+  }
+
+  @Test
+  public void testSequentialCallsAreNotMerged()
+      throws IOException {
+    when(mockGcsDelegate.getItemInfo(eq(objectResourceId))).thenReturn(objectInfo);
+
+    gcs.getItemInfo(objectResourceId);
+    gcs.getItemInfo(objectResourceId);
+
+    assertEquals(0, gcs.getMergedCallCount());
+    verify(mockGcsDelegate, times(2)).getItemInfo(eq(objectResourceId));
+  }
+}
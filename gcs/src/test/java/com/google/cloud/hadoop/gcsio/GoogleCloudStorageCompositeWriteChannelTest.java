@@ -0,0 +1,372 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.api.client.http.ByteArrayContent;
+import com.google.api.services.storage.Storage;
+import com.google.api.services.storage.model.ComposeRequest;
+import com.google.api.services.storage.model.StorageObject;
+import com.google.cloud.hadoop.util.ClientRequestHelper;
+import com.google.cloud.hadoop.util.UploadBufferManager;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * UnitTests for GoogleCloudStorageCompositeWriteChannel class.
+ */
+@RunWith(JUnit4.class)
+public class GoogleCloudStorageCompositeWriteChannelTest {
+  private static final String BUCKET_NAME = "foo-bucket";
+  private static final String OBJECT_NAME = "dir/bar-object";
+  private static final long MARKER_GENERATION = 7L;
+  private static final Map<String, String> METADATA = ImmutableMap.of("key", "value");
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Mock private Storage mockStorage;
+  @Mock private Storage.Objects mockStorageObjects;
+  @Mock private Storage.Objects.Insert mockStorageObjectsInsert;
+  @Mock private Storage.Objects.Compose mockStorageObjectsCompose;
+  @Mock private Storage.Objects.Delete mockStorageObjectsDelete;
+  @Mock private ClientRequestHelper<StorageObject> mockClientRequestHelper;
+
+  // Generation handed out to the next object created through the mocks.
+  private long nextGeneration = 100L;
+
+  @Before
+  public void setUp() throws IOException {
+    MockitoAnnotations.initMocks(this);
+
+    when(mockStorage.objects()).thenReturn(mockStorageObjects);
+    when(mockStorageObjects.insert(
+        eq(BUCKET_NAME), any(StorageObject.class), any(ByteArrayContent.class)))
+        .thenAnswer(new Answer<Storage.Objects.Insert>() {
+          @Override
+          public Storage.Objects.Insert answer(InvocationOnMock invocation) throws IOException {
+            StorageObject object = (StorageObject) invocation.getArguments()[1];
+            when(mockStorageObjectsInsert.execute())
+                .thenReturn(new StorageObject()
+                    .setName(object.getName())
+                    .setGeneration(nextGeneration++));
+            return mockStorageObjectsInsert;
+          }
+        });
+    when(mockStorageObjects.compose(eq(BUCKET_NAME), anyString(), any(ComposeRequest.class)))
+        .thenAnswer(new Answer<Storage.Objects.Compose>() {
+          @Override
+          public Storage.Objects.Compose answer(InvocationOnMock invocation) throws IOException {
+            String name = (String) invocation.getArguments()[1];
+            when(mockStorageObjectsCompose.execute())
+                .thenReturn(new StorageObject().setName(name).setGeneration(nextGeneration++));
+            return mockStorageObjectsCompose;
+          }
+        });
+    when(mockStorageObjects.delete(eq(BUCKET_NAME), anyString()))
+        .thenReturn(mockStorageObjectsDelete);
+    when(mockStorageObjectsDelete.setIfGenerationMatch(any(Long.class)))
+        .thenReturn(mockStorageObjectsDelete);
+  }
+
+  private GoogleCloudStorageCompositeWriteChannel createChannel(int partSize) {
+    CompositeUploadOptions options = CompositeUploadOptions.newBuilder()
+        .setEnabled(true)
+        .setPartSize(partSize)
+        .build();
+    return new GoogleCloudStorageCompositeWriteChannel(
+        MoreExecutors.sameThreadExecutor(), mockStorage, mockClientRequestHelper,
+        BUCKET_NAME, OBJECT_NAME, options,
+        new ObjectWriteConditions(Optional.of(MARKER_GENERATION), Optional.<Long>absent()),
+        METADATA);
+  }
+
+  @Test
+  public void testComponentPrefixIsHiddenSiblingOfObject() {
+    String prefix = GoogleCloudStorageCompositeWriteChannel.getComponentPrefix(OBJECT_NAME);
+    assertTrue(prefix, prefix.startsWith("dir/_COMPOSITE_bar-object."));
+    assertFalse(prefix.equals(
+        GoogleCloudStorageCompositeWriteChannel.getComponentPrefix(OBJECT_NAME)));
+  }
+
+  @Test
+  public void testSmallObjectIsInsertedDirectly() throws IOException {
+    GoogleCloudStorageCompositeWriteChannel channel = createChannel(16);
+    assertEquals(5, channel.write(ByteBuffer.wrap(new byte[5])));
+    channel.close();
+    assertFalse(channel.isOpen());
+
+    ArgumentCaptor<StorageObject> objectCaptor = ArgumentCaptor.forClass(StorageObject.class);
+    ArgumentCaptor<ByteArrayContent> contentCaptor =
+        ArgumentCaptor.forClass(ByteArrayContent.class);
+    verify(mockStorageObjects).insert(
+        eq(BUCKET_NAME), objectCaptor.capture(), contentCaptor.capture());
+    assertEquals(OBJECT_NAME, objectCaptor.getValue().getName());
+    assertEquals(METADATA, objectCaptor.getValue().getMetadata());
+    assertEquals(5, contentCaptor.getValue().getLength());
+    verify(mockStorageObjectsInsert).setIfGenerationMatch(eq(MARKER_GENERATION));
+    verify(mockStorageObjectsInsert).execute();
+    verify(mockStorageObjects, never())
+        .compose(anyString(), anyString(), any(ComposeRequest.class));
+    verify(mockStorageObjects, never()).delete(anyString(), anyString());
+  }
+
+  @Test
+  public void testPartsAreComposedAndDeleted() throws IOException {
+    GoogleCloudStorageCompositeWriteChannel channel = createChannel(4);
+    assertEquals(10, channel.write(ByteBuffer.wrap(new byte[10])));
+    channel.close();
+
+    verify(mockStorageObjectsInsert, times(3)).setIfGenerationMatch(eq(0L));
+    verify(mockStorageObjectsInsert, times(3)).execute();
+
+    ArgumentCaptor<ComposeRequest> requestCaptor = ArgumentCaptor.forClass(ComposeRequest.class);
+    verify(mockStorageObjects)
+        .compose(eq(BUCKET_NAME), eq(OBJECT_NAME), requestCaptor.capture());
+    ComposeRequest request = requestCaptor.getValue();
+    assertEquals(OBJECT_NAME, request.getDestination().getName());
+    assertEquals(METADATA, request.getDestination().getMetadata());
+    List<ComposeRequest.SourceObjects> sources = request.getSourceObjects();
+    assertEquals(3, sources.size());
+    for (int i = 0; i < sources.size(); i++) {
+      assertTrue(sources.get(i).getName().endsWith(".part-" + i));
+      assertEquals(Long.valueOf(100L + i), sources.get(i).getGeneration());
+    }
+    verify(mockStorageObjectsCompose).setIfGenerationMatch(eq(MARKER_GENERATION));
+
+    verify(mockStorageObjects, times(3)).delete(eq(BUCKET_NAME), anyString());
+    verify(mockStorageObjectsDelete).setIfGenerationMatch(eq(100L));
+    verify(mockStorageObjectsDelete).setIfGenerationMatch(eq(101L));
+    verify(mockStorageObjectsDelete).setIfGenerationMatch(eq(102L));
+  }
+
+  @Test
+  public void testPartBuffersAreLeasedFromUploadBufferManager() throws IOException {
+    int granularity = UploadBufferManager.LEASE_GRANULARITY;
+    UploadBufferManager uploadBufferManager = new UploadBufferManager(2 * granularity);
+    GoogleCloudStorageCompositeWriteChannel channel = createChannel(4 * granularity);
+    channel.setUploadBufferManager(uploadBufferManager);
+    channel.write(ByteBuffer.wrap(new byte[3 * granularity]));
+    // The part being filled holds a lease shrunk to the capacity.
+    assertEquals(2 * granularity, uploadBufferManager.getLeasedBytes());
+    channel.close();
+
+    ArgumentCaptor<ByteArrayContent> contentCaptor =
+        ArgumentCaptor.forClass(ByteArrayContent.class);
+    verify(mockStorageObjects, times(2))
+        .insert(eq(BUCKET_NAME), any(StorageObject.class), contentCaptor.capture());
+    assertEquals(2 * granularity, contentCaptor.getAllValues().get(0).getLength());
+    assertEquals(granularity, contentCaptor.getAllValues().get(1).getLength());
+    verify(mockStorageObjects).compose(eq(BUCKET_NAME), eq(OBJECT_NAME), any(ComposeRequest.class));
+    assertEquals(0, uploadBufferManager.getLeasedBytes());
+    assertEquals(0, uploadBufferManager.getActiveLeases());
+  }
+
+  @Test
+  public void testPartBufferIsReleasedWhenInsertedDirectly() throws IOException {
+    UploadBufferManager uploadBufferManager =
+        new UploadBufferManager(UploadBufferManager.LEASE_GRANULARITY);
+    GoogleCloudStorageCompositeWriteChannel channel = createChannel(16);
+    channel.setUploadBufferManager(uploadBufferManager);
+    channel.write(ByteBuffer.wrap(new byte[5]));
+    assertEquals(16, uploadBufferManager.getLeasedBytes());
+    channel.close();
+
+    verify(mockStorageObjectsInsert).setIfGenerationMatch(eq(MARKER_GENERATION));
+    assertEquals(0, uploadBufferManager.getLeasedBytes());
+    assertEquals(0, uploadBufferManager.getActiveLeases());
+  }
+
+  @Test
+  public void testWritingMoreThanMaxComponentsPartsFails() throws IOException {
+    int maxComponents = GoogleCloudStorageCompositeWriteChannel.MAX_COMPONENTS;
+    GoogleCloudStorageCompositeWriteChannel channel = createChannel(1);
+    assertEquals(maxComponents, channel.write(ByteBuffer.wrap(new byte[maxComponents])));
+    try {
+      channel.write(ByteBuffer.wrap(new byte[1]));
+      fail("Expected IOException for part " + (maxComponents + 1));
+    } catch (IOException expected) {
+      assertTrue(expected.getMessage(), expected.getMessage().contains("at most 1024 components"));
+    }
+    channel.close();
+
+    verify(mockStorageObjectsInsert, times(maxComponents)).execute();
+    ArgumentCaptor<ComposeRequest> requestCaptor = ArgumentCaptor.forClass(ComposeRequest.class);
+    verify(mockStorageObjects)
+        .compose(eq(BUCKET_NAME), eq(OBJECT_NAME), requestCaptor.capture());
+    assertEquals(maxComponents / GoogleCloudStorageCompositeWriteChannel.MAX_COMPOSE_SOURCES,
+        requestCaptor.getValue().getSourceObjects().size());
+  }
+
+  @Test
+  public void testManyPartsAreComposedInLevels() throws IOException {
+    int numParts = GoogleCloudStorageCompositeWriteChannel.MAX_COMPOSE_SOURCES + 2;
+    GoogleCloudStorageCompositeWriteChannel channel = createChannel(1);
+    channel.write(ByteBuffer.wrap(new byte[numParts]));
+    channel.close();
+
+    ArgumentCaptor<String> nameCaptor = ArgumentCaptor.forClass(String.class);
+    ArgumentCaptor<ComposeRequest> requestCaptor = ArgumentCaptor.forClass(ComposeRequest.class);
+    verify(mockStorageObjects, times(3))
+        .compose(eq(BUCKET_NAME), nameCaptor.capture(), requestCaptor.capture());
+    assertTrue(nameCaptor.getAllValues().get(0).endsWith(".compose-0-0"));
+    assertEquals(GoogleCloudStorageCompositeWriteChannel.MAX_COMPOSE_SOURCES,
+        requestCaptor.getAllValues().get(0).getSourceObjects().size());
+    assertTrue(nameCaptor.getAllValues().get(1).endsWith(".compose-0-1"));
+    assertEquals(2, requestCaptor.getAllValues().get(1).getSourceObjects().size());
+    assertEquals(OBJECT_NAME, nameCaptor.getAllValues().get(2));
+    assertEquals(2, requestCaptor.getAllValues().get(2).getSourceObjects().size());
+
+    verify(mockStorageObjectsCompose, times(2)).setIfGenerationMatch(eq(0L));
+    verify(mockStorageObjectsCompose).setIfGenerationMatch(eq(MARKER_GENERATION));
+
+    // All parts and intermediate objects are deleted.
+    verify(mockStorageObjects, times(numParts + 2)).delete(eq(BUCKET_NAME), anyString());
+  }
+
+  @Test
+  public void testFailedPartFailsClose() throws IOException {
+    GoogleCloudStorageCompositeWriteChannel channel = createChannel(4);
+    when(mockStorageObjects.insert(
+        eq(BUCKET_NAME), any(StorageObject.class), any(ByteArrayContent.class)))
+        .thenReturn(mockStorageObjectsInsert);
+    when(mockStorageObjectsInsert.execute()).thenThrow(new IOException("upload failed"));
+
+    // The first part fails while being uploaded by write(), the next write reports it.
+    channel.write(ByteBuffer.wrap(new byte[4]));
+    try {
+      channel.write(ByteBuffer.wrap(new byte[4]));
+      fail("Expected write() to report the failed part");
+    } catch (IOException ioe) {
+      assertEquals("upload failed", ioe.getCause().getMessage());
+    }
+
+    expectedException.expect(IOException.class);
+    try {
+      channel.close();
+    } finally {
+      verify(mockStorageObjects, never())
+          .compose(anyString(), anyString(), any(ComposeRequest.class));
+    }
+  }
+
+  @Test
+  public void testFinalComposeIsRetriedWithRefreshedConditions() throws IOException {
+    GoogleCloudStorageCompositeWriteChannel channel = createChannel(4);
+    final List<IOException> refreshedFailures = new ArrayList<>();
+    channel.setWriteConditionsRefresher(new WriteConditionsRefresher() {
+      @Override
+      public ObjectWriteConditions refresh(IOException failure) {
+        refreshedFailures.add(failure);
+        return new ObjectWriteConditions(Optional.of(42L), Optional.<Long>absent());
+      }
+    });
+    final IOException preconditionFailure = new IOException("precondition failed");
+    when(mockStorageObjects.compose(eq(BUCKET_NAME), eq(OBJECT_NAME), any(ComposeRequest.class)))
+        .thenAnswer(new Answer<Storage.Objects.Compose>() {
+          private boolean failed = false;
+
+          @Override
+          public Storage.Objects.Compose answer(InvocationOnMock invocation) throws IOException {
+            if (failed) {
+              doReturn(new StorageObject().setName(OBJECT_NAME).setGeneration(nextGeneration++))
+                  .when(mockStorageObjectsCompose).execute();
+            } else {
+              failed = true;
+              doThrow(preconditionFailure).when(mockStorageObjectsCompose).execute();
+            }
+            return mockStorageObjectsCompose;
+          }
+        });
+
+    channel.write(ByteBuffer.wrap(new byte[10]));
+    channel.close();
+
+    assertEquals(ImmutableList.of(preconditionFailure), refreshedFailures);
+    verify(mockStorageObjects, times(2))
+        .compose(eq(BUCKET_NAME), eq(OBJECT_NAME), any(ComposeRequest.class));
+    verify(mockStorageObjectsCompose).setIfGenerationMatch(eq(MARKER_GENERATION));
+    verify(mockStorageObjectsCompose).setIfGenerationMatch(eq(42L));
+    // The parts are only uploaded, and deleted, once.
+    verify(mockStorageObjectsInsert, times(3)).execute();
+    verify(mockStorageObjects, times(3)).delete(eq(BUCKET_NAME), anyString());
+  }
+
+  @Test
+  public void testFailureIsThrownWhenConditionsAreNotRefreshed() throws IOException {
+    GoogleCloudStorageCompositeWriteChannel channel = createChannel(16);
+    channel.setWriteConditionsRefresher(new WriteConditionsRefresher() {
+      @Override
+      public ObjectWriteConditions refresh(IOException failure) {
+        return null;
+      }
+    });
+    when(mockStorageObjects.insert(
+        eq(BUCKET_NAME), any(StorageObject.class), any(ByteArrayContent.class)))
+        .thenReturn(mockStorageObjectsInsert);
+    when(mockStorageObjectsInsert.execute()).thenThrow(new IOException("insert failed"));
+    channel.write(ByteBuffer.wrap(new byte[5]));
+
+    expectedException.expectMessage("insert failed");
+    try {
+      channel.close();
+    } finally {
+      verify(mockStorageObjectsInsert).execute();
+    }
+  }
+
+  @Test
+  public void testWriteAfterCloseThrows() throws IOException {
+    GoogleCloudStorageCompositeWriteChannel channel = createChannel(4);
+    channel.close();
+
+    expectedException.expect(ClosedChannelException.class);
+    channel.write(ByteBuffer.wrap(new byte[1]));
+  }
+}
@@ -17,6 +17,7 @@ package com.google.cloud.hadoop.gcsio;
 import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.client.googleapis.auth.oauth2.GoogleCredential;
 import com.google.cloud.hadoop.fs.gcs.GoogleHadoopFileSystemBase;
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.MoreExecutors;
 
 import org.apache.log4j.Level;
@@ -27,6 +28,8 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
+import org.mockito.Matchers;
+import org.mockito.Mockito;
 
 import java.io.IOException;
 import java.net.URI;
@@ -34,6 +37,7 @@ import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The unittest version of {@code GoogleCloudStorageFileSystemIntegrationTest}; the external
@@ -454,4 +458,323 @@ public class GoogleCloudStorageFileSystemTest
       // Expected.
     }
   }
+
+  /**
+   * Returns the paths listed by listAllFileInfoForPrefix(prefix).
+   */
+  private static List<URI> listAllPathsForPrefix(
+      GoogleCloudStorageFileSystem fileSystem, URI prefix)
+      throws IOException {
+    List<URI> paths = new ArrayList<>();
+    for (FileInfo fileInfo : fileSystem.listAllFileInfoForPrefix(prefix)) {
+      paths.add(fileInfo.getPath());
+    }
+    return paths;
+  }
+
+  /**
+   * Creates, in a new bucket of the given GoogleCloudStorage, the objects of a partitioned table
+   * listed by the parallel listing tests, and returns the name of the bucket.
+   */
+  private static String createPartitionedTable(GoogleCloudStorage inMemoryGcs)
+      throws IOException {
+    String bucketName = "parallel-listing-bucket";
+    inMemoryGcs.create(bucketName);
+    for (String objectName : new String[] {
+        "table/",
+        "table/_SUCCESS",
+        "table/dt=1/",
+        "table/dt=1/part-0",
+        "table/dt=1/part-1",
+        "table/dt=1/hr=0/part-0",
+        "table/dt=2/",
+        "table/dt=2/part-0",
+        // An implicit directory, without a directory object of its own.
+        "table/dt=3/part-0",
+        "table/flat/",
+        "table/flat/part-0",
+        "table/flat/part-1",
+        "tables-other/part-0"}) {
+      inMemoryGcs.createEmptyObject(new StorageResourceId(bucketName, objectName));
+    }
+    return bucketName;
+  }
+
+  /**
+   * Verify that listing the sub-prefixes of a prefix in parallel lists the same objects, in the
+   * same order, as listing the prefix sequentially.
+   */
+  @Test
+  public void testParallelListAllFileInfoForPrefix()
+      throws URISyntaxException, IOException {
+    GoogleCloudStorage inMemoryGcs = new InMemoryGoogleCloudStorage();
+    GoogleCloudStorageFileSystem sequentialGcsfs = new GoogleCloudStorageFileSystem(inMemoryGcs);
+    GoogleCloudStorageFileSystem parallelGcsfs = new GoogleCloudStorageFileSystem(inMemoryGcs,
+        GoogleCloudStorageFileSystemOptions.newBuilder().setParallelListingThreads(3).build());
+    String bucketName = createPartitionedTable(inMemoryGcs);
+
+    try {
+      for (String prefix : new String[] {"table/", "table", "table/dt=", "table/flat/"}) {
+        URI prefixUri = new URI("gs://" + bucketName + "/" + prefix);
+        List<URI> expectedPaths = listAllPathsForPrefix(sequentialGcsfs, prefixUri);
+        Assert.assertFalse(expectedPaths.isEmpty());
+        Assert.assertEquals(expectedPaths, listAllPathsForPrefix(parallelGcsfs, prefixUri));
+      }
+      // Everything but the directory object of the prefix itself and the sibling prefix; the
+      // implicit directory has no directory object to list.
+      URI tablePrefix = new URI("gs://" + bucketName + "/table/");
+      List<URI> paths = listAllPathsForPrefix(parallelGcsfs, tablePrefix);
+      Assert.assertEquals(11, paths.size());
+      Assert.assertTrue(paths.contains(tablePrefix.resolve("dt=3/part-0")));
+    } finally {
+      parallelGcsfs.close();
+    }
+  }
+
+  /**
+   * Verify that the sub-prefixes of a prefix are listed in parallel without writing anything, so
+   * that implicit directories are listed even where they cannot be repaired.
+   */
+  @Test
+  public void testParallelListAllFileInfoForPrefixWhenRepairFails()
+      throws URISyntaxException, IOException {
+    GoogleCloudStorage inMemoryGcs = Mockito.spy(new InMemoryGoogleCloudStorage());
+    GoogleCloudStorageFileSystem sequentialGcsfs = new GoogleCloudStorageFileSystem(inMemoryGcs);
+    GoogleCloudStorageFileSystem parallelGcsfs = new GoogleCloudStorageFileSystem(inMemoryGcs,
+        GoogleCloudStorageFileSystemOptions.newBuilder().setParallelListingThreads(3).build());
+    String bucketName = createPartitionedTable(inMemoryGcs);
+    // As with read-only credentials.
+    Mockito.doThrow(new IOException("Forbidden"))
+        .when(inMemoryGcs).create(Matchers.any(StorageResourceId.class));
+
+    try {
+      URI tablePrefix = new URI("gs://" + bucketName + "/table/");
+      List<URI> paths = listAllPathsForPrefix(parallelGcsfs, tablePrefix);
+      Assert.assertEquals(listAllPathsForPrefix(sequentialGcsfs, tablePrefix), paths);
+      Assert.assertEquals(11, paths.size());
+      Assert.assertTrue(paths.contains(tablePrefix.resolve("dt=3/part-0")));
+      Mockito.verify(inMemoryGcs, Mockito.never()).create(Matchers.any(StorageResourceId.class));
+      Assert.assertFalse(inMemoryGcs.getItemInfo(
+          new StorageResourceId(bucketName, "table/dt=3/")).exists());
+    } finally {
+      parallelGcsfs.close();
+    }
+  }
+
+  /**
+   * Verify that fast create creates missing parent directories, keeps the checks of regular
+   * create, and checks parents again after they may have been deleted.
+   */
+  @Test
+  public void testFastCreate()
+      throws URISyntaxException, IOException {
+    GoogleCloudStorage inMemoryGcs = new InMemoryGoogleCloudStorage();
+    GoogleCloudStorageFileSystem fastGcsfs = new GoogleCloudStorageFileSystem(inMemoryGcs,
+        GoogleCloudStorageFileSystemOptions.newBuilder().setFastCreateEnabled(true).build());
+    fastGcsfs.setUpdateTimestampsExecutor(MoreExecutors.sameThreadExecutor());
+
+    URI parentPath = new URI("gs://fast-create-bucket/dir/subdir/");
+    fastGcsfs.create(parentPath.resolve("file0")).close();
+    Assert.assertTrue(fastGcsfs.exists(parentPath.resolve("file0")));
+    Assert.assertTrue(fastGcsfs.getFileInfo(parentPath).isDirectory());
+    Assert.assertTrue(fastGcsfs.getFileInfo(new URI("gs://fast-create-bucket/dir/")).exists());
+
+    fastGcsfs.mkdirs(parentPath.resolve("file1/"));
+    try {
+      fastGcsfs.create(parentPath.resolve("file1"));
+      Assert.fail("Expected IOException for a file named like an existing directory");
+    } catch (IOException expected) {
+      // Expected.
+    }
+
+    try {
+      fastGcsfs.create(parentPath.resolve("file0"), new CreateFileOptions(false));
+      Assert.fail("Expected IOException for an existing file");
+    } catch (IOException expected) {
+      // Expected.
+    }
+
+    // Deleting the parents makes the next create check for them, and create them, again.
+    fastGcsfs.delete(new URI("gs://fast-create-bucket/dir/"), true);
+    fastGcsfs.create(parentPath.resolve("file2")).close();
+    Assert.assertTrue(fastGcsfs.exists(parentPath.resolve("file2")));
+    Assert.assertTrue(fastGcsfs.getFileInfo(parentPath).exists());
+  }
+
+  /**
+   * Verify that fast create fetches the state it conditions the upload on without the metadata
+   * caches, so that a stale cached entry cannot make the upload fail its precondition.
+   */
+  @Test
+  public void testFastCreateChecksBypassCaches()
+      throws URISyntaxException, IOException {
+    GoogleCloudStorage inMemoryGcs = Mockito.spy(new InMemoryGoogleCloudStorage());
+    GoogleCloudStorage cachingGcs = Mockito.spy(new StatCachingGoogleCloudStorage(
+        inMemoryGcs, new StatCache(StatCacheOptions.newBuilder().setEnabled(true).build())));
+    GoogleCloudStorageFileSystem fastGcsfs = new GoogleCloudStorageFileSystem(
+        cachingGcs, inMemoryGcs,
+        GoogleCloudStorageFileSystemOptions.newBuilder().setFastCreateEnabled(true).build());
+    fastGcsfs.setUpdateTimestampsExecutor(MoreExecutors.sameThreadExecutor());
+    inMemoryGcs.create("fast-create-bucket");
+
+    // The cache holds that the file does not exist while it is created behind its back.
+    StorageResourceId fileId = new StorageResourceId("fast-create-bucket", "file");
+    Assert.assertFalse(cachingGcs.getItemInfo(fileId).exists());
+    inMemoryGcs.create(fileId).close();
+
+    try {
+      fastGcsfs.create(new URI("gs://fast-create-bucket/file"), new CreateFileOptions(false));
+      Assert.fail("Expected IOException for an existing file");
+    } catch (IOException expected) {
+      // Expected.
+    }
+    Mockito.verify(inMemoryGcs).getItemInfos(ImmutableList.of(
+        fileId,
+        new StorageResourceId("fast-create-bucket", "file/"),
+        new StorageResourceId("fast-create-bucket")));
+    Mockito.verify(cachingGcs, Mockito.never())
+        .getItemInfos(Matchers.<List<StorageResourceId>>any());
+  }
+
+  /**
+   * Verify that batched directory lookup resolves files, directories and missing paths with a
+   * single bulk fetch of each path and the directory of the same name.
+   */
+  @Test
+  public void testBatchDirectoryLookup()
+      throws URISyntaxException, IOException {
+    GoogleCloudStorage inMemoryGcs = Mockito.spy(new InMemoryGoogleCloudStorage());
+    inMemoryGcs.create("batch-lookup-bucket");
+    inMemoryGcs.createEmptyObject(new StorageResourceId("batch-lookup-bucket", "file"));
+    inMemoryGcs.createEmptyObject(new StorageResourceId("batch-lookup-bucket", "dir/"));
+    GoogleCloudStorageFileSystem batchGcsfs = new GoogleCloudStorageFileSystem(inMemoryGcs,
+        GoogleCloudStorageFileSystemOptions.newBuilder()
+            .setBatchDirectoryLookupEnabled(true)
+            .build());
+
+    URI filePath = new URI("gs://batch-lookup-bucket/file");
+    URI dirPath = new URI("gs://batch-lookup-bucket/dir");
+    URI missingPath = new URI("gs://batch-lookup-bucket/missing");
+    Assert.assertFalse(batchGcsfs.getFileInfo(filePath).isDirectory());
+    Assert.assertTrue(batchGcsfs.getFileInfo(filePath).exists());
+    FileInfo dirInfo = batchGcsfs.getFileInfo(dirPath);
+    Assert.assertTrue(dirInfo.exists());
+    Assert.assertEquals(new URI("gs://batch-lookup-bucket/dir/"), dirInfo.getPath());
+    Assert.assertFalse(batchGcsfs.getFileInfo(missingPath).exists());
+    Assert.assertEquals(missingPath, batchGcsfs.getFileInfo(missingPath).getPath());
+    Assert.assertTrue(batchGcsfs.getFileInfo(new URI("gs://batch-lookup-bucket/")).exists());
+
+    List<FileInfo> fileInfos = batchGcsfs.getFileInfos(
+        ImmutableList.of(filePath, dirPath, missingPath));
+    Assert.assertEquals(filePath, fileInfos.get(0).getPath());
+    Assert.assertTrue(fileInfos.get(1).isDirectory());
+    Assert.assertFalse(fileInfos.get(2).exists());
+
+    // One bulk fetch per lookup of a path with a directory form; the bucket is fetched on its own.
+    Mockito.verify(inMemoryGcs, Mockito.times(6))
+        .getItemInfos(Matchers.<List<StorageResourceId>>any());
+  }
+
+  /**
+   * Verify that with implicit directory inference, no placeholders are written for the parents
+   * of created files, parents are still found through their children, and a parent emptied by
+   * delete or rename keeps existing.
+   */
+  @Test
+  public void testInferImplicitDirectories()
+      throws URISyntaxException, IOException {
+    GoogleCloudStorage inMemoryGcs = new InMemoryGoogleCloudStorage();
+    GoogleCloudStorageFileSystem inferGcsfs = new GoogleCloudStorageFileSystem(inMemoryGcs,
+        GoogleCloudStorageFileSystemOptions.newBuilder()
+            .setInferImplicitDirectoriesEnabled(true)
+            .build());
+    inMemoryGcs.create("infer-bucket");
+
+    URI dirPath = new URI("gs://infer-bucket/dir/");
+    URI subdirPath = new URI("gs://infer-bucket/dir/subdir/");
+    inferGcsfs.create(subdirPath.resolve("file0")).close();
+    Assert.assertEquals(ImmutableList.of("dir/subdir/file0"),
+        inMemoryGcs.listObjectNames("infer-bucket", null, null));
+    Assert.assertTrue(inferGcsfs.getFileInfo(dirPath).isDirectory());
+    Assert.assertTrue(inferGcsfs.getFileInfo(subdirPath).exists());
+    Assert.assertTrue(inferGcsfs.getFileInfo(new URI("gs://infer-bucket/dir")).exists());
+    Assert.assertFalse(inferGcsfs.getFileInfo(new URI("gs://infer-bucket/di/")).exists());
+    Assert.assertEquals(ImmutableList.of(subdirPath),
+        inferGcsfs.listFileNames(inferGcsfs.getFileInfo(dirPath)));
+
+    // mkdirs only writes the placeholder of the directory itself.
+    inferGcsfs.mkdirs(new URI("gs://infer-bucket/other/nested/"));
+    Assert.assertFalse(inMemoryGcs.getItemInfo(
+        new StorageResourceId("infer-bucket", "other/")).exists());
+    Assert.assertTrue(inferGcsfs.getFileInfo(new URI("gs://infer-bucket/other/")).exists());
+
+    // Renaming or deleting the only child leaves its parent in place.
+    inferGcsfs.rename(subdirPath.resolve("file0"), subdirPath.resolve("file1"));
+    Assert.assertTrue(inferGcsfs.exists(subdirPath.resolve("file1")));
+    inferGcsfs.delete(subdirPath.resolve("file1"), false);
+    Assert.assertTrue(inferGcsfs.getFileInfo(subdirPath).exists());
+    inferGcsfs.delete(subdirPath, false);
+    Assert.assertFalse(inferGcsfs.getFileInfo(subdirPath).exists());
+    Assert.assertTrue(inferGcsfs.getFileInfo(dirPath).exists());
+  }
+
+  /**
+   * Verify that with implicit directory inference, creating a file under a path which exists as
+   * a file fails with a single batch of metadata requests and writes nothing.
+   */
+  @Test
+  public void testInferImplicitDirectoriesCreateUnderFileFails()
+      throws URISyntaxException, IOException {
+    GoogleCloudStorage inMemoryGcs = Mockito.spy(new InMemoryGoogleCloudStorage());
+    GoogleCloudStorageFileSystem inferGcsfs = new GoogleCloudStorageFileSystem(inMemoryGcs,
+        GoogleCloudStorageFileSystemOptions.newBuilder()
+            .setInferImplicitDirectoriesEnabled(true)
+            .build());
+    inMemoryGcs.create("infer-bucket");
+    inferGcsfs.create(new URI("gs://infer-bucket/a")).close();
+
+    try {
+      inferGcsfs.create(new URI("gs://infer-bucket/a/b/x"));
+      Assert.fail("Expected IOException");
+    } catch (IOException ioe) {
+      Assert.assertTrue(ioe.getMessage(), ioe.getMessage().contains("gs://infer-bucket/a"));
+    }
+    Mockito.verify(inMemoryGcs).getItemInfos(ImmutableList.of(
+        new StorageResourceId("infer-bucket", "a/b/x/"),
+        new StorageResourceId("infer-bucket", "a"),
+        new StorageResourceId("infer-bucket", "a/b")));
+    Assert.assertEquals(ImmutableList.of("a"),
+        inMemoryGcs.listObjectNames("infer-bucket", null, null));
+  }
+
+  /**
+   * Verify that with a parent timestamp update interval, the updates of a directory caused by
+   * writing many files into it are merged, and sent on close.
+   */
+  @Test
+  public void testCoalescedParentTimestampUpdates()
+      throws URISyntaxException, IOException {
+    GoogleCloudStorage inMemoryGcs = Mockito.spy(new InMemoryGoogleCloudStorage());
+    GoogleCloudStorageFileSystem coalescingGcsfs = new GoogleCloudStorageFileSystem(inMemoryGcs,
+        GoogleCloudStorageFileSystemOptions.newBuilder()
+            .setParentTimestampUpdateIntervalMillis(TimeUnit.HOURS.toMillis(1))
+            .build());
+    ParentTimestampUpdater updater = coalescingGcsfs.getParentTimestampUpdater();
+    Assert.assertNotNull(updater);
+
+    URI dirPath = new URI("gs://coalesced-updates-bucket/dir/");
+    coalescingGcsfs.mkdirs(dirPath);
+    for (int i = 0; i < 10; i++) {
+      coalescingGcsfs.create(dirPath.resolve("file" + i)).close();
+    }
+    Assert.assertEquals(1, updater.getPendingUpdateCount());
+    Assert.assertEquals(9, updater.getMergedUpdateCount());
+    Mockito.verify(inMemoryGcs, Mockito.never())
+        .updateItems(Matchers.<List<UpdatableItemInfo>>any());
+
+    coalescingGcsfs.close();
+    Assert.assertNull(coalescingGcsfs.getParentTimestampUpdater());
+    Assert.assertEquals(1, updater.getSentBatchCount());
+    Mockito.verify(inMemoryGcs).updateItems(Matchers.<List<UpdatableItemInfo>>any());
+  }
 }
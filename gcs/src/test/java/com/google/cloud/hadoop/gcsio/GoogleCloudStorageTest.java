@@ -68,6 +68,8 @@ import com.google.cloud.hadoop.util.ClientRequestHelper;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -94,11 +96,14 @@ import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import javax.net.ssl.SSLException;
 
@@ -244,15 +249,22 @@ public class GoogleCloudStorageTest {
 
   private HttpResponse createFakeResponse(final String responseHeader, final String responseValue,
                                           final InputStream content) throws IOException {
+    return createFakeResponse(ImmutableMap.of(responseHeader, responseValue), content);
+  }
+
+  private HttpResponse createFakeResponse(final Map<String, String> responseHeaders,
+                                          final InputStream content) throws IOException {
     HttpTransport transport = new MockHttpTransport() {
       @Override
       public LowLevelHttpRequest buildRequest(String method, String url) throws IOException {
         MockLowLevelHttpRequest req = new MockLowLevelHttpRequest() {
           @Override
           public LowLevelHttpResponse execute() throws IOException {
-            return new MockLowLevelHttpResponse()
-                .addHeader(responseHeader, responseValue)
-                .setContent(content);
+            MockLowLevelHttpResponse response = new MockLowLevelHttpResponse();
+            for (Map.Entry<String, String> header : responseHeaders.entrySet()) {
+              response.addHeader(header.getKey(), header.getValue());
+            }
+            return response.setContent(content);
           }
         };
         return req;
@@ -366,6 +378,56 @@ public class GoogleCloudStorageTest {
     }
   }
 
+  /**
+   * Test GoogleCloudStorage.create(2) with the expected content generation given in options, which
+   * writes the object with it as precondition without fetching metadata or writing a marker.
+   */
+  @Test
+  public void testCreateObjectWithExpectedGeneration()
+      throws IOException {
+    when(mockBackOffFactory.newBackOff()).thenReturn(mockBackOff);
+    when(mockStorage.objects()).thenReturn(mockStorageObjects);
+    when(mockStorageObjects.insert(
+        eq(BUCKET_NAME), any(StorageObject.class), any(AbstractInputStreamContent.class)))
+        .thenReturn(mockStorageObjectsInsert);
+    when(mockClientRequestHelper.getRequestHeaders(eq(mockStorageObjectsInsert)))
+        .thenReturn(mockHeaders);
+
+    WritableByteChannel writeChannel = gcs.create(
+        new StorageResourceId(BUCKET_NAME, OBJECT_NAME),
+        new CreateObjectOptions(false, ImmutableMap.<String, byte[]>of(), 0L));
+    assertTrue(writeChannel.isOpen());
+
+    verify(mockStorage).objects();
+    verify(mockStorageObjects).insert(
+        eq(BUCKET_NAME), any(StorageObject.class), any(AbstractInputStreamContent.class));
+    verify(mockStorageObjectsInsert).setDisableGZipContent(eq(true));
+    verify(mockStorageObjectsInsert).setIfGenerationMatch(eq(0L));
+    verify(mockHeaders, times(2)).set(startsWith("X-Goog-Upload-"), anyInt());
+    verify(mockClientRequestHelper).getRequestHeaders(any(Storage.Objects.Insert.class));
+    verify(mockClientRequestHelper).setChunkSize(any(Storage.Objects.Insert.class), anyInt());
+    verify(mockBackOffFactory).newBackOff();
+    verify(mockExecutorService).execute(any(Runnable.class));
+  }
+
+  /**
+   * Test that GoogleCloudStorage.create(2) fails without any request when the expected content
+   * generation shows that the object exists and options do not allow overwriting it.
+   */
+  @Test
+  public void testCreateObjectWithExpectedGenerationAlreadyExists()
+      throws IOException {
+    when(mockBackOffFactory.newBackOff()).thenReturn(mockBackOff);
+    try {
+      gcs.create(
+          new StorageResourceId(BUCKET_NAME, OBJECT_NAME),
+          new CreateObjectOptions(false, ImmutableMap.<String, byte[]>of(), 7L));
+      fail("Expected IOException");
+    } catch (IOException ioe) {
+      assertTrue(ioe.getMessage().contains("already exists"));
+    }
+  }
+
   /**
    * Test handling of various types of exceptions thrown during JSON API call for
    * GoogleCloudStorage.create(2).
@@ -977,49 +1039,675 @@ public class GoogleCloudStorageTest {
     assertTrue(readChannel.isOpen());
     assertEquals(2, readChannel.position());
 
-    byte[] actualData2 = new byte[testData2.length];
-    assertEquals(testData2.length, readChannel.read(ByteBuffer.wrap(actualData2)));
-    assertArrayEquals(testData2, actualData2);
+    byte[] actualData2 = new byte[testData2.length];
+    assertEquals(testData2.length, readChannel.read(ByteBuffer.wrap(actualData2)));
+    assertArrayEquals(testData2, actualData2);
+
+    // Note that position will be testData.length, *not* testData2.length (5, not 3).
+    assertEquals(testData.length, readChannel.position());
+
+    // Verify the request being made.
+    verify(mockStorage, atLeastOnce()).objects();
+    verify(mockStorageObjects, atLeastOnce()).get(eq(BUCKET_NAME), eq(OBJECT_NAME));
+    verify(mockClientRequestHelper, times(2)).getRequestHeaders(any(Storage.Objects.Get.class));
+    verify(mockHeaders).setRange(eq("bytes=0-"));
+    verify(mockHeaders).setRange(eq("bytes=2-"));
+    verify(mockStorageObjectsGet, times(2)).executeMedia();
+    verify(mockStorageObjectsGet).execute();
+
+    readChannel.close();
+    assertFalse(readChannel.isOpen());
+
+    // The BackOff should be lazily instantiated, so if nothing went wrong, it will still be null.
+    GoogleCloudStorageReadChannel castedReadChannel = (GoogleCloudStorageReadChannel) readChannel;
+    assertNull(castedReadChannel.getBackOff());
+
+    // After closing the channel, future reads or calls to close() should throw a
+    // ClosedChannelException.
+    try {
+      readChannel.close();
+      fail("Expected ClosedChannelException");
+    } catch (ClosedChannelException ioe) {
+      // Expected.
+    }
+    try {
+      readChannel.read(ByteBuffer.wrap(actualData));
+      fail("Expected ClosedChannelException");
+    } catch (ClosedChannelException ioe) {
+      // Expected.
+    }
+    try {
+      readChannel.position(0);
+      fail("Expected ClosedChannelException");
+    } catch (ClosedChannelException ioe) {
+      // Expected.
+    }
+  }
+
+  /**
+   * Creates an instance of GoogleCloudStorageImpl like createTestInstance(), but with read-ahead
+   * enabled and read-ahead ranges fetched synchronously in the calling thread.
+   */
+  private GoogleCloudStorage createReadAheadTestInstance(int rangeSize, int depth) {
+    return createTestInstance(GoogleCloudStorageReadOptions.newBuilder()
+        .setReadAheadRangeSize(rangeSize)
+        .setReadAheadDepth(depth));
+  }
+
+  /**
+   * Creates an instance of GoogleCloudStorageImpl like createTestInstance(), but with the given
+   * read channel options and read-ahead ranges fetched synchronously in the calling thread.
+   */
+  private GoogleCloudStorage createTestInstance(
+      GoogleCloudStorageReadOptions.Builder readOptionsBuilder) {
+    GoogleCloudStorageOptions.Builder optionsBuilder = GoogleCloudStorageOptions.newBuilder();
+    optionsBuilder.setAppName(APP_NAME);
+    optionsBuilder.setProjectId(PROJECT_ID);
+    optionsBuilder.setReadChannelOptionsBuilder(readOptionsBuilder);
+
+    GoogleCloudStorageImpl gcsTestInstance =
+        new GoogleCloudStorageImpl(optionsBuilder.build(), mockStorage);
+    gcsTestInstance.setThreadPool(mockExecutorService);
+    gcsTestInstance.setReadAheadThreadPool(MoreExecutors.sameThreadExecutor());
+    gcsTestInstance.setErrorExtractor(mockErrorExtractor);
+    gcsTestInstance.setClientRequestHelper(mockClientRequestHelper);
+    gcsTestInstance.setBatchFactory(mockBatchFactory);
+    gcsTestInstance.setSleeper(mockSleeper);
+    gcsTestInstance.setBackOffFactory(mockBackOffFactory);
+    return gcsTestInstance;
+  }
+
+  /**
+   * Test that a read-ahead channel fetches the object as consecutive bounded ranges and
+   * reassembles them in order, including after a seek within and outside the queued ranges.
+   */
+  @Test
+  public void testOpenObjectWithReadAhead()
+      throws IOException {
+    gcs = createReadAheadTestInstance(4, 2);
+    when(mockStorage.objects()).thenReturn(mockStorageObjects);
+    when(mockStorageObjects.get(eq(BUCKET_NAME), eq(OBJECT_NAME)))
+        .thenReturn(mockStorageObjectsGet);
+    when(mockClientRequestHelper.getRequestHeaders(eq(mockStorageObjectsGet)))
+        .thenReturn(mockHeaders);
+    when(mockStorageObjectsGet.execute())
+        .thenReturn(new StorageObject()
+            .setBucket(BUCKET_NAME)
+            .setName(OBJECT_NAME)
+            .setUpdated(new DateTime(11L))
+            .setSize(BigInteger.valueOf(10L))
+            .setGeneration(1L)
+            .setMetageneration(1L));
+
+    byte[] testData = { 0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09 };
+    when(mockStorageObjectsGet.executeMedia())
+        .thenReturn(createFakeResponse("Content-Range", "bytes 0-3/10",
+            new ByteArrayInputStream(testData, 0, 4)))
+        .thenReturn(createFakeResponse(4, new ByteArrayInputStream(testData, 4, 4)))
+        .thenReturn(createFakeResponse(2, new ByteArrayInputStream(testData, 8, 2)))
+        .thenReturn(createFakeResponse(4, new ByteArrayInputStream(testData, 1, 4)))
+        .thenReturn(createFakeResponse(4, new ByteArrayInputStream(testData, 5, 4)));
+
+    SeekableReadableByteChannel readChannel =
+        gcs.open(new StorageResourceId(BUCKET_NAME, OBJECT_NAME));
+    assertEquals(10, readChannel.size());
+
+    // Read across range boundaries.
+    byte[] actualData = new byte[6];
+    assertEquals(6, readChannel.read(ByteBuffer.wrap(actualData)));
+    assertArrayEquals(Arrays.copyOfRange(testData, 0, 6), actualData);
+
+    // Seeking forward within the queued ranges reuses them.
+    readChannel.position(9);
+    actualData = new byte[4];
+    assertEquals(1, readChannel.read(ByteBuffer.wrap(actualData)));
+    assertEquals(testData[9], actualData[0]);
+    assertEquals(-1, readChannel.read(ByteBuffer.wrap(actualData)));
+
+    // Seeking backwards refetches from the new position.
+    readChannel.position(1);
+    actualData = new byte[3];
+    assertEquals(3, readChannel.read(ByteBuffer.wrap(actualData)));
+    assertArrayEquals(Arrays.copyOfRange(testData, 1, 4), actualData);
+    readChannel.close();
+
+    verify(mockStorage, atLeastOnce()).objects();
+    verify(mockStorageObjects, atLeastOnce()).get(eq(BUCKET_NAME), eq(OBJECT_NAME));
+    verify(mockClientRequestHelper, times(5)).getRequestHeaders(any(Storage.Objects.Get.class));
+    verify(mockHeaders).setRange(eq("bytes=0-3"));
+    verify(mockHeaders).setRange(eq("bytes=4-7"));
+    verify(mockHeaders).setRange(eq("bytes=8-9"));
+    verify(mockHeaders).setRange(eq("bytes=1-4"));
+    verify(mockHeaders).setRange(eq("bytes=5-8"));
+    verify(mockStorageObjectsGet).execute();
+    verify(mockStorageObjectsGet, times(5)).executeMedia();
+  }
+
+  /**
+   * Test that a read-ahead range which failed in the background is fetched again when the
+   * reader reaches it.
+   */
+  @Test
+  public void testOpenObjectWithReadAheadRetriesFailedRange()
+      throws IOException, InterruptedException {
+    gcs = createReadAheadTestInstance(4, 1);
+    when(mockStorage.objects()).thenReturn(mockStorageObjects);
+    when(mockStorageObjects.get(eq(BUCKET_NAME), eq(OBJECT_NAME)))
+        .thenReturn(mockStorageObjectsGet);
+    when(mockClientRequestHelper.getRequestHeaders(eq(mockStorageObjectsGet)))
+        .thenReturn(mockHeaders);
+    when(mockStorageObjectsGet.execute())
+        .thenReturn(new StorageObject()
+            .setBucket(BUCKET_NAME)
+            .setName(OBJECT_NAME)
+            .setUpdated(new DateTime(11L))
+            .setSize(BigInteger.valueOf(6L))
+            .setGeneration(1L)
+            .setMetageneration(1L));
+
+    byte[] testData = { 0x01, 0x02, 0x03, 0x05, 0x08, 0x0d };
+    IOException fakeException = new IOException("fake generic IOException");
+    when(mockStorageObjectsGet.executeMedia())
+        .thenReturn(createFakeResponse("Content-Range", "bytes 0-3/6",
+            new ByteArrayInputStream(testData, 0, 4)))
+        .thenThrow(fakeException)
+        .thenReturn(createFakeResponse(2, new ByteArrayInputStream(testData, 4, 2)));
+    when(mockErrorExtractor.itemNotFound(eq(fakeException))).thenReturn(false);
+    when(mockBackOff.nextBackOffMillis()).thenReturn(111L);
+
+    GoogleCloudStorageReadChannel readChannel =
+        (GoogleCloudStorageReadChannel) gcs.open(new StorageResourceId(BUCKET_NAME, OBJECT_NAME));
+    readChannel.setSleeper(mockSleeper);
+    readChannel.setBackOff(mockBackOff);
+
+    byte[] actualData = new byte[testData.length];
+    assertEquals(testData.length, readChannel.read(ByteBuffer.wrap(actualData)));
+    assertArrayEquals(testData, actualData);
+
+    verify(mockStorage, atLeastOnce()).objects();
+    verify(mockStorageObjects, atLeastOnce()).get(eq(BUCKET_NAME), eq(OBJECT_NAME));
+    verify(mockClientRequestHelper, times(3)).getRequestHeaders(any(Storage.Objects.Get.class));
+    verify(mockHeaders).setRange(eq("bytes=0-3"));
+    verify(mockHeaders, times(2)).setRange(eq("bytes=4-5"));
+    verify(mockStorageObjectsGet).execute();
+    verify(mockStorageObjectsGet, times(3)).executeMedia();
+    verify(mockErrorExtractor).itemNotFound(eq(fakeException));
+    verify(mockBackOff).reset();
+    verify(mockBackOff).nextBackOffMillis();
+    verify(mockSleeper).sleep(eq(111L));
+  }
+
+  /**
+   * Test that in AUTO mode a channel skips short forward seeks in place, and switches to bounded
+   * range requests sized to the read after a backward seek.
+   */
+  @Test
+  public void testOpenObjectWithAutoFadviseSwitchesToRandomAccess()
+      throws IOException {
+    gcs = createTestInstance(GoogleCloudStorageReadOptions.newBuilder()
+        .setFadvise(GoogleCloudStorageReadOptions.Fadvise.AUTO)
+        .setMinRangeRequestSize(4)
+        .setInplaceSeekLimit(2));
+    when(mockStorage.objects()).thenReturn(mockStorageObjects);
+    when(mockStorageObjects.get(eq(BUCKET_NAME), eq(OBJECT_NAME)))
+        .thenReturn(mockStorageObjectsGet);
+    when(mockClientRequestHelper.getRequestHeaders(eq(mockStorageObjectsGet)))
+        .thenReturn(mockHeaders);
+    when(mockStorageObjectsGet.execute())
+        .thenReturn(new StorageObject()
+            .setBucket(BUCKET_NAME)
+            .setName(OBJECT_NAME)
+            .setUpdated(new DateTime(11L))
+            .setSize(BigInteger.valueOf(10L))
+            .setGeneration(1L)
+            .setMetageneration(1L));
+
+    byte[] testData = { 0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09 };
+    when(mockStorageObjectsGet.executeMedia())
+        .thenReturn(createFakeResponse(testData.length, new ByteArrayInputStream(testData)))
+        .thenReturn(createFakeResponse("Content-Range", "bytes 1-4/10",
+            new ByteArrayInputStream(testData, 1, 4)))
+        .thenReturn(createFakeResponse("Content-Range", "bytes 5-8/10",
+            new ByteArrayInputStream(testData, 5, 4)));
+
+    SeekableReadableByteChannel readChannel =
+        gcs.open(new StorageResourceId(BUCKET_NAME, OBJECT_NAME));
+    byte[] actualData = new byte[3];
+    assertEquals(3, readChannel.read(ByteBuffer.wrap(actualData)));
+    assertArrayEquals(Arrays.copyOfRange(testData, 0, 3), actualData);
+
+    // A short forward seek skips bytes of the open stream.
+    readChannel.position(4);
+    actualData = new byte[2];
+    assertEquals(2, readChannel.read(ByteBuffer.wrap(actualData)));
+    assertArrayEquals(Arrays.copyOfRange(testData, 4, 6), actualData);
+
+    // A backward seek switches to bounded ranges of at least minRangeRequestSize bytes, and
+    // reading past the end of one range continues with the next.
+    readChannel.position(1);
+    actualData = new byte[2];
+    assertEquals(2, readChannel.read(ByteBuffer.wrap(actualData)));
+    assertArrayEquals(Arrays.copyOfRange(testData, 1, 3), actualData);
+    actualData = new byte[4];
+    assertEquals(4, readChannel.read(ByteBuffer.wrap(actualData)));
+    assertArrayEquals(Arrays.copyOfRange(testData, 3, 7), actualData);
+    readChannel.close();
+
+    verify(mockStorage, atLeastOnce()).objects();
+    verify(mockStorageObjects, atLeastOnce()).get(eq(BUCKET_NAME), eq(OBJECT_NAME));
+    verify(mockClientRequestHelper, times(3)).getRequestHeaders(any(Storage.Objects.Get.class));
+    verify(mockHeaders).setRange(eq("bytes=0-"));
+    verify(mockHeaders).setRange(eq("bytes=1-4"));
+    verify(mockHeaders).setRange(eq("bytes=5-8"));
+    verify(mockStorageObjectsGet).execute();
+    verify(mockStorageObjectsGet, times(3)).executeMedia();
+  }
+
+  /**
+   * Test that the footer cache determines the size of the object and serves reads at the end of
+   * the object with a single suffix range request.
+   */
+  @Test
+  public void testOpenObjectWithFooterCache()
+      throws IOException {
+    gcs = createTestInstance(GoogleCloudStorageReadOptions.newBuilder()
+        .setFooterCacheSize(4));
+    when(mockStorage.objects()).thenReturn(mockStorageObjects);
+    when(mockStorageObjects.get(eq(BUCKET_NAME), eq(OBJECT_NAME)))
+        .thenReturn(mockStorageObjectsGet);
+    when(mockClientRequestHelper.getRequestHeaders(eq(mockStorageObjectsGet)))
+        .thenReturn(mockHeaders);
+    when(mockStorageObjectsGet.execute())
+        .thenReturn(new StorageObject()
+            .setBucket(BUCKET_NAME)
+            .setName(OBJECT_NAME)
+            .setUpdated(new DateTime(11L))
+            .setSize(BigInteger.valueOf(10L))
+            .setGeneration(1L)
+            .setMetageneration(1L));
+
+    byte[] testData = { 0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09 };
+    when(mockStorageObjectsGet.executeMedia())
+        .thenReturn(createFakeResponse("Content-Range", "bytes 6-9/10",
+            new ByteArrayInputStream(testData, 6, 4)))
+        .thenReturn(createFakeResponse(testData.length, new ByteArrayInputStream(testData)));
+
+    SeekableReadableByteChannel readChannel =
+        gcs.open(new StorageResourceId(BUCKET_NAME, OBJECT_NAME));
+    assertEquals(10, readChannel.size());
+
+    readChannel.position(7);
+    byte[] actualData = new byte[8];
+    assertEquals(3, readChannel.read(ByteBuffer.wrap(actualData)));
+    assertArrayEquals(Arrays.copyOfRange(testData, 7, 10), Arrays.copyOf(actualData, 3));
+    assertEquals(-1, readChannel.read(ByteBuffer.wrap(actualData)));
+
+    // Reads before the footer go to the object as usual.
+    readChannel.position(0);
+    actualData = new byte[4];
+    assertEquals(4, readChannel.read(ByteBuffer.wrap(actualData)));
+    assertArrayEquals(Arrays.copyOfRange(testData, 0, 4), actualData);
+    readChannel.close();
+
+    verify(mockStorage, atLeastOnce()).objects();
+    verify(mockStorageObjects, atLeastOnce()).get(eq(BUCKET_NAME), eq(OBJECT_NAME));
+    verify(mockClientRequestHelper, times(2)).getRequestHeaders(any(Storage.Objects.Get.class));
+    verify(mockHeaders).setRange(eq("bytes=-4"));
+    verify(mockHeaders).setRange(eq("bytes=0-"));
+    verify(mockStorageObjectsGet).execute();
+    verify(mockStorageObjectsGet, times(2)).executeMedia();
+  }
+
+  /**
+   * Test that positional reads issue bounded range requests without changing the position of
+   * the channel, and retry a failed range from the first byte not yet read.
+   */
+  @Test
+  public void testOpenObjectPositionalRead()
+      throws IOException, InterruptedException {
+    when(mockStorage.objects()).thenReturn(mockStorageObjects);
+    when(mockStorageObjects.get(eq(BUCKET_NAME), eq(OBJECT_NAME)))
+        .thenReturn(mockStorageObjectsGet);
+    when(mockClientRequestHelper.getRequestHeaders(eq(mockStorageObjectsGet)))
+        .thenReturn(mockHeaders);
+    when(mockStorageObjectsGet.execute())
+        .thenReturn(new StorageObject()
+            .setBucket(BUCKET_NAME)
+            .setName(OBJECT_NAME)
+            .setUpdated(new DateTime(11L))
+            .setSize(BigInteger.valueOf(10L))
+            .setGeneration(1L)
+            .setMetageneration(1L));
+
+    // This stream will read 2 bytes and then time out.
+    InputStream mockFlakyStream = mock(InputStream.class);
+    byte[] testData = { 0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09 };
+    final byte[] flakyData = { 0x03, 0x04 };
+    when(mockFlakyStream.read(any(byte[].class), eq(0), eq(4)))
+        .thenAnswer(new Answer<Integer>() {
+          @Override
+          public Integer answer(InvocationOnMock invocation) {
+            byte[] inputBuf = (byte[]) invocation.getArguments()[0];
+            System.arraycopy(flakyData, 0, inputBuf, 0, 2);
+            return Integer.valueOf(2);
+          }
+        });
+    when(mockFlakyStream.read(any(byte[].class), eq(0), eq(2)))
+        .thenThrow(new SocketTimeoutException("fake timeout"));
+    IOException rangeNotSatisfiableException =
+        new IOException("Fake range-not-satisfiable exception");
+    when(mockStorageObjectsGet.executeMedia())
+        .thenReturn(createFakeResponse("Content-Range", "bytes 3-6/10", mockFlakyStream))
+        .thenReturn(createFakeResponse("Content-Range", "bytes 5-6/10",
+            new ByteArrayInputStream(testData, 5, 2)))
+        .thenThrow(rangeNotSatisfiableException);
+    when(mockErrorExtractor.itemNotFound(eq(rangeNotSatisfiableException))).thenReturn(false);
+    when(mockErrorExtractor.rangeNotSatisfiable(eq(rangeNotSatisfiableException)))
+        .thenReturn(true);
+    when(mockClock.nanoTime()).thenReturn(1000000L);
+
+    GoogleCloudStorageReadChannel readChannel =
+        (GoogleCloudStorageReadChannel) gcs.open(new StorageResourceId(BUCKET_NAME, OBJECT_NAME));
+    readChannel.setSleeper(mockSleeper);
+    readChannel.setNanoClock(mockClock);
+
+    byte[] actualData = new byte[4];
+    assertEquals(4, readChannel.read(3, ByteBuffer.wrap(actualData)));
+    assertArrayEquals(Arrays.copyOfRange(testData, 3, 7), actualData);
+    assertEquals(-1, readChannel.read(10, ByteBuffer.wrap(actualData)));
+    assertEquals(0, readChannel.position());
+
+    verify(mockStorage, atLeastOnce()).objects();
+    verify(mockStorageObjects, atLeastOnce()).get(eq(BUCKET_NAME), eq(OBJECT_NAME));
+    verify(mockClientRequestHelper, times(3)).getRequestHeaders(any(Storage.Objects.Get.class));
+    verify(mockHeaders).setRange(eq("bytes=3-6"));
+    verify(mockHeaders).setRange(eq("bytes=5-6"));
+    verify(mockHeaders).setRange(eq("bytes=10-13"));
+    verify(mockStorageObjectsGet).execute();
+    verify(mockStorageObjectsGet, times(3)).executeMedia();
+    verify(mockErrorExtractor).itemNotFound(eq(rangeNotSatisfiableException));
+    verify(mockErrorExtractor).rangeNotSatisfiable(eq(rangeNotSatisfiableException));
+    verify(mockSleeper).sleep(anyLong());
+    verify(mockClock, atLeastOnce()).nanoTime();
+  }
+
+  /**
+   * Test that positional reads within the cached footer are served from it, and that a range
+   * stream which ends before the requested bytes is reopened at the first byte not yet read.
+   */
+  @Test
+  public void testOpenObjectPositionalReadWithFooterCache()
+      throws IOException {
+    gcs = createTestInstance(GoogleCloudStorageReadOptions.newBuilder()
+        .setFooterCacheSize(4));
+    when(mockStorage.objects()).thenReturn(mockStorageObjects);
+    when(mockStorageObjects.get(eq(BUCKET_NAME), eq(OBJECT_NAME)))
+        .thenReturn(mockStorageObjectsGet);
+    when(mockClientRequestHelper.getRequestHeaders(eq(mockStorageObjectsGet)))
+        .thenReturn(mockHeaders);
+    when(mockStorageObjectsGet.execute())
+        .thenReturn(new StorageObject()
+            .setBucket(BUCKET_NAME)
+            .setName(OBJECT_NAME)
+            .setUpdated(new DateTime(11L))
+            .setSize(BigInteger.valueOf(10L))
+            .setGeneration(1L)
+            .setMetageneration(1L));
+
+    byte[] testData = { 0x00, 0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x07, 0x08, 0x09 };
+    when(mockStorageObjectsGet.executeMedia())
+        .thenReturn(createFakeResponse("Content-Range", "bytes 6-9/10",
+            new ByteArrayInputStream(testData, 6, 4)))
+        .thenReturn(createFakeResponse("Content-Range", "bytes 2-5/10",
+            new ByteArrayInputStream(testData, 2, 2)))
+        .thenReturn(createFakeResponse("Content-Range", "bytes 4-5/10",
+            new ByteArrayInputStream(testData, 4, 2)));
+
+    GoogleCloudStorageReadChannel readChannel =
+        (GoogleCloudStorageReadChannel) gcs.open(new StorageResourceId(BUCKET_NAME, OBJECT_NAME));
+    assertEquals(10, readChannel.size());
+
+    byte[] actualData = new byte[4];
+    assertEquals(3, readChannel.read(7, ByteBuffer.wrap(actualData)));
+    assertArrayEquals(Arrays.copyOfRange(testData, 7, 10), Arrays.copyOf(actualData, 3));
+    assertEquals(-1, readChannel.read(10, ByteBuffer.wrap(actualData)));
+
+    // The first stream only returns 2 of the 4 bytes.
+    assertEquals(4, readChannel.read(2, ByteBuffer.wrap(actualData)));
+    assertArrayEquals(Arrays.copyOfRange(testData, 2, 6), actualData);
+    assertEquals(0, readChannel.position());
+    readChannel.close();
+
+    verify(mockStorage, atLeastOnce()).objects();
+    verify(mockStorageObjects, atLeastOnce()).get(eq(BUCKET_NAME), eq(OBJECT_NAME));
+    verify(mockClientRequestHelper, times(3)).getRequestHeaders(any(Storage.Objects.Get.class));
+    verify(mockHeaders).setRange(eq("bytes=-4"));
+    verify(mockHeaders).setRange(eq("bytes=2-5"));
+    verify(mockHeaders).setRange(eq("bytes=4-5"));
+    verify(mockStorageObjectsGet).execute();
+    verify(mockStorageObjectsGet, times(3)).executeMedia();
+  }
+
+  /**
+   * Test that GoogleCloudStorage.open(2) with fast failing on not found disabled fetches no
+   * metadata, reports a missing object on the first read, and pins later requests of a found
+   * object to the generation returned with its content.
+   */
+  @Test
+  public void testOpenObjectWithoutFastFailOnNotFound()
+      throws IOException {
+    GoogleCloudStorageReadOptions readOptions =
+        GoogleCloudStorageReadOptions.newBuilder().setFastFailOnNotFound(false).build();
+    when(mockStorage.objects()).thenReturn(mockStorageObjects);
+    when(mockStorageObjects.get(eq(BUCKET_NAME), eq(OBJECT_NAME)))
+        .thenReturn(mockStorageObjectsGet);
+    when(mockClientRequestHelper.getRequestHeaders(eq(mockStorageObjectsGet)))
+        .thenReturn(mockHeaders);
+
+    IOException notFoundException = new IOException("Fake not-found exception");
+    byte[] testData = { 0x01, 0x02, 0x03, 0x05, 0x08 };
+    byte[] testData2 = { 0x03, 0x05, 0x08 };
+    when(mockStorageObjectsGet.executeMedia())
+        .thenThrow(notFoundException)
+        .thenReturn(createFakeResponse(
+            ImmutableMap.of(
+                "Content-Length", Integer.toString(testData.length),
+                "x-goog-generation", "7"),
+            new ByteArrayInputStream(testData)))
+        .thenReturn(createFakeResponseForRange(
+            testData2.length, new ByteArrayInputStream(testData2)));
+    when(mockErrorExtractor.itemNotFound(eq(notFoundException)))
+        .thenReturn(true);
+
+    // Opening a missing object succeeds; the first read reports it.
+    SeekableReadableByteChannel readChannel =
+        gcs.open(new StorageResourceId(BUCKET_NAME, OBJECT_NAME), readOptions);
+    assertTrue(readChannel.isOpen());
+    try {
+      readChannel.read(ByteBuffer.allocate(1));
+      fail("Expected FileNotFoundException");
+    } catch (FileNotFoundException e) {
+      // Expected.
+    }
+
+    // The size and generation of an existing object come from the first response.
+    readChannel = gcs.open(new StorageResourceId(BUCKET_NAME, OBJECT_NAME), readOptions);
+    byte[] actualData = new byte[testData.length];
+    assertEquals(testData.length, readChannel.read(ByteBuffer.wrap(actualData)));
+    assertArrayEquals(testData, actualData);
+    assertEquals(testData.length, readChannel.size());
+
+    readChannel.position(2);
+    byte[] actualData2 = new byte[testData2.length];
+    assertEquals(testData2.length, readChannel.read(ByteBuffer.wrap(actualData2)));
+    assertArrayEquals(testData2, actualData2);
+
+    verify(mockStorage, times(3)).objects();
+    verify(mockStorageObjects, times(3)).get(eq(BUCKET_NAME), eq(OBJECT_NAME));
+    verify(mockClientRequestHelper, times(3)).getRequestHeaders(any(Storage.Objects.Get.class));
+    verify(mockHeaders, times(2)).setRange(eq("bytes=0-"));
+    verify(mockHeaders).setRange(eq("bytes=2-"));
+    verify(mockStorageObjectsGet, times(3)).executeMedia();
+    verify(mockStorageObjectsGet).setGeneration(eq(7L));
+    verify(mockErrorExtractor).itemNotFound(any(IOException.class));
+  }
+
+  /**
+   * Test that a channel opened on an object no larger than the whole-object threshold fetches it
+   * with a single request at the generation from its metadata, serves seeks from memory, and
+   * shares the content with later channels through the whole-object cache.
+   */
+  @Test
+  public void testOpenObjectWithWholeObjectRead()
+      throws IOException {
+    gcs = createTestInstance(GoogleCloudStorageReadOptions.newBuilder()
+        .setWholeObjectThreshold(16)
+        .setWholeObjectCacheSize(1024));
+    byte[] testData = { 0x01, 0x02, 0x03, 0x05, 0x08 };
+    when(mockStorage.objects()).thenReturn(mockStorageObjects);
+    when(mockStorageObjects.get(eq(BUCKET_NAME), eq(OBJECT_NAME)))
+        .thenReturn(mockStorageObjectsGet);
+    when(mockClientRequestHelper.getRequestHeaders(eq(mockStorageObjectsGet)))
+        .thenReturn(mockHeaders);
+    when(mockStorageObjectsGet.execute())
+        .thenReturn(new StorageObject()
+            .setBucket(BUCKET_NAME)
+            .setName(OBJECT_NAME)
+            .setUpdated(new DateTime(11L))
+            .setSize(BigInteger.valueOf(testData.length))
+            .setGeneration(3L)
+            .setMetageneration(1L));
+    when(mockStorageObjectsGet.executeMedia())
+        .thenReturn(createFakeResponse(testData.length, new ByteArrayInputStream(testData)));
+
+    SeekableReadableByteChannel readChannel =
+        gcs.open(new StorageResourceId(BUCKET_NAME, OBJECT_NAME));
+    assertEquals(testData.length, readChannel.size());
+    byte[] actualData = new byte[testData.length];
+    assertEquals(testData.length, readChannel.read(ByteBuffer.wrap(actualData)));
+    assertArrayEquals(testData, actualData);
+
+    readChannel.position(1);
+    byte[] actualData2 = new byte[3];
+    assertEquals(3, readChannel.read(ByteBuffer.wrap(actualData2)));
+    assertArrayEquals(new byte[] { 0x02, 0x03, 0x05 }, actualData2);
+    readChannel.close();
+
+    // A second channel on the same generation reads it from the cache.
+    readChannel = gcs.open(new StorageResourceId(BUCKET_NAME, OBJECT_NAME));
+    actualData = new byte[testData.length];
+    assertEquals(testData.length, readChannel.read(ByteBuffer.wrap(actualData)));
+    assertArrayEquals(testData, actualData);
+    readChannel.close();
+
+    verify(mockStorage, times(3)).objects();
+    verify(mockStorageObjects, times(3)).get(eq(BUCKET_NAME), eq(OBJECT_NAME));
+    verify(mockStorageObjectsGet, times(2)).execute();
+    verify(mockClientRequestHelper).getRequestHeaders(any(Storage.Objects.Get.class));
+    verify(mockHeaders).setRange(eq("bytes=0-"));
+    verify(mockStorageObjectsGet).setGeneration(eq(3L));
+    verify(mockStorageObjectsGet).executeMedia();
+  }
+
+  /**
+   * Test that positional reads on a channel which has read a small object whole, or whose
+   * generation is in the whole-object cache, are served from memory without further requests.
+   */
+  @Test
+  public void testOpenObjectPositionalReadOfWholeObject()
+      throws IOException {
+    gcs = createTestInstance(GoogleCloudStorageReadOptions.newBuilder()
+        .setWholeObjectThreshold(16)
+        .setWholeObjectCacheSize(1024));
+    byte[] testData = { 0x01, 0x02, 0x03, 0x05, 0x08 };
+    when(mockStorage.objects()).thenReturn(mockStorageObjects);
+    when(mockStorageObjects.get(eq(BUCKET_NAME), eq(OBJECT_NAME)))
+        .thenReturn(mockStorageObjectsGet);
+    when(mockClientRequestHelper.getRequestHeaders(eq(mockStorageObjectsGet)))
+        .thenReturn(mockHeaders);
+    when(mockStorageObjectsGet.execute())
+        .thenReturn(new StorageObject()
+            .setBucket(BUCKET_NAME)
+            .setName(OBJECT_NAME)
+            .setUpdated(new DateTime(11L))
+            .setSize(BigInteger.valueOf(testData.length))
+            .setGeneration(3L)
+            .setMetageneration(1L));
+    when(mockStorageObjectsGet.executeMedia())
+        .thenReturn(createFakeResponse(testData.length, new ByteArrayInputStream(testData)));
+
+    GoogleCloudStorageReadChannel readChannel =
+        (GoogleCloudStorageReadChannel) gcs.open(new StorageResourceId(BUCKET_NAME, OBJECT_NAME));
+    byte[] actualData = new byte[testData.length];
+    assertEquals(testData.length, readChannel.read(ByteBuffer.wrap(actualData)));
 
-    // Note that position will be testData.length, *not* testData2.length (5, not 3).
+    actualData = new byte[3];
+    assertEquals(3, readChannel.read(1, ByteBuffer.wrap(actualData)));
+    assertArrayEquals(new byte[] { 0x02, 0x03, 0x05 }, actualData);
+    assertEquals(1, readChannel.read(4, ByteBuffer.wrap(actualData)));
+    assertEquals(0x08, actualData[0]);
+    assertEquals(-1, readChannel.read(5, ByteBuffer.wrap(actualData)));
     assertEquals(testData.length, readChannel.position());
+    readChannel.close();
 
-    // Verify the request being made.
-    verify(mockStorage, atLeastOnce()).objects();
-    verify(mockStorageObjects, atLeastOnce()).get(eq(BUCKET_NAME), eq(OBJECT_NAME));
-    verify(mockClientRequestHelper, times(2)).getRequestHeaders(any(Storage.Objects.Get.class));
+    // A second channel on the same generation serves positional reads from the cache.
+    readChannel =
+        (GoogleCloudStorageReadChannel) gcs.open(new StorageResourceId(BUCKET_NAME, OBJECT_NAME));
+    actualData = new byte[2];
+    assertEquals(2, readChannel.read(3, ByteBuffer.wrap(actualData)));
+    assertArrayEquals(new byte[] { 0x05, 0x08 }, actualData);
+    readChannel.close();
+
+    verify(mockStorage, times(3)).objects();
+    verify(mockStorageObjects, times(3)).get(eq(BUCKET_NAME), eq(OBJECT_NAME));
+    verify(mockStorageObjectsGet, times(2)).execute();
+    verify(mockClientRequestHelper).getRequestHeaders(any(Storage.Objects.Get.class));
     verify(mockHeaders).setRange(eq("bytes=0-"));
-    verify(mockHeaders).setRange(eq("bytes=2-"));
-    verify(mockStorageObjectsGet, times(2)).executeMedia();
-    verify(mockStorageObjectsGet).execute();
+    verify(mockStorageObjectsGet).setGeneration(eq(3L));
+    verify(mockStorageObjectsGet).executeMedia();
+  }
 
-    readChannel.close();
-    assertFalse(readChannel.isOpen());
+  /**
+   * Test that a channel opened without metadata keeps an object whole in memory once its first
+   * response shows that it is no larger than the whole-object threshold.
+   */
+  @Test
+  public void testOpenObjectWithWholeObjectReadOfUnknownSize()
+      throws IOException {
+    gcs = createTestInstance(GoogleCloudStorageReadOptions.newBuilder()
+        .setFastFailOnNotFound(false)
+        .setWholeObjectThreshold(16));
+    byte[] testData = { 0x01, 0x02, 0x03, 0x05, 0x08 };
+    when(mockStorage.objects()).thenReturn(mockStorageObjects);
+    when(mockStorageObjects.get(eq(BUCKET_NAME), eq(OBJECT_NAME)))
+        .thenReturn(mockStorageObjectsGet);
+    when(mockClientRequestHelper.getRequestHeaders(eq(mockStorageObjectsGet)))
+        .thenReturn(mockHeaders);
+    when(mockStorageObjectsGet.executeMedia())
+        .thenReturn(createFakeResponse(testData.length, new ByteArrayInputStream(testData)));
 
-    // The BackOff should be lazily instantiated, so if nothing went wrong, it will still be null.
-    GoogleCloudStorageReadChannel castedReadChannel = (GoogleCloudStorageReadChannel) readChannel;
-    assertNull(castedReadChannel.getBackOff());
+    SeekableReadableByteChannel readChannel =
+        gcs.open(new StorageResourceId(BUCKET_NAME, OBJECT_NAME));
+    byte[] actualData = new byte[2];
+    assertEquals(2, readChannel.read(ByteBuffer.wrap(actualData)));
+    assertArrayEquals(new byte[] { 0x01, 0x02 }, actualData);
 
-    // After closing the channel, future reads or calls to close() should throw a
-    // ClosedChannelException.
-    try {
-      readChannel.close();
-      fail("Expected ClosedChannelException");
-    } catch (ClosedChannelException ioe) {
-      // Expected.
-    }
-    try {
-      readChannel.read(ByteBuffer.wrap(actualData));
-      fail("Expected ClosedChannelException");
-    } catch (ClosedChannelException ioe) {
-      // Expected.
-    }
-    try {
-      readChannel.position(0);
-      fail("Expected ClosedChannelException");
-    } catch (ClosedChannelException ioe) {
-      // Expected.
-    }
+    readChannel.position(4);
+    actualData = new byte[1];
+    assertEquals(1, readChannel.read(ByteBuffer.wrap(actualData)));
+    assertArrayEquals(new byte[] { 0x08 }, actualData);
+
+    readChannel.position(0);
+    actualData = new byte[testData.length];
+    assertEquals(testData.length, readChannel.read(ByteBuffer.wrap(actualData)));
+    assertArrayEquals(testData, actualData);
+    assertEquals(-1, readChannel.read(ByteBuffer.allocate(1)));
+
+    verify(mockStorage).objects();
+    verify(mockStorageObjects).get(eq(BUCKET_NAME), eq(OBJECT_NAME));
+    verify(mockClientRequestHelper).getRequestHeaders(any(Storage.Objects.Get.class));
+    verify(mockHeaders).setRange(eq("bytes=0-"));
+    verify(mockStorageObjectsGet).executeMedia();
   }
 
   /**
@@ -1393,6 +2081,130 @@ public class GoogleCloudStorageTest {
             Matchers.<JsonBatchCallback<Object>>anyObject());
   }
 
+  /**
+   * Test that GoogleCloudStorage.deleteObjects with known generations deletes without a GET.
+   */
+  @Test
+  public void testDeleteObjectWithKnownGeneration()
+      throws IOException {
+    when(mockBatchFactory.newBatchHelper(any(HttpRequestInitializer.class),
+        any(Storage.class), any(Long.class))).thenReturn(mockBatchHelper);
+    when(mockStorage.objects()).thenReturn(mockStorageObjects);
+    when(mockStorageObjects.delete(eq(BUCKET_NAME), eq(OBJECT_NAME)))
+        .thenReturn(mockStorageObjectsDelete);
+
+    doAnswer(new Answer() {
+      @Override
+      public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
+        JsonBatchCallback<Void> callback =
+            (JsonBatchCallback<Void>) invocationOnMock.getArguments()[1];
+        callback.onSuccess(null, new HttpHeaders());
+        return null;
+      }
+    }).when(mockBatchHelper).queue(
+        Matchers.<StorageRequest<Object>>anyObject(),
+        Matchers.<JsonBatchCallback<Object>>anyObject());
+
+    when(mockBatchHelper.isEmpty())
+        .thenReturn(true);
+
+    gcs.deleteObjects(
+        Lists.newArrayList(new StorageResourceId(BUCKET_NAME, OBJECT_NAME)),
+        Lists.newArrayList(3L));
+
+    verify(mockBatchFactory).newBatchHelper(any(HttpRequestInitializer.class),
+        eq(mockStorage), any(Long.class));
+    verify(mockStorage).objects();
+    verify(mockStorageObjects).delete(eq(BUCKET_NAME), eq(OBJECT_NAME));
+    verify(mockStorageObjectsDelete).setIfGenerationMatch(eq(3L));
+    verify(mockBatchHelper).isEmpty();
+    verify(mockBatchHelper).flush();
+    verify(mockBatchHelper)
+        .queue(
+            Matchers.<StorageRequest<Object>>anyObject(),
+            Matchers.<JsonBatchCallback<Object>>anyObject());
+  }
+
+  /**
+   * Test that GoogleCloudStorage.deleteObjects falls back to fetching the current generation
+   * when a known generation no longer matches.
+   */
+  @Test
+  public void testDeleteObjectWithStaleGeneration()
+      throws IOException {
+    when(mockBatchFactory.newBatchHelper(any(HttpRequestInitializer.class),
+        any(Storage.class), any(Long.class))).thenReturn(mockBatchHelper);
+    when(mockStorage.objects()).thenReturn(mockStorageObjects);
+    when(mockStorageObjects.get(eq(BUCKET_NAME), eq(OBJECT_NAME)))
+        .thenReturn(mockStorageObjectsGet);
+    when(mockStorageObjects.delete(eq(BUCKET_NAME), eq(OBJECT_NAME)))
+        .thenReturn(mockStorageObjectsDelete);
+
+    final GoogleJsonError preconditionError = new GoogleJsonError();
+    preconditionError.setMessage("Fake precondition failure");
+
+    doAnswer(new Answer() {
+      @Override
+      public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
+        JsonBatchCallback<Void> callback =
+            (JsonBatchCallback<Void>) invocationOnMock.getArguments()[1];
+        callback.onFailure(preconditionError, new HttpHeaders());
+        return null;
+      }
+    }).doAnswer(new Answer() {
+      @Override
+      public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
+        JsonBatchCallback<StorageObject> getCallback =
+            (JsonBatchCallback<StorageObject>) invocationOnMock.getArguments()[1];
+        getCallback.onSuccess(
+            new StorageObject()
+                .setBucket(BUCKET_NAME)
+                .setName(OBJECT_NAME)
+                .setGeneration(4L)
+                .setMetageneration(1L),
+            new HttpHeaders());
+        return null;
+      }
+    }).doAnswer(new Answer() {
+      @Override
+      public Object answer(InvocationOnMock invocationOnMock) throws Throwable {
+        JsonBatchCallback<Void> callback =
+            (JsonBatchCallback<Void>) invocationOnMock.getArguments()[1];
+        callback.onSuccess(null, new HttpHeaders());
+        return null;
+      }
+    }).when(mockBatchHelper).queue(
+        Matchers.<StorageRequest<Object>>anyObject(),
+        Matchers.<JsonBatchCallback<Object>>anyObject());
+
+    when(mockErrorExtractor.itemNotFound(eq(preconditionError)))
+        .thenReturn(false);
+    when(mockErrorExtractor.preconditionNotMet(eq(preconditionError)))
+        .thenReturn(true);
+    when(mockBatchHelper.isEmpty())
+        .thenReturn(true);
+
+    gcs.deleteObjects(
+        Lists.newArrayList(new StorageResourceId(BUCKET_NAME, OBJECT_NAME)),
+        Lists.newArrayList(3L));
+
+    verify(mockBatchFactory).newBatchHelper(any(HttpRequestInitializer.class),
+        eq(mockStorage), any(Long.class));
+    verify(mockStorage, times(3)).objects();
+    verify(mockStorageObjects, times(2)).delete(eq(BUCKET_NAME), eq(OBJECT_NAME));
+    verify(mockStorageObjects).get(eq(BUCKET_NAME), eq(OBJECT_NAME));
+    verify(mockStorageObjectsDelete).setIfGenerationMatch(eq(3L));
+    verify(mockStorageObjectsDelete).setIfGenerationMatch(eq(4L));
+    verify(mockErrorExtractor).itemNotFound(eq(preconditionError));
+    verify(mockErrorExtractor).preconditionNotMet(eq(preconditionError));
+    verify(mockBatchHelper).isEmpty();
+    verify(mockBatchHelper).flush();
+    verify(mockBatchHelper, times(3))
+        .queue(
+            Matchers.<StorageRequest<Object>>anyObject(),
+            Matchers.<JsonBatchCallback<Object>>anyObject());
+  }
+
   /**
    * Test handling of various types of exceptions thrown during JSON API call for
    * GoogleCloudStorage.delete(2).
@@ -2120,6 +2932,81 @@ public class GoogleCloudStorageTest {
     verify(mockStorageObjectsList).execute();
   }
 
+  @Test
+  public void testListObjectInfoPages()
+      throws Exception {
+    String objectPrefix = "foo/bar/baz/";
+    String delimiter = "/";
+    // Run the page fetches inline so that the test controls their order.
+    when(mockExecutorService.submit(any(Callable.class)))
+        .thenAnswer(new Answer<Future<Object>>() {
+          @Override
+          public Future<Object> answer(InvocationOnMock invocation) throws Throwable {
+            Callable<?> callable = (Callable<?>) invocation.getArguments()[0];
+            return Futures.<Object>immediateFuture(callable.call());
+          }
+        });
+    when(mockStorage.objects()).thenReturn(mockStorageObjects);
+    when(mockStorageObjects.list(eq(BUCKET_NAME)))
+        .thenReturn(mockStorageObjectsList);
+    when(mockStorageObjectsList.execute())
+        .thenReturn(new Objects()
+            .setItems(ImmutableList.of(
+                new StorageObject()
+                    .setName("foo/bar/baz/")
+                    .setBucket(BUCKET_NAME)
+                    .setUpdated(new DateTime(1L))
+                    .setSize(BigInteger.valueOf(111))
+                    .setGeneration(1L)
+                    .setMetageneration(1L),
+                new StorageObject()
+                    .setName("foo/bar/baz/obj0")
+                    .setBucket(BUCKET_NAME)
+                    .setUpdated(new DateTime(2L))
+                    .setSize(BigInteger.valueOf(222))
+                    .setGeneration(2L)
+                    .setMetageneration(2L)))
+            .setNextPageToken("token0"))
+        .thenReturn(new Objects()
+            .setItems(ImmutableList.of(
+                new StorageObject()
+                    .setName("foo/bar/baz/obj1")
+                    .setBucket(BUCKET_NAME)
+                    .setUpdated(new DateTime(3L))
+                    .setSize(BigInteger.valueOf(333))
+                    .setGeneration(3L)
+                    .setMetageneration(3L)))
+            .setNextPageToken(null));
+
+    ListPageIterator<GoogleCloudStorageItemInfo> pages =
+        gcs.listObjectInfoPages(BUCKET_NAME, objectPrefix, delimiter);
+
+    // The first page is fetched before it is asked for.
+    verify(mockStorageObjectsList).execute();
+
+    // The item exactly matching the input objectPrefix will be discarded.
+    assertTrue(pages.hasNext());
+    List<GoogleCloudStorageItemInfo> firstPage = pages.next();
+    assertEquals(1, firstPage.size());
+    assertEquals("foo/bar/baz/obj0", firstPage.get(0).getObjectName());
+
+    assertTrue(pages.hasNext());
+    List<GoogleCloudStorageItemInfo> secondPage = pages.next();
+    assertEquals(1, secondPage.size());
+    assertEquals("foo/bar/baz/obj1", secondPage.get(0).getObjectName());
+    assertFalse(pages.hasNext());
+
+    verify(mockExecutorService, times(2)).submit(any(Callable.class));
+    verify(mockStorage).objects();
+    verify(mockStorageObjects).list(eq(BUCKET_NAME));
+    verify(mockStorageObjectsList)
+        .setMaxResults(eq(GoogleCloudStorageOptions.MAX_LIST_ITEMS_PER_CALL_DEFAULT));
+    verify(mockStorageObjectsList).setDelimiter(eq(delimiter));
+    verify(mockStorageObjectsList).setPrefix(eq(objectPrefix));
+    verify(mockStorageObjectsList).setPageToken("token0");
+    verify(mockStorageObjectsList, times(2)).execute();
+  }
+
   @Test
   public void testListObjectInfoReturnPrefixes()
       throws IOException {
@@ -2214,6 +3101,77 @@ public class GoogleCloudStorageTest {
     verify(mockBatchHelper).flush();
   }
 
+  @Test
+  public void testListObjectInfoInferDirectoriesFromPrefixes()
+      throws IOException {
+    GoogleCloudStorageImpl gcsTestInstance = new GoogleCloudStorageImpl(
+        GoogleCloudStorageOptions.newBuilder()
+            .setAppName(APP_NAME)
+            .setProjectId(PROJECT_ID)
+            .setInferDirectoriesEnabled(true)
+            .build(),
+        mockStorage);
+    gcsTestInstance.setThreadPool(mockExecutorService);
+    gcsTestInstance.setErrorExtractor(mockErrorExtractor);
+    gcsTestInstance.setBatchFactory(mockBatchFactory);
+    gcs = gcsTestInstance;
+
+    String objectPrefix = "foo/bar/baz/";
+    String delimiter = "/";
+    when(mockStorage.objects()).thenReturn(mockStorageObjects);
+    when(mockStorageObjects.list(eq(BUCKET_NAME)))
+        .thenReturn(mockStorageObjectsList);
+    when(mockStorageObjectsList.execute())
+        .thenReturn(new Objects()
+            .setPrefixes(ImmutableList.of(
+                "foo/bar/baz/dir0/",
+                "foo/bar/baz/dir1/"))
+            .setNextPageToken(null));
+
+    List<GoogleCloudStorageItemInfo> objectInfos =
+        gcs.listObjectInfo(BUCKET_NAME, objectPrefix, delimiter);
+
+    // The directories are inferred from the prefixes without fetching their placeholders.
+    assertEquals(2, objectInfos.size());
+    assertEquals("foo/bar/baz/dir0/", objectInfos.get(0).getObjectName());
+    assertEquals("foo/bar/baz/dir1/", objectInfos.get(1).getObjectName());
+    for (GoogleCloudStorageItemInfo objectInfo : objectInfos) {
+      assertTrue(objectInfo.exists());
+      assertEquals(0, objectInfo.getSize());
+      assertTrue(objectInfo instanceof InferredDirectoryItemInfo);
+      assertFalse(((InferredDirectoryItemInfo) objectInfo).isResolved());
+    }
+
+    verify(mockStorage).objects();
+    verify(mockStorageObjects).list(eq(BUCKET_NAME));
+    verify(mockStorageObjectsList)
+        .setMaxResults(eq(GoogleCloudStorageOptions.MAX_LIST_ITEMS_PER_CALL_DEFAULT));
+    verify(mockStorageObjectsList).setDelimiter(eq(delimiter));
+    verify(mockStorageObjectsList).setPrefix(eq(objectPrefix));
+    verify(mockStorageObjectsList).execute();
+
+    // The placeholder of dir0 is fetched once, when its metadata is first asked for.
+    when(mockStorageObjects.get(eq(BUCKET_NAME), eq("foo/bar/baz/dir0/")))
+        .thenReturn(mockStorageObjectsGet);
+    when(mockStorageObjectsGet.execute())
+        .thenReturn(new StorageObject()
+            .setBucket(BUCKET_NAME)
+            .setName("foo/bar/baz/dir0/")
+            .setUpdated(new DateTime(11L))
+            .setSize(BigInteger.valueOf(0L))
+            .setGeneration(1L)
+            .setMetageneration(1L));
+    InferredDirectoryItemInfo dir0 = (InferredDirectoryItemInfo) objectInfos.get(0);
+    assertEquals(11L, dir0.getCreationTime());
+    assertTrue(dir0.isResolved());
+    assertEquals(1L, dir0.getContentGeneration());
+    assertTrue(dir0.getMetadata().isEmpty());
+
+    verify(mockStorage, times(2)).objects();
+    verify(mockStorageObjects).get(eq(BUCKET_NAME), eq("foo/bar/baz/dir0/"));
+    verify(mockStorageObjectsGet).execute();
+  }
+
   @Test
   public void testListObjectInfoReturnPrefixesNotFound()
       throws IOException {
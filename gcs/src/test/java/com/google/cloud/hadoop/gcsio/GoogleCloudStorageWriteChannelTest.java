@@ -0,0 +1,155 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.client.http.LowLevelHttpRequest;
+import com.google.api.client.http.LowLevelHttpResponse;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.api.client.testing.http.MockLowLevelHttpRequest;
+import com.google.api.client.testing.http.MockLowLevelHttpResponse;
+import com.google.api.services.storage.Storage;
+import com.google.api.services.storage.model.StorageObject;
+import com.google.cloud.hadoop.util.AsyncWriteChannelOptions;
+import com.google.cloud.hadoop.util.ClientRequestHelper;
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * UnitTests for GoogleCloudStorageWriteChannel class.
+ */
+@RunWith(JUnit4.class)
+public class GoogleCloudStorageWriteChannelTest {
+  private static final String BUCKET_NAME = "foo-bucket";
+  private static final String OBJECT_NAME = "foo-object";
+  private static final String UPLOAD_URL = "https://www.googleapis.com/upload/session";
+  private static final String OBJECT_JSON =
+      "{\"bucket\":\"" + BUCKET_NAME + "\",\"name\":\"" + OBJECT_NAME + "\"}";
+
+  // URLs and contents of the HTTP requests sent so far, in order.
+  private final List<String> requestUrls = Collections.synchronizedList(new ArrayList<String>());
+  private final List<String> requestContents =
+      Collections.synchronizedList(new ArrayList<String>());
+
+  private ExecutorService executor;
+  private Storage gcs;
+
+  @Before
+  public void setUp() {
+    executor = Executors.newCachedThreadPool();
+    gcs = new Storage.Builder(new UploadTransport(), new JacksonFactory(), null)
+        .setApplicationName("GoogleCloudStorageWriteChannelTest")
+        .build();
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  /**
+   * Answers resumable upload initiations with a session URL, and both single-request uploads and
+   * session uploads with the object metadata.
+   */
+  private class UploadTransport extends MockHttpTransport {
+    @Override
+    public LowLevelHttpRequest buildRequest(String method, final String url) {
+      return new MockLowLevelHttpRequest(url) {
+        @Override
+        public LowLevelHttpResponse execute() throws IOException {
+          requestUrls.add(url);
+          requestContents.add(getContentAsString());
+          MockLowLevelHttpResponse response = new MockLowLevelHttpResponse();
+          if (url.contains("uploadType=resumable")) {
+            return response.addHeader("Location", UPLOAD_URL);
+          }
+          return response.setContentType("application/json").setContent(OBJECT_JSON);
+        }
+      };
+    }
+  }
+
+  private GoogleCloudStorageWriteChannel newChannel(int directUploadThreshold) throws IOException {
+    AsyncWriteChannelOptions options = AsyncWriteChannelOptions.newBuilder()
+        .setUploadBufferSize(1024 * 1024)
+        .setDirectUploadThreshold(directUploadThreshold)
+        .build();
+    GoogleCloudStorageWriteChannel channel = new GoogleCloudStorageWriteChannel(
+        executor, gcs, new ClientRequestHelper<StorageObject>(), BUCKET_NAME, OBJECT_NAME,
+        options, new ObjectWriteConditions(), ImmutableMap.<String, String>of());
+    channel.initialize();
+    return channel;
+  }
+
+  @Test
+  public void testSmallObjectIsUploadedInSingleRequest() throws IOException {
+    GoogleCloudStorageWriteChannel channel = newChannel(16);
+    assertTrue(channel.isOpen());
+    channel.write(ByteBuffer.wrap("hello ".getBytes(StandardCharsets.UTF_8)));
+    channel.write(ByteBuffer.wrap("world".getBytes(StandardCharsets.UTF_8)));
+
+    // Nothing is sent until the channel is closed.
+    assertTrue(requestUrls.isEmpty());
+
+    channel.close();
+    assertFalse(channel.isOpen());
+    assertEquals(1, requestUrls.size());
+    assertTrue(requestUrls.get(0).contains("uploadType=multipart"));
+    assertTrue(requestContents.get(0).contains("hello world"));
+  }
+
+  @Test
+  public void testObjectOverThresholdSpillsToResumableUpload() throws IOException {
+    GoogleCloudStorageWriteChannel channel = newChannel(8);
+    channel.write(ByteBuffer.wrap("hello ".getBytes(StandardCharsets.UTF_8)));
+    channel.write(ByteBuffer.wrap("world".getBytes(StandardCharsets.UTF_8)));
+    channel.close();
+    assertFalse(channel.isOpen());
+
+    assertEquals(2, requestUrls.size());
+    assertTrue(requestUrls.get(0).contains("uploadType=resumable"));
+    assertEquals(UPLOAD_URL, requestUrls.get(1));
+    assertEquals("hello world", requestContents.get(1));
+  }
+
+  @Test
+  public void testDisabledThresholdUsesResumableUpload() throws IOException {
+    GoogleCloudStorageWriteChannel channel = newChannel(0);
+    channel.write(ByteBuffer.wrap("hello".getBytes(StandardCharsets.UTF_8)));
+    channel.close();
+
+    assertEquals(2, requestUrls.size());
+    assertTrue(requestUrls.get(0).contains("uploadType=resumable"));
+    assertEquals("hello", requestContents.get(1));
+  }
+}
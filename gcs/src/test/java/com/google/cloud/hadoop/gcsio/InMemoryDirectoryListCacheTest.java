@@ -19,12 +19,25 @@ package com.google.cloud.hadoop.gcsio;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * UnitTests for InMemoryDirectoryListCache class.
@@ -65,4 +78,194 @@ public class InMemoryDirectoryListCacheTest extends DirectoryListCacheTest {
     assertEquals(0, cache.getBucketList().size());
     assertNull(cache.getObjectList(BUCKET_NAME, "", null, null));
   }
+
+  /**
+   * Returns the object names of the given entries.
+   */
+  private static List<String> getObjectNames(List<CacheEntry> entries) {
+    List<String> objectNames = new ArrayList<>();
+    for (CacheEntry entry : entries) {
+      objectNames.add(entry.getResourceId().getObjectName());
+    }
+    return objectNames;
+  }
+
+  @Test
+  public void testGetObjectListReturnsEachSubPrefixOnce() throws IOException {
+    for (String objectName : ImmutableList.of(
+        "a", "a/", "a/b/c", "a/b/d", "a/b/e/f", "a/b0", "a/c", "a/c/d", "a0", "b/c")) {
+      cache.putResourceId(new StorageResourceId(BUCKET_NAME, objectName));
+    }
+
+    Set<String> prefixes = new HashSet<>();
+    assertEquals(ImmutableList.of("a/b0", "a/c"),
+        getObjectNames(cache.getObjectList(BUCKET_NAME, "a/", "/", prefixes)));
+    assertEquals(ImmutableSet.of("a/b/", "a/c/"), prefixes);
+
+    prefixes.clear();
+    assertEquals(ImmutableList.of("a", "a/", "a0"),
+        getObjectNames(cache.getObjectList(BUCKET_NAME, null, "/", prefixes)));
+    assertEquals(ImmutableSet.of("a/", "b/"), prefixes);
+
+    assertEquals(ImmutableList.of("a/b/c", "a/b/d", "a/b/e/f", "a/b0"),
+        getObjectNames(cache.getObjectList(BUCKET_NAME, "a/b", null, null)));
+  }
+
+  @Test
+  public void testGetObjectListDoesNotReturnPrefixesOfExpiredEntries() throws IOException {
+    cache.putResourceId(new StorageResourceId(BUCKET_NAME, "a/b/c"));
+    when(mockClock.currentTimeMillis()).thenReturn(BASE_TIME + MAX_ENTRY_AGE / 2);
+    cache.putResourceId(new StorageResourceId(BUCKET_NAME, "a/c/d"));
+    cache.putResourceId(new StorageResourceId(BUCKET_NAME, "a/c/e"));
+    when(mockClock.currentTimeMillis()).thenReturn(BASE_TIME + MAX_ENTRY_AGE + 1);
+
+    Set<String> prefixes = new HashSet<>();
+    assertEquals(0, cache.getObjectList(BUCKET_NAME, "a/", "/", prefixes).size());
+    assertEquals(ImmutableSet.of("a/c/"), prefixes);
+    assertEquals(2, cache.getInternalNumObjects());
+  }
+
+  @Test
+  public void testConcurrentPutsAndBucketRemovals() throws Exception {
+    final int objectsPerThread = 500;
+    // Starts with an empty expired bucket, which may be dropped while objects are being added.
+    cache.putResourceId(bucketResourceId);
+    when(mockClock.currentTimeMillis()).thenReturn(BASE_TIME + MAX_ENTRY_AGE + 1);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        final String threadPrefix = "thread" + i + "/";
+        futures.add(executor.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            for (int j = 0; j < objectsPerThread; j++) {
+              cache.putResourceId(new StorageResourceId(BUCKET_NAME, threadPrefix + j));
+            }
+            return null;
+          }
+        }));
+      }
+      // Repeatedly tries to drop the bucket as expired; only succeeds while it is empty.
+      futures.add(executor.submit(new Callable<Void>() {
+        @Override
+        public Void call() throws IOException {
+          for (int j = 0; j < objectsPerThread; j++) {
+            cache.getBucketList();
+          }
+          return null;
+        }
+      }));
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertEquals(1, cache.getInternalNumBuckets());
+    assertEquals(3 * objectsPerThread, cache.getInternalNumObjects());
+    assertTrue(cache.getCacheEntry(new StorageResourceId(BUCKET_NAME, "thread2/0")) != null);
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsedEntriesBeyondMaxEntries() throws IOException {
+    InMemoryDirectoryListCache inMemoryCache = (InMemoryDirectoryListCache) cache;
+    inMemoryCache.getMutableConfig().setMaxEntries(10);
+    for (int i = 0; i < 10; i++) {
+      inMemoryCache.putResourceId(new StorageResourceId(BUCKET_NAME, "object" + i));
+    }
+    // Touch the first two objects so that they are the most recently used.
+    StorageResourceId object0 = new StorageResourceId(BUCKET_NAME, "object0");
+    StorageResourceId object1 = new StorageResourceId(BUCKET_NAME, "object1");
+    assertNotNull(inMemoryCache.getCacheEntry(object0));
+    inMemoryCache.putResourceId(object1);
+    assertEquals(0, inMemoryCache.getEvictionCount());
+
+    // Going beyond the bound evicts down to 90% of it, least recently used first.
+    inMemoryCache.putResourceId(new StorageResourceId(BUCKET_NAME, "object10"));
+    assertEquals(9, inMemoryCache.getInternalNumObjects());
+    assertEquals(2, inMemoryCache.getEvictionCount());
+    assertNull(inMemoryCache.getCacheEntry(new StorageResourceId(BUCKET_NAME, "object2")));
+    assertNull(inMemoryCache.getCacheEntry(new StorageResourceId(BUCKET_NAME, "object3")));
+    assertNotNull(inMemoryCache.getCacheEntry(object0));
+    assertNotNull(inMemoryCache.getCacheEntry(object1));
+    assertNotNull(inMemoryCache.getCacheEntry(new StorageResourceId(BUCKET_NAME, "object10")));
+
+    assertEquals(4, inMemoryCache.getHitCount());
+    assertEquals(2, inMemoryCache.getMissCount());
+  }
+
+  @Test
+  public void testEvictsEntriesBeyondMaxBytes() throws IOException {
+    InMemoryDirectoryListCache inMemoryCache = (InMemoryDirectoryListCache) cache;
+    long entryBytes = CachedBucket.estimateBytes(new StorageResourceId(BUCKET_NAME, "object0"));
+    inMemoryCache.getMutableConfig().setMaxBytes(20 * entryBytes);
+    for (int i = 0; i < 20; i++) {
+      inMemoryCache.putResourceId(new StorageResourceId(BUCKET_NAME, "object" + (char) ('a' + i)));
+    }
+    assertEquals(20 * entryBytes, inMemoryCache.getEstimatedBytes());
+
+    inMemoryCache.putResourceId(new StorageResourceId(BUCKET_NAME, "objectz"));
+    assertEquals(18, inMemoryCache.getInternalNumObjects());
+    assertEquals(18 * entryBytes, inMemoryCache.getEstimatedBytes());
+    assertEquals(3, inMemoryCache.getEvictionCount());
+  }
+
+  @Test
+  public void testSweepRemovesExpiredEntriesIncrementally() throws IOException {
+    InMemoryDirectoryListCache inMemoryCache = (InMemoryDirectoryListCache) cache;
+    for (int i = 0; i < 5; i++) {
+      inMemoryCache.putResourceId(new StorageResourceId("bucket-a", "object" + i));
+    }
+    inMemoryCache.putResourceId(new StorageResourceId("bucket-b", "object"));
+    when(mockClock.currentTimeMillis()).thenReturn(BASE_TIME + MAX_ENTRY_AGE / 2);
+    inMemoryCache.putResourceId(new StorageResourceId("bucket-b", "recent-object"));
+    when(mockClock.currentTimeMillis()).thenReturn(BASE_TIME + MAX_ENTRY_AGE + 1);
+
+    assertEquals(4, inMemoryCache.sweepExpiredEntries(4));
+    assertEquals(3, inMemoryCache.getInternalNumObjects());
+    // Resumes with the fifth object of bucket-a, then goes on with bucket-b.
+    assertEquals(2, inMemoryCache.sweepExpiredEntries(4));
+    assertEquals(1, inMemoryCache.getInternalNumObjects());
+    assertEquals(6, inMemoryCache.getExpiredCount());
+    // The empty expired bucket was removed, the other one was kept for its recent object.
+    assertEquals(1, inMemoryCache.getInternalNumBuckets());
+    assertNotNull(inMemoryCache.getCacheEntry(
+        new StorageResourceId("bucket-b", "recent-object")));
+
+    // Starts over once all entries have been examined.
+    assertEquals(0, inMemoryCache.sweepExpiredEntries(4));
+  }
+
+  @Test
+  public void testSetSweepIntervalMillis() {
+    InMemoryDirectoryListCache inMemoryCache = (InMemoryDirectoryListCache) cache;
+    assertEquals(0, inMemoryCache.getSweepIntervalMillis());
+    inMemoryCache.setSweepIntervalMillis(60000);
+    assertEquals(60000, inMemoryCache.getSweepIntervalMillis());
+    inMemoryCache.setSweepIntervalMillis(0);
+    assertEquals(0, inMemoryCache.getSweepIntervalMillis());
+  }
+
+  @Test
+  public void testConfigureLimitsKeepsFirstSettings() {
+    InMemoryDirectoryListCache inMemoryCache = (InMemoryDirectoryListCache) cache;
+
+    // Settings which are all 0 configure nothing.
+    inMemoryCache.configureLimits(0, 0, 0);
+    inMemoryCache.configureLimits(100, 1000, 60000);
+    assertEquals(100, inMemoryCache.getMutableConfig().getMaxEntries());
+    assertEquals(1000, inMemoryCache.getMutableConfig().getMaxBytes());
+    assertEquals(60000, inMemoryCache.getSweepIntervalMillis());
+
+    // Neither defaults nor different later settings replace the first ones.
+    inMemoryCache.configureLimits(0, 0, 0);
+    inMemoryCache.configureLimits(200, 0, 1000);
+    assertEquals(100, inMemoryCache.getMutableConfig().getMaxEntries());
+    assertEquals(1000, inMemoryCache.getMutableConfig().getMaxBytes());
+    assertEquals(60000, inMemoryCache.getSweepIntervalMillis());
+
+    inMemoryCache.setSweepIntervalMillis(0);
+  }
 }
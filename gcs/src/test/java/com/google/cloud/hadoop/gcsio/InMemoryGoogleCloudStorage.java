@@ -147,6 +147,16 @@ public class InMemoryGoogleCloudStorage
     }
   }
 
+  /**
+   * Always checks that the object exists, which the interface permits regardless of readOptions.
+   */
+  @Override
+  public SeekableReadableByteChannel open(
+      StorageResourceId resourceId, GoogleCloudStorageReadOptions readOptions)
+      throws IOException {
+    return open(resourceId);
+  }
+
   @Override
   public synchronized SeekableReadableByteChannel open(StorageResourceId resourceId)
       throws IOException {
@@ -211,6 +221,18 @@ public class InMemoryGoogleCloudStorage
     }
   }
 
+  /**
+   * Generations are not tracked in memory, so contentGenerations is only validated.
+   */
+  @Override
+  public synchronized void deleteObjects(List<StorageResourceId> fullObjectNames,
+      List<Long> contentGenerations)
+      throws IOException {
+    Preconditions.checkArgument(fullObjectNames.size() == contentGenerations.size(),
+        "Must supply same number of elements in fullObjectNames and contentGenerations");
+    deleteObjects(fullObjectNames);
+  }
+
   @Override
   public synchronized void copy(String srcBucketName, List<String> srcObjectNames,
       String dstBucketName, List<String> dstObjectNames)
@@ -282,6 +304,15 @@ public class InMemoryGoogleCloudStorage
     return new ArrayList<>(uniqueNames);
   }
 
+  @Override
+  public synchronized List<String> listObjectNames(
+      String bucketName, String objectNamePrefix, String delimiter, long maxResults)
+      throws IOException {
+    List<String> objectNames = listObjectNames(bucketName, objectNamePrefix, delimiter);
+    return objectNames.size() > maxResults
+        ? objectNames.subList(0, (int) maxResults) : objectNames;
+  }
+
   @Override
   public synchronized List<GoogleCloudStorageItemInfo> listObjectInfo(
       final String bucketName, String objectNamePrefix, String delimiter)
@@ -307,6 +338,13 @@ public class InMemoryGoogleCloudStorage
     return listedInfo;
   }
 
+  @Override
+  public ListPageIterator<GoogleCloudStorageItemInfo> listObjectInfoPages(
+      String bucketName, String objectNamePrefix, String delimiter)
+      throws IOException {
+    return ListPageIterators.singlePage(listObjectInfo(bucketName, objectNamePrefix, delimiter));
+  }
+
   @Override
   public synchronized GoogleCloudStorageItemInfo getItemInfo(StorageResourceId resourceId)
       throws IOException {
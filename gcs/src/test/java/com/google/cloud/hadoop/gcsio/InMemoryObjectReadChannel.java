@@ -55,4 +55,17 @@ public class InMemoryObjectReadChannel
     inputStream.skip(newPosition);
     return inputStream;
   }
+
+  /**
+   * Opens a byte array stream over at most length bytes starting at the given position.
+   */
+  @Override
+  protected InputStream openRangeStream(long position, int length)
+      throws IOException {
+    if (position >= channelContents.length) {
+      return null;
+    }
+    return new ByteArrayInputStream(channelContents, (int) position,
+        (int) Math.min(length, channelContents.length - position));
+  }
 }
\ No newline at end of file
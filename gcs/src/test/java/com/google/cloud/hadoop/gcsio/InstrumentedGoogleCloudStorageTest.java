@@ -0,0 +1,106 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.cloud.hadoop.util.OperationStatistics;
+import com.google.cloud.hadoop.util.StatisticsRegistry;
+import com.google.common.collect.ImmutableList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * UnitTests for InstrumentedGoogleCloudStorage class.
+ */
+@RunWith(JUnit4.class)
+public class InstrumentedGoogleCloudStorageTest {
+  @Mock private GoogleCloudStorage mockGcsDelegate;
+
+  private StatisticsRegistry statistics;
+  private GoogleCloudStorage gcs;
+  private StorageResourceId objectResourceId;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    statistics = new StatisticsRegistry("InstrumentedGoogleCloudStorageTest", false);
+    gcs = new InstrumentedGoogleCloudStorage(mockGcsDelegate, statistics);
+    objectResourceId = new StorageResourceId("foo-bucket", "bar-object");
+  }
+
+  @After
+  public void tearDown() {
+    verifyNoMoreInteractions(mockGcsDelegate);
+  }
+
+  @Test
+  public void testCallsAreRecordedByMethod()
+      throws IOException {
+    GoogleCloudStorageItemInfo itemInfo =
+        GoogleCloudStorageImpl.createItemInfoForNotFound(objectResourceId);
+    when(mockGcsDelegate.getItemInfo(eq(objectResourceId))).thenReturn(itemInfo);
+    List<String> names = ImmutableList.of("bar-object");
+    when(mockGcsDelegate.listObjectNames(eq("foo-bucket"), eq("bar"), eq("/"))).thenReturn(names);
+
+    assertSame(itemInfo, gcs.getItemInfo(objectResourceId));
+    assertSame(itemInfo, gcs.getItemInfo(objectResourceId));
+    assertSame(names, gcs.listObjectNames("foo-bucket", "bar", "/"));
+
+    assertEquals(2, statistics.getAll().size());
+    assertEquals(2, statistics.get("getItemInfo").getCount());
+    assertEquals(1, statistics.get("listObjectNames").getCount());
+    assertEquals(0, statistics.get("getItemInfo").getErrorCount());
+
+    verify(mockGcsDelegate, times(2)).getItemInfo(eq(objectResourceId));
+    verify(mockGcsDelegate).listObjectNames(eq("foo-bucket"), eq("bar"), eq("/"));
+  }
+
+  @Test
+  public void testFailedCallsAreRecordedAsErrors()
+      throws IOException {
+    IOException error = new IOException("backend error");
+    when(mockGcsDelegate.getItemInfo(eq(objectResourceId))).thenThrow(error);
+
+    try {
+      gcs.getItemInfo(objectResourceId);
+      fail("Expected IOException");
+    } catch (IOException expected) {
+      assertSame(error, expected);
+    }
+
+    OperationStatistics getItemInfo = statistics.get("getItemInfo");
+    assertEquals(1, getItemInfo.getCount());
+    assertEquals(1, getItemInfo.getErrorCount());
+
+    verify(mockGcsDelegate).getItemInfo(eq(objectResourceId));
+  }
+}
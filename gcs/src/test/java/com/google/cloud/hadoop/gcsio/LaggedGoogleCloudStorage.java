@@ -96,12 +96,25 @@ public class LaggedGoogleCloudStorage implements GoogleCloudStorage  {
     return delegate.open(resourceId);
   }
 
+  @Override
+  public SeekableReadableByteChannel open(
+      StorageResourceId resourceId, GoogleCloudStorageReadOptions readOptions)
+      throws IOException {
+    return delegate.open(resourceId, readOptions);
+  }
+
   @Override
   public void deleteObjects(
       List<StorageResourceId> fullObjectNames) throws IOException {
     delegate.deleteObjects(fullObjectNames);
   }
 
+  @Override
+  public void deleteObjects(List<StorageResourceId> fullObjectNames,
+      List<Long> contentGenerations) throws IOException {
+    delegate.deleteObjects(fullObjectNames, contentGenerations);
+  }
+
   @Override
   public List<GoogleCloudStorageItemInfo> listBucketInfo() throws IOException {
     return delegate.listBucketInfo();
@@ -182,6 +195,14 @@ public class LaggedGoogleCloudStorage implements GoogleCloudStorage  {
         ITEM_INFO_TO_NAME);
   }
 
+  @Override
+  public List<String> listObjectNames(String bucketName, String objectNamePrefix,
+      String delimiter, long maxResults) throws IOException {
+    List<String> objectNames = listObjectNames(bucketName, objectNamePrefix, delimiter);
+    return objectNames.size() > maxResults
+        ? objectNames.subList(0, (int) maxResults) : objectNames;
+  }
+
   @Override
   public List<GoogleCloudStorageItemInfo> listObjectInfo(String bucketName,
       String objectNamePrefix, String delimiter) throws IOException {
@@ -198,6 +219,12 @@ public class LaggedGoogleCloudStorage implements GoogleCloudStorage  {
     return result;
   }
 
+  @Override
+  public ListPageIterator<GoogleCloudStorageItemInfo> listObjectInfoPages(String bucketName,
+      String objectNamePrefix, String delimiter) throws IOException {
+    return ListPageIterators.singlePage(listObjectInfo(bucketName, objectNamePrefix, delimiter));
+  }
+
   @Override
   public void close() {
     delegate.close();
@@ -70,6 +70,13 @@ public class ListProhibitedGoogleCloudStorage implements GoogleCloudStorage {
     return delegateGcs.open(resourceId);
   }
 
+  @Override
+  public SeekableReadableByteChannel open(
+      StorageResourceId resourceId, GoogleCloudStorageReadOptions readOptions)
+      throws IOException {
+    return delegateGcs.open(resourceId, readOptions);
+  }
+
   @Override
   public void create(String bucketName) throws IOException {
     delegateGcs.create(bucketName);
@@ -86,6 +93,12 @@ public class ListProhibitedGoogleCloudStorage implements GoogleCloudStorage {
     delegateGcs.deleteObjects(fullObjectNames);
   }
 
+  @Override
+  public void deleteObjects(List<StorageResourceId> fullObjectNames,
+      List<Long> contentGenerations) throws IOException {
+    delegateGcs.deleteObjects(fullObjectNames, contentGenerations);
+  }
+
   @Override
   public void copy(String srcBucketName, List<String> srcObjectNames,
       String dstBucketName, List<String> dstObjectNames) throws IOException {
@@ -111,6 +124,13 @@ public class ListProhibitedGoogleCloudStorage implements GoogleCloudStorage {
         "Operation not supported in ListProhibitedGoogleCloudStorage.");
   }
 
+  @Override
+  public List<String> listObjectNames(String bucketName, String objectNamePrefix,
+      String delimiter, long maxResults) throws IOException {
+    throw new UnsupportedOperationException(
+        "Operation not supported in ListProhibitedGoogleCloudStorage.");
+  }
+
   @Override
   public List<GoogleCloudStorageItemInfo> listObjectInfo(String bucketName,
       String objectNamePrefix, String delimiter) throws IOException {
@@ -118,6 +138,13 @@ public class ListProhibitedGoogleCloudStorage implements GoogleCloudStorage {
         "Operation not supported in ListProhibitedGoogleCloudStorage.");
   }
 
+  @Override
+  public ListPageIterator<GoogleCloudStorageItemInfo> listObjectInfoPages(String bucketName,
+      String objectNamePrefix, String delimiter) throws IOException {
+    throw new UnsupportedOperationException(
+        "Operation not supported in ListProhibitedGoogleCloudStorage.");
+  }
+
   @Override
   public GoogleCloudStorageItemInfo getItemInfo(
       StorageResourceId resourceId) throws IOException {
@@ -0,0 +1,150 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+
+import com.google.api.client.util.Clock;
+import com.google.common.collect.ImmutableList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UnitTests for ParentTimestampUpdater class.
+ */
+@RunWith(JUnit4.class)
+public class ParentTimestampUpdaterTest {
+  private static final StorageResourceId DIR_A = new StorageResourceId("foo-bucket", "a/");
+  private static final StorageResourceId DIR_B = new StorageResourceId("foo-bucket", "b/");
+  private static final StorageResourceId DIR_C = new StorageResourceId("foo-bucket", "c/");
+
+  @Mock private GoogleCloudStorage mockGcs;
+
+  private ScheduledThreadPoolExecutor executor;
+  private ParentTimestampUpdater updater;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+    executor = new ScheduledThreadPoolExecutor(1);
+    // Updates are only sent when the tests send them, or on close().
+    updater = new ParentTimestampUpdater(
+        mockGcs, TimeUnit.HOURS.toMillis(1), 2 /* maxPendingUpdates */, executor, new Clock() {
+          @Override
+          public long currentTimeMillis() {
+            return 42;
+          }
+        });
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+    verifyNoMoreInteractions(mockGcs);
+  }
+
+  /**
+   * Returns the directories patched by each updateItems call.
+   */
+  private List<List<StorageResourceId>> getSentBatches(int expectedBatches)
+      throws IOException {
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<List<UpdatableItemInfo>> captor =
+        (ArgumentCaptor<List<UpdatableItemInfo>>) (ArgumentCaptor<?>)
+            ArgumentCaptor.forClass(List.class);
+    verify(mockGcs, times(expectedBatches)).updateItems(captor.capture());
+    List<List<StorageResourceId>> batches = new ArrayList<>();
+    for (List<UpdatableItemInfo> itemInfos : captor.getAllValues()) {
+      List<StorageResourceId> directories = new ArrayList<>();
+      for (UpdatableItemInfo itemInfo : itemInfos) {
+        directories.add(itemInfo.getStorageResourceId());
+      }
+      batches.add(directories);
+    }
+    return batches;
+  }
+
+  @Test
+  public void testUpdatesOfTheSameDirectoryAreMerged()
+      throws IOException {
+    for (int i = 0; i < 1000; i++) {
+      updater.update(ImmutableList.of(DIR_A));
+    }
+    updater.update(ImmutableList.of(DIR_B, DIR_A));
+    assertEquals(2, updater.getPendingUpdateCount());
+    assertEquals(1, executor.getQueue().size());
+
+    updater.sendPendingUpdates();
+    assertEquals(0, updater.getPendingUpdateCount());
+
+    assertEquals(ImmutableList.of(ImmutableList.of(DIR_A, DIR_B)), getSentBatches(1));
+    assertEquals(1002, updater.getRequestedUpdateCount());
+    assertEquals(1000, updater.getMergedUpdateCount());
+    assertEquals(0, updater.getDroppedUpdateCount());
+    assertEquals(2, updater.getSentUpdateCount());
+    assertEquals(1, updater.getSentBatchCount());
+  }
+
+  @Test
+  public void testUpdatesBeyondMaxPendingAreDropped()
+      throws IOException {
+    updater.update(ImmutableList.of(DIR_A, DIR_B, DIR_C));
+    updater.update(ImmutableList.of(DIR_B));
+    assertEquals(2, updater.getPendingUpdateCount());
+    assertEquals(1, updater.getDroppedUpdateCount());
+    assertEquals(1, updater.getMergedUpdateCount());
+
+    updater.sendPendingUpdates();
+    // Once sent, updates of further directories are accepted again.
+    updater.update(ImmutableList.of(DIR_C));
+    updater.sendPendingUpdates();
+
+    assertEquals(ImmutableList.of(ImmutableList.of(DIR_A, DIR_B), ImmutableList.of(DIR_C)),
+        getSentBatches(2));
+    assertEquals(3, updater.getSentUpdateCount());
+  }
+
+  @Test
+  public void testCloseSendsPendingUpdates()
+      throws IOException {
+    doThrow(new IOException("rate limit exceeded"))
+        .when(mockGcs).updateItems(anyListOf(UpdatableItemInfo.class));
+    updater.update(ImmutableList.of(DIR_A));
+    updater.close();
+    updater.update(ImmutableList.of(DIR_B));
+
+    assertEquals(ImmutableList.of(ImmutableList.of(DIR_A)), getSentBatches(1));
+    assertEquals(1, updater.getDroppedUpdateCount());
+    assertEquals(0, updater.getPendingUpdateCount());
+  }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.google.api.client.http.GenericUrl;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.client.http.HttpRequestFactory;
+import com.google.api.client.http.HttpRequestInitializer;
+import com.google.api.client.testing.http.MockHttpTransport;
+import com.google.common.collect.ImmutableMap;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+
+/**
+ * UnitTests for RequestTracer and TracingHttpRequestInitializer classes.
+ */
+@RunWith(JUnit4.class)
+public class RequestTracerTest {
+  private static final String STORAGE_URL = "https://www.googleapis.com/storage/v1/";
+
+  @After
+  public void tearDown() {
+    // No test may leave a Trace open on the thread.
+    assertNull(RequestTracer.getCurrentTrace());
+  }
+
+  @Test
+  public void testNestedCallsArePartOfTheTopLevelTrace() {
+    RequestTracer tracer = new RequestTracer(1);
+    try (RequestTracer.Trace trace = tracer.start("rename", "gs://b/x", "gs://b/y")) {
+      assertTrue(trace.isSampled());
+      assertSame(trace, RequestTracer.getCurrentTrace());
+      try (RequestTracer.Trace nested = tracer.start("getFileStatus", "gs://b/x")) {
+        assertSame(trace, RequestTracer.getCurrentTrace());
+        trace.recordRequest("get");
+      }
+      assertSame(trace, RequestTracer.getCurrentTrace());
+      trace.recordRequest("get");
+      trace.recordRequest("copy");
+
+      assertEquals(ImmutableMap.of("copy", 1L, "get", 2L), trace.getRequestCounts());
+      String summary = trace.getSummary();
+      assertTrue(summary, summary.startsWith("rename(gs://b/x, gs://b/y) took "));
+      assertTrue(summary, summary.contains("3 requests: 1 copy, 2 get ("));
+    }
+  }
+
+  @Test
+  public void testUnsampledCallsAreNotTraced() {
+    RequestTracer disabled = new RequestTracer(0);
+    try (RequestTracer.Trace trace = disabled.start("mkdirs", "gs://b/x")) {
+      assertFalse(trace.isSampled());
+      assertNull(RequestTracer.getCurrentTrace());
+    }
+
+    RequestTracer tracer = new RequestTracer(Double.MIN_VALUE);
+    try (RequestTracer.Trace trace = tracer.start("mkdirs", "gs://b/x")) {
+      assertFalse(trace.isSampled());
+      // Still open, so that nested calls are not sampled on their own.
+      assertSame(trace, RequestTracer.getCurrentTrace());
+      trace.recordRequest("get");
+      assertTrue(trace.getRequestCounts().isEmpty());
+    }
+  }
+
+  @Test
+  public void testRequestsBuiltDuringTraceAreRecorded()
+      throws IOException {
+    HttpRequestFactory requestFactory = new MockHttpTransport().createRequestFactory(
+        new TracingHttpRequestInitializer(new HttpRequestInitializer() {
+          @Override
+          public void initialize(HttpRequest request) {
+          }
+        }));
+    GenericUrl objectUrl = new GenericUrl(STORAGE_URL + "b/foo-bucket/o/bar-object");
+    GenericUrl listUrl = new GenericUrl(STORAGE_URL + "b/foo-bucket/o");
+
+    // Requests built outside a Trace are not recorded.
+    HttpRequest untraced = requestFactory.buildGetRequest(objectUrl);
+
+    RequestTracer tracer = new RequestTracer(1);
+    try (RequestTracer.Trace trace = tracer.start("listStatus", "gs://foo-bucket/")) {
+      requestFactory.buildGetRequest(objectUrl).execute();
+      requestFactory.buildGetRequest(listUrl).execute();
+      HttpRequest retried = requestFactory.buildGetRequest(listUrl);
+      retried.execute();
+      retried.execute();
+      untraced.execute();
+
+      assertEquals(ImmutableMap.of("get", 1L, "list", 3L), trace.getRequestCounts());
+    }
+  }
+
+  @Test
+  public void testGetRequestType() {
+    assertEquals("get", TracingHttpRequestInitializer.getRequestType(
+        "GET", new GenericUrl(STORAGE_URL + "b/foo-bucket/o/bar%2Fobject")));
+    assertEquals("read", TracingHttpRequestInitializer.getRequestType(
+        "GET", new GenericUrl(STORAGE_URL + "b/foo-bucket/o/bar?alt=media")));
+    assertEquals("list", TracingHttpRequestInitializer.getRequestType(
+        "GET", new GenericUrl(STORAGE_URL + "b/foo-bucket/o?prefix=bar")));
+    assertEquals("insert", TracingHttpRequestInitializer.getRequestType(
+        "POST", new GenericUrl(STORAGE_URL + "b/foo-bucket/o")));
+    assertEquals("delete", TracingHttpRequestInitializer.getRequestType(
+        "DELETE", new GenericUrl(STORAGE_URL + "b/foo-bucket/o/bar")));
+    assertEquals("patch", TracingHttpRequestInitializer.getRequestType(
+        "PATCH", new GenericUrl(STORAGE_URL + "b/foo-bucket/o/bar")));
+    assertEquals("copy", TracingHttpRequestInitializer.getRequestType(
+        "POST", new GenericUrl(STORAGE_URL + "b/foo-bucket/o/bar/copyTo/b/foo-bucket/o/baz")));
+    assertEquals("compose", TracingHttpRequestInitializer.getRequestType(
+        "POST", new GenericUrl(STORAGE_URL + "b/foo-bucket/o/bar/compose")));
+    assertEquals("bucket get", TracingHttpRequestInitializer.getRequestType(
+        "GET", new GenericUrl(STORAGE_URL + "b/foo-bucket")));
+    assertEquals("upload", TracingHttpRequestInitializer.getRequestType(
+        "POST", new GenericUrl("https://www.googleapis.com/upload/storage/v1/b/foo-bucket/o")));
+    assertEquals("batch", TracingHttpRequestInitializer.getRequestType(
+        "POST", new GenericUrl("https://www.googleapis.com/batch")));
+  }
+}
@@ -86,6 +86,13 @@ public class ResourceLoggingGoogleCloudStorage implements GoogleCloudStorage {
     return delegateGcs.open(resourceId);
   }
 
+  @Override
+  public SeekableReadableByteChannel open(
+      StorageResourceId resourceId, GoogleCloudStorageReadOptions readOptions)
+      throws IOException {
+    return delegateGcs.open(resourceId, readOptions);
+  }
+
   @Override
   public void create(String bucketName) throws IOException {
     delegateGcs.create(bucketName);
@@ -103,6 +110,12 @@ public class ResourceLoggingGoogleCloudStorage implements GoogleCloudStorage {
     delegateGcs.deleteObjects(fullObjectNames);
   }
 
+  @Override
+  public void deleteObjects(List<StorageResourceId> fullObjectNames,
+      List<Long> contentGenerations) throws IOException {
+    delegateGcs.deleteObjects(fullObjectNames, contentGenerations);
+  }
+
   @Override
   public void copy(String srcBucketName, List<String> srcObjectNames,
       String dstBucketName, List<String> dstObjectNames) throws IOException {
@@ -128,12 +141,24 @@ public class ResourceLoggingGoogleCloudStorage implements GoogleCloudStorage {
     return delegateGcs.listObjectNames(bucketName, objectNamePrefix, delimiter);
   }
 
+  @Override
+  public List<String> listObjectNames(String bucketName, String objectNamePrefix,
+      String delimiter, long maxResults) throws IOException {
+    return delegateGcs.listObjectNames(bucketName, objectNamePrefix, delimiter, maxResults);
+  }
+
   @Override
   public List<GoogleCloudStorageItemInfo> listObjectInfo(String bucketName,
       String objectNamePrefix, String delimiter) throws IOException {
     return delegateGcs.listObjectInfo(bucketName, objectNamePrefix, delimiter);
   }
 
+  @Override
+  public ListPageIterator<GoogleCloudStorageItemInfo> listObjectInfoPages(String bucketName,
+      String objectNamePrefix, String delimiter) throws IOException {
+    return delegateGcs.listObjectInfoPages(bucketName, objectNamePrefix, delimiter);
+  }
+
   @Override
   public GoogleCloudStorageItemInfo getItemInfo(
       StorageResourceId resourceId) throws IOException {
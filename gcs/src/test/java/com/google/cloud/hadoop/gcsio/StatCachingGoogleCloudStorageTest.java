@@ -0,0 +1,278 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.gcsio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * UnitTests for StatCachingGoogleCloudStorage and StatCache classes.
+ */
+@RunWith(JUnit4.class)
+public class StatCachingGoogleCloudStorageTest {
+  @Mock private GoogleCloudStorage mockGcsDelegate;
+  @Mock private WritableByteChannel mockWriteChannel;
+
+  private GoogleCloudStorageItemInfo objectInfo;
+  private StorageResourceId objectResourceId;
+  private StorageResourceId missingResourceId;
+  private StatCache statCache;
+  private GoogleCloudStorage gcs;
+
+  @Before
+  public void setUp() {
+    MockitoAnnotations.initMocks(this);
+
+    objectInfo = DirectoryListCacheTestUtils.createObjectInfo("foo-bucket", "bar-object");
+    objectResourceId = objectInfo.getResourceId();
+    missingResourceId = new StorageResourceId("foo-bucket", "missing-object");
+    statCache = new StatCache(StatCacheOptions.newBuilder().setEnabled(true).build());
+    gcs = new StatCachingGoogleCloudStorage(mockGcsDelegate, statCache);
+  }
+
+  @After
+  public void tearDown() {
+    verifyNoMoreInteractions(mockGcsDelegate);
+    verifyNoMoreInteractions(mockWriteChannel);
+  }
+
+  @Test
+  public void testGetItemInfoIsServedFromCache()
+      throws IOException {
+    when(mockGcsDelegate.getItemInfo(eq(objectResourceId))).thenReturn(objectInfo);
+
+    assertEquals(objectInfo, gcs.getItemInfo(objectResourceId));
+    assertEquals(objectInfo, gcs.getItemInfo(objectResourceId));
+
+    verify(mockGcsDelegate, times(1)).getItemInfo(eq(objectResourceId));
+  }
+
+  @Test
+  public void testGetItemInfoCachesNotFound()
+      throws IOException {
+    when(mockGcsDelegate.getItemInfo(eq(missingResourceId)))
+        .thenReturn(GoogleCloudStorageImpl.createItemInfoForNotFound(missingResourceId));
+
+    assertFalse(gcs.getItemInfo(missingResourceId).exists());
+    assertFalse(gcs.getItemInfo(missingResourceId).exists());
+
+    verify(mockGcsDelegate, times(1)).getItemInfo(eq(missingResourceId));
+  }
+
+  @Test
+  public void testGetItemInfosFetchesOnlyMissingInfos()
+      throws IOException {
+    statCache.put(objectInfo);
+    GoogleCloudStorageItemInfo missingInfo =
+        GoogleCloudStorageImpl.createItemInfoForNotFound(missingResourceId);
+    when(mockGcsDelegate.getItemInfos(eq(ImmutableList.of(missingResourceId))))
+        .thenReturn(ImmutableList.of(missingInfo));
+
+    List<GoogleCloudStorageItemInfo> itemInfos =
+        gcs.getItemInfos(ImmutableList.of(missingResourceId, objectResourceId));
+    assertEquals(ImmutableList.of(missingInfo, objectInfo), itemInfos);
+
+    // Both are now cached.
+    gcs.getItemInfos(ImmutableList.of(objectResourceId, missingResourceId));
+
+    verify(mockGcsDelegate, times(1)).getItemInfos(eq(ImmutableList.of(missingResourceId)));
+  }
+
+  @Test
+  public void testListObjectInfoPopulatesCache()
+      throws IOException {
+    when(mockGcsDelegate.listObjectInfo(eq("foo-bucket"), eq("bar"), eq("/")))
+        .thenReturn(ImmutableList.of(objectInfo));
+
+    assertEquals(ImmutableList.of(objectInfo), gcs.listObjectInfo("foo-bucket", "bar", "/"));
+    assertEquals(objectInfo, gcs.getItemInfo(objectResourceId));
+
+    verify(mockGcsDelegate).listObjectInfo(eq("foo-bucket"), eq("bar"), eq("/"));
+  }
+
+  @Test
+  public void testListObjectInfoPagesPopulatesCache()
+      throws IOException {
+    when(mockGcsDelegate.listObjectInfoPages(eq("foo-bucket"), eq("bar"), eq("/")))
+        .thenReturn(ListPageIterators.singlePage(ImmutableList.of(objectInfo)));
+
+    ListPageIterator<GoogleCloudStorageItemInfo> pages =
+        gcs.listObjectInfoPages("foo-bucket", "bar", "/");
+    assertEquals(ImmutableList.of(objectInfo), pages.next());
+    assertFalse(pages.hasNext());
+    assertEquals(objectInfo, gcs.getItemInfo(objectResourceId));
+
+    verify(mockGcsDelegate).listObjectInfoPages(eq("foo-bucket"), eq("bar"), eq("/"));
+  }
+
+  @Test
+  public void testDeleteObjectsInvalidatesCache()
+      throws IOException {
+    statCache.put(objectInfo);
+    List<StorageResourceId> deletedIds = ImmutableList.of(objectResourceId);
+
+    gcs.deleteObjects(deletedIds);
+    assertNull(statCache.get(objectResourceId));
+
+    verify(mockGcsDelegate).deleteObjects(eq(deletedIds));
+  }
+
+  @Test
+  public void testInfoFetchedDuringDeleteIsNotCached()
+      throws Exception {
+    final CountDownLatch fetchStarted = new CountDownLatch(1);
+    final CountDownLatch deleteDone = new CountDownLatch(1);
+    // The first fetch sees the object before it is deleted, but completes after the delete.
+    when(mockGcsDelegate.getItemInfo(eq(objectResourceId)))
+        .thenAnswer(new Answer<GoogleCloudStorageItemInfo>() {
+          @Override
+          public GoogleCloudStorageItemInfo answer(InvocationOnMock invocation)
+              throws InterruptedException {
+            fetchStarted.countDown();
+            deleteDone.await();
+            return objectInfo;
+          }
+        })
+        .thenReturn(GoogleCloudStorageImpl.createItemInfoForNotFound(objectResourceId));
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<GoogleCloudStorageItemInfo> staleFetch =
+          executor.submit(new Callable<GoogleCloudStorageItemInfo>() {
+            @Override
+            public GoogleCloudStorageItemInfo call()
+                throws IOException {
+              return gcs.getItemInfo(objectResourceId);
+            }
+          });
+      fetchStarted.await();
+      gcs.deleteObjects(ImmutableList.of(objectResourceId));
+      deleteDone.countDown();
+      assertEquals(objectInfo, staleFetch.get());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    assertNull(statCache.get(objectResourceId));
+    assertFalse(gcs.getItemInfo(objectResourceId).exists());
+    assertFalse(gcs.getItemInfo(objectResourceId).exists());
+
+    verify(mockGcsDelegate, times(2)).getItemInfo(eq(objectResourceId));
+    verify(mockGcsDelegate).deleteObjects(eq(ImmutableList.of(objectResourceId)));
+  }
+
+  @Test
+  public void testPutDropsInfosInvalidatedAfterSequence() {
+    long invalidationSequence = statCache.getInvalidationSequence();
+    statCache.invalidate(objectResourceId);
+    statCache.put(objectInfo, invalidationSequence);
+    assertNull(statCache.get(objectResourceId));
+
+    // Infos of other resources, and infos fetched after the invalidation, are cached.
+    statCache.put(GoogleCloudStorageImpl.createItemInfoForNotFound(missingResourceId),
+        invalidationSequence);
+    assertFalse(statCache.get(missingResourceId).exists());
+    statCache.put(objectInfo, statCache.getInvalidationSequence());
+    assertEquals(objectInfo, statCache.get(objectResourceId));
+
+    invalidationSequence = statCache.getInvalidationSequence();
+    statCache.invalidateAll();
+    statCache.put(objectInfo, invalidationSequence);
+    assertNull(statCache.get(objectResourceId));
+  }
+
+  @Test
+  public void testCopyInvalidatesDestinations()
+      throws IOException {
+    statCache.putNotFound(missingResourceId);
+    List<String> srcNames = ImmutableList.of(objectResourceId.getObjectName());
+    List<String> dstNames = ImmutableList.of(missingResourceId.getObjectName());
+
+    gcs.copy("foo-bucket", srcNames, "foo-bucket", dstNames);
+    assertNull(statCache.get(missingResourceId));
+
+    verify(mockGcsDelegate).copy(eq("foo-bucket"), eq(srcNames), eq("foo-bucket"), eq(dstNames));
+  }
+
+  @Test
+  public void testCreateObjectInvalidatesCacheOnClose()
+      throws IOException {
+    when(mockGcsDelegate.create(eq(missingResourceId), eq(CreateObjectOptions.DEFAULT)))
+        .thenReturn(mockWriteChannel);
+
+    WritableByteChannel channel = gcs.create(missingResourceId);
+    statCache.putNotFound(missingResourceId);
+    channel.close();
+    assertNull(statCache.get(missingResourceId));
+
+    verify(mockGcsDelegate).create(eq(missingResourceId), eq(CreateObjectOptions.DEFAULT));
+    verify(mockWriteChannel).close();
+  }
+
+  @Test
+  public void testStatCacheIsBoundedByEntries() {
+    StatCache boundedCache = new StatCache(
+        StatCacheOptions.newBuilder().setMaxEntries(2).setMaxBytes(1024 * 1024).build());
+    for (int i = 0; i < 10; i++) {
+      boundedCache.putNotFound(new StorageResourceId("foo-bucket", "object" + i));
+    }
+    assertTrue(boundedCache.size() <= 2);
+  }
+
+  @Test
+  public void testStatCacheIsBoundedByBytes() {
+    int entryBytes = StatCache.estimateBytes(objectInfo);
+    StatCache boundedCache = new StatCache(
+        StatCacheOptions.newBuilder().setMaxEntries(1000).setMaxBytes(3 * entryBytes).build());
+    for (int i = 0; i < 10; i++) {
+      boundedCache.put(DirectoryListCacheTestUtils.createObjectInfo("foo-bucket", "bar-objec" + i));
+    }
+    assertTrue(boundedCache.size() <= 3);
+  }
+
+  @Test
+  public void testGetInstanceReturnsSharedCache() {
+    StatCacheOptions options = StatCacheOptions.newBuilder().build();
+    assertTrue(StatCache.getInstance(options) == StatCache.getInstance(options));
+  }
+}
@@ -21,8 +21,11 @@ import com.google.api.client.http.InputStreamContent;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.nio.ByteBuffer;
@@ -48,6 +51,9 @@ public abstract class AbstractGoogleAsyncWriteChannel
   // Default size of upload buffer.
   public static final int UPLOAD_PIPE_BUFFER_SIZE_DEFAULT = 1 * 1024 * 1024;
 
+  // Default number of buffers the upload pipe buffer is split into when using a buffer ring.
+  public static final int UPLOAD_PIPE_BUFFER_COUNT_DEFAULT = 4;
+
   // Default GCS upload granularity.
   public static final int GCS_UPLOAD_GRANULARITY = 8 * 1024 * 1024;
 
@@ -83,7 +89,8 @@ public abstract class AbstractGoogleAsyncWriteChannel
   // Upload path:
   // Uploading a file involves the following steps:
   // -- caller creates a write stream. It involves creating a pipe between data writer (controlled
-  // by the caller) and data uploader.
+  // by the caller) and data uploader. By default the pipe is a ring of buffers handed between the
+  // two ends (see UploadBufferRing); a PipedOutputStream/PipedInputStream pair may be used instead.
   // The writer and the uploader are on separate threads. That is, pipe operation is asynchronous
   // between its
   // two ends.
@@ -98,16 +105,25 @@ public abstract class AbstractGoogleAsyncWriteChannel
   //
   // -- Pipe buffer.
   // size = UPLOAD_PIPE_BUFFER_SIZE_DEFAULT (1 MB)
-  // Increasing size does not have noticeable difference on performance.
+  // Increasing size does not have noticeable difference on performance. A buffer ring splits it
+  // into UPLOAD_PIPE_BUFFER_COUNT_DEFAULT buffers so that the writer can fill one buffer while
+  // the uploader drains another.
   //
   // code.
   // size = UPLOAD_CHUNK_SIZE_DEFAULT (64 MB)
+  // The chunk buffer is leased from uploadBufferManager for the duration of the upload, which
+  // may hand out a smaller chunk size when the memory of all uploads in the process is capped.
+  //
+  // -- Direct upload buffer.
+  // size <= directUploadThreshold (disabled by default)
+  // When enabled, no pipe, thread or chunk buffer is set up until the written data exceeds the
+  // threshold. Objects closed before that are sent in a single multipart request, saving the
+  // round trip that starts a resumable upload session.
 
   // A pipe that connects write channel used by caller to the input stream used by GCS uploader.
   // The uploader reads from input stream which blocks till a caller writes some data to the
-  // write channel (pipeSinkChannel below). The pipe is formed by connecting pipeSink to pipeSource
-  private PipedOutputStream pipeSink;
-  private PipedInputStream pipeSource;
+  // write channel (pipeSinkChannel below).
+  private InputStream pipeSource;
   private ExecutorService threadPool;
   private boolean isInitialized = false;
 
@@ -118,12 +134,25 @@ public abstract class AbstractGoogleAsyncWriteChannel
   // Size of buffer used by upload pipe.
   private int pipeBufferSize = UPLOAD_PIPE_BUFFER_SIZE_DEFAULT;
 
-  // A channel wrapper over pipeSink.
+  // Implementation of the upload pipe.
+  private AsyncWriteChannelOptions.PipeType pipeType;
+
+  // Write end of the upload pipe.
   private WritableByteChannel pipeSinkChannel;
 
+  // Manager from which the chunk buffer of the upload is leased.
+  private UploadBufferManager uploadBufferManager = UploadBufferManager.getInstance();
+
   // Upload operation that takes place on a separate thread.
   private UploadOperation uploadOperation;
 
+  // Objects up to this many bytes are uploaded in a single request; 0 disables it.
+  private int directUploadThreshold;
+
+  // Data written so far while it still fits under directUploadThreshold, or null once the
+  // resumable upload has been started.
+  private DirectUploadBuffer directUploadBuffer;
+
 
   // If true, we get very high write throughput but writing files larger than UPLOAD_MAX_SIZE
   // will not succeed. Set it to false to allow larger files at lower throughput.
@@ -140,6 +169,8 @@ public abstract class AbstractGoogleAsyncWriteChannel
     this.threadPool = threadPool;
     enableFileSizeLimit250Gb(options.isFileSizeLimitedTo250Gb());
     setUploadBufferSize(options.getUploadBufferSize());
+    pipeType = options.getPipeType();
+    setDirectUploadThreshold(options.getDirectUploadThreshold());
   }
 
   /**
@@ -159,6 +190,22 @@ public abstract class AbstractGoogleAsyncWriteChannel
    */
   public void handleResponse(S response) throws IOException {}
 
+  /**
+   * Indicates whether a single-request upload which failed with the given exception should be
+   * sent again, with a request built anew by createRequest(). Never retries unless overridden.
+   */
+  protected boolean shouldRetryDirectUpload(IOException failure) throws IOException {
+    return false;
+  }
+
+  /**
+   * Sets the manager from which the chunk buffer of the upload is leased.
+   */
+  @VisibleForTesting
+  public void setUploadBufferManager(UploadBufferManager uploadBufferManager) {
+    this.uploadBufferManager = uploadBufferManager;
+  }
+
   /**
    * Sets size of upload buffer used.
    */
@@ -174,6 +221,15 @@ public abstract class AbstractGoogleAsyncWriteChannel
     uploadBufferSize = bufferSize;
   }
 
+  /**
+   * Sets the size up to which objects are uploaded in a single request; 0 disables it.
+   */
+  public void setDirectUploadThreshold(int threshold) {
+    Preconditions.checkArgument(threshold >= 0,
+        "Direct upload threshold must not be negative.");
+    directUploadThreshold = threshold;
+  }
+
   /**
    * Enables or disables hard limit of 250GB on size of uploaded files.
    *
@@ -210,6 +266,19 @@ public abstract class AbstractGoogleAsyncWriteChannel
     // No point in writing further if upload failed on another thread.
     throwIfUploadFailed();
 
+    if (directUploadBuffer != null) {
+      if (buffer.remaining() <= directUploadThreshold - directUploadBuffer.size()) {
+        return directUploadBuffer.write(buffer);
+      }
+      // The object is too large for a single request; hand what we have to a resumable upload.
+      startResumableUpload();
+      ByteBuffer buffered = directUploadBuffer.toByteBuffer();
+      directUploadBuffer = null;
+      while (buffered.hasRemaining()) {
+        pipeSinkChannel.write(buffered);
+      }
+    }
+
     return pipeSinkChannel.write(buffer);
   }
 
@@ -220,7 +289,8 @@ public abstract class AbstractGoogleAsyncWriteChannel
    */
   @Override
   public boolean isOpen() {
-    return (pipeSinkChannel != null) && pipeSinkChannel.isOpen();
+    return (directUploadBuffer != null)
+        || ((pipeSinkChannel != null) && pipeSinkChannel.isOpen());
   }
 
   /**
@@ -236,6 +306,14 @@ public abstract class AbstractGoogleAsyncWriteChannel
   public void close() throws IOException {
     throwIfNotInitialized();
     throwIfNotOpen();
+    if (directUploadBuffer != null) {
+      try {
+        handleResponse(uploadDirectly(directUploadBuffer));
+      } finally {
+        directUploadBuffer = null;
+      }
+      return;
+    }
     try {
       pipeSinkChannel.close();
       uploadOperation.waitForCompletion();
@@ -243,7 +321,6 @@ public abstract class AbstractGoogleAsyncWriteChannel
       handleResponse(uploadOperation.getResponse());
     } finally {
       pipeSinkChannel = null;
-      pipeSink = null;
       pipeSource = null;
       uploadOperation = null;
     }
@@ -255,11 +332,57 @@ public abstract class AbstractGoogleAsyncWriteChannel
    * @throws IOException
    */
   public void initialize() throws IOException {
+    if (directUploadThreshold > 0) {
+      // Defer the upload until we know whether the object fits in a single request.
+      directUploadBuffer = new DirectUploadBuffer();
+    } else {
+      startResumableUpload();
+    }
+
+    isInitialized = true;
+  }
+
+  /**
+   * Uploads the given buffered content in a single request, sending it again for as long as
+   * shouldRetryDirectUpload() allows.
+   */
+  private S uploadDirectly(DirectUploadBuffer content) throws IOException {
+    while (true) {
+      InputStreamContent objectContentStream =
+          new InputStreamContent("application/octet-stream", content.toInputStream());
+      objectContentStream.setLength(content.size());
+      // The stream rewinds when closed, so the request can be resent on retry.
+      objectContentStream.setRetrySupported(true);
+
+      T request = createRequest(objectContentStream);
+      request.setDisableGZipContent(true);
+      clientRequestHelper.setDirectUploadEnabled(request, true);
+      try {
+        return request.execute();
+      } catch (IOException ioe) {
+        if (!shouldRetryDirectUpload(ioe)) {
+          throw ioe;
+        }
+      }
+    }
+  }
+
+  /**
+   * Creates the upload pipe and starts a resumable upload reading from it on threadPool.
+   */
+  private void startResumableUpload() throws IOException {
     // Create a pipe such that its one end is connected to the input stream used by
     // the uploader and the other end is the write channel used by the caller.
-    pipeSource = new PipedInputStream(pipeBufferSize);
-    pipeSink = new PipedOutputStream(pipeSource);
-    pipeSinkChannel = Channels.newChannel(pipeSink);
+    if (pipeType == AsyncWriteChannelOptions.PipeType.PIPED_STREAM) {
+      PipedInputStream pipedSource = new PipedInputStream(pipeBufferSize);
+      pipeSinkChannel = Channels.newChannel(new PipedOutputStream(pipedSource));
+      pipeSource = pipedSource;
+    } else {
+      UploadBufferRing ring = new UploadBufferRing(
+          pipeBufferSize / UPLOAD_PIPE_BUFFER_COUNT_DEFAULT, UPLOAD_PIPE_BUFFER_COUNT_DEFAULT);
+      pipeSinkChannel = ring.sink();
+      pipeSource = ring.source();
+    }
 
     // Connect pipe-source to the stream used by uploader.
     InputStreamContent objectContentStream =
@@ -271,23 +394,69 @@ public abstract class AbstractGoogleAsyncWriteChannel
     T request = createRequest(objectContentStream);
     request.setDisableGZipContent(true);
 
+    // Lease the chunk buffer, possibly getting a smaller one if memory is short.
+    int chunkSize;
+    try {
+      chunkSize = uploadBufferManager.lease(uploadBufferSize);
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while waiting for upload buffer memory");
+    }
+
     // Insert necessary http headers to enable 250GB limit+high throughput if so configured.
     if (limitFileSizeTo250Gb) {
       HttpHeaders headers = clientRequestHelper.getRequestHeaders(request);
       headers.set("X-Goog-Upload-Desired-Chunk-Granularity",
-          Math.min(GCS_UPLOAD_GRANULARITY, uploadBufferSize));
+          Math.min(GCS_UPLOAD_GRANULARITY, chunkSize));
       headers.set("X-Goog-Upload-Max-Raw-Size", UPLOAD_MAX_SIZE);
     }
 
     // Change chunk size from default value (10MB) to one that yields higher performance.
-    clientRequestHelper.setChunkSize(request, uploadBufferSize);
+    clientRequestHelper.setChunkSize(request, chunkSize);
 
     // Given that the two ends of the pipe must operate asynchronous relative
     // to each other, we need to start the upload operation on a separate thread.
-    uploadOperation = new UploadOperation(request, pipeSource);
-    threadPool.execute(uploadOperation);
+    uploadOperation = new UploadOperation(request, pipeSource, chunkSize);
+    try {
+      threadPool.execute(uploadOperation);
+    } catch (RuntimeException re) {
+      uploadBufferManager.release(chunkSize);
+      throw re;
+    }
+  }
 
-    isInitialized = true;
+  /**
+   * In-memory buffer of an object small enough to be uploaded in a single request.
+   */
+  private static class DirectUploadBuffer extends ByteArrayOutputStream {
+    int write(ByteBuffer buffer) {
+      int length = buffer.remaining();
+      if (buffer.hasArray()) {
+        write(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+        buffer.position(buffer.limit());
+      } else {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        write(bytes, 0, length);
+      }
+      return length;
+    }
+
+    ByteBuffer toByteBuffer() {
+      return ByteBuffer.wrap(buf, 0, count);
+    }
+
+    /**
+     * Returns a stream over the buffered bytes that rewinds to the start whenever it is closed.
+     */
+    InputStream toInputStream() {
+      return new ByteArrayInputStream(buf, 0, count) {
+        @Override
+        public void close() {
+          reset();
+        }
+      };
+    }
   }
 
   class UploadOperation implements Runnable {
@@ -304,12 +473,16 @@ public abstract class AbstractGoogleAsyncWriteChannel
     // Read end of the pipe. This object declared final for safe object publishing.
     private final InputStream pipeSource;
 
+    // Chunk buffer size leased from uploadBufferManager, released once the upload ends.
+    private final int leasedChunkSize;
+
     /**
      * Constructs an instance of UploadOperation.
      */
-    public UploadOperation(T uploadObject, InputStream pipeSource) {
+    public UploadOperation(T uploadObject, InputStream pipeSource, int leasedChunkSize) {
       this.uploadObject = uploadObject;
       this.pipeSource = pipeSource;
+      this.leasedChunkSize = leasedChunkSize;
     }
 
     /**
@@ -327,6 +500,7 @@ public abstract class AbstractGoogleAsyncWriteChannel
         exception = t;
         log.error(t);
       } finally {
+        uploadBufferManager.release(leasedChunkSize);
         uploadDone.countDown();
         try {
           // Close this end of the pipe so that the writer at the other end
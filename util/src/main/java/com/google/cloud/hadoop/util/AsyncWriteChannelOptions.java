@@ -20,6 +20,16 @@ package com.google.cloud.hadoop.util;
  */
 public class AsyncWriteChannelOptions {
 
+  /**
+   * Implementation of the pipe between the writer and the thread running the upload.
+   */
+  public enum PipeType {
+    // A ring of reusable buffers handed between the writer and the uploader.
+    BUFFER_RING,
+    // A PipedOutputStream connected to a PipedInputStream.
+    PIPED_STREAM
+  }
+
   /**
    * Default of whether to limit files to 250GB by default.
    */
@@ -29,12 +39,24 @@ public class AsyncWriteChannelOptions {
    */
   public static final int UPLOAD_BUFFER_SIZE_DEFAULT = 64 * 1024 * 1024;
 
+  /**
+   * Default upload pipe implementation.
+   */
+  public static final PipeType PIPE_TYPE_DEFAULT = PipeType.BUFFER_RING;
+
+  /**
+   * Default size up to which objects are uploaded in a single request; 0 disables it.
+   */
+  public static final int DIRECT_UPLOAD_THRESHOLD_DEFAULT = 0;
+
   /**
    * Mutable builder for the GoogleCloudStorageWriteChannelOptions class.
    */
   public static class Builder {
     private boolean fileSizeLimitedTo250Gb = LIMIT_FILESIZE_TO_250GB_DEFAULT;
     private int uploadBufferSize = UPLOAD_BUFFER_SIZE_DEFAULT;
+    private PipeType pipeType = PIPE_TYPE_DEFAULT;
+    private int directUploadThreshold = DIRECT_UPLOAD_THRESHOLD_DEFAULT;
 
     public Builder setFileSizeLimitedTo250Gb(boolean fileSizeLimitedTo250Gb) {
       this.fileSizeLimitedTo250Gb = fileSizeLimitedTo250Gb;
@@ -46,8 +68,24 @@ public class AsyncWriteChannelOptions {
       return this;
     }
 
+    public Builder setPipeType(PipeType pipeType) {
+      this.pipeType = pipeType;
+      return this;
+    }
+
+    /**
+     * Objects whose content does not exceed this many bytes when the channel is closed are
+     * buffered in memory and uploaded in a single request instead of a resumable upload session.
+     * 0 disables it.
+     */
+    public Builder setDirectUploadThreshold(int directUploadThreshold) {
+      this.directUploadThreshold = directUploadThreshold;
+      return this;
+    }
+
     public AsyncWriteChannelOptions build() {
-      return new AsyncWriteChannelOptions(fileSizeLimitedTo250Gb, uploadBufferSize);
+      return new AsyncWriteChannelOptions(
+          fileSizeLimitedTo250Gb, uploadBufferSize, pipeType, directUploadThreshold);
     }
   }
 
@@ -61,11 +99,25 @@ public class AsyncWriteChannelOptions {
 
   private final boolean fileSizeLimitedTo250Gb;
   private final int uploadBufferSize;
+  private final PipeType pipeType;
+  private final int directUploadThreshold;
 
   public AsyncWriteChannelOptions(boolean fileSizeLimitedTo250Gb,
       int uploadBufferSize) {
+    this(fileSizeLimitedTo250Gb, uploadBufferSize, PIPE_TYPE_DEFAULT);
+  }
+
+  public AsyncWriteChannelOptions(boolean fileSizeLimitedTo250Gb,
+      int uploadBufferSize, PipeType pipeType) {
+    this(fileSizeLimitedTo250Gb, uploadBufferSize, pipeType, DIRECT_UPLOAD_THRESHOLD_DEFAULT);
+  }
+
+  public AsyncWriteChannelOptions(boolean fileSizeLimitedTo250Gb,
+      int uploadBufferSize, PipeType pipeType, int directUploadThreshold) {
     this.fileSizeLimitedTo250Gb = fileSizeLimitedTo250Gb;
     this.uploadBufferSize = uploadBufferSize;
+    this.pipeType = pipeType;
+    this.directUploadThreshold = directUploadThreshold;
   }
 
   public boolean isFileSizeLimitedTo250Gb() {
@@ -74,4 +126,13 @@ public class AsyncWriteChannelOptions {
 
   public int getUploadBufferSize() {
     return uploadBufferSize;
-  }}
+  }
+
+  public PipeType getPipeType() {
+    return pipeType;
+  }
+
+  public int getDirectUploadThreshold() {
+    return directUploadThreshold;
+  }
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.util;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram records non-negative values, typically durations in nanoseconds, into
+ * log-linear buckets without locking, and estimates their percentiles.
+ *
+ * <p>Values below SUB_BUCKETS are counted exactly; larger values fall into one of SUB_BUCKETS
+ * buckets per power of two, so a reported percentile is at most 1 / SUB_BUCKETS above the
+ * recorded value it stands for.
+ */
+public class LatencyHistogram {
+  // Number of buckets each power of two is split into; must be a power of two.
+  @VisibleForTesting
+  static final int SUB_BUCKETS = 8;
+
+  // Number of bits needed to index a sub-bucket.
+  private static final int SUB_BUCKET_BITS = Integer.numberOfTrailingZeros(SUB_BUCKETS);
+
+  // Number of buckets needed to hold any non-negative long.
+  private static final int NUM_BUCKETS = bucketIndex(Long.MAX_VALUE) + 1;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(NUM_BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong total = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Returns the index of the bucket holding the given non-negative value.
+   */
+  @VisibleForTesting
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /**
+   * Returns the largest value held by the bucket of the given index.
+   */
+  @VisibleForTesting
+  static long bucketUpperBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    return lowerBound + (1L << shift) - 1;
+  }
+
+  /**
+   * Records the given value; negative values are recorded as 0.
+   */
+  public void record(long value) {
+    value = Math.max(0, value);
+    buckets.incrementAndGet(bucketIndex(value));
+    count.incrementAndGet();
+    total.addAndGet(value);
+    long currentMax = max.get();
+    while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+      currentMax = max.get();
+    }
+  }
+
+  /**
+   * Returns the number of recorded values.
+   */
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * Returns the sum of the recorded values.
+   */
+  public long getTotal() {
+    return total.get();
+  }
+
+  /**
+   * Returns the largest recorded value, or 0 if none was recorded.
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Returns an upper bound of the given percentile, between 0 and 100, of the recorded values,
+   * or 0 if none was recorded. Values recorded concurrently may or may not be accounted for.
+   */
+  public long getPercentile(double percentile) {
+    Preconditions.checkArgument(percentile >= 0 && percentile <= 100,
+        "percentile must be between 0 and 100, got %s", percentile);
+    long[] snapshot = new long[NUM_BUCKETS];
+    long snapshotCount = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      snapshot[i] = buckets.get(i);
+      snapshotCount += snapshot[i];
+    }
+    if (snapshotCount == 0) {
+      return 0;
+    }
+    long rank = Math.max(1, (long) Math.ceil(snapshotCount * percentile / 100));
+    long seen = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) {
+        // The bucket bound may overshoot the largest value actually recorded.
+        return Math.min(bucketUpperBound(i), getMax());
+      }
+    }
+    return getMax();
+  }
+}
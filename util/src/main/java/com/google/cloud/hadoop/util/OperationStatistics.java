@@ -0,0 +1,117 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latency histogram, error count and byte count of one operation, recorded without locking.
+ */
+public class OperationStatistics implements OperationStatisticsMXBean {
+  private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final String name;
+  private final LatencyHistogram latencyNanos = new LatencyHistogram();
+  private final AtomicLong errorCount = new AtomicLong();
+  private final AtomicLong bytes = new AtomicLong();
+
+  public OperationStatistics(String name) {
+    this.name = name;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Records a successful call of the given duration.
+   */
+  public void recordLatency(long durationNanos) {
+    latencyNanos.record(durationNanos);
+  }
+
+  /**
+   * Records a failed call of the given duration.
+   */
+  public void recordError(long durationNanos) {
+    errorCount.incrementAndGet();
+    latencyNanos.record(durationNanos);
+  }
+
+  /**
+   * Records the given number of transferred bytes.
+   */
+  public void recordBytes(long numBytes) {
+    if (numBytes > 0) {
+      bytes.addAndGet(numBytes);
+    }
+  }
+
+  public LatencyHistogram getLatencyHistogram() {
+    return latencyNanos;
+  }
+
+  @Override
+  public long getCount() {
+    return latencyNanos.getCount();
+  }
+
+  @Override
+  public long getErrorCount() {
+    return errorCount.get();
+  }
+
+  @Override
+  public long getBytes() {
+    return bytes.get();
+  }
+
+  @Override
+  public double getMeanLatencyMillis() {
+    long count = latencyNanos.getCount();
+    return count == 0 ? 0 : latencyNanos.getTotal() / NANOS_PER_MILLI / count;
+  }
+
+  @Override
+  public double getP50LatencyMillis() {
+    return latencyNanos.getPercentile(50) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getP99LatencyMillis() {
+    return latencyNanos.getPercentile(99) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getP999LatencyMillis() {
+    return latencyNanos.getPercentile(99.9) / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public double getMaxLatencyMillis() {
+    return latencyNanos.getMax() / NANOS_PER_MILLI;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: %d calls, %d errors, %d bytes, mean %.2f ms, p50 %.2f ms, p99 %.2f ms, "
+        + "p99.9 %.2f ms, max %.2f ms",
+        name, getCount(), getErrorCount(), getBytes(), getMeanLatencyMillis(),
+        getP50LatencyMillis(), getP99LatencyMillis(), getP999LatencyMillis(),
+        getMaxLatencyMillis());
+  }
+}
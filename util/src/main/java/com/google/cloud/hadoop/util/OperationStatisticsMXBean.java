@@ -0,0 +1,45 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.util;
+
+/**
+ * JMX view of the statistics of one operation; latencies are reported in milliseconds.
+ */
+public interface OperationStatisticsMXBean {
+  /**
+   * Number of completed calls, successful or not.
+   */
+  long getCount();
+
+  /**
+   * Number of calls which failed.
+   */
+  long getErrorCount();
+
+  /**
+   * Number of bytes transferred by the calls.
+   */
+  long getBytes();
+
+  double getMeanLatencyMillis();
+
+  double getP50LatencyMillis();
+
+  double getP99LatencyMillis();
+
+  double getP999LatencyMillis();
+
+  double getMaxLatencyMillis();
+}
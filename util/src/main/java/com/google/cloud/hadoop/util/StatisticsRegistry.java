@@ -0,0 +1,94 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.util;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSortedMap;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * A set of OperationStatistics keyed by operation name. Each one is created on first use and
+ * exported through the platform MBean server as
+ * {@code com.google.cloud.hadoop:type=<type>,name=<operation>}, which also makes it visible
+ * through the /jmx servlet of Hadoop daemons.
+ */
+public class StatisticsRegistry {
+  // Logger.
+  private static final LogUtil log = new LogUtil(StatisticsRegistry.class);
+
+  // JMX domain of the exported statistics.
+  public static final String JMX_DOMAIN = "com.google.cloud.hadoop";
+
+  private final String type;
+  private final boolean exportToJmx;
+  private final ConcurrentMap<String, OperationStatistics> statistics = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a registry exporting its statistics through JMX under the given type.
+   */
+  public StatisticsRegistry(String type) {
+    this(type, true);
+  }
+
+  public StatisticsRegistry(String type, boolean exportToJmx) {
+    Preconditions.checkArgument(type != null && !type.isEmpty(), "type must not be empty");
+    this.type = type;
+    this.exportToJmx = exportToJmx;
+  }
+
+  /**
+   * Returns the statistics of the given operation, creating and exporting them on first use.
+   */
+  public OperationStatistics get(String operation) {
+    OperationStatistics operationStatistics = statistics.get(operation);
+    if (operationStatistics == null) {
+      OperationStatistics created = new OperationStatistics(operation);
+      operationStatistics = statistics.putIfAbsent(operation, created);
+      if (operationStatistics == null) {
+        operationStatistics = created;
+        if (exportToJmx) {
+          export(created);
+        }
+      }
+    }
+    return operationStatistics;
+  }
+
+  /**
+   * Returns the statistics created so far, sorted by operation name.
+   */
+  public Map<String, OperationStatistics> getAll() {
+    return ImmutableSortedMap.copyOf(statistics);
+  }
+
+  private void export(OperationStatistics operationStatistics) {
+    try {
+      ObjectName name = new ObjectName(String.format("%s:type=%s,name=%s",
+          JMX_DOMAIN, ObjectName.quote(type), ObjectName.quote(operationStatistics.getName())));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(operationStatistics, name);
+    } catch (JMException | RuntimeException e) {
+      // Statistics are still recorded and returned by getAll(), only not visible through JMX.
+      log.warn("Failed to export statistics of '%s' through JMX: %s",
+          operationStatistics.getName(), e);
+    }
+  }
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.util;
+
+import com.google.api.client.googleapis.media.MediaHttpUploader;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+/**
+ * Leases upload chunk buffer memory to write channels under a global cap.
+ *
+ * <p>Each upload holds a chunk buffer of its upload buffer size for as long as it runs. A channel
+ * leases that amount before starting its upload and releases it once the upload finishes. When
+ * the cap does not leave room for the full size, the channel gets a smaller chunk size made of
+ * what remains, in multiples of MediaHttpUploader.MINIMUM_CHUNK_SIZE; when not even that much
+ * remains, the lease blocks until other uploads finish. The cap should therefore allow at least
+ * MINIMUM_CHUNK_SIZE bytes for every stream a single thread keeps open at once.
+ */
+public class UploadBufferManager {
+
+  // Granularity, and smallest size, of the chunk sizes handed out by a lease.
+  public static final int LEASE_GRANULARITY = MediaHttpUploader.MINIMUM_CHUNK_SIZE;
+
+  private static final LogUtil log = new LogUtil(UploadBufferManager.class);
+
+  // Manager shared by all channels of the process.
+  private static final UploadBufferManager INSTANCE = new UploadBufferManager(Long.MAX_VALUE);
+
+  /**
+   * Returns the manager shared by all write channels in this process.
+   */
+  public static UploadBufferManager getInstance() {
+    return INSTANCE;
+  }
+
+  // Maximum number of bytes leased at once.
+  private long capacity;
+
+  // Number of bytes currently leased.
+  private long leasedBytes = 0;
+
+  // Number of leases currently in effect.
+  private int activeLeases = 0;
+
+  // Number of callers currently blocked waiting for memory.
+  private int waitingLeases = 0;
+
+  // Whether configureCapacity has set the capacity.
+  private boolean capacityConfigured = false;
+
+  @VisibleForTesting
+  public UploadBufferManager(long capacity) {
+    setCapacity(capacity);
+  }
+
+  /**
+   * Sets the maximum number of bytes leased at once. Lowering the capacity below the leased bytes
+   * does not affect existing leases, only new ones.
+   */
+  public synchronized void setCapacity(long capacity) {
+    Preconditions.checkArgument(capacity >= LEASE_GRANULARITY,
+        "capacity must be at least %s, got %s", LEASE_GRANULARITY, capacity);
+    if (this.capacity != capacity) {
+      log.debug("setCapacity(%d)", capacity);
+      this.capacity = capacity;
+      notifyAll();
+    }
+  }
+
+  /**
+   * Sets the capacity to the given cap, 0 for none, unless a cap has already been configured.
+   * Since the shared manager serves every user in the process, the first cap configured is kept,
+   * and a different later one is ignored with a warning.
+   */
+  public synchronized void configureCapacity(long capacity) {
+    if (capacity <= 0) {
+      return;
+    }
+    if (!capacityConfigured) {
+      setCapacity(capacity);
+      capacityConfigured = true;
+    } else if (capacity != this.capacity) {
+      log.warn("Ignoring upload buffer memory cap of %d bytes, keeping the existing cap of %d "
+          + "bytes", capacity, this.capacity);
+    }
+  }
+
+  /**
+   * Leases up to desiredSize bytes, blocking until at least the smaller of desiredSize and
+   * LEASE_GRANULARITY bytes are available.
+   *
+   * @return the number of bytes leased, to be used as chunk size and later passed to release()
+   */
+  public synchronized int lease(int desiredSize) throws InterruptedException {
+    Preconditions.checkArgument(desiredSize > 0,
+        "desiredSize must be greater than 0, got %s", desiredSize);
+    int minimumSize = Math.min(desiredSize, LEASE_GRANULARITY);
+    if (capacity - leasedBytes < minimumSize) {
+      log.debug("lease(%d): waiting, %d of %d bytes leased", desiredSize, leasedBytes, capacity);
+      waitingLeases++;
+      try {
+        while (capacity - leasedBytes < minimumSize) {
+          wait();
+        }
+      } finally {
+        waitingLeases--;
+      }
+    }
+    long available = capacity - leasedBytes;
+    int leased = desiredSize;
+    if (available < desiredSize) {
+      leased = (int) Math.max(minimumSize, available / LEASE_GRANULARITY * LEASE_GRANULARITY);
+      log.debug("lease(%d): shrinking to %d, %d of %d bytes leased",
+          desiredSize, leased, leasedBytes, capacity);
+    }
+    leasedBytes += leased;
+    activeLeases++;
+    return leased;
+  }
+
+  /**
+   * Returns bytes previously obtained from lease().
+   */
+  public synchronized void release(int leased) {
+    Preconditions.checkArgument(leased > 0 && leased <= leasedBytes,
+        "Cannot release %s bytes, %s bytes leased", leased, leasedBytes);
+    leasedBytes -= leased;
+    activeLeases--;
+    notifyAll();
+  }
+
+  public synchronized long getCapacity() {
+    return capacity;
+  }
+
+  public synchronized long getLeasedBytes() {
+    return leasedBytes;
+  }
+
+  public synchronized int getActiveLeases() {
+    return activeLeases;
+  }
+
+  public synchronized int getWaitingLeases() {
+    return waitingLeases;
+  }
+
+  /**
+   * Returns the fraction of the capacity currently leased.
+   */
+  public synchronized double getUtilization() {
+    return (double) leasedBytes / capacity;
+  }
+}
@@ -0,0 +1,267 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.util;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A pipe between a writer thread and a reader thread built from a fixed ring of buffers.
+ *
+ * <p>The writer copies data from the caller into the buffer it currently owns and hands the buffer
+ * to the reader once it is full, or at the end of a write if the reader has nothing left to read,
+ * so that written data never waits for more writes; the reader drains the buffers and hands them
+ * back for reuse.
+ * Compared to a PipedInputStream/PipedOutputStream pair this copies each byte once on either side
+ * instead of going through an intermediate array, takes no lock per write, and blocks on a queue
+ * instead of polling when the ring is full or empty.
+ *
+ * <p>Exactly one thread may use {@link #sink()} and one thread {@link #source()} at a time.
+ */
+public class UploadBufferRing {
+
+  // Marks the end of the data in the queue of filled buffers.
+  private static final ByteBuffer END_OF_DATA = ByteBuffer.allocate(0);
+
+  // Marks a closed source in the queue of free buffers, so that a blocked writer fails.
+  private static final ByteBuffer SOURCE_CLOSED = ByteBuffer.allocate(0);
+
+  private final int bufferSize;
+  private final int bufferCount;
+
+  // Buffers ready to be filled by the writer.
+  private final BlockingQueue<ByteBuffer> freeBuffers;
+
+  // Buffers ready to be drained by the reader, in order, followed by END_OF_DATA once the sink
+  // has been closed.
+  private final BlockingQueue<ByteBuffer> filledBuffers;
+
+  private final Sink sink = new Sink();
+  private final Source source = new Source();
+
+  // Number of buffers allocated so far; buffers are allocated lazily by the writer.
+  private int allocatedBuffers = 0;
+
+  /**
+   * Constructs a ring holding at most bufferCount buffers of bufferSize bytes each.
+   */
+  public UploadBufferRing(int bufferSize, int bufferCount) {
+    Preconditions.checkArgument(bufferSize > 0,
+        "bufferSize must be greater than 0, got %s", bufferSize);
+    Preconditions.checkArgument(bufferCount > 1,
+        "bufferCount must be greater than 1, got %s", bufferCount);
+    this.bufferSize = bufferSize;
+    this.bufferCount = bufferCount;
+    this.freeBuffers = new LinkedBlockingQueue<>();
+    this.filledBuffers = new LinkedBlockingQueue<>();
+  }
+
+  /**
+   * Returns the channel through which the writer puts data into the ring.
+   */
+  public WritableByteChannel sink() {
+    return sink;
+  }
+
+  /**
+   * Returns the stream through which the reader takes data out of the ring.
+   */
+  public InputStream source() {
+    return source;
+  }
+
+  private class Sink implements WritableByteChannel {
+    // Buffer currently being filled, or null if the writer does not own one.
+    private ByteBuffer current;
+    private boolean open = true;
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+      if (!open) {
+        throw new ClosedChannelException();
+      }
+      if (source.closed) {
+        throw new IOException("Pipe closed by reader");
+      }
+      int bytesWritten = 0;
+      while (src.hasRemaining()) {
+        if (current == null) {
+          current = takeFreeBuffer();
+        }
+        int bytesToCopy = Math.min(src.remaining(), current.remaining());
+        if (bytesToCopy == src.remaining()) {
+          current.put(src);
+        } else {
+          ByteBuffer chunk = src.duplicate();
+          chunk.limit(chunk.position() + bytesToCopy);
+          current.put(chunk);
+          src.position(src.position() + bytesToCopy);
+        }
+        bytesWritten += bytesToCopy;
+        if (!current.hasRemaining()) {
+          handOff();
+        }
+      }
+      // Don't keep the reader waiting for a full buffer if it has drained everything else.
+      if (current != null && filledBuffers.isEmpty()) {
+        handOff();
+      }
+      return bytesWritten;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return open;
+    }
+
+    /**
+     * Hands the partially filled buffer, if any, to the reader followed by the end of the data.
+     */
+    @Override
+    public void close() throws IOException {
+      if (!open) {
+        return;
+      }
+      open = false;
+      if (current != null && current.position() > 0) {
+        handOff();
+      }
+      current = null;
+      filledBuffers.add(END_OF_DATA);
+    }
+
+    private void handOff() {
+      current.flip();
+      filledBuffers.add(current);
+      current = null;
+    }
+
+    /**
+     * Returns an empty buffer, allocating one if the ring is not yet full and otherwise waiting
+     * for the reader to drain one.
+     */
+    private ByteBuffer takeFreeBuffer() throws IOException {
+      ByteBuffer buffer = freeBuffers.poll();
+      if (buffer == null && allocatedBuffers < bufferCount) {
+        allocatedBuffers++;
+        return ByteBuffer.allocate(bufferSize);
+      }
+      try {
+        if (buffer == null) {
+          buffer = freeBuffers.take();
+        }
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for a free buffer");
+      }
+      if (buffer == SOURCE_CLOSED) {
+        freeBuffers.add(SOURCE_CLOSED);
+        throw new IOException("Pipe closed by reader");
+      }
+      return buffer;
+    }
+  }
+
+  private class Source extends InputStream {
+    // Buffer currently being drained, or null if the reader does not own one.
+    private ByteBuffer current;
+    private boolean endOfData = false;
+    private volatile boolean closed = false;
+
+    @Override
+    public int read() throws IOException {
+      byte[] oneByte = new byte[1];
+      int bytesRead = read(oneByte, 0, 1);
+      return bytesRead == -1 ? -1 : oneByte[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      Preconditions.checkPositionIndexes(off, off + len, b.length);
+      if (closed) {
+        throw new IOException("Pipe closed");
+      }
+      if (len == 0) {
+        return 0;
+      }
+      if (!takeFilledBuffer()) {
+        return -1;
+      }
+      int bytesRead = Math.min(len, current.remaining());
+      current.get(b, off, bytesRead);
+      return bytesRead;
+    }
+
+    @Override
+    public int available() {
+      return current == null ? 0 : current.remaining();
+    }
+
+    /**
+     * Releases the buffers held by the ring; a writer blocked on or later writing to the sink
+     * fails instead of waiting for a reader that is gone.
+     */
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      current = null;
+      filledBuffers.clear();
+      freeBuffers.clear();
+      freeBuffers.add(SOURCE_CLOSED);
+    }
+
+    /**
+     * Makes sure current has data to read, returning a drained buffer to the writer and waiting
+     * for the next filled one if needed. Returns false at the end of the data.
+     */
+    private boolean takeFilledBuffer() throws IOException {
+      if (current != null && current.hasRemaining()) {
+        return true;
+      }
+      if (endOfData) {
+        return false;
+      }
+      if (current != null) {
+        current.clear();
+        freeBuffers.add(current);
+        current = null;
+      }
+      ByteBuffer buffer;
+      try {
+        buffer = filledBuffers.take();
+      } catch (InterruptedException ie) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for data");
+      }
+      if (buffer == END_OF_DATA) {
+        endOfData = true;
+        return false;
+      }
+      current = buffer;
+      return true;
+    }
+  }
+}
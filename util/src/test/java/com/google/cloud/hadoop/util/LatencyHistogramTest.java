@@ -0,0 +1,106 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Unit tests for LatencyHistogram, OperationStatistics and StatisticsRegistry classes.
+ */
+@RunWith(JUnit4.class)
+public class LatencyHistogramTest {
+  @Test
+  public void testBucketsCoverAllValues() {
+    long[] values = {0, 1, 7, 8, 15, 16, 17, 1000, 123456789L, Long.MAX_VALUE};
+    for (long value : values) {
+      int index = LatencyHistogram.bucketIndex(value);
+      assertTrue(value <= LatencyHistogram.bucketUpperBound(index));
+      if (index > 0) {
+        assertTrue(value > LatencyHistogram.bucketUpperBound(index - 1));
+      }
+      // Buckets are at most 1 / SUB_BUCKETS as wide as the values they hold.
+      assertTrue(LatencyHistogram.bucketUpperBound(index) - value
+          <= value / LatencyHistogram.SUB_BUCKETS);
+    }
+    assertEquals(Long.MAX_VALUE,
+        LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(Long.MAX_VALUE)));
+  }
+
+  @Test
+  public void testPercentiles() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getPercentile(50));
+
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000L);
+    }
+    histogram.record(-5);
+
+    assertEquals(1001, histogram.getCount());
+    assertEquals(500500000L, histogram.getTotal());
+    assertEquals(1000000L, histogram.getMax());
+    assertEquals(0, histogram.getPercentile(0));
+    assertEquals(1000000L, histogram.getPercentile(100));
+
+    long p50 = histogram.getPercentile(50);
+    assertTrue("p50 = " + p50, p50 >= 500000L && p50 <= 500000L * 9 / 8);
+    long p99 = histogram.getPercentile(99);
+    assertTrue("p99 = " + p99, p99 >= 990000L && p99 <= 1000000L);
+  }
+
+  @Test
+  public void testOperationStatistics() {
+    OperationStatistics statistics = new OperationStatistics("op");
+    statistics.recordLatency(2000000L);
+    statistics.recordError(4000000L);
+    statistics.recordBytes(100);
+    statistics.recordBytes(-1);
+
+    assertEquals(2, statistics.getCount());
+    assertEquals(1, statistics.getErrorCount());
+    assertEquals(100, statistics.getBytes());
+    assertEquals(3.0, statistics.getMeanLatencyMillis(), 1e-9);
+    assertEquals(4.0, statistics.getMaxLatencyMillis(), 1e-9);
+    assertEquals(4.0, statistics.getP999LatencyMillis(), 1e-9);
+  }
+
+  @Test
+  public void testRegistryExportsStatisticsThroughJmx()
+      throws Exception {
+    StatisticsRegistry registry = new StatisticsRegistry("LatencyHistogramTest");
+    OperationStatistics statistics = registry.get("read");
+    assertSame(statistics, registry.get("read"));
+    statistics.recordBytes(42);
+
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(
+        StatisticsRegistry.JMX_DOMAIN + ":type=\"LatencyHistogramTest\",name=\"read\"");
+    assertNotNull(server.getMBeanInfo(name));
+    assertEquals(42L, server.getAttribute(name, "Bytes"));
+    assertEquals(1, registry.getAll().size());
+  }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unit tests for UploadBufferManager class.
+ */
+@RunWith(JUnit4.class)
+public class UploadBufferManagerTest {
+  private static final int UNIT = UploadBufferManager.LEASE_GRANULARITY;
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void testLeaseGrantsDesiredSizeWhenAvailable() throws InterruptedException {
+    UploadBufferManager manager = new UploadBufferManager(8 * UNIT);
+    assertEquals(4 * UNIT, manager.lease(4 * UNIT));
+    assertEquals(4 * UNIT, manager.getLeasedBytes());
+    assertEquals(1, manager.getActiveLeases());
+    assertEquals(0.5, manager.getUtilization(), 0.0);
+
+    manager.release(4 * UNIT);
+    assertEquals(0, manager.getLeasedBytes());
+    assertEquals(0, manager.getActiveLeases());
+  }
+
+  @Test
+  public void testLeaseShrinksToAvailableMemory() throws InterruptedException {
+    UploadBufferManager manager = new UploadBufferManager(8 * UNIT + UNIT / 2);
+    assertEquals(6 * UNIT, manager.lease(6 * UNIT));
+
+    // Only whole units of the remaining 2.5 units are handed out.
+    assertEquals(2 * UNIT, manager.lease(6 * UNIT));
+    assertEquals(8 * UNIT, manager.getLeasedBytes());
+  }
+
+  @Test
+  public void testLeaseSmallerThanGranularity() throws InterruptedException {
+    UploadBufferManager manager = new UploadBufferManager(UNIT);
+    assertEquals(UNIT / 2, manager.lease(UNIT / 2));
+    assertEquals(UNIT / 4, manager.lease(UNIT / 4));
+    assertEquals(3 * UNIT / 4, manager.getLeasedBytes());
+  }
+
+  @Test
+  public void testLeaseBlocksUntilMemoryIsReleased() throws Exception {
+    final UploadBufferManager manager = new UploadBufferManager(2 * UNIT);
+    assertEquals(2 * UNIT, manager.lease(2 * UNIT));
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Integer> blockedLease = executor.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() throws InterruptedException {
+          return manager.lease(2 * UNIT);
+        }
+      });
+      while (manager.getWaitingLeases() == 0) {
+        Thread.sleep(10);
+      }
+      assertFalse(blockedLease.isDone());
+
+      manager.release(2 * UNIT);
+      assertEquals(2 * UNIT, (int) blockedLease.get(10, TimeUnit.SECONDS));
+      assertEquals(0, manager.getWaitingLeases());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testReleaseMoreThanLeasedThrows() {
+    UploadBufferManager manager = new UploadBufferManager(2 * UNIT);
+
+    expectedException.expect(IllegalArgumentException.class);
+    manager.release(UNIT);
+  }
+
+  @Test
+  public void testCapacityBelowGranularityThrows() {
+    expectedException.expect(IllegalArgumentException.class);
+    new UploadBufferManager(UNIT - 1);
+  }
+
+  @Test
+  public void testConfigureCapacityKeepsFirstCap() {
+    UploadBufferManager manager = new UploadBufferManager(Long.MAX_VALUE);
+
+    // A cap of 0 configures nothing.
+    manager.configureCapacity(0);
+    manager.configureCapacity(2 * UNIT);
+    assertEquals(2 * UNIT, manager.getCapacity());
+
+    // Neither the default nor a different later cap replaces the first one.
+    manager.configureCapacity(0);
+    manager.configureCapacity(4 * UNIT);
+    assertEquals(2 * UNIT, manager.getCapacity());
+  }
+}
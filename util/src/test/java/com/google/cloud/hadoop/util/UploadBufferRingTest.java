@@ -0,0 +1,138 @@
+/**
+ * Copyright 2014 Google Inc. All Rights Reserved.
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software distributed under the
+ * License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.cloud.hadoop.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import com.google.common.io.ByteStreams;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Unit tests for UploadBufferRing class.
+ */
+@RunWith(JUnit4.class)
+public class UploadBufferRingTest {
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void testTransfersDataBetweenThreads() throws Exception {
+    final UploadBufferRing ring = new UploadBufferRing(7, 3);
+    final byte[] data = new byte[1000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<byte[]> readResult = executor.submit(new Callable<byte[]>() {
+        @Override
+        public byte[] call() throws IOException {
+          return ByteStreams.toByteArray(ring.source());
+        }
+      });
+
+      // Write in chunks which do not line up with the ring buffers.
+      WritableByteChannel sink = ring.sink();
+      for (int offset = 0; offset < data.length; offset += 13) {
+        int length = Math.min(13, data.length - offset);
+        assertEquals(length, sink.write(ByteBuffer.wrap(data, offset, length)));
+      }
+      sink.close();
+      assertFalse(sink.isOpen());
+
+      assertArrayEquals(data, readResult.get());
+      assertEquals(-1, ring.source().read());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testWrittenDataIsReadableBeforeBufferFills() throws IOException {
+    UploadBufferRing ring = new UploadBufferRing(16, 2);
+    byte[] data = { 0x01, 0x02, 0x03 };
+    ring.sink().write(ByteBuffer.wrap(data));
+
+    byte[] readData = new byte[16];
+    assertEquals(3, ring.source().read(readData, 0, readData.length));
+    assertEquals(0x03, readData[2]);
+  }
+
+  @Test
+  public void testEmptyTransfer() throws IOException {
+    UploadBufferRing ring = new UploadBufferRing(4, 2);
+    ring.sink().close();
+    assertEquals(-1, ring.source().read(new byte[4], 0, 4));
+  }
+
+  @Test
+  public void testWriteAfterSinkClosedThrows() throws IOException {
+    UploadBufferRing ring = new UploadBufferRing(4, 2);
+    ring.sink().close();
+
+    expectedException.expect(ClosedChannelException.class);
+    ring.sink().write(ByteBuffer.wrap(new byte[1]));
+  }
+
+  @Test
+  public void testWriteAfterSourceClosedThrows() throws IOException {
+    UploadBufferRing ring = new UploadBufferRing(4, 2);
+    ring.source().close();
+
+    expectedException.expect(IOException.class);
+    expectedException.expectMessage("closed by reader");
+    ring.sink().write(ByteBuffer.wrap(new byte[1]));
+  }
+
+  @Test
+  public void testBlockedWriterFailsWhenSourceClosed() throws Exception {
+    final UploadBufferRing ring = new UploadBufferRing(4, 2);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      // Fills both buffers of the ring and blocks waiting for a third one.
+      Future<Integer> writeResult = executor.submit(new Callable<Integer>() {
+        @Override
+        public Integer call() throws IOException {
+          return ring.sink().write(ByteBuffer.wrap(new byte[12]));
+        }
+      });
+      byte[] buffer = new byte[4];
+      assertEquals(4, ring.source().read(buffer, 0, 4));
+      ring.source().close();
+
+      expectedException.expectMessage("closed by reader");
+      writeResult.get();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}